@@ -100,10 +100,16 @@ import io.onedev.server.entityreference.EntityReferenceManager;
 import io.onedev.server.event.DefaultListenerRegistry;
 import io.onedev.server.event.ListenerRegistry;
 import io.onedev.server.exception.ExceptionHandler;
+import io.onedev.server.git.BlobDiffManager;
+import io.onedev.server.git.DefaultBlobDiffManager;
+import io.onedev.server.git.DefaultGitMaintenanceManager;
 import io.onedev.server.git.GitFilter;
 import io.onedev.server.git.GitLfsFilter;
+import io.onedev.server.git.GitMaintenanceManager;
 import io.onedev.server.git.GoGetFilter;
 import io.onedev.server.git.SshCommandCreator;
+import io.onedev.server.git.archive.ArchiveManager;
+import io.onedev.server.git.archive.DefaultArchiveManager;
 import io.onedev.server.git.location.GitLocation;
 import io.onedev.server.git.exception.GitException;
 import io.onedev.server.git.hook.GitPostReceiveCallback;
@@ -112,7 +118,9 @@ import io.onedev.server.git.service.DefaultGitService;
 import io.onedev.server.git.service.GitService;
 import io.onedev.server.git.signature.DefaultSignatureVerificationKeyLoader;
 import io.onedev.server.git.signature.SignatureVerificationKeyLoader;
+import io.onedev.server.infomanager.BlameInfoManager;
 import io.onedev.server.infomanager.CommitInfoManager;
+import io.onedev.server.infomanager.DefaultBlameInfoManager;
 import io.onedev.server.infomanager.DefaultCommitInfoManager;
 import io.onedev.server.infomanager.DefaultIssueInfoManager;
 import io.onedev.server.infomanager.DefaultPullRequestInfoManager;
@@ -139,6 +147,8 @@ import io.onedev.server.model.support.administration.authenticator.Authenticator
 import io.onedev.server.notification.BuildNotificationManager;
 import io.onedev.server.notification.CodeCommentNotificationManager;
 import io.onedev.server.notification.CommitNotificationManager;
+import io.onedev.server.notification.DefaultDeliveryManager;
+import io.onedev.server.notification.DeliveryManager;
 import io.onedev.server.notification.IssueNotificationManager;
 import io.onedev.server.notification.PullRequestNotificationManager;
 import io.onedev.server.notification.WebHookManager;
@@ -173,6 +183,8 @@ import io.onedev.server.search.code.CodeIndexManager;
 import io.onedev.server.search.code.CodeSearchManager;
 import io.onedev.server.search.code.DefaultCodeIndexManager;
 import io.onedev.server.search.code.DefaultCodeSearchManager;
+import io.onedev.server.search.entity.DefaultQuerySubscriptionIndex;
+import io.onedev.server.search.entity.QuerySubscriptionIndex;
 import io.onedev.server.search.entitytext.CodeCommentTextManager;
 import io.onedev.server.search.entitytext.DefaultCodeCommentTextManager;
 import io.onedev.server.search.entitytext.DefaultIssueTextManager;
@@ -184,10 +196,12 @@ import io.onedev.server.security.BearerAuthenticationFilter;
 import io.onedev.server.security.CodePullAuthorizationSource;
 import io.onedev.server.security.DefaultFilterChainResolver;
 import io.onedev.server.security.DefaultPasswordService;
+import io.onedev.server.security.DefaultPermissionCache;
 import io.onedev.server.security.DefaultRememberMeManager;
 import io.onedev.server.security.DefaultShiroFilterConfiguration;
 import io.onedev.server.security.DefaultWebSecurityManager;
 import io.onedev.server.security.FilterChainConfigurator;
+import io.onedev.server.security.PermissionCache;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.realm.AbstractAuthorizingRealm;
 import io.onedev.server.ssh.CommandCreator;
@@ -195,6 +209,10 @@ import io.onedev.server.ssh.DefaultSshAuthenticator;
 import io.onedev.server.ssh.DefaultSshManager;
 import io.onedev.server.ssh.SshAuthenticator;
 import io.onedev.server.ssh.SshManager;
+import io.onedev.server.storage.ArtifactStore;
+import io.onedev.server.storage.DefaultArtifactStore;
+import io.onedev.server.storage.DefaultLfsObjectStore;
+import io.onedev.server.storage.LfsObjectStore;
 import io.onedev.server.storage.DefaultStorageManager;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.terminal.DefaultTerminalManager;
@@ -299,7 +317,10 @@ public class CoreModule extends AbstractPluginModule {
 		bind(SshAuthenticator.class).to(DefaultSshAuthenticator.class);
 		bind(SshManager.class).to(DefaultSshManager.class);
 		bind(MarkdownManager.class).to(DefaultMarkdownManager.class);		
+		bind(PermissionCache.class).to(DefaultPermissionCache.class);
 		bind(StorageManager.class).to(DefaultStorageManager.class);
+		bind(ArtifactStore.class).to(DefaultArtifactStore.class);
+		bind(LfsObjectStore.class).to(DefaultLfsObjectStore.class);
 		bind(SettingManager.class).to(DefaultSettingManager.class);
 		bind(DataManager.class).to(DefaultDataManager.class);
 		bind(TaskScheduler.class).to(DefaultTaskScheduler.class);
@@ -325,6 +346,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(PullRequestWatchManager.class).to(DefaultPullRequestWatchManager.class);
 		bind(RoleManager.class).to(DefaultRoleManager.class);
 		bind(CommitInfoManager.class).to(DefaultCommitInfoManager.class);
+		bind(BlameInfoManager.class).to(DefaultBlameInfoManager.class);
 		bind(IssueInfoManager.class).to(DefaultIssueInfoManager.class);
 		bind(VisitInfoManager.class).to(DefaultVisitInfoManager.class);
 		bind(BatchWorkManager.class).to(DefaultBatchWorkManager.class);
@@ -338,7 +360,10 @@ public class CoreModule extends AbstractPluginModule {
 		bind(CodeCommentReplyManager.class).to(DefaultCodeCommentReplyManager.class);
 		bind(CodeCommentStatusChangeManager.class).to(DefaultCodeCommentStatusChangeManager.class);
 		bind(AttachmentManager.class).to(DefaultAttachmentManager.class);
+		bind(ArchiveManager.class).to(DefaultArchiveManager.class);
+		bind(BlobDiffManager.class).to(DefaultBlobDiffManager.class);
 		bind(PullRequestInfoManager.class).to(DefaultPullRequestInfoManager.class);
+		bind(QuerySubscriptionIndex.class).to(DefaultQuerySubscriptionIndex.class);
 		bind(PullRequestNotificationManager.class);
 		bind(CommitNotificationManager.class);
 		bind(BuildNotificationManager.class);
@@ -380,6 +405,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(BuildLabelManager.class).to(DefaultBuildLabelManager.class);
 		bind(PullRequestLabelManager.class).to(DefaultPullRequestLabelManager.class);
 		
+		bind(DeliveryManager.class).to(DefaultDeliveryManager.class);
 		bind(WebHookManager.class);
 		
 		contribute(CodePullAuthorizationSource.class, DefaultJobManager.class);
@@ -497,6 +523,7 @@ public class CoreModule extends AbstractPluginModule {
 	private void configureGit() {
 		contribute(ObjectMapperConfigurator.class, GitObjectMapperConfigurator.class);
 		bind(GitService.class).to(DefaultGitService.class);
+		bind(GitMaintenanceManager.class).to(DefaultGitMaintenanceManager.class);
 		bind(GitLocation.class).toProvider(GitLocationProvider.class);
 		bind(GitFilter.class);
 		bind(GoGetFilter.class);
@@ -3,6 +3,8 @@ package io.onedev.server;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 
 import io.onedev.agent.*;
@@ -32,10 +34,24 @@ public class ServerSocket {
 
 	private static final Logger logger = LoggerFactory.getLogger(ServerSocket.class);
 	
+	// Max bytes of job log accepted from an agent in a second. Excessive logs are dropped
+	private static final int MAX_JOB_LOG_BYTES_PER_SECOND = 1024*1024;
+	
 	private Session session;
 	
 	private Long agentId;
 	
+	/*
+	 * Messages of a websocket connection are delivered sequentially, so no synchronization 
+	 * is needed to access below fields
+	 */
+	private long jobLogWindowStart;
+	
+	private int jobLogWindowBytes;
+	
+	// Map of job token to number of dropped job log messages in current window
+	private final Map<String, Integer> droppedJobLogs = new HashMap<>();
+	
 	@OnWebSocketClose
     public void onClose(int statusCode, String reason) {
 		try {
@@ -122,16 +138,29 @@ public class ServerSocket {
 	    		break;
 	    	case JOB_LOG:
 	    		try {
-		    		String dataString = new String(messageData, StandardCharsets.UTF_8);
-		    		String jobToken = StringUtils.substringBefore(dataString, ":");
-		    		String remaining = StringUtils.substringAfter(dataString, ":");
-		    		String sessionId = StringUtils.substringBefore(remaining, ":");
-		    		if (sessionId.length() == 0)
-		    			sessionId = null;
-		    		String logMessage = StringUtils.substringAfter(remaining, ":");
-		    		TaskLogger logger = OneDev.getInstance(LogManager.class).getJobLogger(jobToken);
-		    		if (logger != null)
-		    			logger.log(logMessage, sessionId);
+	    			/*
+	    			 * Data is of format <job token>:<session id>:<log message>. Locate separators on raw 
+	    			 * bytes and decode log message only, as this is called for every log line. Separator 
+	    			 * can not appear inside multi-byte UTF-8 sequences 
+	    			 */
+	    			int jobTokenEnd = indexOf(messageData, ':', 0);
+	    			int sessionIdEnd = jobTokenEnd!=-1? indexOf(messageData, ':', jobTokenEnd+1): -1;
+	    			if (sessionIdEnd != -1) {
+			    		String jobToken = new String(messageData, 0, jobTokenEnd, StandardCharsets.UTF_8);
+			    		TaskLogger logger = OneDev.getInstance(LogManager.class).getJobLogger(jobToken);
+			    		if (logger != null && !acceptJobLog(messageData.length)) {
+			    			droppedJobLogs.merge(jobToken, 1, Integer::sum);
+			    		} else if (logger != null) {
+				    		String sessionId;
+				    		if (sessionIdEnd > jobTokenEnd+1)
+				    			sessionId = new String(messageData, jobTokenEnd+1, sessionIdEnd-jobTokenEnd-1, StandardCharsets.UTF_8);
+				    		else
+				    			sessionId = null;
+				    		String logMessage = new String(messageData, sessionIdEnd+1, 
+				    				messageData.length-sessionIdEnd-1, StandardCharsets.UTF_8);
+			    			logger.log(logMessage, sessionId);
+			    		}
+	    			}
 	    		} catch (Exception e) {
 	    			logger.error("Error processing job log", e);
 	    		}
@@ -177,6 +206,41 @@ public class ServerSocket {
     	}
     }
     
+    /*
+     * Limit rate of job logs of each agent so that a noisy job can not flood the server. Number of 
+     * dropped messages is reported to job log once a new window starts
+     */
+    private boolean acceptJobLog(int bytes) {
+    	long now = System.currentTimeMillis();
+    	if (now - jobLogWindowStart >= 1000) {
+    		jobLogWindowStart = now;
+    		jobLogWindowBytes = 0;
+    		LogManager logManager = OneDev.getInstance(LogManager.class);
+    		for (Map.Entry<String, Integer> entry: droppedJobLogs.entrySet()) {
+    			TaskLogger jobLogger = logManager.getJobLogger(entry.getKey());
+    			if (jobLogger != null) {
+    				jobLogger.warning(entry.getValue() + " log messages dropped as job logs exceed " 
+    						+ MAX_JOB_LOG_BYTES_PER_SECOND + " bytes per second");
+    			}
+    		}
+    		droppedJobLogs.clear();
+    	}
+    	if (jobLogWindowBytes >= MAX_JOB_LOG_BYTES_PER_SECOND) {
+    		return false;
+    	} else {
+    		jobLogWindowBytes += bytes;
+    		return true;
+    	}
+    }
+    
+    private static int indexOf(byte[] bytes, char ch, int from) {
+    	for (int i=from; i<bytes.length; i++) {
+    		if (bytes[i] == ch)
+    			return i;
+    	}
+    	return -1;
+    }
+    
     private JobManager getJobManager() {
     	return OneDev.getInstance(JobManager.class);
     }
@@ -59,14 +59,7 @@ public class BuildSpec implements Serializable, Validatable {
 	        
 		@Override
         public byte[] load(String key) {
-			String buildSpecString = key;
-			if (buildSpecString.trim().startsWith("<?xml")) 
-				buildSpecString = XmlBuildSpecMigrator.migrate(buildSpecString);
-			try {
-				return SerializationUtils.serialize(VersionedYamlDoc.fromYaml(buildSpecString).toBean(BuildSpec.class));
-			} catch (Exception e) {
-				throw new BuildSpecParseException("Malformed build spec", e);
-			}
+			return SerializationUtils.serialize(fromString(key));
         }
 	        
 	});
@@ -625,6 +618,47 @@ public class BuildSpec implements Serializable, Validatable {
 		return suggestions;
 	}
 	
+	private static BuildSpec fromString(String buildSpecString) {
+		if (buildSpecString.trim().startsWith("<?xml")) 
+			buildSpecString = XmlBuildSpecMigrator.migrate(buildSpecString);
+		try {
+			return VersionedYamlDoc.fromYaml(buildSpecString).toBean(BuildSpec.class);
+		} catch (Exception e) {
+			throw new BuildSpecParseException("Malformed build spec", e);
+		}
+	}
+	
+	/**
+	 * Parse specified bytes into a new build spec without going through parse cache. Use this 
+	 * if parsed build spec is cached by caller
+	 */
+	@Nullable
+	public static BuildSpec parseUncached(byte[] bytes) {
+		String buildSpecString = new String(bytes, StandardCharsets.UTF_8); 
+		if (StringUtils.isNotBlank(buildSpecString)) 
+			return fromString(buildSpecString);
+		else 
+			return null;
+	}
+	
+	/**
+	 * Create a light weight view of this build spec. The view shares jobs, step templates, 
+	 * services and properties with this build spec, but resolves imports on its own, as 
+	 * imported build specs depend on permission of current user. Shared elements should 
+	 * not be modified, call {@link #parse(byte[])} instead to get a build spec for editing
+	 */
+	public BuildSpec newView() {
+		BuildSpec view = new BuildSpec();
+		view.jobs = new ArrayList<>(jobs);
+		view.stepTemplates = new ArrayList<>(stepTemplates);
+		view.services = new ArrayList<>(services);
+		view.properties = new ArrayList<>(properties);
+		view.imports = new ArrayList<>();
+		for (Import aImport: imports)
+			view.imports.add(aImport.copy());
+		return view;
+	}
+	
 	@Nullable
 	public static BuildSpec parse(byte[] bytes) {
 		String buildSpecString = new String(bytes, StandardCharsets.UTF_8); 
@@ -143,6 +143,17 @@ public class Import implements Serializable, Validatable {
 		this.accessTokenSecret = accessTokenSecret;
 	}
 	
+	/**
+	 * Copy this import without resolved build spec
+	 */
+	public Import copy() {
+		Import copy = new Import();
+		copy.projectPath = projectPath;
+		copy.revision = revision;
+		copy.accessTokenSecret = accessTokenSecret;
+		return copy;
+	}
+	
 	@SuppressWarnings("unused")
 	private static List<String> getAccessTokenSecretChoices() {
 		return Project.get().getHierarchyJobSecrets()
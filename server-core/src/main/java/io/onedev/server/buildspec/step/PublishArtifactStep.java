@@ -1,9 +1,13 @@
 package io.onedev.server.buildspec.step;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.validation.constraints.NotEmpty;
 
@@ -14,6 +18,7 @@ import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
 import io.onedev.server.model.Build;
+import io.onedev.server.storage.ArtifactStore;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.patternset.PatternSet;
 import io.onedev.server.annotation.SafePath;
@@ -74,7 +79,19 @@ public class PublishArtifactStep extends ServerSideStep {
 			@Override
 			public Void call() throws Exception {
 				OneDev.getInstance(StorageManager.class).initArtifactsDir(build.getProject().getId(), build.getNumber());
-				FileUtils.copyDirectory(inputDir, build.getArtifactsDir());
+				File artifactsDir = build.getArtifactsDir();
+				// Existing artifacts may be linked to blobs shared with other builds, remove 
+				// them instead of overwriting 
+				Path basePath = inputDir.toPath();
+				try (Stream<Path> paths = Files.walk(basePath)) {
+					for (Path path: paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+						File artifactFile = new File(artifactsDir, basePath.relativize(path).toString());
+						if (artifactFile.exists())
+							FileUtils.deleteFile(artifactFile);
+					}
+				}
+				FileUtils.copyDirectory(inputDir, artifactsDir);
+				OneDev.getInstance(ArtifactStore.class).intern(build.getProject().getId(), build.getNumber());
 				return null;
 			}
 			
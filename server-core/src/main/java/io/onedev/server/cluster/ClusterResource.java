@@ -9,6 +9,8 @@ import io.onedev.server.git.CommandUtils;
 import io.onedev.server.git.GitFilter;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.LfsObject;
+import io.onedev.server.git.archive.ArchiveManager;
+import io.onedev.server.git.archive.ArchiveStream;
 import io.onedev.server.git.command.AdvertiseReceiveRefsCommand;
 import io.onedev.server.git.command.AdvertiseUploadRefsCommand;
 import io.onedev.server.git.hook.HookUtils;
@@ -17,6 +19,7 @@ import io.onedev.server.model.Build;
 import io.onedev.server.model.Project;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.storage.ArtifactStore;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.concurrent.PrioritizedRunnable;
 import io.onedev.server.util.concurrent.WorkExecutor;
@@ -29,6 +32,7 @@ import org.eclipse.jgit.lib.Repository;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import javax.ws.rs.*;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
@@ -55,15 +59,21 @@ public class ClusterResource {
 	
 	private final WorkExecutor workExecutor;
 	
+	private final ArchiveManager archiveManager;
+	
+	private final ArtifactStore artifactStore;
+	
 	@Inject
 	public ClusterResource(ProjectManager projectManager, CommitInfoManager commitInfoManager, 
 			StorageManager storageManager, AttachmentManager attachmentManager, 
-			WorkExecutor workExecutor) {
+			WorkExecutor workExecutor, ArchiveManager archiveManager, ArtifactStore artifactStore) {
 		this.projectManager = projectManager;
 		this.commitInfoManager = commitInfoManager;
 		this.storageManager = storageManager;
 		this.workExecutor = workExecutor;
 		this.attachmentManager = attachmentManager;
+		this.archiveManager = archiveManager;
+		this.artifactStore = artifactStore;
 	}
 	
 	@Path("/artifacts")
@@ -96,6 +106,22 @@ public class ClusterResource {
 		return Response.ok(os).build();
 	}
 
+	@Path("/artifact-manifest")
+	@Produces(MediaType.TEXT_PLAIN)
+	@GET
+	public String getArtifactManifest(@QueryParam("projectId") Long projectId,
+			@QueryParam("buildNumber") Long buildNumber,
+			@QueryParam("artifacts") String artifacts) {
+		if (!SecurityUtils.getUser().isSystem()) 
+			throw new UnauthorizedException("This api can only be accessed via cluster credential");
+		
+		StringBuilder builder = new StringBuilder();
+		PatternSet patternSet = PatternSet.parse(artifacts);
+		for (Map.Entry<String, String> entry: artifactStore.getManifest(projectId, buildNumber, patternSet).entrySet())
+			builder.append(entry.getValue()).append("\t").append(entry.getKey()).append("\n");
+		return builder.toString();
+	}
+	
 	@Path("/artifact")
 	@Produces(MediaType.APPLICATION_OCTET_STREAM)
 	@GET
@@ -154,6 +180,30 @@ public class ClusterResource {
 		return Response.ok(os).build();
 	}
 	
+	@Path("/archive")
+	@Produces(MediaType.APPLICATION_OCTET_STREAM)
+	@GET
+	public Response downloadArchive(@QueryParam("projectId") Long projectId, @QueryParam("commitId") String commitId, 
+			@QueryParam("format") String format) {
+		if (!SecurityUtils.getUser().isSystem()) 
+			throw new UnauthorizedException("This api can only be accessed via cluster credential");
+		
+		ArchiveStream archiveStream = archiveManager.openArchive(projectId, ObjectId.fromString(commitId), format);
+		StreamingOutput os = new StreamingOutput() {
+
+			@Override
+		   public void write(OutputStream output) throws IOException {
+				try (InputStream is = archiveStream) {
+					IOUtils.copy(is, output, BUFFER_SIZE);
+				} finally {
+					output.close();
+				}
+		   }				   
+		   
+		};
+		return Response.ok(os).header(HttpHeaders.CONTENT_LENGTH, archiveStream.getSize()).build();
+	}
+	
 	@Path("/site")
 	@Produces(MediaType.APPLICATION_OCTET_STREAM)
 	@GET
@@ -369,6 +419,9 @@ public class ClusterResource {
 				storageManager.initArtifactsDir(projectId, buildNumber);
 				File artifactFile = new File(Build.getArtifactsDir(projectId, buildNumber), artifactPath);
 				FileUtils.createDir(artifactFile.getParentFile());
+				// Existing artifact may be linked to a blob shared with other builds
+				if (artifactFile.exists())
+					FileUtils.deleteFile(artifactFile);
 				try (OutputStream os = new FileOutputStream(artifactFile)) {
 					IOUtils.copy(input, os, BUFFER_SIZE);
 				} catch (IOException e) {
@@ -0,0 +1,251 @@
+package io.onedev.server.codequality;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.commons.utils.ExplicitException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Per-file data of a code quality report (line coverages, code problems etc.) packed into a
+ * single file. Data of each file is encoded by the report plugin, and strings shared between
+ * files (problem types, messages etc.) are interned into a string table of the pack. An index
+ * of file paths is stored at end of the pack so that data of a particular file can be located
+ * without reading others.
+ *
+ * Packs are memory mapped for reading, and recently used packs are cached.
+ */
+public class ReportFilePack {
+
+	private static final int MAGIC = 0x4f445250;
+
+	private static final int VERSION = 1;
+
+	private static final int MAX_CACHED_PACKS = 64;
+
+	private static final Cache<String, ReportFilePack> cache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_PACKS)
+			.build();
+
+	private final ByteBuffer buffer;
+
+	private final List<String> strings;
+
+	private final Map<String, int[]> index;
+
+	private ReportFilePack(ByteBuffer buffer) {
+		this.buffer = buffer;
+
+		if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC)
+			throw new ExplicitException("Invalid report file pack");
+		if (buffer.getInt(4) != VERSION)
+			throw new ExplicitException("Unsupported report file pack version: " + buffer.getInt(4));
+
+		ByteBuffer tableBuffer = buffer.duplicate();
+		tableBuffer.position(buffer.getInt(buffer.limit() - 4));
+
+		int stringCount = readVarInt(tableBuffer);
+		strings = new ArrayList<>(stringCount);
+		for (int i=0; i<stringCount; i++)
+			strings.add(readString(tableBuffer));
+
+		int fileCount = readVarInt(tableBuffer);
+		index = new HashMap<>(fileCount * 4 / 3 + 1);
+		for (int i=0; i<fileCount; i++) {
+			String blobPath = readString(tableBuffer);
+			int offset = readVarInt(tableBuffer);
+			int length = readVarInt(tableBuffer);
+			index.put(blobPath, new int[] {offset, length});
+		}
+	}
+
+	/**
+	 * Open specified pack file for reading. Opened packs are cached and shared, so caller
+	 * should not close them
+	 */
+	public static ReportFilePack open(File packFile) {
+		String cacheKey = packFile.getAbsolutePath() + ":" + packFile.lastModified();
+		try {
+			return cache.get(cacheKey, () -> {
+				try (RandomAccessFile raf = new RandomAccessFile(packFile, "r")) {
+					ByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+					return new ReportFilePack(buffer);
+				}
+			});
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+	}
+
+	/**
+	 * Get data of specified file
+	 *
+	 * @return
+	 * 			a read-only buffer positioned at start of file data, or <tt>null</tt> if
+	 * 			specified file does not exist in this pack
+	 */
+	@Nullable
+	public ByteBuffer get(String blobPath) {
+		int[] location = index.get(blobPath);
+		if (location != null) {
+			ByteBuffer data = buffer.duplicate();
+			data.position(location[0]);
+			data.limit(location[0] + location[1]);
+			return data.slice();
+		} else {
+			return null;
+		}
+	}
+
+	public String getString(int stringIndex) {
+		return strings.get(stringIndex);
+	}
+
+	public static void writeVarInt(OutputStream os, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			os.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		os.write(value);
+	}
+
+	public static int readVarInt(ByteBuffer buffer) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	public static void writeVarLong(OutputStream os, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			os.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		os.write((int) value);
+	}
+
+	public static long readVarLong(ByteBuffer buffer) {
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	public static void writeSignedVarInt(OutputStream os, int value) throws IOException {
+		writeVarInt(os, (value << 1) ^ (value >> 31));
+	}
+
+	public static int readSignedVarInt(ByteBuffer buffer) {
+		int value = readVarInt(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeString(OutputStream os, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		writeVarInt(os, bytes.length);
+		os.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[readVarInt(buffer)];
+		buffer.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	public static class Writer implements Closeable {
+
+		private final DataOutputStream os;
+
+		private final Map<String, Integer> strings = new LinkedHashMap<>();
+
+		private final Map<String, int[]> index = new LinkedHashMap<>();
+
+		public Writer(File packFile) {
+			try {
+				os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(packFile)));
+				os.writeInt(MAGIC);
+				os.writeInt(VERSION);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		/**
+		 * Intern specified string into string table of the pack
+		 *
+		 * @return
+		 * 			index of the string in string table, which can be resolved back with
+		 * 			{@link ReportFilePack#getString(int)}
+		 */
+		public synchronized int intern(String value) {
+			Integer stringIndex = strings.get(value);
+			if (stringIndex == null) {
+				stringIndex = strings.size();
+				strings.put(value, stringIndex);
+			}
+			return stringIndex;
+		}
+
+		public synchronized void write(String blobPath, ByteArrayOutputStream data) {
+			try {
+				index.put(blobPath, new int[] {os.size(), data.size()});
+				data.writeTo(os);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			try {
+				int tableOffset = os.size();
+				writeVarInt(os, strings.size());
+				for (String value: strings.keySet())
+					writeString(os, value);
+				writeVarInt(os, index.size());
+				for (Map.Entry<String, int[]> entry: index.entrySet()) {
+					writeString(os, entry.getKey());
+					writeVarInt(os, entry.getValue()[0]);
+					writeVarInt(os, entry.getValue()[1]);
+				}
+				os.writeInt(tableOffset);
+			} finally {
+				os.close();
+			}
+		}
+
+	}
+
+}
@@ -1,5 +1,6 @@
 package io.onedev.server.entitymanager;
 
+import com.google.common.cache.CacheStats;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.cluster.ProjectServer;
 import io.onedev.server.model.Project;
@@ -59,8 +60,32 @@ public interface ProjectManager extends EntityManager<Project> {
 	
 	void deleteTag(Project project, String tagName);
 	
+	/**
+	 * Get cached repository of specified project without referencing it. The repository may be 
+	 * closed by cache eviction while still being used, which is harmless but causes packs to be 
+	 * scanned again on next access. Use this for short operations such as serving a request; 
+	 * long running operations (indexing, commit info collecting, blame, diff calculation etc.) 
+	 * should use {@link #openRepository(Long)} instead
+	 */
 	Repository getRepository(Long projectId);
 	
+	/**
+	 * Get repository of specified project for long running usage. Reference count of the repository 
+	 * is increased, so that it is not closed by cache eviction until caller closes it
+	 */
+	Repository openRepository(Long projectId);
+	
+	CacheStats getRepositoryCacheStats();
+	
+	long getCachedRepositoryCount();
+	
+	/**
+	 * @return
+	 * 			number of repositories not closed yet, including cached repositories, and evicted 
+	 * 			repositories still opened via {@link #openRepository(Long)}
+	 */
+	int getOpenRepositoryCount();
+	
 	List<Project> query(EntityQuery<Project> query, int firstResult, int maxResults);
 	
 	int count(Criteria<Project> criteria);
@@ -50,6 +50,16 @@ public interface PullRequestManager extends EntityManager<PullRequest> {
 
     void checkAsync(PullRequest request, boolean sourceUpdated, boolean updateBuildCommit);
     
+	/**
+	 * Notify that specified pull request is being accessed. Merge preview of pull requests not 
+	 * accessed recently is calculated lazily, and this call schedules the calculation with high 
+	 * priority if merge preview is outdated
+	 * 
+	 * @param request
+	 * 			pull request being accessed
+	 */
+    void access(PullRequest request);
+    
     void merge(PullRequest request, @Nullable String commitMessage);
     
     void open(PullRequest request);
@@ -3,6 +3,11 @@ package io.onedev.server.entitymanager.impl;
 import com.beust.jcommander.internal.Lists;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Sets;
 import com.hazelcast.cluster.MembershipEvent;
 import com.hazelcast.cluster.MembershipListener;
@@ -57,6 +62,7 @@ import io.onedev.server.search.entity.issue.IssueQueryUpdater;
 import io.onedev.server.search.entity.project.ProjectQuery;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.AccessProject;
+import io.onedev.server.storage.LfsObjectStore;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ProjectNameReservation;
 import io.onedev.server.util.artifact.ArtifactInfo;
@@ -68,6 +74,8 @@ import io.onedev.server.util.facade.ProjectFacade;
 import io.onedev.server.util.patternset.PatternSet;
 import io.onedev.server.util.usage.Usage;
 import io.onedev.server.web.avatar.AvatarManager;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.shiro.authz.Permission;
 import org.apache.shiro.authz.UnauthorizedException;
@@ -94,11 +102,17 @@ import java.io.File;
 import java.io.IOException;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Singleton
@@ -106,6 +120,17 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		implements ProjectManager, Serializable {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultProjectManager.class);
+	
+	private static final int MAX_CHECK_CONCURRENCY = 8;
+	
+	private static final String CHECK_STAMP_FILE = "onedev-check-stamp";
+	
+	// Increase this if checks performed upon startup are changed
+	private static final String CHECK_VERSION = "1";
+	
+	private static final int MAX_CACHED_REPOSITORIES = 1000;
+	
+	private static final long REPOSITORY_IDLE_TIMEOUT = 3600;
 
 	private final CommitInfoManager commitInfoManager;
 
@@ -122,6 +147,10 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 	private final IssueManager issueManager;
 	
 	private final PullRequestManager pullRequestManager;
+	
+	private final LfsObjectStore lfsObjectStore;
+	
+	private final ExecutorService executorService;
 
 	private final LinkSpecManager linkSpecManager;
 
@@ -144,7 +173,30 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 	private final Collection<String> reservedNames = Sets.newHashSet("robots.txt", "sitemap.xml", "sitemap.txt",
 			"favicon.ico", "favicon.png", "logo.png", "wicket", "projects");
 
-	private final Map<Long, Repository> repositoryCache = new ConcurrentHashMap<>();
+	private final AtomicInteger openRepositories = new AtomicInteger();
+	
+	private final Object repositoryLock = new Object();
+	
+	/*
+	 * Evicted repositories are closed, which only decreases their reference count if they are 
+	 * still opened by callers of openRepository. Repositories returned from getRepository are not 
+	 * referenced, however they still work after being closed, at cost of re-scanning packs 
+	 */
+	private final Cache<Long, Repository> repositoryCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_REPOSITORIES)
+			.expireAfterAccess(REPOSITORY_IDLE_TIMEOUT, TimeUnit.SECONDS)
+			.recordStats()
+			.removalListener(new RemovalListener<Long, Repository>() {
+
+				@Override
+				public void onRemoval(RemovalNotification<Long, Repository> notification) {
+					synchronized (repositoryLock) {
+						notification.getValue().close();
+					}
+				}
+				
+			})
+			.build();
 
 	private volatile IMap<Long, ProjectServer> storageServers;
 
@@ -159,6 +211,7 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 								 JobManager jobManager, IssueManager issueManager, LinkSpecManager linkSpecManager,
 								 StorageManager storageManager, ClusterManager clusterManager, GitService gitService,
 								 ProjectDynamicsManager dynamicsManager, PullRequestManager pullRequestManager, 
+								 LfsObjectStore lfsObjectStore, ExecutorService executorService, 
 								 Set<ProjectNameReservation> nameReservations) {
 		super(dao);
 
@@ -179,6 +232,8 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		this.gitService = gitService;
 		this.dynamicsManager = dynamicsManager;
 		this.pullRequestManager = pullRequestManager;
+		this.lfsObjectStore = lfsObjectStore;
+		this.executorService = executorService;
 
 		for (ProjectNameReservation reservation : nameReservations)
 			reservedNames.addAll(reservation.getReserved());
@@ -190,23 +245,57 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 
 	@Override
 	public Repository getRepository(Long projectId) {
-		Repository repository = repositoryCache.get(projectId);
-		if (repository == null) {
-			synchronized (repositoryCache) {
-				repository = repositoryCache.get(projectId);
-				if (repository == null) {
-					try {
-						repository = new FileRepository(storageManager.getProjectGitDir(projectId));
-					} catch (IOException e) {
-						throw new RuntimeException(e);
-					}
-					repositoryCache.put(projectId, repository);
+		try {
+			return repositoryCache.get(projectId, new Callable<Repository>() {
+
+				@Override
+				public Repository call() throws Exception {
+					openRepositories.incrementAndGet();
+					return new FileRepository(storageManager.getProjectGitDir(projectId)) {
+						
+						private final AtomicBoolean closed = new AtomicBoolean(false);
+
+						@Override
+						protected void doClose() {
+							super.doClose();
+							if (closed.compareAndSet(false, true))
+								openRepositories.decrementAndGet();
+						}
+						
+					};
 				}
-			}
+				
+			});
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
 		}
-		return repository;
 	}
 
+	@Override
+	public Repository openRepository(Long projectId) {
+		// Synchronized with eviction so that repository is not closed before being referenced 
+		synchronized (repositoryLock) {
+			Repository repository = getRepository(projectId);
+			repository.incrementOpen();
+			return repository;
+		}
+	}
+	
+	@Override
+	public CacheStats getRepositoryCacheStats() {
+		return repositoryCache.stats();
+	}
+	
+	@Override
+	public long getCachedRepositoryCount() {
+		return repositoryCache.size();
+	}
+	
+	@Override
+	public int getOpenRepositoryCount() {
+		return openRepositories.get();
+	}
+	
 	@Transactional
 	@Override
 	public void update(Project project) {
@@ -415,11 +504,7 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		dao.remove(project);
 		dynamicsManager.delete(project.getDynamics());
 
-		synchronized (repositoryCache) {
-			Repository repository = repositoryCache.remove(project.getId());
-			if (repository != null)
-				repository.close();
-		}
+		repositoryCache.invalidate(project.getId());
 		
 		listenerRegistry.post(new ProjectDeleted(SecurityUtils.getUser(), new Date(), project));
 	}
@@ -533,7 +618,9 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 					File fromGitDir = storageManager.getProjectGitDir(fromId);
 					new CloneCommand(toGitDir, fromGitDir.getAbsolutePath()).noLfs(true).mirror(true).run();
 					storageManager.initLfsDir(toId);
-					new LfsFetchAllCommand(toGitDir).run();
+					// Link LFS objects of the source project instead of copying and hashing them again 
+					if (!lfsObjectStore.linkAll(getLfsObjectsDir(fromId), getLfsObjectsDir(toId)))
+						new LfsFetchAllCommand(toGitDir).run();
 				} else {
 					CommandUtils.callWithClusterCredential(new GitTask<Void>() {
 
@@ -572,8 +659,10 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 
 					});
 
+					// Share fetched LFS objects with other projects instead of storing them again
+					lfsObjectStore.internAll(getLfsObjectsDir(toId));
 				}
-
+				
 				HookUtils.checkHooks(toGitDir);
 				checkGitConfig(toId, gitPackConfig);
 
@@ -606,6 +695,7 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 				new CloneCommand(gitDir, repositoryUrl).mirror(true).noLfs(true).run();
 				storageManager.initLfsDir(projectId);
 				new LfsFetchAllCommand(gitDir).run();
+				lfsObjectStore.internAll(getLfsObjectsDir(projectId));
 				return null;
 			}
 
@@ -729,13 +819,79 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 
 	@Listen
 	public void on(SystemStopping event) {
-		synchronized (repositoryCache) {
-			for (Repository repository : repositoryCache.values()) {
-				repository.close();
+		repositoryCache.invalidateAll();
+	}
+
+	private File getCheckStampFile(Long projectId) {
+		return new File(storageManager.getProjectGitDir(projectId), CHECK_STAMP_FILE);
+	}
+	
+	/*
+	 * Fingerprint of everything checked at startup. Checks are skipped if it does not change 
+	 * since last check, which saves opening repositories of all projects when server starts
+	 */
+	private String getCheckFingerprint(Long projectId, GitPackConfig gitPackConfig) {
+		File gitDir = storageManager.getProjectGitDir(projectId);
+		StringBuilder builder = new StringBuilder(CHECK_VERSION).append(HookUtils.getHookDigest());
+		builder.append(gitPackConfig.getWindowMemory()).append(gitPackConfig.getPackSizeLimit());
+		builder.append(gitPackConfig.getThreads()).append(gitPackConfig.getWindow());
+		builder.append(GitUtils.isValid(gitDir));
+		File configFile = new File(gitDir, "config");
+		builder.append(":").append(configFile.lastModified()).append(":").append(configFile.length());
+		// Hooks losing execute permission (for instance after restoring from backup) need to be checked again
+		for (String path: new String[] {"hooks/pre-receive", "hooks/post-receive"}) {
+			File file = new File(gitDir, path);
+			builder.append(":").append(file.lastModified()).append(":").append(file.length())
+					.append(":").append(file.canExecute());
+		}
+		return DigestUtils.sha256Hex(builder.toString());
+	}
+	
+	private void checkProject(Long projectId, GitPackConfig gitPackConfig) {
+		File stampFile = getCheckStampFile(projectId);
+		try {
+			if (stampFile.exists() && getCheckFingerprint(projectId, gitPackConfig).equals(
+					FileUtils.readFileToString(stampFile, StandardCharsets.UTF_8))) {
+				return;
 			}
+			checkGitDir(projectId);
+			HookUtils.checkHooks(storageManager.getProjectGitDir(projectId));
+			checkGitConfig(projectId, gitPackConfig);
+			FileUtils.writeStringToFile(stampFile, getCheckFingerprint(projectId, gitPackConfig), 
+					StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		}
 	}
+	
+	/*
+	 * Last commit dates are only used for sorting and displaying projects, and are populated in 
+	 * background to not delay server startup
+	 */
+	private void populateLastCommitDates(Map<Long, Long> dynamicsIds) {
+		for (Map.Entry<Long, Long> entry: dynamicsIds.entrySet()) {
+			Long projectId = entry.getKey();
+			try {
+				transactionManager.run(new Runnable() {
 
+					@Override
+					public void run() {
+						ProjectDynamics dynamics = dynamicsManager.load(entry.getValue());
+						if (dynamics.getLastCommitDate() == null 
+								&& clusterManager.getLocalServerUUID().equals(getStorageServerUUID(projectId, false))) {
+							RevCommit lastCommit = GitUtils.getLastCommit(getRepository(projectId));
+							if (lastCommit != null)
+								dynamics.setLastCommitDate(lastCommit.getCommitterIdent().getWhen());
+						}
+					}
+					
+				});
+			} catch (Exception e) {
+				logger.error("Error populating last commit date", e);
+			}
+		}
+	}
+	
 	@Transactional
 	@Listen(1)
 	public void on(SystemStarted event) {
@@ -760,25 +916,63 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		storageServers = hazelcastInstance.getMap("projectStorageServers");
 
 		UUID localServerUUID = clusterManager.getLocalServerUUID();
+		Queue<ImmutablePair<Long, GitPackConfig>> projectsToCheck = new ConcurrentLinkedQueue<>();
+		Map<Long, Long> dynamicsIdsWithoutLastCommitDate = new HashMap<>();
+		Map<Long, ProjectServer> localStorageServers = new HashMap<>();
 		for (var file : storageManager.getProjectsDir().listFiles()) {
 			var projectId = Long.valueOf(file.getName());
 			var project = projects.get(projectId);
 			if (project != null) {
-				checkGitDir(projectId);
-
-				if (project.isCodeManagement()) {
-					ProjectDynamics update = updates.get(project.getDynamics().getId());
-					if (update.getLastCommitDate() == null) {
-						RevCommit lastCommit = GitUtils.getLastCommit(getRepository(projectId));
-						if (lastCommit != null)
-							update.setLastCommitDate(lastCommit.getCommitterIdent().getWhen());
-					}
+				projectsToCheck.add(new ImmutablePair<>(projectId, project.getGitPackConfig()));
+				if (project.isCodeManagement() 
+						&& updates.get(project.getDynamics().getId()).getLastCommitDate() == null) {
+					dynamicsIdsWithoutLastCommitDate.put(projectId, project.getDynamics().getId());
 				}
-				HookUtils.checkHooks(storageManager.getProjectGitDir(projectId));
-				checkGitConfig(projectId, project.getGitPackConfig());
-				storageServers.put(projectId, new ProjectServer(localServerUUID, Lists.newArrayList()));
+				localStorageServers.put(projectId, new ProjectServer(localServerUUID, Lists.newArrayList()));
 			}
 		}
+		
+		// Git dirs are checked in parallel as checking is mostly waiting for disk io
+		int concurrency = Math.min(MAX_CHECK_CONCURRENCY, projectsToCheck.size());
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i=0; i<concurrency; i++) {
+			futures.add(executorService.submit(new Runnable() {
+
+				@Override
+				public void run() {
+					ImmutablePair<Long, GitPackConfig> project;
+					while ((project = projectsToCheck.poll()) != null)
+						checkProject(project.getLeft(), project.getRight());
+				}
+				
+			}));
+		}
+		for (Future<?> future: futures) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw ExceptionUtils.unchecked(e);
+			}
+		}
+		storageServers.putAll(localStorageServers);
+		
+		if (!dynamicsIdsWithoutLastCommitDate.isEmpty()) {
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					executorService.execute(new Runnable() {
+
+						@Override
+						public void run() {
+							populateLastCommitDates(dynamicsIdsWithoutLastCommitDate);
+						}
+						
+					});
+				}
+				
+			});
+		}
 
 		hazelcastInstance.getCluster().addMembershipListener(new MembershipListener() {
 
@@ -821,9 +1015,11 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		for (Iterator<BranchProtection> it = project.getBranchProtections().iterator(); it.hasNext(); ) {
 			BranchProtection protection = it.next();
 			PatternSet patternSet = PatternSet.parse(protection.getBranches());
-			patternSet.getIncludes().remove(branchName);
-			patternSet.getExcludes().remove(branchName);
-			protection.setBranches(patternSet.toString());
+			Set<String> includes = new HashSet<>(patternSet.getIncludes());
+			Set<String> excludes = new HashSet<>(patternSet.getExcludes());
+			includes.remove(branchName);
+			excludes.remove(branchName);
+			protection.setBranches(new PatternSet(includes, excludes).toString());
 			if (protection.getBranches().length() == 0)
 				it.remove();
 		}
@@ -842,9 +1038,11 @@ public class DefaultProjectManager extends BaseEntityManager<Project>
 		for (Iterator<TagProtection> it = project.getTagProtections().iterator(); it.hasNext(); ) {
 			TagProtection protection = it.next();
 			PatternSet patternSet = PatternSet.parse(protection.getTags());
-			patternSet.getIncludes().remove(tagName);
-			patternSet.getExcludes().remove(tagName);
-			protection.setTags(patternSet.toString());
+			Set<String> includes = new HashSet<>(patternSet.getIncludes());
+			Set<String> excludes = new HashSet<>(patternSet.getExcludes());
+			includes.remove(tagName);
+			excludes.remove(tagName);
+			protection.setTags(new PatternSet(includes, excludes).toString());
 			if (protection.getTags().length() == 0)
 				it.remove();
 		}
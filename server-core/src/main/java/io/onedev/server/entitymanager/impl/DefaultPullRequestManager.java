@@ -46,6 +46,9 @@ import io.onedev.server.security.permission.ReadCode;
 import io.onedev.server.util.ProjectAndBranch;
 import io.onedev.server.util.ProjectPullRequestStats;
 import io.onedev.server.util.ProjectScopedNumber;
+import io.onedev.server.util.concurrent.BatchWorkManager;
+import io.onedev.server.util.concurrent.BatchWorker;
+import io.onedev.server.util.concurrent.Prioritized;
 import io.onedev.server.util.criteria.Criteria;
 import io.onedev.server.util.facade.EmailAddressFacade;
 import io.onedev.server.util.reviewrequirement.ReviewRequirement;
@@ -71,6 +74,8 @@ import javax.persistence.criteria.*;
 import java.io.ObjectStreamException;
 import java.io.Serializable;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static io.onedev.server.model.support.pullrequest.MergeStrategy.*;
@@ -83,6 +88,16 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultPullRequestManager.class);
 	
+	private static final int CHECK_PRIORITY_ACCESSED = 10;
+	
+	private static final int CHECK_PRIORITY_BUILD_REQUIRED = 50;
+	
+	private static final int CHECK_PRIORITY_DEFAULT = 100;
+	
+	private static final int CHECK_BATCH_SIZE = 10;
+	
+	private static final long ACCESS_TIMEOUT = 3600*1000L;
+	
 	private final PullRequestUpdateManager updateManager;
 	
 	private final ProjectManager projectManager;
@@ -109,6 +124,12 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 	
 	private final SequenceGenerator numberGenerator;
 	
+	private final BatchWorkManager batchWorkManager;
+	
+	private final Map<Long, PendingCheck> pendingChecks = new ConcurrentHashMap<>();
+	
+	private final Map<Long, Long> accessTimes = new ConcurrentHashMap<>();
+	
 	@Inject
 	public DefaultPullRequestManager(Dao dao, PullRequestUpdateManager updateManager, 
 									 PullRequestReviewManager reviewManager, ListenerRegistry listenerRegistry, 
@@ -117,7 +138,8 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 									 CommitInfoManager commitInfoManager, ClusterManager clusterManager, 
 									 UserManager userManager, GitService gitService, 
 									 PendingSuggestionApplyManager pendingSuggestionApplyManager, 
-									 PullRequestInfoManager pullRequestInfoManager) {
+									 PullRequestInfoManager pullRequestInfoManager, 
+									 BatchWorkManager batchWorkManager) {
 		super(dao);
 		
 		this.updateManager = updateManager;
@@ -132,6 +154,7 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 		this.userManager = userManager;
 		this.gitService = gitService;
 		this.pullRequestInfoManager = pullRequestInfoManager;
+		this.batchWorkManager = batchWorkManager;
 		
 		numberGenerator = new SequenceGenerator(PullRequest.class, clusterManager, dao);
 	}
@@ -408,7 +431,8 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 		}
 	}
 
-	private void check(PullRequest request, boolean sourceUpdated, boolean updateBuildCommit) {
+	private void check(PullRequest request, boolean sourceUpdated, boolean updateBuildCommit, 
+					   boolean calculateMergePreview) {
 		try {
 			request.setCheckError(null);
 			if (request.isOpen() && request.isValid()) {
@@ -433,7 +457,7 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 						}
 
 						Project targetProject = request.getTargetProject();
-						if (request.isOpen() && !request.isMergedIntoTarget()) {
+						if (calculateMergePreview && request.isOpen() && !request.isMergedIntoTarget()) {
 							MergePreview mergePreview = request.checkMergePreview();
 							if (mergePreview == null) {
 								mergePreview = new MergePreview();
@@ -498,13 +522,89 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 			Criterion criterion = Restrictions.and(
 					ofOpen(), 
 					Restrictions.or(ofSource(projectAndBranch), ofTarget(projectAndBranch)));
+			boolean branchDeleted = event.getNewCommitId().equals(ObjectId.zeroId());
 			for (PullRequest request: query(EntityCriteria.of(PullRequest.class).add(criterion))) {
 				boolean sourceUpdated = request.getSource() != null 
 						&& request.getSource().equals(projectAndBranch);
-				checkAsync(request, sourceUpdated, sourceUpdated);
+				if (sourceUpdated || branchDeleted) {
+					checkAsync(request, sourceUpdated, sourceUpdated);
+				} else {
+					/*
+					 * Target branch of a busy project may receive many pushes while hundreds of pull 
+					 * requests are open against it. Only calculate merge preview for pull requests 
+					 * being accessed or requiring builds, and defer others until they are accessed  
+					 */
+					if (isAccessedRecently(request.getId())) {
+						scheduleCheck(request, false, false, true, CHECK_PRIORITY_ACCESSED);
+					} else if (isBuildRequired(request)) {
+						scheduleCheck(request, false, false, true, CHECK_PRIORITY_BUILD_REQUIRED);
+					} else {
+						scheduleCheck(request, false, false, false, CHECK_PRIORITY_DEFAULT);
+					}
+				}
+			}
+		}
+	}
+	
+	private boolean isAccessedRecently(Long requestId) {
+		Long accessTime = accessTimes.get(requestId);
+		if (accessTime != null) {
+			if (System.currentTimeMillis() - accessTime < ACCESS_TIMEOUT) {
+				return true;
+			} else {
+				accessTimes.remove(requestId);
+				return false;
 			}
+		} else {
+			return false;
 		}
 	}
+	
+	private boolean isBuildRequired(PullRequest request) {
+		BranchProtection protection = request.getTargetProject()
+				.getHierarchyBranchProtection(request.getTargetBranch(), request.getSubmitter());
+		// Do not calculate changed files here, assume file protection jobs may be required
+		return !protection.getJobNames().isEmpty() 
+				|| protection.getFileProtections().stream().anyMatch(it -> !it.getJobNames().isEmpty());
+	}
+	
+	@Override
+	public void access(PullRequest request) {
+		if (request.isOpen()) {
+			Long projectId = request.getTargetProject().getId();
+			Long requestId = request.getId();
+			projectManager.submitToProjectServer(projectId, new ClusterTask<Void>() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Void call() throws Exception {
+					accessTimes.put(requestId, System.currentTimeMillis());
+					transactionManager.run(new Runnable() {
+
+						@Override
+						public void run() {
+							PullRequest request = get(requestId);
+							if (request != null && request.isOpen() && request.checkMergePreview() == null) 
+								doScheduleCheck(projectId, requestId, false, false, true, CHECK_PRIORITY_ACCESSED);
+						}
+						
+					});
+					return null;
+				}
+				
+			});
+		}
+	}
+	
+	@Listen
+	public void on(PullRequestDeleted event) {
+		Long requestId = event.getRequestId();
+		synchronized (pendingChecks) {
+			pendingChecks.remove(requestId);
+		}
+		accessTimes.remove(requestId);
+	}
 
 	@Sessional
 	@Override
@@ -572,10 +672,10 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 	public void on(PullRequestChanged event) {
 		PullRequestChangeData data = event.getChange().getData();
 		if (data instanceof PullRequestApproveData || data instanceof PullRequestDiscardData) {
-			check(event.getRequest(), false, false);
+			check(event.getRequest(), false, false, true);
 		} else if (data instanceof PullRequestMergeStrategyChangeData
 				|| data instanceof PullRequestTargetBranchChangeData) {
-			check(event.getRequest(), false, true);
+			check(event.getRequest(), false, true, true);
 		}
 	}
 	
@@ -620,7 +720,18 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 	}
 	
 	@Sessional
+	@Override
 	public void checkAsync(PullRequest request, boolean sourceUpdated, boolean updateBuildCommit) {
+		int priority;
+		if (isAccessedRecently(request.getId()))
+			priority = CHECK_PRIORITY_ACCESSED;
+		else
+			priority = CHECK_PRIORITY_DEFAULT;
+		scheduleCheck(request, sourceUpdated, updateBuildCommit, true, priority);
+	}
+	
+	private void scheduleCheck(PullRequest request, boolean sourceUpdated, boolean updateBuildCommit, 
+							   boolean calculateMergePreview, int priority) {
 		Long projectId = request.getTargetProject().getId();
 		Long requestId = request.getId();
 		
@@ -636,33 +747,121 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest>
 
 					@Override
 					public Void call() throws Exception {
-			        	return LockUtils.call(PullRequest.getSerialLockName(requestId), true, new ClusterTask<Void>() {
+						doScheduleCheck(projectId, requestId, sourceUpdated, updateBuildCommit, 
+								calculateMergePreview, priority);
+						return null;
+					}
+					
+				});
+			}
+			
+		});
+	}
+	
+	/*
+	 * Pending checks of same pull request are coalesced so that a series of pushes only results 
+	 * in a single check. Checks are run by a per-project batch worker to limit concurrency of 
+	 * merge preview calculations on project server
+	 */
+	private void doScheduleCheck(Long projectId, Long requestId, boolean sourceUpdated, 
+								 boolean updateBuildCommit, boolean calculateMergePreview, int priority) {
+		boolean submit;
+		synchronized (pendingChecks) {
+			PendingCheck pendingCheck = pendingChecks.get(requestId);
+			if (pendingCheck == null) {
+				pendingCheck = new PendingCheck(priority);
+				pendingChecks.put(requestId, pendingCheck);
+				submit = true;
+			} else if (priority < pendingCheck.priority) {
+				pendingCheck.priority = priority;
+				submit = true;
+			} else {
+				submit = false;
+			}
+			pendingCheck.sourceUpdated |= sourceUpdated;
+			pendingCheck.updateBuildCommit |= updateBuildCommit;
+			pendingCheck.calculateMergePreview |= calculateMergePreview;
+		}
+		if (submit)
+			batchWorkManager.submit(getCheckWorker(projectId), new CheckWork(priority, requestId));
+	}
+	
+	private BatchWorker getCheckWorker(Long projectId) {
+		return new BatchWorker("project-" + projectId + "-checkPullRequests", CHECK_BATCH_SIZE) {
+
+			@Override
+			public void doWorks(Collection<Prioritized> works) {
+				for (Prioritized work: works) {
+					Long requestId = ((CheckWork) work).getRequestId();
+					
+					// Pending check may already be processed by a work submitted with higher priority
+					PendingCheck pendingCheck;
+					synchronized (pendingChecks) {
+						pendingCheck = pendingChecks.remove(requestId);
+					}
+					if (pendingCheck != null) {
+						try {
+							LockUtils.call(PullRequest.getSerialLockName(requestId), true, new Callable<Void>() {
 
-							private static final long serialVersionUID = 1L;
+								@Override
+								public Void call() throws Exception {
+									transactionManager.run(new Runnable() {
 
-							@Override
-							public Void call() throws Exception {
-								transactionManager.run(new ClusterRunnable() {
+										@Override
+										public void run() {
+											PullRequest request = get(requestId);
+											if (request != null) {
+												check(request, pendingCheck.sourceUpdated, 
+														pendingCheck.updateBuildCommit, 
+														pendingCheck.calculateMergePreview);
+												if (!request.isOpen())
+													accessTimes.remove(requestId);
+											}
+										}
 
-									private static final long serialVersionUID = 1L;
+									});
+									return null;
+								}
 
-									@Override
-									public void run() {
-										PullRequest request = load(requestId);
-							        	check(request, sourceUpdated, updateBuildCommit);
-									}
-									
-								});
-								return null;
-							}
-			        		
-			        	});
+							});
+						} catch (Exception e) {
+							logger.error("Error checking pull request (id: " + requestId + ")", e);
+						}
 					}
-					
-				});
+				}
 			}
 			
-		});
+		};
+	}
+	
+	private static class PendingCheck {
+		
+		int priority;
+		
+		boolean sourceUpdated;
+		
+		boolean updateBuildCommit;
+		
+		boolean calculateMergePreview;
+		
+		PendingCheck(int priority) {
+			this.priority = priority;
+		}
+		
+	}
+	
+	private static class CheckWork extends Prioritized {
+
+		private final Long requestId;
+		
+		CheckWork(int priority, Long requestId) {
+			super(priority);
+			this.requestId = requestId;
+		}
+
+		public Long getRequestId() {
+			return requestId;
+		}
 		
 	}
 	
@@ -77,24 +77,16 @@ public abstract class BlobChange implements Serializable {
 				if (type == ChangeType.ADD || type == ChangeType.COPY) {
 					if (getNewText() != null) {
 						List<String> newLines = getNewText().getLines();
-						if (newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							List<String> oldLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(oldLines, newLines, WhitespaceOption.DEFAULT);
-						} else {
-							diffBlocks = new ArrayList<>();
-						}
+						List<String> oldLines = new ArrayList<>();
+						diffBlocks = DiffUtils.diff(oldLines, newLines, WhitespaceOption.DEFAULT);
 					} else {
 						diffBlocks = new ArrayList<>();
 					}
 				} else if (type == ChangeType.DELETE) {
 					if (getOldText() != null) {
 						List<String> oldLines = getOldText().getLines();
-						if (oldLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							List<String> newLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(oldLines, newLines, WhitespaceOption.DEFAULT);
-						} else {
-							diffBlocks = new ArrayList<>();
-						}
+						List<String> newLines = new ArrayList<>();
+						diffBlocks = DiffUtils.diff(oldLines, newLines, WhitespaceOption.DEFAULT);
 					} else {
 						diffBlocks = new ArrayList<>();
 					}
@@ -102,10 +94,7 @@ public abstract class BlobChange implements Serializable {
 					if (getOldText() != null && getNewText() != null) {
 						List<String> oldLines = getOldText().getLines();
 						List<String> newLines = getNewText().getLines();
-						if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) 
-							diffBlocks = DiffUtils.diff(oldLines, newLines, whitespaceOption);
-						else 
-							diffBlocks = new ArrayList<>();
+						diffBlocks = DiffUtils.diff(oldLines, newLines, whitespaceOption);
 					} else {
 						diffBlocks = new ArrayList<>();
 					}
@@ -117,6 +106,14 @@ public abstract class BlobChange implements Serializable {
 		return diffBlocks;
 	}
 	
+	/**
+	 * Supply diff blocks calculated elsewhere, for instance in parallel with diffs of other changes. 
+	 * Supplied diff blocks should be the same as what {@link #getDiffBlocks()} calculates
+	 */
+	public void setDiffBlocks(List<DiffBlock<String>> diffBlocks) {
+		this.diffBlocks = diffBlocks;
+	}
+	
 	public int getAdditions() {
 		int additions = 0;
 		for (DiffBlock<String> diff: getDiffBlocks()) {
@@ -0,0 +1,101 @@
+package io.onedev.server.git;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.util.diff.WhitespaceOption;
+
+/**
+ * Identifies text diff between two blobs. Side with <tt>null</tt> blob id is treated as empty, 
+ * for instance old side of an added file
+ */
+public class BlobDiffKey implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String oldPath;
+	
+	private final Integer oldMode;
+	
+	private final ObjectId oldBlobId;
+	
+	private final String newPath;
+	
+	private final Integer newMode;
+	
+	private final ObjectId newBlobId;
+	
+	private final WhitespaceOption whitespaceOption;
+	
+	public BlobDiffKey(@Nullable String oldPath, @Nullable Integer oldMode, @Nullable ObjectId oldBlobId, 
+			@Nullable String newPath, @Nullable Integer newMode, @Nullable ObjectId newBlobId, 
+			WhitespaceOption whitespaceOption) {
+		this.oldPath = oldPath;
+		this.oldMode = oldMode;
+		this.oldBlobId = oldBlobId;
+		this.newPath = newPath;
+		this.newMode = newMode;
+		this.newBlobId = newBlobId;
+		this.whitespaceOption = whitespaceOption;
+	}
+
+	@Nullable
+	public String getOldPath() {
+		return oldPath;
+	}
+
+	@Nullable
+	public Integer getOldMode() {
+		return oldMode;
+	}
+
+	@Nullable
+	public ObjectId getOldBlobId() {
+		return oldBlobId;
+	}
+
+	@Nullable
+	public String getNewPath() {
+		return newPath;
+	}
+
+	@Nullable
+	public Integer getNewMode() {
+		return newMode;
+	}
+
+	@Nullable
+	public ObjectId getNewBlobId() {
+		return newBlobId;
+	}
+
+	public WhitespaceOption getWhitespaceOption() {
+		return whitespaceOption;
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		if (!(other instanceof BlobDiffKey)) 
+			return false;
+		if (this == other)
+			return true;
+		BlobDiffKey otherKey = (BlobDiffKey) other;
+		return Objects.equals(oldPath, otherKey.oldPath) 
+				&& Objects.equals(oldMode, otherKey.oldMode) 
+				&& Objects.equals(oldBlobId, otherKey.oldBlobId) 
+				&& Objects.equals(newPath, otherKey.newPath) 
+				&& Objects.equals(newMode, otherKey.newMode) 
+				&& Objects.equals(newBlobId, otherKey.newBlobId) 
+				&& whitespaceOption == otherKey.whitespaceOption;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(oldPath, oldMode, oldBlobId, newPath, newMode, newBlobId, whitespaceOption);
+	}
+	
+}
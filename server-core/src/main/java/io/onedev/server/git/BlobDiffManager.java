@@ -0,0 +1,24 @@
+package io.onedev.server.git;
+
+import java.util.List;
+
+import io.onedev.server.util.diff.DiffBlock;
+
+public interface BlobDiffManager {
+
+	/**
+	 * Get text diffs of specified blob pairs. Diffs are calculated in parallel on storage server 
+	 * of the project, and are cached by blob ids, paths and whitespace option, so that users 
+	 * viewing same changes share the calculation. Returned diff blocks should not be modified
+	 * 
+	 * @param projectId
+	 * 			project containing the blobs
+	 * @param keys
+	 * 			blob pairs to diff. Blobs should be regular files or symbol links
+	 * @return
+	 * 			diff blocks of each blob pair in same order as specified keys. Diff blocks will 
+	 * 			be empty if either blob is binary
+	 */
+	List<List<DiffBlock<String>>> getDiffBlocks(Long projectId, List<BlobDiffKey> keys);
+	
+}
@@ -0,0 +1,189 @@
+package io.onedev.server.git;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.DiffUtils;
+
+@Singleton
+public class DefaultBlobDiffManager implements BlobDiffManager, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	// Maximum number of cached diff lines
+	private static final long MAX_CACHE_WEIGHT = 2000000;
+	
+	private final ProjectManager projectManager;
+	
+	private final ExecutorService executorService;
+	
+	/*
+	 * Shared executor service is unbounded, so bound helper workers of all diff requests to 
+	 * number of processors in total
+	 */
+	private final Semaphore helperPermits = new Semaphore(Runtime.getRuntime().availableProcessors());
+	
+	private final Cache<BlobDiffKey, List<DiffBlock<String>>> diffCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHE_WEIGHT)
+			.weigher((Weigher<BlobDiffKey, List<DiffBlock<String>>>) (key, value) -> {
+				int weight = 1;
+				for (DiffBlock<String> block: value)
+					weight += block.getElements().size();
+				return weight;
+			})
+			.build();
+	
+	@Inject
+	public DefaultBlobDiffManager(ProjectManager projectManager, ExecutorService executorService) {
+		this.projectManager = projectManager;
+		this.executorService = executorService;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(BlobDiffManager.class);
+	}
+	
+	@Override
+	public List<List<DiffBlock<String>>> getDiffBlocks(Long projectId, List<BlobDiffKey> keys) {
+		return projectManager.runOnProjectServer(projectId, new ClusterTask<List<List<DiffBlock<String>>>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public List<List<DiffBlock<String>>> call() throws Exception {
+				return getLocalDiffBlocks(projectId, keys);
+			}
+			
+		});
+	}
+	
+	@SuppressWarnings("unchecked")
+	private List<List<DiffBlock<String>>> getLocalDiffBlocks(Long projectId, List<BlobDiffKey> keys) {
+		// Diffing a large batch may take long, open repository so that it is not closed by cache eviction
+		Repository repository = projectManager.openRepository(projectId);
+		List<DiffBlock<String>>[] results = new List[keys.size()];
+		
+		/*
+		 * Each worker takes next pending key until all keys are processed. Current thread acts 
+		 * as one of the workers, and is helped by other workers if helper permits are available
+		 */
+		AtomicInteger nextIndex = new AtomicInteger(0);
+		Callable<Void> worker = new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				try (ObjectReader reader = repository.newObjectReader()) {
+					int index;
+					while ((index = nextIndex.getAndIncrement()) < keys.size()) {
+						BlobDiffKey key = keys.get(index);
+						results[index] = diffCache.get(key, () -> calcDiffBlocks(reader, key));
+					}
+				}
+				return null;
+			}
+			
+		};
+		
+		Callable<Void> helper = new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				try {
+					return worker.call();
+				} finally {
+					helperPermits.release();
+				}
+			}
+			
+		};
+		
+		int workerCount = Math.min(Runtime.getRuntime().availableProcessors(), keys.size());
+		List<Future<Void>> futures = new ArrayList<>();
+		try {
+			for (int i=1; i<workerCount && helperPermits.tryAcquire(); i++) {
+				try {
+					futures.add(executorService.submit(helper));
+				} catch (Exception e) {
+					helperPermits.release();
+					throw e;
+				}
+			}
+			worker.call();
+			for (Future<Void> future: futures)
+				future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} catch (Exception e) {
+			throw ExceptionUtils.unchecked(e);
+		} finally {
+			/*
+			 * Stop helpers and wait for them instead of cancelling, so that permits are always 
+			 * released by helpers, and repository is not closed while being read
+			 */
+			nextIndex.set(keys.size());
+			for (Future<Void> future: futures) {
+				try {
+					future.get();
+				} catch (Exception e) {
+				}
+			}
+			repository.close();
+		}
+		return Arrays.asList(results);
+	}
+	
+	@Nullable
+	private Blob.Text getText(ObjectReader reader, String path, Integer mode, ObjectId blobId) {
+		return new Blob(new BlobIdent(null, path, mode), blobId, reader).getText();
+	}
+	
+	/*
+	 * Keep in sync with BlobChange.getDiffBlocks
+	 */
+	private List<DiffBlock<String>> calcDiffBlocks(ObjectReader reader, BlobDiffKey key) {
+		Blob.Text oldText = null;
+		if (key.getOldBlobId() != null)
+			oldText = getText(reader, key.getOldPath(), key.getOldMode(), key.getOldBlobId());
+		Blob.Text newText = null;
+		if (key.getNewBlobId() != null)
+			newText = getText(reader, key.getNewPath(), key.getNewMode(), key.getNewBlobId());
+		
+		if (key.getOldBlobId() == null && newText != null) 
+			return DiffUtils.diff(new ArrayList<>(), newText.getLines(), key.getWhitespaceOption());
+		else if (key.getNewBlobId() == null && oldText != null) 
+			return DiffUtils.diff(oldText.getLines(), new ArrayList<>(), key.getWhitespaceOption());
+		else if (oldText != null && newText != null) 
+			return DiffUtils.diff(oldText.getLines(), newText.getLines(), key.getWhitespaceOption());
+		else 
+			return new ArrayList<>();
+	}
+	
+}
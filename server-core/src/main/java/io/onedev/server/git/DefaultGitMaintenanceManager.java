@@ -0,0 +1,248 @@
+package io.onedev.server.git;
+
+import java.io.File;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.Lock;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.project.RefUpdated;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.concurrent.PrioritizedRunnable;
+import io.onedev.server.util.concurrent.WorkExecutor;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+/**
+ * Repack repositories accumulating loose objects and small packs from pushes, and write bitmaps 
+ * and commit graph to keep fetching and commit walking fast. Maintenance is done for one 
+ * repository at a time, only for repositories not updated recently, and only when system is not 
+ * busy. Maintenance also runs as CPU intensive task, so it is subject to concurrency limit 
+ * configured in performance setting. Pack settings of the project (threads, window memory etc.) 
+ * are honored as they are written to repository config. 
+ */
+@Singleton
+public class DefaultGitMaintenanceManager implements GitMaintenanceManager, SchedulableTask, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultGitMaintenanceManager.class);
+	
+	private static final int CHECK_INTERVAL = 10;
+	
+	// Do not maintain repositories updated within this period as more pushes may follow
+	private static final long QUIET_PERIOD = 5*60*1000L;
+	
+	private static final long FULL_SCAN_INTERVAL = 24*3600*1000L;
+	
+	/*
+	 * No more repositories are maintained in a check after this period. Maintenance of a single 
+	 * repository is not interrupted and may run longer
+	 */
+	private static final long TIME_BUDGET = 5*60*1000L;
+	
+	// Same as default of git gc.pruneExpire
+	private static final String PRUNE_EXPIRATION = "2.weeks.ago";
+	
+	// Same as default of git gc.auto, estimated by sampling objects/17 
+	private static final int MAX_LOOSE_OBJECTS = 6700;
+	
+	// Same as default of git gc.autoPackLimit
+	private static final int MAX_PACKS = 50;
+	
+	// Threads used to repack if not specified in pack setting of the project
+	private static final int DEFAULT_PACK_THREADS = 1;
+	
+	// Lower than priority of git push/pull and info collecting as maintenance can always wait
+	private static final int PRIORITY = 200;
+	
+	private final ProjectManager projectManager;
+	
+	private final StorageManager storageManager;
+	
+	private final ClusterManager clusterManager;
+	
+	private final TaskScheduler taskScheduler;
+	
+	private final WorkExecutor workExecutor;
+	
+	// Map of project id to time of last update
+	private final Map<Long, Long> projectsToCheck = new ConcurrentHashMap<>();
+	
+	private volatile long lastFullScan;
+	
+	private String taskId;
+	
+	@Inject
+	public DefaultGitMaintenanceManager(ProjectManager projectManager, StorageManager storageManager, 
+			ClusterManager clusterManager, TaskScheduler taskScheduler, WorkExecutor workExecutor) {
+		this.projectManager = projectManager;
+		this.storageManager = storageManager;
+		this.clusterManager = clusterManager;
+		this.taskScheduler = taskScheduler;
+		this.workExecutor = workExecutor;
+	}
+	
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(GitMaintenanceManager.class);
+	}
+	
+	@Override
+	public void requestCheck(Long projectId) {
+		projectsToCheck.put(projectId, System.currentTimeMillis());
+	}
+	
+	@Listen
+	public void on(RefUpdated event) {
+		requestCheck(event.getProject().getId());
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+
+	private boolean isBusy() {
+		double loadAverage = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+		return loadAverage >= Runtime.getRuntime().availableProcessors();
+	}
+	
+	@Override
+	public void execute() {
+		long now = System.currentTimeMillis();
+		if (now - lastFullScan >= FULL_SCAN_INTERVAL) {
+			for (File file: storageManager.getProjectsDir().listFiles()) 
+				projectsToCheck.putIfAbsent(Long.valueOf(file.getName()), 0L);
+			lastFullScan = now;
+		}
+		
+		List<Long> projectIds = new ArrayList<>(projectsToCheck.keySet());
+		for (Long projectId: projectIds) {
+			if (System.currentTimeMillis() - now >= TIME_BUDGET || isBusy()) 
+				break;
+			Long lastUpdate = projectsToCheck.get(projectId);
+			if (lastUpdate == null || System.currentTimeMillis() - lastUpdate < QUIET_PERIOD)
+				continue;
+			projectsToCheck.remove(projectId, lastUpdate);
+			try {
+				if (clusterManager.getLocalServerUUID().equals(projectManager.getStorageServerUUID(projectId, false)))
+					check(projectId);
+			} catch (Exception e) {
+				logger.error("Error maintaining git repository of project (id: " + projectId + ")", e);
+			}
+		}
+	}
+	
+	private int countLooseObjects(File gitDir) {
+		String[] files = new File(gitDir, "objects/17").list();
+		return files != null? files.length * 256: 0;
+	}
+	
+	private int countPacks(File gitDir) {
+		String[] files = new File(gitDir, "objects/pack").list((dir, name) -> name.endsWith(".pack"));
+		return files != null? files.length: 0;
+	}
+	
+	private void check(Long projectId) {
+		File gitDir = storageManager.getProjectGitDir(projectId);
+		if (!GitUtils.isValid(gitDir))
+			return;
+		
+		boolean tooManyLooseObjects = countLooseObjects(gitDir) > MAX_LOOSE_OBJECTS;
+		boolean tooManyPacks = countPacks(gitDir) > MAX_PACKS;
+		if (!tooManyLooseObjects && !tooManyPacks)
+			return;
+		
+		Lock lock = LockUtils.getLock("git-maintenance:" + projectId);
+		if (!lock.tryLock())
+			return;
+		try {
+			/*
+			 * Run as CPU intensive task so that maintenance counts against the concurrency limit 
+			 * shared with git push/pull, and yields to them when the limit is reached
+			 */
+			workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
+
+				@Override
+				public void run() {
+					logger.debug("Maintaining git repository (project id: {})...", projectId);
+					if (tooManyPacks) {
+						/*
+						 * Unreachable objects are left loose and pruned only after the expiration 
+						 * period as git gc does, so that objects of concurrent pushes not 
+						 * referenced yet are never lost
+						 */
+						runGit(projectId, "repack", "-A", "-d", "-l", 
+								"--unpack-unreachable=" + PRUNE_EXPIRATION, "--write-bitmap-index");
+						runGit(projectId, "prune", "--expire=" + PRUNE_EXPIRATION);
+					} else {
+						runGit(projectId, "repack", "-d", "-l");
+					}
+					runGit(projectId, "commit-graph", "write", "--reachable", "--split");
+				}
+				
+			}).get();
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	private void runGit(Long projectId, String... args) {
+		Commandline git = CommandUtils.newGit().workingDir(storageManager.getProjectGitDir(projectId));
+		String threads = projectManager.getRepository(projectId).getConfig().getString("pack", null, "threads");
+		if (threads == null)
+			git.addArgs("-c", "pack.threads=" + DEFAULT_PACK_THREADS);
+		git.addArgs(args);
+		git.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.trace(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.debug(line);
+			}
+			
+		}).checkReturnCode();
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatMinutelyForever(CHECK_INTERVAL);
+	}
+	
+}
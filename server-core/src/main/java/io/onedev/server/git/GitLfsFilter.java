@@ -541,12 +541,19 @@ public class GitLfsFilter implements Filter {
 						authorized = true;
 				}
 				if (authorized) {
+					Collection<String> objectIds = new ArrayList<>();
+					for (JsonNode objectNode: batchRequestNode.get("objects")) {
+						if (objectNode.get("size").asLong() <= getMaxLFSFileSize())
+							objectIds.add(objectNode.get("oid").asText());
+					}
+					Set<String> existingObjectIds = LfsObject.filterExisting(project.getId(), objectIds);
+					
 					List<Map<String, Object>> objectsResponse = new ArrayList<>();
 					for (JsonNode objectNode: batchRequestNode.get("objects")) {
 						String objectId = objectNode.get("oid").asText();
 						long objectSize = objectNode.get("size").asLong();
-						objectsResponse.add(getObjectResponse(
-								httpRequest, project, upload, objectId, objectSize, accessToken));
+						objectsResponse.add(getObjectResponse(httpRequest, project, upload, objectId, 
+								objectSize, existingObjectIds.contains(objectId), accessToken));
 					}
 					
 					Map<String, Object> batchResponse = new HashMap<>();
@@ -597,22 +604,21 @@ public class GitLfsFilter implements Filter {
 	
 	private Map<String, Object> getObjectResponse(HttpServletRequest request, ProjectFacade project, 
 												  boolean upload, String objectId, long objectSize, 
-												  @Nullable String accessToken) {
+												  boolean objectExists, @Nullable String accessToken) {
 		Map<String, Object> objectResponse = new HashMap<>();
 		objectResponse.put("oid", objectId);
 		objectResponse.put("size", objectSize);
-		LfsObject lfsObject = new LfsObject(project.getId(), objectId);
 		if (objectSize > getMaxLFSFileSize()) {
 			objectResponse.put("error", newHashMap(
 					"code", SC_NOT_ACCEPTABLE, 
 					"message", "Exceeded max acceptable LFS file size " + getMaxLFSFileSize()));
 		} else if (upload) {
-			if (!lfsObject.exists()) {
+			if (!objectExists) {
 				objectResponse.put(
 						"actions", newHashMap(
 								"upload", getActionResponse(request, project, objectId, accessToken)));
 			}
-		} else if (lfsObject.exists()) {
+		} else if (objectExists) {
 			objectResponse.put(
 					"actions", newHashMap(
 							"download", getActionResponse(request, project, objectId, accessToken)));
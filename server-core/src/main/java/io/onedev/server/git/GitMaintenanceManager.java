@@ -0,0 +1,11 @@
+package io.onedev.server.git;
+
+public interface GitMaintenanceManager {
+
+	/**
+	 * Check repository of specified project later, and maintain it if there are too many loose 
+	 * objects or packs
+	 */
+	void requestCheck(Long projectId);
+	
+}
@@ -10,16 +10,26 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Serializable;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 
+import org.apache.commons.codec.binary.Hex;
 import org.apache.tika.mime.MediaType;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.storage.LfsObjectStore;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ContentDetector;
 import org.jetbrains.annotations.NotNull;
@@ -53,40 +63,67 @@ public class LfsObject implements Serializable {
 		return OneDev.getInstance(StorageManager.class);
 	}
 	
-	private File getFile() {
+	private LfsObjectStore getLfsObjectStore() {
+		return OneDev.getInstance(LfsObjectStore.class);
+	}
+	
+	private static File getFile(Long projectId, String objectId) {
 		File objectDir = new File(
-				getProjectManager().getLfsObjectsDir(projectId), 
+				OneDev.getInstance(ProjectManager.class).getLfsObjectsDir(projectId), 
 				objectId.substring(0, 2) + "/" + objectId.substring(2, 4));
-		String lockName = "lfs-storage:" 
-				+ getStorageManager().getProjectGitDir(projectId).getAbsolutePath();
-		Lock lock = LockUtils.getLock(lockName);
-		lock.lock();
-		try {
-			FileUtils.createDir(objectDir);
-		} finally {
-			lock.unlock();
-		}
 		return new File(objectDir, objectId);
 	}
 	
+	private File getFile() {
+		return getFile(projectId, objectId);
+	}
+	
+	public static String getLockName(String objectId) {
+		return "lfs-objects:" + objectId;
+	}
+	
+	private static ReadWriteLock getLock(String objectId) {
+		return LockUtils.getReadWriteLock(getLockName(objectId));
+	}
+	
 	private ReadWriteLock getLock() {
-		return LockUtils.getReadWriteLock("lfs-objects:" + objectId);
+		return getLock(objectId);
 	}
 
 	public boolean exists() {
-		return getProjectManager().runOnProjectServer(projectId, new ClusterTask<Boolean>() {
+		return !filterExisting(projectId, Sets.newHashSet(objectId)).isEmpty();
+	}
+	
+	/**
+	 * Find existing objects of specified project with a single call to project storage server
+	 * 
+	 * @return
+	 * 			ids of objects existing in the project
+	 */
+	public static Set<String> filterExisting(Long projectId, Collection<String> objectIds) {
+		HashSet<String> objectIdSet = new HashSet<>(objectIds);
+		if (objectIdSet.isEmpty())
+			return objectIdSet;
+		
+		ProjectManager projectManager = OneDev.getInstance(ProjectManager.class);
+		return projectManager.runOnProjectServer(projectId, new ClusterTask<HashSet<String>>() {
 
 			private static final long serialVersionUID = 1L;
 
 			@Override
-			public Boolean call() throws Exception {
-				Lock readLock = getLock().readLock();
-				readLock.lock();
-				try {
-					return getFile().exists();
-				} finally {
-					readLock.unlock();
+			public HashSet<String> call() throws Exception {
+				HashSet<String> existingObjectIds = new HashSet<>();
+				for (String objectId: objectIdSet) {
+					Lock readLock = getLock(objectId).readLock();
+					readLock.lock();
+					try {
+						if (getFile(projectId, objectId).exists())
+							existingObjectIds.add(objectId);
+					} finally {
+						readLock.unlock();
+					}
 				}
+				return existingObjectIds;
 			}
 			
 		});
@@ -111,11 +148,31 @@ public class LfsObject implements Serializable {
 		}
 	}
 	
+	/**
+	 * Get output stream to write content of this object. Object directory is created here instead 
+	 * of upon reading, and written content is linked to shared LFS blob if it matches object id
+	 */
 	public OutputStream getOutputStream() {
 		Lock writeLock = getLock().writeLock();
 		writeLock.lock();
 		try {
-			return new FilterOutputStream(new FileOutputStream(getFile())) {
+			File file = getFile();
+			String lockName = "lfs-storage:" 
+					+ getStorageManager().getProjectGitDir(projectId).getAbsolutePath();
+			Lock lock = LockUtils.getLock(lockName);
+			lock.lock();
+			try {
+				FileUtils.createDir(file.getParentFile());
+			} finally {
+				lock.unlock();
+			}
+			
+			// Existing file may be linked to shared blob, and should not be overwritten in place 
+			if (file.exists())
+				FileUtils.deleteFile(file);
+			
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			return new FilterOutputStream(new DigestOutputStream(new FileOutputStream(file), digest)) {
 				@Override
 				public void write(@NotNull byte[] b, int off, int len) throws IOException {
 					out.write(b, off, len);
@@ -123,12 +180,17 @@ public class LfsObject implements Serializable {
 
 				@Override
 				public void close() throws IOException {
-					super.close();
-					writeLock.unlock();
+					try {
+						super.close();
+						if (Hex.encodeHexString(digest.digest()).equals(objectId))
+							getLfsObjectStore().intern(file, objectId, true);
+					} finally {
+						writeLock.unlock();
+					}
 				}
 				
 			};
-		} catch (FileNotFoundException e) {
+		} catch (FileNotFoundException | NoSuchAlgorithmException e) {
 			writeLock.unlock();
 			throw new RuntimeException(e);
 		}
@@ -5,6 +5,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintStream;
+import java.util.EnumSet;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ExecutorService;
@@ -14,6 +15,7 @@ import javax.annotation.Nullable;
 
 import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.shiro.util.ThreadContext;
+import org.apache.sshd.client.channel.ClientChannelEvent;
 import org.apache.sshd.common.channel.ChannelOutputStream;
 import org.apache.sshd.server.Environment;
 import org.apache.sshd.server.ExitCallback;
@@ -54,6 +56,8 @@ class SshCommand implements Command, ServerSessionAware {
 	
 	private static final int CHANNEL_OPEN_TIMEOUT = 5000;
 	
+	private static final int CHANNEL_CLOSE_POLL_INTERVAL = 1000;
+	
 	private static final Logger logger = LoggerFactory.getLogger(SshCommand.class);
 
 	private final String commandString;
@@ -177,16 +181,18 @@ class SshCommand implements Command, ServerSessionAware {
 				@Override
 				public void run() {
 					SshManager sshManager = OneDev.getInstance(SshManager.class);
-					try (	var clientSession = sshManager.ssh(storageServerUUID); 
-							var clientChannel = clientSession.createExecChannel(commandString)) {
+					try (var clientChannel = sshManager.createExecChannel(storageServerUUID, commandString)) {
 						clientChannel.setIn(in);
 						clientChannel.setOut(out);
 						clientChannel.setErr(err);
 						clientChannel.open().await(CHANNEL_OPEN_TIMEOUT);
 						
-						// Do not use clientChannel.waitFor here as it can not be interrupted
-						while (!clientChannel.isClosed())
-							Thread.sleep(1000);
+						// Wait in bounded steps as clientChannel.waitFor can not be interrupted
+						while (!clientChannel.isClosed()) {
+							clientChannel.waitFor(EnumSet.of(ClientChannelEvent.CLOSED), CHANNEL_CLOSE_POLL_INTERVAL);
+							if (Thread.interrupted())
+								throw new InterruptedException();
+						}
 						if (clientChannel.getExitStatus() != null)
 							onExit(clientChannel.getExitStatus(), null);
 						else
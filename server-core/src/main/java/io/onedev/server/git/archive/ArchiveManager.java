@@ -0,0 +1,28 @@
+package io.onedev.server.git.archive;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+public interface ArchiveManager {
+
+	String FORMAT_ZIP = "zip";
+
+	String FORMAT_TGZ = "tgz";
+
+	/**
+	 * Open cached archive of specified commit, generating it if necessary. This method does not
+	 * dispatch to other servers, and should be called on storage server of the project. Opened
+	 * archive will not be evicted from cache until returned stream is closed. Size of the archive 
+	 * is available from returned stream, so that size and content always come from same archive
+	 *
+	 * @param projectId
+	 * 			project to get archive of
+	 * @param commitId
+	 * 			commit to get archive of
+	 * @param format
+	 * 			either {@link #FORMAT_ZIP} or {@link #FORMAT_TGZ}
+	 * @return
+	 * 			stream of archive content, must be closed by caller
+	 */
+	ArchiveStream openArchive(Long projectId, ObjectId commitId, String format);
+
+}
@@ -0,0 +1,22 @@
+package io.onedev.server.git.archive;
+
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+/**
+ * Stream of archive content, carrying size of the archive being read
+ */
+public class ArchiveStream extends FilterInputStream {
+
+	private final long size;
+	
+	public ArchiveStream(InputStream in, long size) {
+		super(in);
+		this.size = size;
+	}
+
+	public long getSize() {
+		return size;
+	}
+
+}
@@ -0,0 +1,248 @@
+package io.onedev.server.git.archive;
+
+import static io.onedev.commons.bootstrap.Bootstrap.BUFFER_SIZE;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.api.ArchiveCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.archive.TgzFormat;
+import org.eclipse.jgit.archive.ZipFormat;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.bootstrap.Bootstrap;
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.project.ProjectDeleted;
+import io.onedev.server.event.system.SystemStarting;
+
+@Singleton
+public class DefaultArchiveManager implements ArchiveManager, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultArchiveManager.class);
+
+	private static final long MAX_CACHE_SIZE = 2L*1024*1024*1024;
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final ProjectManager projectManager;
+
+	// Archive file name to size, in least recently used order
+	private final Map<String, Long> cachedArchives = new LinkedHashMap<>(16, 0.75f, true);
+
+	// Archive file name to number of opened streams
+	private final Map<String, Integer> openedArchives = new HashMap<>();
+
+	private long cacheSize;
+
+	@Inject
+	public DefaultArchiveManager(ProjectManager projectManager) {
+		this.projectManager = projectManager;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(ArchiveManager.class);
+	}
+
+	private File getCacheDir() {
+		File cacheDir = new File(Bootstrap.getSiteDir(), "archives");
+		FileUtils.createDir(cacheDir);
+		return cacheDir;
+	}
+
+	private String getFileName(Long projectId, ObjectId commitId, String format) {
+		String extension;
+		if (format.equals(FORMAT_ZIP))
+			extension = ".zip";
+		else if (format.equals(FORMAT_TGZ))
+			extension = ".tar.gz";
+		else
+			throw new IllegalArgumentException("Unexpected archive format: " + format);
+		return projectId + "-" + commitId.name() + extension;
+	}
+
+	@Listen
+	public synchronized void on(SystemStarting event) {
+		List<File> archiveFiles = new ArrayList<>();
+		for (File file: getCacheDir().listFiles()) {
+			if (file.getName().endsWith(TEMP_SUFFIX))
+				FileUtils.deleteFile(file);
+			else
+				archiveFiles.add(file);
+		}
+		archiveFiles.sort(Comparator.comparingLong(File::lastModified));
+		for (File file: archiveFiles) {
+			cachedArchives.put(file.getName(), file.length());
+			cacheSize += file.length();
+		}
+		evict();
+	}
+
+	@Listen
+	public synchronized void on(ProjectDeleted event) {
+		String prefix = event.getProjectId() + "-";
+		for (Iterator<Map.Entry<String, Long>> it = cachedArchives.entrySet().iterator(); it.hasNext();) {
+			Map.Entry<String, Long> entry = it.next();
+			if (entry.getKey().startsWith(prefix) && !openedArchives.containsKey(entry.getKey())) {
+				FileUtils.deleteFile(new File(getCacheDir(), entry.getKey()));
+				cacheSize -= entry.getValue();
+				it.remove();
+			}
+		}
+	}
+
+	/*
+	 * Remove least recently used archives not being read until cache size is within limit
+	 */
+	private void evict() {
+		for (Iterator<Map.Entry<String, Long>> it = cachedArchives.entrySet().iterator();
+				cacheSize > MAX_CACHE_SIZE && it.hasNext();) {
+			Map.Entry<String, Long> entry = it.next();
+			if (!openedArchives.containsKey(entry.getKey())) {
+				File file = new File(getCacheDir(), entry.getKey());
+				if (file.delete() || !file.exists()) {
+					cacheSize -= entry.getValue();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/*
+	 * Get archive file, generating it if necessary. Returned archive will not be evicted until
+	 * released
+	 */
+	private File acquireArchive(Long projectId, ObjectId commitId, String format) {
+		String fileName = getFileName(projectId, commitId, format);
+		File archiveFile = new File(getCacheDir(), fileName);
+		if (acquireIfCached(fileName)) {
+			archiveFile.setLastModified(System.currentTimeMillis());
+			return archiveFile;
+		}
+
+		Lock lock = LockUtils.getLock("archive:" + fileName);
+		lock.lock();
+		try {
+			// Archive may be generated by other requests while we are waiting for the lock
+			if (acquireIfCached(fileName))
+				return archiveFile;
+
+			long time = System.currentTimeMillis();
+			File tempFile = new File(getCacheDir(), fileName + TEMP_SUFFIX);
+			if (format.equals(FORMAT_ZIP))
+				ArchiveCommand.registerFormat(format, new ZipFormat());
+			else
+				ArchiveCommand.registerFormat(format, new TgzFormat());
+			try (OutputStream os = new BufferedOutputStream(new FileOutputStream(tempFile), BUFFER_SIZE)) {
+				RevCommit commit;
+				Repository repository = projectManager.getRepository(projectId);
+				try (RevWalk revWalk = new RevWalk(repository)) {
+					commit = revWalk.parseCommit(commitId);
+				}
+				ArchiveCommand archive = Git.wrap(repository).archive();
+				archive.setFormat(format);
+				archive.setTree(commit);
+				archive.setOutputStream(os);
+				archive.call();
+			} catch (IOException | GitAPIException e) {
+				FileUtils.deleteFile(tempFile);
+				throw new RuntimeException(e);
+			} finally {
+				ArchiveCommand.unregisterFormat(format);
+			}
+			try {
+				Files.move(tempFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException e) {
+				FileUtils.deleteFile(tempFile);
+				throw new RuntimeException(e);
+			}
+			logger.debug("Generated archive '{}' in {} ms", fileName, System.currentTimeMillis() - time);
+
+			synchronized (this) {
+				cachedArchives.put(fileName, archiveFile.length());
+				cacheSize += archiveFile.length();
+				openedArchives.merge(fileName, 1, Integer::sum);
+				evict();
+			}
+			return archiveFile;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private synchronized boolean acquireIfCached(String fileName) {
+		if (cachedArchives.get(fileName) != null) {
+			openedArchives.merge(fileName, 1, Integer::sum);
+			return true;
+		} else {
+			return false;
+		}
+	}
+
+	private synchronized void release(String fileName) {
+		if (openedArchives.merge(fileName, -1, Integer::sum) == 0)
+			openedArchives.remove(fileName);
+	}
+
+	@Override
+	public ArchiveStream openArchive(Long projectId, ObjectId commitId, String format) {
+		File archiveFile = acquireArchive(projectId, commitId, format);
+		String fileName = archiveFile.getName();
+		try {
+			return new ArchiveStream(new FileInputStream(archiveFile), archiveFile.length()) {
+
+				private boolean closed;
+
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						if (!closed) {
+							closed = true;
+							release(fileName);
+						}
+					}
+				}
+
+			};
+		} catch (FileNotFoundException e) {
+			release(fileName);
+			throw new RuntimeException(e);
+		}
+	}
+
+}
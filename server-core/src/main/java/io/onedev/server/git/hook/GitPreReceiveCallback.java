@@ -31,6 +31,7 @@ import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestUpdate;
 import io.onedev.server.model.User;
 import io.onedev.server.model.support.code.BranchProtection;
+import io.onedev.server.model.support.code.PushRequirement;
 import io.onedev.server.model.support.code.TagProtection;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.security.SecurityUtils;
@@ -156,15 +157,14 @@ public class GitPreReceiveCallback extends HttpServlet {
     							&& !project.hasValidCommitSignature(newObjectId, gitEnvs)) {
     						errorMessages.add("Can not push to this branch as branch protection rule requires "
     								+ "valid signature for head commit");
-    					} else if (protection.isReviewRequiredForPush(user, project, branchName, oldObjectId, newObjectId, gitEnvs)) {
-        					errorMessages.add("Review required for your change. Please submit pull request instead");
+    					} else {
+    						PushRequirement pushRequirement = protection.getPushRequirement(project, oldObjectId, newObjectId, gitEnvs);
+    						if (pushRequirement.isReviewRequired()) {
+    							errorMessages.add("Review required for your change. Please submit pull request instead");
+    						} else if (protection.isBuildRequiredForPush(project, newObjectId, pushRequirement.getRequiredJobs())) {
+    							errorMessages.add("Build required for your change. Please submit pull request instead");
+    						}
     					}
-    	    			if (errorMessages.isEmpty() 
-    	    					&& !oldObjectId.equals(ObjectId.zeroId()) 
-    	    					&& !newObjectId.equals(ObjectId.zeroId()) 
-    	    					&& project.isBuildRequiredForPush(user, branchName, oldObjectId, newObjectId, gitEnvs)) {
-    	    				errorMessages.add("Build required for your change. Please submit pull request instead");
-    	    			}
     	    			if (errorMessages.isEmpty() && newObjectId.equals(ObjectId.zeroId())) {
     	    				try {
     	    					projectManager.onDeleteBranch(project, branchName);
@@ -7,6 +7,7 @@ import io.onedev.server.OneDev;
 import io.onedev.server.ServerConfig;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.util.CryptoUtils;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
@@ -53,6 +54,13 @@ public class HookUtils {
 		return envs;
 	}
 	
+	/**
+	 * Get digest of hook content, which changes if hooks need to be updated 
+	 */
+	public static String getHookDigest() {
+		return DigestUtils.sha256Hex(gitReceiveHook);
+	}
+	
 	public static boolean isHookValid(File gitDir, String hookName) {
         File hookFile = new File(gitDir, "hooks/" + hookName);
         if (!hookFile.exists()) 
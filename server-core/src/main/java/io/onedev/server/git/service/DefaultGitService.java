@@ -20,6 +20,8 @@ import io.onedev.server.git.exception.NotFileException;
 import io.onedev.server.git.exception.NotTreeException;
 import io.onedev.server.git.exception.ObjectAlreadyExistsException;
 import io.onedev.server.git.exception.ObjectNotFoundException;
+import io.onedev.server.infomanager.BlameInfoManager;
+import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.annotation.Sessional;
@@ -68,16 +70,23 @@ public class DefaultGitService implements GitService, Serializable {
 	
 	private final ListenerRegistry listenerRegistry;
 	
+	private final CommitInfoManager commitInfoManager;
+	
+	private final BlameInfoManager blameInfoManager;
+	
 	@Inject
 	public DefaultGitService(ProjectManager projectManager, SettingManager settingManager,
 			SessionManager sessionManager, ClusterManager clusterManager, 
-			StorageManager storageManager, ListenerRegistry listenerRegistry) {
+			StorageManager storageManager, ListenerRegistry listenerRegistry, 
+			CommitInfoManager commitInfoManager, BlameInfoManager blameInfoManager) {
 		this.projectManager = projectManager;
 		this.sessionManager = sessionManager;
 		this.settingManager = settingManager;
 		this.clusterManager = clusterManager;
 		this.storageManager = storageManager;
 		this.listenerRegistry = listenerRegistry;
+		this.commitInfoManager = commitInfoManager;
+		this.blameInfoManager = blameInfoManager;
 	}
 
 	public Object writeReplace() throws ObjectStreamException {
@@ -1463,7 +1472,9 @@ public class DefaultGitService implements GitService, Serializable {
 					diffEntries.add(new DiffEntryFacade(
 							diffEntry.getChangeType(), 
 							diffEntry.getOldPath(), diffEntry.getNewPath(), 
-							diffEntry.getOldMode().getBits(), diffEntry.getNewMode().getBits()));
+							diffEntry.getOldMode().getBits(), diffEntry.getNewMode().getBits(), 
+							diffEntry.getOldId().isComplete()? diffEntry.getOldId().toObjectId(): null, 
+							diffEntry.getNewId().isComplete()? diffEntry.getNewId().toObjectId(): null));
 				}
 				return diffEntries;
 			}
@@ -1564,8 +1575,7 @@ public class DefaultGitService implements GitService, Serializable {
 
 			@Override
 			public Collection<BlameBlock> call() throws Exception {
-				return new BlameCommand(storageManager.getProjectGitDir(projectId), revId, file)
-						.range(range).run();
+				return blameInfoManager.getBlame(projectId, revId, file, range);
 			}
 			
 		});
@@ -1612,7 +1622,10 @@ public class DefaultGitService implements GitService, Serializable {
 
 			@Override
 			public List<String> call() throws Exception {
-				return new RevListCommand(getGitDir(projectId)).options(options).run();
+				List<String> commitHashes = commitInfoManager.revList(projectId, options);
+				if (commitHashes == null)
+					commitHashes = new RevListCommand(getGitDir(projectId)).options(options).run();
+				return commitHashes;
 			}
 			
 		});
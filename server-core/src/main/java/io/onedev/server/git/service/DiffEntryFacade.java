@@ -2,7 +2,10 @@ package io.onedev.server.git.service;
 
 import java.io.Serializable;
 
+import javax.annotation.Nullable;
+
 import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
 
 public class DiffEntryFacade implements Serializable {
 
@@ -18,13 +21,19 @@ public class DiffEntryFacade implements Serializable {
 	
 	private final int newMode;
 	
+	private final ObjectId oldBlobId;
+	
+	private final ObjectId newBlobId;
+	
 	public DiffEntryFacade(DiffEntry.ChangeType changeType, String oldPath, String newPath, 
-			int oldMode, int newMode) {
+			int oldMode, int newMode, @Nullable ObjectId oldBlobId, @Nullable ObjectId newBlobId) {
 		this.changeType = changeType;
 		this.oldPath = oldPath;
 		this.newPath = newPath;
 		this.oldMode = oldMode;
 		this.newMode = newMode;
+		this.oldBlobId = oldBlobId;
+		this.newBlobId = newBlobId;
 	}
 
 	public DiffEntry.ChangeType getChangeType() {
@@ -46,5 +55,23 @@ public class DiffEntryFacade implements Serializable {
 	public int getNewMode() {
 		return newMode;
 	}
+
+	/**
+	 * @return
+	 * 			id of old blob, or <tt>null</tt> if not known
+	 */
+	@Nullable
+	public ObjectId getOldBlobId() {
+		return oldBlobId;
+	}
+
+	/**
+	 * @return
+	 * 			id of new blob, or <tt>null</tt> if not known
+	 */
+	@Nullable
+	public ObjectId getNewBlobId() {
+		return newBlobId;
+	}
 	
 }
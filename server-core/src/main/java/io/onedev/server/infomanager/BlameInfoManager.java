@@ -0,0 +1,36 @@
+package io.onedev.server.infomanager;
+
+import java.util.Collection;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.utils.LinearRange;
+import io.onedev.server.git.BlameBlock;
+
+public interface BlameInfoManager {
+
+	/**
+	 * Get blame of specified file. Blame of whole file is derived from persisted blame of parent 
+	 * commit if possible, and is persisted for later derivations. If it can not be derived, git 
+	 * blame is run for requested range only, or for whole file with result persisted if range is 
+	 * not specified. Derived blame may differ from git blame in attribution of identical lines 
+	 * around ambiguous hunks, as JGit's Myers diff does not slide hunks like git does. This 
+	 * method does not dispatch to other servers, and should be called on storage server of the 
+	 * project
+	 *
+	 * @param projectId
+	 * 			project to get blame in
+	 * @param commitId
+	 * 			commit to get blame at
+	 * @param file
+	 * 			path of the file to blame
+	 * @param range
+	 * 			0-indexed and inclusive line range to get blame of, <tt>null</tt> for whole file
+	 * @return
+	 * 			blame blocks of specified range
+	 */
+	Collection<BlameBlock> getBlame(Long projectId, ObjectId commitId, String file, @Nullable LinearRange range);
+
+}
@@ -5,10 +5,13 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
+import javax.annotation.Nullable;
+
 import org.eclipse.jgit.lib.ObjectId;
 
 import io.onedev.server.git.GitContribution;
 import io.onedev.server.git.GitContributor;
+import io.onedev.server.git.command.RevListOptions;
 import io.onedev.server.util.Day;
 import io.onedev.server.util.NameAndEmail;
 import io.onedev.server.util.facade.EmailAddressFacade;
@@ -38,6 +41,22 @@ public interface CommitInfoManager {
 	 */
 	Collection<ObjectId> getDescendants(Long projectId, Collection<ObjectId> ancestors);
 	
+	/**
+	 * Query commits against commit metadata index instead of running git rev-list. This method 
+	 * does not dispatch to other servers, and should be called on storage server of the project
+	 * 
+	 * @param projectId
+	 * 			project to query commits in
+	 * @param options
+	 * 			rev-list options to query with
+	 * @return
+	 * 			hashes of matching commits in same order as git rev-list, or <tt>null</tt> if 
+	 * 			options can not be answered by the index, for instance if some referenced commits 
+	 * 			are not collected yet
+	 */
+	@Nullable
+	List<String> revList(Long projectId, RevListOptions options);
+	
 	void cloneInfo(Long sourceProjectId, Long targetProjectId);
 	
 	Collection<String> getHistoryPaths(Long projectId, String path);
@@ -0,0 +1,697 @@
+package io.onedev.server.infomanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import io.onedev.server.git.command.RevListOptions;
+import io.onedev.server.util.DateUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * In-memory columnar index of commit metadata of a project, used to answer commit queries
+ * without running git rev-list. Commits are numbered by ordinal in the order they are
+ * collected, and as commits are always collected after their ancestors, all ancestors of an
+ * indexed commit are also indexed.
+ * <p>
+ * Commit time, author, committer and parents are stored as arrays indexed by ordinal, while
+ * message tokens and touched paths are mapped to ascending ordinal lists which are turned
+ * into bitmaps when queried. Criteria the index can not answer exactly (ordering, wildcard
+ * path specs, regular expressions other than <tt>.</tt> and <tt>*</tt> etc.) make the query
+ * return <tt>null</tt> so that caller can fall back to git.
+ */
+class CommitMetadataIndex {
+
+	// Heap bytes used by a commit entry and its slots in per commit arrays
+	private static final int COMMIT_BYTES = 64;
+
+	// Heap bytes used by a map entry (including key string and value object) besides string content
+	private static final int ENTRY_BYTES = 96;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final ObjectIdOwnerMap<CommitEntry> entries = new ObjectIdOwnerMap<>();
+
+	private CommitEntry[] commits = new CommitEntry[0];
+
+	private long[] commitTimes = new long[0];
+
+	private int[] authors = new int[0];
+
+	private int[] committers = new int[0];
+
+	private int[] firstParents = new int[0];
+
+	private final Map<Integer, int[]> otherParents = new HashMap<>();
+
+	private final List<String> persons = new ArrayList<>();
+
+	private final Map<String, Integer> personIndexes = new HashMap<>();
+
+	private final Map<String, Postings> tokenPostings = new HashMap<>();
+
+	private final Map<String, Postings> pathPostings = new HashMap<>();
+
+	private int count;
+
+	private volatile long estimatedSize;
+
+	/**
+	 * Append specified commits to the index
+	 *
+	 * @param records
+	 * 			records of newly collected commits, ordered by ordinal
+	 * @return
+	 * 			<tt>false</tt> if ordinals of specified records do not continue the index,
+	 * 			in which case the index should be discarded and loaded again
+	 */
+	boolean append(List<Record> records) {
+		lock.writeLock().lock();
+		try {
+			List<Record> appended = new ArrayList<>();
+			for (Record record: records) {
+				if (record.ordinal == count) {
+					ensureCapacity(count + 1);
+					estimatedSize += COMMIT_BYTES;
+					CommitEntry entry = new CommitEntry(record.commitId, count);
+					entries.add(entry);
+					commits[count] = entry;
+					commitTimes[count] = record.commitTime;
+					authors[count] = getPersonIndex(record.author);
+					committers[count] = getPersonIndex(record.committer);
+					for (String token: record.tokens)
+						addPosting(tokenPostings, token, count);
+					for (String path: record.paths)
+						addPosting(pathPostings, path, count);
+					appended.add(record);
+					count++;
+				} else if (record.ordinal > count) {
+					return false;
+				}
+			}
+
+			// Resolve parents after all commits are added, as a parent might be collected after child in same batch
+			for (Record record: appended) {
+				List<Integer> parentOrdinals = new ArrayList<>();
+				for (ObjectId parentId: record.parentIds) {
+					CommitEntry parentEntry = entries.get(parentId);
+					if (parentEntry != null)
+						parentOrdinals.add(parentEntry.ordinal);
+				}
+				if (!parentOrdinals.isEmpty()) {
+					firstParents[record.ordinal] = parentOrdinals.get(0);
+					if (parentOrdinals.size() > 1) {
+						int[] others = new int[parentOrdinals.size()-1];
+						for (int i=1; i<parentOrdinals.size(); i++)
+							others[i-1] = parentOrdinals.get(i);
+						otherParents.put(record.ordinal, others);
+						estimatedSize += ENTRY_BYTES + 4L * others.length;
+					}
+				} else {
+					firstParents[record.ordinal] = -1;
+				}
+			}
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (commits.length < capacity) {
+			int newLength = Math.max(capacity, commits.length * 3 / 2 + 16);
+			commits = Arrays.copyOf(commits, newLength);
+			commitTimes = Arrays.copyOf(commitTimes, newLength);
+			authors = Arrays.copyOf(authors, newLength);
+			committers = Arrays.copyOf(committers, newLength);
+			firstParents = Arrays.copyOf(firstParents, newLength);
+		}
+	}
+
+	private int getPersonIndex(String person) {
+		Integer personIndex = personIndexes.get(person);
+		if (personIndex == null) {
+			personIndex = persons.size();
+			persons.add(person);
+			personIndexes.put(person, personIndex);
+			estimatedSize += ENTRY_BYTES + 2L * person.length();
+		}
+		return personIndex;
+	}
+
+	private void addPosting(Map<String, Postings> postingsMap, String key, int ordinal) {
+		Postings postings = postingsMap.get(key);
+		if (postings == null) {
+			postings = new Postings();
+			postingsMap.put(key, postings);
+			estimatedSize += ENTRY_BYTES + 2L * key.length();
+		}
+		postings.add(ordinal);
+		estimatedSize += 4;
+	}
+
+	/**
+	 * Get estimated heap size of this index in bytes. Used to weigh the index when it is
+	 * cached, so that memory used by cached indexes is bounded no matter how large the
+	 * repositories are
+	 */
+	long getEstimatedSize() {
+		return estimatedSize;
+	}
+
+	/**
+	 * Query commits with same semantics as git rev-list
+	 *
+	 * @return
+	 * 			hashes of matching commits, or <tt>null</tt> if specified options can not be
+	 * 			answered by the index
+	 */
+	@Nullable
+	List<String> query(Repository repository, RevListOptions options) {
+		if (options.order() != null)
+			return null;
+
+		List<Pattern> authorPatterns = compile(options.authors(), options.ignoreCase());
+		List<Pattern> committerPatterns = compile(options.committers(), options.ignoreCase());
+		List<Pattern> messagePatterns = compile(options.messages(), options.ignoreCase());
+		if (authorPatterns == null || committerPatterns == null || messagePatterns == null)
+			return null;
+
+		for (String path: options.paths()) {
+			if (normalizePathSpec(path) == null)
+				return null;
+		}
+
+		Long before = null;
+		if (options.before() != null) {
+			Date date = DateUtils.parseRelaxed(options.before());
+			if (date == null)
+				return null;
+			before = date.getTime() / 1000;
+		}
+		Long after = null;
+		if (options.after() != null) {
+			Date date = DateUtils.parseRelaxed(options.after());
+			if (date == null)
+				return null;
+			after = date.getTime() / 1000;
+		}
+
+		lock.readLock().lock();
+		try {
+			List<Integer> includes = new ArrayList<>();
+			List<Integer> excludes = new ArrayList<>();
+			boolean hasIncludeRevisions = false;
+			for (String revision: options.revisions()) {
+				boolean exclude = revision.startsWith("^");
+				Integer ordinal = resolve(repository, exclude? revision.substring(1): revision);
+				if (ordinal == null)
+					return null;
+				if (exclude) {
+					excludes.add(ordinal);
+				} else {
+					includes.add(ordinal);
+					hasIncludeRevisions = true;
+				}
+			}
+			if (!hasIncludeRevisions) {
+				try {
+					for (Ref ref: repository.getRefDatabase().getRefsByPrefix(Constants.R_HEADS)) {
+						Integer ordinal = resolve(repository, ref.getName());
+						if (ordinal == null)
+							return null;
+						includes.add(ordinal);
+					}
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+
+			BitSet excluded = getAncestors(excludes);
+
+			BitSet pathMatches = null;
+			if (!options.paths().isEmpty()) {
+				pathMatches = new BitSet(count);
+				for (String pathSpec: options.paths()) {
+					String normalizedPathSpec = normalizePathSpec(pathSpec);
+					for (Map.Entry<String, Postings> entry: pathPostings.entrySet()) {
+						String path = entry.getKey();
+						if (path.equals(normalizedPathSpec) || path.startsWith(normalizedPathSpec + "/"))
+							entry.getValue().addTo(pathMatches);
+					}
+				}
+			}
+
+			List<MessageFilter> messageFilters = new ArrayList<>();
+			for (int i=0; i<messagePatterns.size(); i++)
+				messageFilters.add(newMessageFilter(options.messages().get(i), messagePatterns.get(i), options.ignoreCase()));
+
+			int maxCount = options.count() != 0? options.count(): Integer.MAX_VALUE;
+			int skip = options.skip();
+			List<String> commitHashes = new ArrayList<>();
+
+			/*
+			 * Walk from included commits in commit time order like git does by default, with ties
+			 * resolved by insertion order
+			 */
+			PriorityQueue<long[]> queue = new PriorityQueue<>(new Comparator<long[]>() {
+
+				@Override
+				public int compare(long[] o1, long[] o2) {
+					int result = Long.compare(commitTimes[(int) o2[0]], commitTimes[(int) o1[0]]);
+					if (result == 0)
+						result = Long.compare(o1[1], o2[1]);
+					return result;
+				}
+
+			});
+			long sequence = 0;
+			BitSet seen = new BitSet(count);
+			for (int ordinal: includes) {
+				if (!seen.get(ordinal)) {
+					seen.set(ordinal);
+					queue.add(new long[] {ordinal, sequence++});
+				}
+			}
+
+			try (RevWalk revWalk = new RevWalk(repository)) {
+				while (!queue.isEmpty() && commitHashes.size() < maxCount) {
+					int ordinal = (int) queue.poll()[0];
+
+					// Ancestors of excluded commits are also excluded, no need to walk further
+					if (excluded.get(ordinal))
+						continue;
+
+					// Git stops walking history beyond commits older than --after
+					if (after != null && commitTimes[ordinal] < after)
+						continue;
+
+					for (int parentOrdinal: getParents(ordinal, options.firstParent())) {
+						if (!seen.get(parentOrdinal)) {
+							seen.set(parentOrdinal);
+							queue.add(new long[] {parentOrdinal, sequence++});
+						}
+					}
+
+					if (before != null && commitTimes[ordinal] > before)
+						continue;
+					if (pathMatches != null && !pathMatches.get(ordinal))
+						continue;
+					if (!authorPatterns.isEmpty() && !matches(authorPatterns, persons.get(authors[ordinal])))
+						continue;
+					if (!committerPatterns.isEmpty() && !matches(committerPatterns, persons.get(committers[ordinal])))
+						continue;
+					if (!messageFilters.isEmpty() && !matches(messageFilters, revWalk, ordinal))
+						continue;
+
+					if (skip > 0)
+						skip--;
+					else
+						commitHashes.add(commits[ordinal].name());
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return commitHashes;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Nullable
+	private Integer resolve(Repository repository, String revision) {
+		ObjectId commitId;
+		try {
+			commitId = repository.resolve(revision + "^{commit}");
+		} catch (RevisionSyntaxException | IOException e) {
+			return null;
+		}
+		if (commitId != null) {
+			CommitEntry entry = entries.get(commitId);
+			if (entry != null)
+				return entry.ordinal;
+		}
+		return null;
+	}
+
+	private int[] getParents(int ordinal, boolean firstParent) {
+		if (firstParents[ordinal] == -1) {
+			return new int[0];
+		} else if (firstParent) {
+			return new int[] {firstParents[ordinal]};
+		} else {
+			int[] others = otherParents.get(ordinal);
+			if (others != null) {
+				int[] parents = new int[others.length + 1];
+				parents[0] = firstParents[ordinal];
+				System.arraycopy(others, 0, parents, 1, others.length);
+				return parents;
+			} else {
+				return new int[] {firstParents[ordinal]};
+			}
+		}
+	}
+
+	private BitSet getAncestors(Collection<Integer> ordinals) {
+		BitSet ancestors = new BitSet(count);
+
+		// Use stack instead of recursion to avoid StackOverflowException
+		int[] stack = new int[16];
+		int size = 0;
+		for (int ordinal: ordinals) {
+			if (!ancestors.get(ordinal)) {
+				ancestors.set(ordinal);
+				if (size == stack.length)
+					stack = Arrays.copyOf(stack, size * 2);
+				stack[size++] = ordinal;
+			}
+		}
+		while (size != 0) {
+			int current = stack[--size];
+			for (int parent: getParents(current, false)) {
+				if (!ancestors.get(parent)) {
+					ancestors.set(parent);
+					if (size == stack.length)
+						stack = Arrays.copyOf(stack, size * 2);
+					stack[size++] = parent;
+				}
+			}
+		}
+		return ancestors;
+	}
+
+	private boolean matches(List<Pattern> patterns, String value) {
+		for (Pattern pattern: patterns) {
+			if (pattern.matcher(value).find())
+				return true;
+		}
+		return false;
+	}
+
+	private boolean matches(List<MessageFilter> messageFilters, RevWalk revWalk, int ordinal) throws IOException {
+		String message = null;
+		for (MessageFilter filter: messageFilters) {
+			if (filter.candidates == null || filter.candidates.get(ordinal)) {
+				if (filter.exact)
+					return true;
+				if (message == null)
+					message = revWalk.parseCommit(commits[ordinal]).getFullMessage();
+				if (filter.pattern.matcher(message).find())
+					return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Every token appearing in literal part of a message pattern is a substring of some token
+	 * of matching messages, which is used to narrow down candidate commits. Candidates then
+	 * need to be verified against the pattern unless the pattern is a single token matched
+	 * case-insensitively
+	 */
+	private MessageFilter newMessageFilter(String regex, Pattern pattern, boolean ignoreCase) {
+		BitSet candidates = null;
+		for (String token: tokenize(regex.replace('.', ' ').replace('*', ' '))) {
+			BitSet tokenCandidates = new BitSet(count);
+			for (Map.Entry<String, Postings> entry: tokenPostings.entrySet()) {
+				if (entry.getKey().contains(token))
+					entry.getValue().addTo(tokenCandidates);
+			}
+			if (candidates != null)
+				candidates.and(tokenCandidates);
+			else
+				candidates = tokenCandidates;
+		}
+		boolean exact = ignoreCase && !regex.isEmpty() && regex.chars().allMatch(it -> isTokenChar((char) it));
+		return new MessageFilter(pattern, candidates, exact);
+	}
+
+	@Nullable
+	private static String normalizePathSpec(String pathSpec) {
+		if (pathSpec.startsWith(":") || pathSpec.contains("*") || pathSpec.contains("?")
+				|| pathSpec.contains("[") || pathSpec.contains("\\")) {
+			return null;
+		}
+		while (pathSpec.endsWith("/"))
+			pathSpec = pathSpec.substring(0, pathSpec.length()-1);
+		if (pathSpec.length() == 0 || pathSpec.equals(".") || pathSpec.startsWith("./")
+				|| pathSpec.contains("/./") || pathSpec.contains("../")) {
+			return null;
+		}
+		return pathSpec;
+	}
+
+	@Nullable
+	private static List<Pattern> compile(List<String> regexes, boolean ignoreCase) {
+		List<Pattern> patterns = new ArrayList<>();
+		for (String regex: regexes) {
+			Pattern pattern = compile(regex, ignoreCase);
+			if (pattern == null)
+				return null;
+			patterns.add(pattern);
+		}
+		return patterns;
+	}
+
+	/**
+	 * Translate a git basic regular expression into java pattern. Only <tt>.</tt> and <tt>*</tt>
+	 * are treated as special characters, which are what commit query criteria generate
+	 *
+	 * @return
+	 * 			translated pattern, or <tt>null</tt> if the expression uses other features
+	 */
+	@Nullable
+	static Pattern compile(String regex, boolean ignoreCase) {
+		StringBuilder builder = new StringBuilder();
+		for (int i=0; i<regex.length(); i++) {
+			char ch = regex.charAt(i);
+			if (ch == '\\' || ch == '[' || ch == ']' || ch == '^' || ch == '$') {
+				return null;
+			} else if (ch == '.') {
+				builder.append('.');
+			} else if (ch == '*') {
+				if (i == 0)
+					builder.append("\\*");
+				else if (regex.charAt(i-1) != '*')
+					builder.append('*');
+			} else {
+				if (!Character.isLetterOrDigit(ch))
+					builder.append('\\');
+				builder.append(ch);
+			}
+		}
+		int flags = ignoreCase? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE: 0;
+		return Pattern.compile(builder.toString(), flags);
+	}
+
+	private static boolean isTokenChar(char ch) {
+		return Character.isLetterOrDigit(ch) || ch == '_';
+	}
+
+	/**
+	 * Split specified text into distinct lower case tokens, with each token being a maximal
+	 * run of letters, digits and underscores
+	 */
+	static Set<String> tokenize(String text) {
+		Set<String> tokens = new LinkedHashSet<>();
+		int start = -1;
+		for (int i=0; i<=text.length(); i++) {
+			if (i < text.length() && isTokenChar(text.charAt(i))) {
+				if (start == -1)
+					start = i;
+			} else if (start != -1) {
+				tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+				start = -1;
+			}
+		}
+		return tokens;
+	}
+
+	static String describe(@Nullable PersonIdent person) {
+		if (person != null)
+			return person.getName() + " <" + person.getEmailAddress() + ">";
+		else
+			return "";
+	}
+
+	private static class CommitEntry extends ObjectIdOwnerMap.Entry {
+
+		final int ordinal;
+
+		CommitEntry(AnyObjectId commitId, int ordinal) {
+			super(commitId);
+			this.ordinal = ordinal;
+		}
+
+	}
+
+	private static class Postings {
+
+		private int[] ordinals = new int[2];
+
+		private int size;
+
+		void add(int ordinal) {
+			if (size == ordinals.length)
+				ordinals = Arrays.copyOf(ordinals, size * 2);
+			ordinals[size++] = ordinal;
+		}
+
+		void addTo(BitSet bitSet) {
+			for (int i=0; i<size; i++)
+				bitSet.set(ordinals[i]);
+		}
+
+	}
+
+	private static class MessageFilter {
+
+		final Pattern pattern;
+
+		final BitSet candidates;
+
+		final boolean exact;
+
+		MessageFilter(Pattern pattern, @Nullable BitSet candidates, boolean exact) {
+			this.pattern = pattern;
+			this.candidates = candidates;
+			this.exact = exact;
+		}
+
+	}
+
+	/**
+	 * Metadata of a collected commit as persisted in commit info store
+	 */
+	static class Record {
+
+		final int ordinal;
+
+		final ObjectId commitId;
+
+		final long commitTime;
+
+		final String author;
+
+		final String committer;
+
+		final List<ObjectId> parentIds;
+
+		final Collection<String> tokens;
+
+		final Collection<String> paths;
+
+		Record(int ordinal, ObjectId commitId, long commitTime, String author, String committer,
+				List<ObjectId> parentIds, Collection<String> tokens, Collection<String> paths) {
+			this.ordinal = ordinal;
+			this.commitId = commitId;
+			this.commitTime = commitTime;
+			this.author = author;
+			this.committer = committer;
+			this.parentIds = parentIds;
+			this.tokens = tokens;
+			this.paths = paths;
+		}
+
+		byte[] toBytes() {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			try (DataOutputStream os = new DataOutputStream(baos)) {
+				os.writeInt(ordinal);
+				byte[] commitBytes = new byte[20];
+				commitId.copyRawTo(commitBytes, 0);
+				os.write(commitBytes);
+				os.writeLong(commitTime);
+				writeString(os, author);
+				writeString(os, committer);
+				os.writeInt(parentIds.size());
+				for (ObjectId parentId: parentIds) {
+					parentId.copyRawTo(commitBytes, 0);
+					os.write(commitBytes);
+				}
+				os.writeInt(tokens.size());
+				for (String token: tokens)
+					writeString(os, token);
+				os.writeInt(paths.size());
+				for (String path: paths)
+					writeString(os, path);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			return baos.toByteArray();
+		}
+
+		static Record fromBytes(byte[] bytes) {
+			try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes))) {
+				int ordinal = is.readInt();
+				byte[] commitBytes = new byte[20];
+				is.readFully(commitBytes);
+				ObjectId commitId = ObjectId.fromRaw(commitBytes);
+				long commitTime = is.readLong();
+				String author = readString(is);
+				String committer = readString(is);
+				int parentCount = is.readInt();
+				List<ObjectId> parentIds = new ArrayList<>(parentCount);
+				for (int i=0; i<parentCount; i++) {
+					is.readFully(commitBytes);
+					parentIds.add(ObjectId.fromRaw(commitBytes));
+				}
+				int tokenCount = is.readInt();
+				List<String> tokens = new ArrayList<>(tokenCount);
+				for (int i=0; i<tokenCount; i++)
+					tokens.add(readString(is));
+				int pathCount = is.readInt();
+				List<String> paths = new ArrayList<>(pathCount);
+				for (int i=0; i<pathCount; i++)
+					paths.add(readString(is));
+				return new Record(ordinal, commitId, commitTime, author, committer, parentIds, tokens, paths);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		private static void writeString(DataOutputStream os, String value) throws IOException {
+			byte[] bytes = value.getBytes(UTF_8);
+			os.writeInt(bytes.length);
+			os.write(bytes);
+		}
+
+		private static String readString(DataInputStream is) throws IOException {
+			byte[] bytes = new byte[is.readInt()];
+			is.readFully(bytes);
+			return new String(bytes, UTF_8);
+		}
+
+	}
+
+}
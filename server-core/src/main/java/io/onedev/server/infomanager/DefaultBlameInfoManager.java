@@ -0,0 +1,275 @@
+package io.onedev.server.infomanager;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LinearRange;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.project.ProjectDeleted;
+import io.onedev.server.git.BlameBlock;
+import io.onedev.server.git.BlameCommit;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.git.command.BlameCommand;
+import io.onedev.server.storage.StorageManager;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+import org.eclipse.jgit.diff.MyersDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.errors.LargeObjectException;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Collection;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@Singleton
+public class DefaultBlameInfoManager extends AbstractMultiEnvironmentManager
+		implements BlameInfoManager, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int INFO_VERSION = 1;
+
+	private static final String INFO_DIR = "blame";
+
+	private static final String BLAMES_STORE = "blames";
+
+	// Value holds blame of the file at the commit
+	private static final byte BLAME_VALUE = 0;
+
+	// Value holds id of an ancestor commit with same file content whose blame should be used
+	private static final byte ORIGIN_VALUE = 1;
+
+	private final StorageManager storageManager;
+
+	private final ProjectManager projectManager;
+
+	@Inject
+	public DefaultBlameInfoManager(StorageManager storageManager, ProjectManager projectManager) {
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(BlameInfoManager.class);
+	}
+
+	@Listen
+	public void on(ProjectDeleted event) {
+		Long projectId = event.getProjectId();
+		removeEnv(projectId.toString());
+		
+		// Project directory is only marked for deletion until next startup, while persisted 
+		// blames may take considerable space, so remove them now
+		File infoDir = new File(storageManager.getProjectDir(projectId), "info/" + INFO_DIR);
+		if (infoDir.exists())
+			FileUtils.deleteDir(infoDir);
+	}
+
+	@Override
+	public Collection<BlameBlock> getBlame(Long projectId, ObjectId commitId, String file,
+			@Nullable LinearRange range) {
+		Environment env = getEnv(projectId.toString());
+		Store store = getStore(env, BLAMES_STORE);
+		try (	Repository repository = projectManager.openRepository(projectId);
+				RevWalk revWalk = new RevWalk(repository)) {
+			RevCommit commit = revWalk.parseCommit(commitId);
+			ObjectId blobId = getBlobId(revWalk, commit, file);
+			if (blobId != null) {
+				FileBlame blame;
+				Resolution resolution = resolve(env, store, revWalk, commit, file, blobId);
+				if (resolution.cachedOriginId != null) {
+					blame = readBlame(env, store, resolution.cachedOriginId, file);
+					if (!resolution.cachedOriginId.equals(commit))
+						writeOrigin(env, store, commit, file, resolution.cachedOriginId);
+				} else {
+					blame = deriveBlame(env, store, revWalk, resolution.origin, file, blobId);
+					if (blame == null) {
+						/*
+						 * Blame can not be derived from parent, and running git blame for whole 
+						 * file can be expensive for large files. Only blame requested range in 
+						 * this case without persisting it
+						 */
+						if (range != null)
+							return new BlameCommand(storageManager.getProjectGitDir(projectId), commitId, file).range(range).run();
+						blame = FileBlame.fromBlocks(new BlameCommand(storageManager.getProjectGitDir(projectId), resolution.origin, file).run());
+					}
+					writeBlame(env, store, resolution.origin, file, blame);
+					if (!resolution.origin.equals(commit))
+						writeOrigin(env, store, commit, file, resolution.origin);
+				}
+				return blame.getBlocks(range);
+			} else {
+				// Let git report the error
+				return new BlameCommand(storageManager.getProjectGitDir(projectId), commitId, file).range(range).run();
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Like git blame, follow parents with same file content to find the commit introducing
+	 * current content of the file, and stop early if blame of some visited commit is persisted
+	 */
+	private Resolution resolve(Environment env, Store store, RevWalk revWalk, RevCommit commit,
+			String file, ObjectId blobId) throws IOException {
+		RevCommit current = commit;
+		while (true) {
+			ObjectId cachedOriginId = readOriginId(env, store, current, file);
+			if (cachedOriginId != null)
+				return new Resolution(current, cachedOriginId);
+			RevCommit sameParent = null;
+			for (RevCommit parent: current.getParents()) {
+				revWalk.parseHeaders(parent);
+				if (blobId.equals(getBlobId(revWalk, parent, file))) {
+					sameParent = parent;
+					break;
+				}
+			}
+			if (sameParent != null)
+				current = sameParent;
+			else
+				return new Resolution(current, null);
+		}
+	}
+
+	/*
+	 * Derive blame from persisted blame of parent for non-merge commits modifying the file.
+	 * 
+	 * Note that git blame diffs with xdiff, which slides ambiguous hunks (for instance an 
+	 * inserted block repeating its adjacent lines) with its own heuristics, while JGit's 
+	 * Myers diff does not. In such cases identical lines at hunk boundaries may be attributed 
+	 * to different commits than git blame would do. Non-identical lines are always attributed 
+	 * the same, as both are minimal diffs of same algorithm
+	 */
+	@Nullable
+	private FileBlame deriveBlame(Environment env, Store store, RevWalk revWalk,
+			RevCommit origin, String file, ObjectId blobId) throws IOException {
+		if (origin.getParentCount() == 1) {
+			RevCommit parent = origin.getParent(0);
+			revWalk.parseHeaders(parent);
+			ObjectId parentBlobId = getBlobId(revWalk, parent, file);
+			if (parentBlobId != null) {
+				Resolution parentResolution = resolve(env, store, revWalk, parent, file, parentBlobId);
+				if (parentResolution.cachedOriginId != null) {
+					FileBlame parentBlame = readBlame(env, store, parentResolution.cachedOriginId, file);
+					try {
+						RawText parentText = new RawText(revWalk.getObjectReader().open(parentBlobId).getBytes());
+						RawText text = new RawText(revWalk.getObjectReader().open(blobId).getBytes());
+						if (parentBlame.getLineCount() == parentText.size()) {
+							return parentBlame.derive(newBlameCommit(origin),
+									MyersDiff.INSTANCE.diff(RawTextComparator.DEFAULT, parentText, text),
+									text.size());
+						}
+					} catch (LargeObjectException e) {
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private BlameCommit newBlameCommit(RevCommit commit) {
+		PersonIdent committer = commit.getCommitterIdent();
+		PersonIdent author = commit.getAuthorIdent();
+		return new BlameCommit(commit.name(),
+				GitUtils.newPersonIdent(committer.getName(), committer.getEmailAddress(), committer.getWhen()),
+				GitUtils.newPersonIdent(author.getName(), author.getEmailAddress(), author.getWhen()),
+				commit.getShortMessage().trim());
+	}
+
+	@Nullable
+	private ObjectId getBlobId(RevWalk revWalk, RevCommit commit, String file) throws IOException {
+		try (TreeWalk treeWalk = TreeWalk.forPath(revWalk.getObjectReader(), file, commit.getTree())) {
+			if (treeWalk != null && (treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE) {
+				return treeWalk.getObjectId(0);
+			} else {
+				return null;
+			}
+		}
+	}
+
+	private ByteIterable getKey(ObjectId commitId, String file) {
+		byte[] fileBytes = file.getBytes(UTF_8);
+		byte[] keyBytes = new byte[20 + fileBytes.length];
+		commitId.copyRawTo(keyBytes, 0);
+		System.arraycopy(fileBytes, 0, keyBytes, 20, fileBytes.length);
+		return new ArrayByteIterable(keyBytes);
+	}
+
+	@Nullable
+	private ObjectId readOriginId(Environment env, Store store, ObjectId commitId, String file) {
+		byte[] valueBytes = env.computeInReadonlyTransaction(txn -> readBytes(store, txn, getKey(commitId, file)));
+		if (valueBytes == null)
+			return null;
+		else if (valueBytes[0] == ORIGIN_VALUE)
+			return ObjectId.fromRaw(valueBytes, 1);
+		else
+			return commitId;
+	}
+
+	private FileBlame readBlame(Environment env, Store store, ObjectId originId, String file) {
+		byte[] valueBytes = env.computeInReadonlyTransaction(txn -> readBytes(store, txn, getKey(originId, file)));
+		return FileBlame.fromBytes(valueBytes, 1);
+	}
+
+	private void writeBlame(Environment env, Store store, ObjectId commitId, String file, FileBlame blame) {
+		byte[] blameBytes = blame.toBytes();
+		byte[] valueBytes = new byte[blameBytes.length + 1];
+		valueBytes[0] = BLAME_VALUE;
+		System.arraycopy(blameBytes, 0, valueBytes, 1, blameBytes.length);
+		env.executeInTransaction(txn -> store.put(txn, getKey(commitId, file), new ArrayByteIterable(valueBytes)));
+	}
+
+	private void writeOrigin(Environment env, Store store, ObjectId commitId, String file, ObjectId originId) {
+		byte[] valueBytes = new byte[21];
+		valueBytes[0] = ORIGIN_VALUE;
+		originId.copyRawTo(valueBytes, 1);
+		env.executeInTransaction(txn -> store.put(txn, getKey(commitId, file), new ArrayByteIterable(valueBytes)));
+	}
+
+	@Override
+	protected File getEnvDir(String envKey) {
+		File infoDir = new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+		FileUtils.createDir(infoDir);
+		return infoDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	private static class Resolution {
+
+		// Commit introducing current content of the file, or the commit with persisted blame
+		final RevCommit origin;
+
+		@Nullable
+		final ObjectId cachedOriginId;
+
+		Resolution(RevCommit origin, @Nullable ObjectId cachedOriginId) {
+			this.origin = origin;
+			this.cachedOriginId = cachedOriginId;
+		}
+
+	}
+
+}
@@ -2,7 +2,10 @@ package io.onedev.server.infomanager;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.PathUtils;
 import io.onedev.commons.utils.StringUtils;
@@ -66,7 +69,9 @@ import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
@@ -78,7 +83,7 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultCommitInfoManager.class);
 
-	private static final int INFO_VERSION = 15;
+	private static final int INFO_VERSION = 16;
 
 	private static final long LOG_FILE_SIZE = 256 * 1024;
 
@@ -88,6 +93,9 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 
 	private static final int MAX_COMMIT_FILES = 100;
 
+	// Budget of cached commit metadata indexes in terms of their estimated heap size
+	private static final long MAX_CACHED_METADATA_INDEX_BYTES = 256*1024*1024;
+
 	private static final String INFO_DIR = "commit";
 
 	private static final String DEFAULT_STORE = "default";
@@ -112,6 +120,8 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 
 	private static final String DAILY_CONTRIBUTIONS_STORE = "dailyContributions";
 
+	private static final String COMMIT_METADATA_STORE = "commitMetadata";
+
 	private static final ByteIterable NEXT_PATH_INDEX_KEY = new StringByteIterable("nextPathIndex");
 
 	private static final ByteIterable NEXT_USER_INDEX_KEY = new StringByteIterable("nextUserIndex");
@@ -168,6 +178,19 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 
 	private final Map<Long, List<NameAndEmail>> usersCache = new ConcurrentHashMap<>();
 
+	// Projects whose metadata index exceeds the cache budget. Queries of these fall back to git
+	private final Set<Long> oversizedMetadataIndexes = ConcurrentHashMap.newKeySet();
+
+	/*
+	 * Use a single segment as Guava splits maximum weight across segments, and index larger 
+	 * than budget of its segment would be evicted right after being loaded
+	 */
+	private final Cache<Long, CommitMetadataIndex> metadataIndexCache = CacheBuilder.newBuilder()
+			.concurrencyLevel(1)
+			.maximumWeight(MAX_CACHED_METADATA_INDEX_BYTES)
+			.<Long, CommitMetadataIndex>weigher((key, value) -> (int) Math.min(value.getEstimatedSize(), Integer.MAX_VALUE))
+			.build();
+
 	@Inject
 	public DefaultCommitInfoManager(ProjectManager projectManager, StorageManager storageManager,
 									BatchWorkManager batchWorkManager, SessionManager sessionManager,
@@ -194,7 +217,7 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 		return commitBytes != null && commitBytes.length % 20 != 0;
 	}
 
-	private void doCollect(Project project, ObjectId commitId, String refName) {
+	private void doCollect(Project project, Repository repository, ObjectId commitId, String refName) {
 		logger.debug("Collecting commit information (project: {}, ref: {})...", project.getPath(), refName);
 
 		Environment env = getEnv(project.getId().toString());
@@ -208,8 +231,7 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 		Store emailToIndexStore = getStore(env, EMAIL_TO_INDEX_STORE);
 		Store indexToUserStore = getStore(env, INDEX_TO_USER_STORE);
 		Store fixCommitsStore = getStore(env, FIX_COMMITS_STORE);
-
-		Repository repository = projectManager.getRepository(project.getId());
+		Store commitMetadataStore = getStore(env, COMMIT_METADATA_STORE);
 
 		Pair<byte[], ObjectId> result = env.computeInTransaction(new TransactionalComputable<Pair<byte[], ObjectId>>() {
 
@@ -241,11 +263,13 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 
 				@Override
 				public void process(ObjectId untilCommitId, ObjectId sinceCommitId) {
+					List<CommitMetadataIndex.Record> metadataRecords = new ArrayList<>();
 					env.executeInTransaction(new TransactionalExecutable() {
 
 						@SuppressWarnings("unchecked")
 						@Override
 						public void execute(Transaction txn) {
+							metadataRecords.clear();
 							AtomicInteger totalCommitCount = new AtomicInteger(readInt(defaultStore, txn, COMMIT_COUNT_KEY, 0));
 
 							NextIndex nextIndex = new NextIndex();
@@ -291,7 +315,7 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 									byte[] currentCommitBytes = readBytes(commitsStore, txn, currentCommitKey);
 
 									if (!isCommitCollected(currentCommitBytes)) {
-										totalCommitCount.incrementAndGet();
+										int ordinal = totalCommitCount.getAndIncrement();
 
 										byte[] newCurrentCommitBytes;
 										if (currentCommitBytes == null) {
@@ -321,7 +345,21 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 										if (currentCommit.getBody() != null)
 											commitMessage += "\n\n" + currentCommit.getBody();
 
-										Repository repository = projectManager.getRepository(project.getId());
+										List<ObjectId> parentIds = new ArrayList<>();
+										for (String parentCommitHash : currentCommit.getParentHashes())
+											parentIds.add(ObjectId.fromString(parentCommitHash));
+										Set<String> touchedPaths = new HashSet<>();
+										for (FileChange change : currentCommit.getFileChanges())
+											touchedPaths.addAll(change.getPaths());
+										CommitMetadataIndex.Record metadataRecord = new CommitMetadataIndex.Record(
+												ordinal, currentCommitId, currentCommit.getCommitDate().getTime() / 1000,
+												CommitMetadataIndex.describe(currentCommit.getAuthor()),
+												CommitMetadataIndex.describe(currentCommit.getCommitter()),
+												parentIds, CommitMetadataIndex.tokenize(commitMessage), touchedPaths);
+										commitMetadataStore.put(txn, new IntByteIterable(ordinal),
+												new ArrayByteIterable(metadataRecord.toBytes()));
+										metadataRecords.add(metadataRecord);
+
 										for (Long issueId : project.parseFixedIssueIds(commitMessage)) {
 											ByteIterable issueKey = new LongByteIterable(issueId);
 											Collection<ObjectId> fixingCommits = readCommits(fixCommitsStore, txn, issueKey);
@@ -443,27 +481,41 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 							defaultStore.put(txn, LAST_COMMIT_KEY, new CommitByteIterable(untilCommitId));
 						}
 					});
+
+					CommitMetadataIndex metadataIndex = metadataIndexCache.getIfPresent(project.getId());
+					if (metadataIndex != null) {
+						if (metadataIndex.append(metadataRecords)) {
+							if (metadataIndex.getEstimatedSize() > MAX_CACHED_METADATA_INDEX_BYTES) {
+								oversizedMetadataIndexes.add(project.getId());
+								metadataIndexCache.invalidate(project.getId());
+							} else {
+								// Put again so that the index is weighed with appended commits
+								metadataIndexCache.asMap().replace(project.getId(), metadataIndex, metadataIndex);
+							}
+						} else {
+							metadataIndexCache.invalidate(project.getId());
+						}
+					}
 				}
 
 			});
 		}
 
 		if (GitUtils.branch2ref(project.getDefaultBranch()).equals(refName)) {
-			collectLineStats(project, commitId);
-			collectContribs(project, commitId);
-			collectFiles(project, commitId);
+			collectLineStats(project, repository, commitId);
+			collectContribs(project, repository, commitId);
+			collectFiles(project, repository, commitId);
 		}
 
 		logger.debug("Collected commit information (project: {}, ref: {})", project.getPath(), refName);
 	}
 
-	private void collectContribs(Project project, ObjectId commitId) {
+	private void collectContribs(Project project, Repository repository, ObjectId commitId) {
 		Environment env = getEnv(project.getId().toString());
 		Store defaultStore = getStore(env, DEFAULT_STORE);
 		Store userToIndexStore = getStore(env, USER_TO_INDEX_STORE);
 		Store dailyContributionsStore = getStore(env, DAILY_CONTRIBUTIONS_STORE);
 
-		Repository repository = projectManager.getRepository(project.getId());
 		PatternSet filePatterns = project.findCodeAnalysisPatterns();
 
 		ObjectId lastCommitId = env.computeInTransaction(new TransactionalComputable<ObjectId>() {
@@ -568,12 +620,10 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 		});
 	}
 
-	private void collectFiles(Project project, ObjectId commitId) {
+	private void collectFiles(Project project, Repository repository, ObjectId commitId) {
 		Environment env = getEnv(project.getId().toString());
 		Store defaultStore = getStore(env, DEFAULT_STORE);
 
-		Repository repository = projectManager.getRepository(project.getId());
-
 		ObjectId lastCommitId = env.computeInTransaction(new TransactionalComputable<ObjectId>() {
 
 			@Override
@@ -653,12 +703,10 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 		}
 	}
 
-	private void collectLineStats(Project project, ObjectId commitId) {
+	private void collectLineStats(Project project, Repository repository, ObjectId commitId) {
 		Environment env = getEnv(project.getId().toString());
 		Store defaultStore = getStore(env, DEFAULT_STORE);
 
-		Repository repository = projectManager.getRepository(project.getId());
-
 		ObjectId lastCommitId = env.computeInTransaction(new TransactionalComputable<ObjectId>() {
 
 			@Override
@@ -1086,6 +1134,59 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 		});
 	}
 
+	@Nullable
+	@Override
+	public List<String> revList(Long projectId, RevListOptions options) {
+		if (oversizedMetadataIndexes.contains(projectId))
+			return null;
+		else
+			return getMetadataIndex(projectId).query(projectManager.getRepository(projectId), options);
+	}
+
+	private CommitMetadataIndex getMetadataIndex(Long projectId) {
+		try {
+			return metadataIndexCache.get(projectId, new Callable<CommitMetadataIndex>() {
+
+				@Override
+				public CommitMetadataIndex call() throws Exception {
+					Environment env = getEnv(projectId.toString());
+					Store store = getStore(env, COMMIT_METADATA_STORE);
+					List<CommitMetadataIndex.Record> records = env.computeInReadonlyTransaction(
+							new TransactionalComputable<List<CommitMetadataIndex.Record>>() {
+
+						@Override
+						public List<CommitMetadataIndex.Record> compute(Transaction txn) {
+							List<CommitMetadataIndex.Record> records = new ArrayList<>();
+							try (Cursor cursor = store.openCursor(txn)) {
+								while (cursor.getNext()) {
+									ByteIterable value = cursor.getValue();
+									records.add(CommitMetadataIndex.Record.fromBytes(
+											Arrays.copyOf(value.getBytesUnsafe(), value.getLength())));
+								}
+							}
+							return records;
+						}
+
+					});
+					records.sort(Comparator.comparingInt(it -> it.ordinal));
+
+					CommitMetadataIndex metadataIndex = new CommitMetadataIndex();
+					metadataIndex.append(records);
+					/*
+					 * Index over budget is still used to answer current query, but is not loaded 
+					 * again for subsequent queries
+					 */
+					if (metadataIndex.getEstimatedSize() > MAX_CACHED_METADATA_INDEX_BYTES)
+						oversizedMetadataIndexes.add(projectId);
+					return metadataIndex;
+				}
+
+			});
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+	}
+
 	@Listen
 	public void on(EntityRemoved event) {
 		if (event.getEntity() instanceof Project) {
@@ -1103,6 +1204,8 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 						totalCommitCountCache.remove(projectId);
 						fileCountCache.remove(projectId);
 						usersCache.remove(projectId);
+						metadataIndexCache.invalidate(projectId);
+						oversizedMetadataIndexes.remove(projectId);
 
 						return null;
 					}
@@ -1127,8 +1230,11 @@ public class DefaultCommitInfoManager extends AbstractMultiEnvironmentManager
 							collectingWorks.add((CollectingWork) work);
 						Collections.sort(collectingWorks, new CommitTimeComparator());
 
-						for (CollectingWork work : collectingWorks)
-							doCollect(project, work.getCommit().copy(), work.getRefName());
+						// Collecting may take long, open repository so that it is not closed by cache eviction
+						try (Repository repository = projectManager.openRepository(projectId)) {
+							for (CollectingWork work : collectingWorks)
+								doCollect(project, repository, work.getCommit().copy(), work.getRefName());
+						}
 					}
 
 				});
@@ -0,0 +1,230 @@
+package io.onedev.server.infomanager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.lib.PersonIdent;
+
+import io.onedev.commons.utils.LinearRange;
+import io.onedev.server.git.BlameBlock;
+import io.onedev.server.git.BlameCommit;
+import io.onedev.server.git.GitUtils;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Blame of all lines of a file, stored as commit of each line. It is persisted as runs of
+ * consecutive lines blamed to same commit.
+ */
+class FileBlame {
+
+	private final List<BlameCommit> commits;
+
+	private final int[] lineCommits;
+
+	private FileBlame(List<BlameCommit> commits, int[] lineCommits) {
+		this.commits = commits;
+		this.lineCommits = lineCommits;
+	}
+
+	static FileBlame fromBlocks(Collection<BlameBlock> blocks) {
+		int lineCount = 0;
+		for (BlameBlock block: blocks) {
+			for (LinearRange range: block.getRanges())
+				lineCount = Math.max(lineCount, range.getTo() + 1);
+		}
+		List<BlameCommit> commits = new ArrayList<>();
+		int[] lineCommits = new int[lineCount];
+		for (BlameBlock block: blocks) {
+			for (LinearRange range: block.getRanges()) {
+				for (int line=range.getFrom(); line<=range.getTo(); line++)
+					lineCommits[line] = commits.size();
+			}
+			commits.add(block.getCommit());
+		}
+		return new FileBlame(commits, lineCommits);
+	}
+
+	int getLineCount() {
+		return lineCommits.length;
+	}
+
+	/**
+	 * Derive blame of a child commit from this blame. Unchanged lines keep their blames, while
+	 * changed lines are blamed to the child commit
+	 *
+	 * @param commit
+	 * 			the child commit
+	 * @param edits
+	 * 			edits from file content of this blame to file content of the child commit
+	 * @param lineCount
+	 * 			number of lines of the file in child commit
+	 */
+	FileBlame derive(BlameCommit commit, EditList edits, int lineCount) {
+		List<BlameCommit> newCommits = new ArrayList<>();
+		Map<Integer, Integer> newIndexes = new HashMap<>();
+		int[] newLineCommits = new int[lineCount];
+		int oldLine = 0;
+		int newLine = 0;
+		for (Edit edit: edits) {
+			while (newLine < edit.getBeginB())
+				newLineCommits[newLine++] = mapIndex(lineCommits[oldLine++], newCommits, newIndexes);
+			while (newLine < edit.getEndB())
+				newLineCommits[newLine++] = mapIndex(-1, newCommits, newIndexes);
+			oldLine = edit.getEndA();
+		}
+		while (newLine < lineCount)
+			newLineCommits[newLine++] = mapIndex(lineCommits[oldLine++], newCommits, newIndexes);
+
+		for (Map.Entry<Integer, Integer> entry: newIndexes.entrySet()) {
+			if (entry.getKey() == -1)
+				newCommits.set(entry.getValue(), commit);
+			else
+				newCommits.set(entry.getValue(), commits.get(entry.getKey()));
+		}
+		return new FileBlame(newCommits, newLineCommits);
+	}
+
+	/*
+	 * Only commits still referenced are kept, with -1 representing the child commit
+	 */
+	private int mapIndex(int index, List<BlameCommit> newCommits, Map<Integer, Integer> newIndexes) {
+		Integer newIndex = newIndexes.get(index);
+		if (newIndex == null) {
+			newIndex = newCommits.size();
+			newCommits.add(null);
+			newIndexes.put(index, newIndex);
+		}
+		return newIndex;
+	}
+
+	/**
+	 * Get blame blocks of specified range
+	 *
+	 * @param range
+	 * 			0-indexed and inclusive line range, <tt>null</tt> for all lines
+	 */
+	List<BlameBlock> getBlocks(@Nullable LinearRange range) {
+		int from = 0;
+		int to = lineCommits.length - 1;
+		if (range != null) {
+			from = Math.max(from, range.getFrom());
+			to = Math.min(to, range.getTo());
+		}
+		Map<Integer, BlameBlock> blocks = new LinkedHashMap<>();
+		int line = from;
+		while (line <= to) {
+			int commitIndex = lineCommits[line];
+			int endLine = line;
+			while (endLine < to && lineCommits[endLine + 1] == commitIndex)
+				endLine++;
+			BlameBlock block = blocks.get(commitIndex);
+			if (block == null) {
+				block = new BlameBlock(commits.get(commitIndex), new ArrayList<>());
+				blocks.put(commitIndex, block);
+			}
+			block.getRanges().add(new LinearRange(line, endLine));
+			line = endLine + 1;
+		}
+		return new ArrayList<>(blocks.values());
+	}
+
+	byte[] toBytes() {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream os = new DataOutputStream(baos)) {
+			os.writeInt(commits.size());
+			for (BlameCommit commit: commits) {
+				writeString(os, commit.getHash());
+				writePerson(os, commit.getCommitter());
+				writePerson(os, commit.getAuthor());
+				writeString(os, commit.getSubject());
+			}
+
+			List<int[]> runs = new ArrayList<>();
+			for (int line=0; line<lineCommits.length; line++) {
+				if (!runs.isEmpty() && runs.get(runs.size()-1)[1] == lineCommits[line])
+					runs.get(runs.size()-1)[0]++;
+				else
+					runs.add(new int[] {1, lineCommits[line]});
+			}
+			os.writeInt(runs.size());
+			for (int[] run: runs) {
+				os.writeInt(run[0]);
+				os.writeInt(run[1]);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return baos.toByteArray();
+	}
+
+	static FileBlame fromBytes(byte[] bytes, int offset) {
+		try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(bytes, offset, bytes.length - offset))) {
+			int commitCount = is.readInt();
+			List<BlameCommit> commits = new ArrayList<>(commitCount);
+			for (int i=0; i<commitCount; i++) {
+				String hash = readString(is);
+				PersonIdent committer = readPerson(is);
+				PersonIdent author = readPerson(is);
+				commits.add(new BlameCommit(hash, committer, author, readString(is)));
+			}
+
+			int runCount = is.readInt();
+			List<int[]> runs = new ArrayList<>(runCount);
+			int lineCount = 0;
+			for (int i=0; i<runCount; i++) {
+				int[] run = new int[] {is.readInt(), is.readInt()};
+				lineCount += run[0];
+				runs.add(run);
+			}
+			int[] lineCommits = new int[lineCount];
+			int line = 0;
+			for (int[] run: runs) {
+				for (int i=0; i<run[0]; i++)
+					lineCommits[line++] = run[1];
+			}
+			return new FileBlame(commits, lineCommits);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static void writePerson(DataOutputStream os, PersonIdent person) throws IOException {
+		writeString(os, person.getName());
+		writeString(os, person.getEmailAddress());
+		os.writeLong(person.getWhen().getTime());
+	}
+
+	private static PersonIdent readPerson(DataInputStream is) throws IOException {
+		String name = readString(is);
+		String email = readString(is);
+		return GitUtils.newPersonIdent(name, email, new Date(is.readLong()));
+	}
+
+	private static void writeString(DataOutputStream os, String value) throws IOException {
+		byte[] bytes = value.getBytes(UTF_8);
+		os.writeInt(bytes.length);
+		os.write(bytes);
+	}
+
+	private static String readString(DataInputStream is) throws IOException {
+		byte[] bytes = new byte[is.readInt()];
+		is.readFully(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+}
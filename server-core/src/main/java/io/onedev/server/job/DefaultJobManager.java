@@ -1,6 +1,7 @@
 package io.onedev.server.job;
 
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -56,6 +57,8 @@ import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.AccessBuild;
 import io.onedev.server.security.permission.JobPermission;
 import io.onedev.server.security.permission.ProjectPermission;
+import io.onedev.server.storage.ArtifactStore;
+import io.onedev.server.storage.ArtifactStore.ArtifactSource;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.terminal.Shell;
 import io.onedev.server.terminal.Terminal;
@@ -154,6 +157,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	private final CodeIndexManager codeIndexManager;
 
 	private final StorageManager storageManager;
+	
+	private final ArtifactStore artifactStore;
 
 	private final GitService gitService;
 	
@@ -173,7 +178,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 							 ExecutorService executorService, SessionManager sessionManager, BuildParamManager buildParamManager,
 							 ProjectManager projectManager, Validator validator, TaskScheduler taskScheduler,
 							 ClusterManager clusterManager, CodeIndexManager codeIndexManager, StorageManager storageManager,
-							 PullRequestManager pullRequestManager, GitService gitService, SSLFactory sslFactory, Dao dao) {
+							 ArtifactStore artifactStore, PullRequestManager pullRequestManager, GitService gitService, 
+							 SSLFactory sslFactory, Dao dao) {
 		this.dao = dao;
 		this.settingManager = settingManager;
 		this.buildManager = buildManager;
@@ -190,6 +196,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		this.codeIndexManager = codeIndexManager;
 		this.clusterManager = clusterManager;
 		this.storageManager = storageManager;
+		this.artifactStore = artifactStore;
 		this.pullRequestManager = pullRequestManager;
 		this.gitService = gitService;
 		this.sslFactory = sslFactory;
@@ -1465,65 +1472,82 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 
 	@Sessional
 	@Override
-	public void copyDependencies(JobContext jobContext, File tempDir) {
+	public void copyDependencies(JobContext jobContext, File tempDir, boolean link) {
 		Build build = buildManager.load(jobContext.getBuildId());
-		for (BuildDependence dependence : build.getDependencies()) {
-			if (dependence.getArtifacts() != null) {
-				Build dependency = dependence.getDependency();
-
-				File targetDir;
-				if (dependence.getDestinationPath() != null) {
-					targetDir = new File(tempDir, dependence.getDestinationPath());
-					FileUtils.createDir(targetDir);
-				} else {
-					targetDir = tempDir;
-				}
-
-				UUID dependencyStorageServerUUID = projectManager.getStorageServerUUID(
-						dependency.getProject().getId(), true);
-				if (dependencyStorageServerUUID.equals(clusterManager.getLocalServerUUID())) {
-					LockUtils.read(dependency.getArtifactsLockName(), new Callable<Void>() {
-
-						@Override
-						public Void call() throws Exception {
-							File artifactsDir = dependency.getArtifactsDir();
-							if (artifactsDir.exists()) {
-								PatternSet patternSet = PatternSet.parse(dependence.getArtifacts());
-								int baseLen = artifactsDir.getAbsolutePath().length() + 1;
-								for (File file : FileUtils.listFiles(artifactsDir, patternSet.getIncludes(), patternSet.getExcludes())) {
-									FileUtils.copyFile(file,
-											new File(targetDir, file.getAbsolutePath().substring(baseLen)));
-								}
-							}
-							return null;
-						}
-
-					});
-				} else {
-					String serverUrl = clusterManager.getServerUrl(dependencyStorageServerUUID);
-					Client client = ClientBuilder.newClient();
-					try {
-						WebTarget target = client.target(serverUrl).path("~api/cluster/artifacts")
-								.queryParam("projectId", dependency.getProject().getId())
-								.queryParam("buildNumber", dependency.getNumber())
+		Client client = null;
+		try {
+			for (BuildDependence dependence : build.getDependencies()) {
+				if (dependence.getArtifacts() != null) {
+					Build dependency = dependence.getDependency();
+					Long dependencyProjectId = dependency.getProject().getId();
+					Long dependencyNumber = dependency.getNumber();
+	
+					File targetDir;
+					if (dependence.getDestinationPath() != null) {
+						targetDir = new File(tempDir, dependence.getDestinationPath());
+						FileUtils.createDir(targetDir);
+					} else {
+						targetDir = tempDir;
+					}
+	
+					PatternSet patternSet = PatternSet.parse(dependence.getArtifacts());
+					UUID dependencyStorageServerUUID = projectManager.getStorageServerUUID(dependencyProjectId, true);
+					if (dependencyStorageServerUUID.equals(clusterManager.getLocalServerUUID())) {
+						artifactStore.materialize(dependencyProjectId, dependencyNumber, patternSet, targetDir, link);
+					} else {
+						/*
+						 * Fetch manifest of dependency artifacts first, and only download artifacts whose 
+						 * content is not available in local artifact store 
+						 */
+						if (client == null)
+							client = ClientBuilder.newClient();
+						String serverUrl = clusterManager.getServerUrl(dependencyStorageServerUUID);
+						WebTarget target = client.target(serverUrl).path("~api/cluster/artifact-manifest")
+								.queryParam("projectId", dependencyProjectId)
+								.queryParam("buildNumber", dependencyNumber)
 								.queryParam("artifacts", dependence.getArtifacts());
 						Invocation.Builder builder = target.request();
 						builder.header(HttpHeaders.AUTHORIZATION, KubernetesHelper.BEARER + " "
 								+ clusterManager.getCredentialValue());
-
+	
+						Map<String, String> manifest = new LinkedHashMap<>();
 						try (Response response = builder.get()) {
 							KubernetesHelper.checkStatus(response);
-							try (InputStream is = response.readEntity(InputStream.class)) {
-								FileUtils.untar(is, targetDir, false);
-							} catch (IOException e) {
-								throw new RuntimeException(e);
+							for (String line: Splitter.on('\n').omitEmptyStrings().split(response.readEntity(String.class))) {
+								String hash = StringUtils.substringBefore(line, "\t");
+								manifest.put(StringUtils.substringAfter(line, "\t"), hash);
 							}
 						}
-					} finally {
-						client.close();
+						
+						Client clientCopy = client;
+						artifactStore.materialize(manifest, new ArtifactSource() {
+
+							@Override
+							public InputStream open(String artifactPath) throws IOException {
+								WebTarget target = clientCopy.target(serverUrl).path("~api/cluster/artifact")
+										.queryParam("projectId", dependencyProjectId)
+										.queryParam("buildNumber", dependencyNumber)
+										.queryParam("artifactPath", artifactPath);
+								Invocation.Builder builder = target.request();
+								builder.header(HttpHeaders.AUTHORIZATION, KubernetesHelper.BEARER + " "
+										+ clusterManager.getCredentialValue());
+								Response response = builder.get();
+								try {
+									KubernetesHelper.checkStatus(response);
+								} catch (Exception e) {
+									response.close();
+									throw e;
+								}
+								return response.readEntity(InputStream.class);
+							}
+							
+						}, targetDir, link);
 					}
 				}
 			}
+		} finally {
+			if (client != null)
+				client.close();
 		}
 	}
 
@@ -54,7 +54,7 @@ public interface JobManager {
 	
 	Map<CacheInstance, String> allocateCaches(JobContext jobContext, CacheAllocationRequest request);
 
-	void copyDependencies(JobContext jobContext, File targetDir);
+	void copyDependencies(JobContext jobContext, File targetDir, boolean link);
 	
 	Map<String, byte[]> runServerStep(JobContext jobContext, List<Integer> stepPosition, File inputDir, 
 			Map<String, String> placeholderValues, boolean callByAgent, TaskLogger logger);
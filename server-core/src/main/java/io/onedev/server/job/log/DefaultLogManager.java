@@ -16,8 +16,10 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.Lock;
@@ -31,6 +33,8 @@ import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -51,14 +55,18 @@ import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.Listen;
 import io.onedev.server.event.project.build.BuildFinished;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Build;
 import io.onedev.server.buildspecmodel.inputspec.SecretInput;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
 import io.onedev.server.web.websocket.WebSocketManager;
 
 @Singleton
-public class DefaultLogManager implements LogManager, Serializable {
+public class DefaultLogManager implements LogManager, SchedulableTask, Serializable {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultLogManager.class);
 	
@@ -71,6 +79,9 @@ public class DefaultLogManager implements LogManager, Serializable {
 	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("HH:mm:ss");	
 	
 	private static final Pattern EOL_PATTERN = Pattern.compile("\r?\n");
+	
+	// Log changes of a build are notified to log viewers at most once within this interval
+	private static final long LOG_CHANGE_NOTIFY_INTERVAL = 1000;
 
 	private final StorageManager storageManager;
 	
@@ -84,13 +95,22 @@ public class DefaultLogManager implements LogManager, Serializable {
 	
 	private final Map<String, TaskLogger> jobLoggers = new ConcurrentHashMap<>();
 	
+	private final Map<Long, Long> logChangeNotifyTimes = new ConcurrentHashMap<>();
+	
+	private final Set<Long> pendingLogChanges = ConcurrentHashMap.newKeySet();
+	
+	private final TaskScheduler taskScheduler;
+	
+	private String taskId;
+	
 	@Inject
 	public DefaultLogManager(StorageManager storageManager, WebSocketManager webSocketManager, 
-			ProjectManager projectManager, BuildManager buildManager) {
+			ProjectManager projectManager, BuildManager buildManager, TaskScheduler taskScheduler) {
 		this.storageManager = storageManager;
 		this.webSocketManager = webSocketManager;
 		this.projectManager = projectManager;
 		this.buildManager = buildManager;
+		this.taskScheduler = taskScheduler;
 	}
 	
 	public Object writeReplace() throws ObjectStreamException {
@@ -156,7 +176,7 @@ public class DefaultLogManager implements LogManager, Serializable {
 										throw new RuntimeException(e);
 									}
 								}
-								webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(buildId));
+								notifyLogChange(buildId);
 							}
 						}
 						return null;
@@ -218,6 +238,52 @@ public class DefaultLogManager implements LogManager, Serializable {
 		};
 	}
 	
+	/*
+	 * Chatty jobs may log thousands of lines per second, and notifying observable change for 
+	 * each line results in a cluster task per line. So we notify at most once per interval 
+	 * per build, and let the scheduled task notify the remaining changes 
+	 */
+	private void notifyLogChange(Long buildId) {
+		long now = System.currentTimeMillis();
+		Long lastNotifyTime = logChangeNotifyTimes.get(buildId);
+		if (lastNotifyTime == null || now - lastNotifyTime >= LOG_CHANGE_NOTIFY_INTERVAL) {
+			logChangeNotifyTimes.put(buildId, now);
+			pendingLogChanges.remove(buildId);
+			webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(buildId));
+		} else {
+			pendingLogChanges.add(buildId);
+		}
+	}
+	
+	@Override
+	public void execute() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Long> it = pendingLogChanges.iterator(); it.hasNext();) {
+			Long buildId = it.next();
+			it.remove();
+			logChangeNotifyTimes.put(buildId, now);
+			webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(buildId));
+		}
+		logChangeNotifyTimes.entrySet().removeIf(it -> now - it.getValue() >= LOG_CHANGE_NOTIFY_INTERVAL 
+				&& !pendingLogChanges.contains(it.getKey()));
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatSecondlyForever();
+	}
+	
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+	
 	@Sessional
 	protected void doInSession(LogInstruction instruction, Long buildId, 
 			Map<String, List<String>> params, TaskLogger logger) {
@@ -436,6 +502,9 @@ public class DefaultLogManager implements LogManager, Serializable {
 	@Listen
 	public void on(BuildFinished event) {
 		Build build = event.getBuild();
+		if (pendingLogChanges.remove(build.getId()))
+			webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(build.getId()));
+		logChangeNotifyTimes.remove(build.getId());
 		LockUtils.write(getLockName(build.getProject().getId(), build.getNumber()), new Callable<Void>() {
 
 			@Override
@@ -6,6 +6,7 @@ import com.hazelcast.cluster.MembershipEvent;
 import com.hazelcast.cluster.MembershipListener;
 import com.ibm.icu.impl.locale.XCldrStub.Splitter;
 import com.sun.mail.imap.IMAPFolder;
+import com.sun.mail.smtp.SMTPSendFailedException;
 import edu.emory.mathcs.backport.java.util.Arrays;
 import io.onedev.commons.bootstrap.Bootstrap;
 import io.onedev.commons.loader.ManagedSerializedForm;
@@ -69,9 +70,11 @@ import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.attribute.FileTime;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -88,6 +91,22 @@ public class DefaultMailManager implements MailManager, Serializable {
 	
 	private static final String SIGNATURE_PREFIX = "-- ";
 	
+	private static final int MAX_SMTP_TRANSPORTS = 4;
+	
+	private static final long MAX_SMTP_TRANSPORT_IDLE_TIME = 60000;
+	
+	private static final long MAX_SMTP_TRANSPORT_AGE = 600000;
+	
+	private static final int MAX_QUEUED_MAILS = 10000;
+	
+	private static final int MAIL_QUEUE_TIMEOUT = 30;
+	
+	private static final int MAIL_DISPATCH_POLL_INTERVAL = 10;
+	
+	private static final int MAX_MAIL_SEND_ATTEMPTS = 3;
+	
+	private static final long MAIL_RETRY_DELAY = 5000;
+	
 	private final SettingManager settingManager;
 	
 	private final TransactionManager transactionManager;
@@ -122,6 +141,13 @@ public class DefaultMailManager implements MailManager, Serializable {
 	
 	private final ClusterManager clusterManager;
 	
+	private final SmtpTransportPool transportPool = new SmtpTransportPool(MAX_SMTP_TRANSPORTS, 
+			MAX_SMTP_TRANSPORT_IDLE_TIME, MAX_SMTP_TRANSPORT_AGE);
+	
+	private final BlockingQueue<QueuedMail> mailQueue = new LinkedBlockingQueue<>(MAX_QUEUED_MAILS);
+	
+	private volatile boolean dispatching;
+	
 	private volatile Thread thread;
 	
 	@Inject
@@ -162,28 +188,82 @@ public class DefaultMailManager implements MailManager, Serializable {
 	public void sendMailAsync(Collection<String> toList, Collection<String> ccList, Collection<String> bccList, 
 							  String subject, String htmlBody, String textBody, @Nullable String replyAddress, 
 							  @Nullable String senderName, @Nullable String references) {
+		if (toList.isEmpty() && ccList.isEmpty() && bccList.isEmpty())
+			return;
+		
+		QueuedMail mail = new QueuedMail(toList, ccList, bccList, subject, htmlBody, textBody, 
+				replyAddress, senderName, references);
 		transactionManager.runAfterCommit(new Runnable() {
 
 			@Override
 			public void run() {
-				executorService.execute(new Runnable() {
-
-					@Override
-					public void run() {
-						try {
-							sendMail(toList, ccList, bccList, subject, htmlBody, textBody, replyAddress, 
-									senderName, references);
-						} catch (Exception e) {
-							logger.error("Error sending email (to: " + toList + ", subject: " + subject + ")", e);
-						}		
+				/*
+				 * Block committing thread for a while if mails can not be sent as fast as they are 
+				 * produced, instead of piling up mails in memory unboundedly 
+				 */
+				try {
+					if (!mailQueue.offer(mail, MAIL_QUEUE_TIMEOUT, TimeUnit.SECONDS)) {
+						logger.error("Mail queue is full, dropping email (to: " + toList 
+								+ ", subject: " + subject + ")");
 					}
-					
-				});
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
 			}
 			
 		});
 	}
 	
+	private void dispatchMails() {
+		while (dispatching) {
+			QueuedMail mail;
+			try {
+				mail = mailQueue.poll(MAIL_DISPATCH_POLL_INTERVAL, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				break;
+			}
+			if (mail == null) {
+				transportPool.evictIdleTransports();
+				continue;
+			}
+			
+			for (int attempt=1;; attempt++) {
+				try {
+					doSendMail(null, mail.toList, mail.ccList, mail.bccList, mail.subject, mail.htmlBody, 
+							mail.textBody, mail.replyAddress, mail.senderName, mail.references);
+					break;
+				} catch (Exception e) {
+					String errorMessage = "Error sending email (to: " + mail.toList + ", subject: " + mail.subject + ")";
+					if (attempt < MAX_MAIL_SEND_ATTEMPTS && dispatching && isTransient(e)) {
+						logger.warn(errorMessage + ", will retry later: " + e.getMessage());
+						try {
+							Thread.sleep(MAIL_RETRY_DELAY * (1L << (attempt-1)));
+						} catch (InterruptedException e2) {
+							break;
+						}
+					} else {
+						logger.error(errorMessage, e);
+						break;
+					}
+				}
+			}
+		}
+	}
+	
+	/*
+	 * Rejected recipients, authentication failures and malformed addresses will not be fixed 
+	 * by sending again
+	 */
+	private boolean isTransient(Exception e) {
+		if (e instanceof SMTPSendFailedException) 
+			return ((SMTPSendFailedException) e).getReturnCode() / 100 == 4;
+		else 
+			return e instanceof MessagingException 
+					&& !(e instanceof SendFailedException) 
+					&& !(e instanceof AuthenticationFailedException) 
+					&& !(e instanceof AddressException);
+	}
+	
 	private String getThreadIndex(String references) {
 		byte[] threadIndexBytes = new byte[22];
 		FileTime ft = FileTime.fromMillis(System.currentTimeMillis());
@@ -224,6 +304,19 @@ public class DefaultMailManager implements MailManager, Serializable {
 						 Collection<String> bccList, String subject, String htmlBody, String textBody, 
 						 @Nullable String replyAddress, @Nullable String senderName, 
 						 @Nullable String references) {
+		try {
+			doSendMail(sendSetting, toList, ccList, bccList, subject, htmlBody, textBody, replyAddress, 
+					senderName, references);
+		} catch (MessagingException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private void doSendMail(@Nullable MailSendSetting sendSetting, Collection<String> toList, 
+							Collection<String> ccList, Collection<String> bccList, String subject, 
+							String htmlBody, String textBody, @Nullable String replyAddress, 
+							@Nullable String senderName, @Nullable String references) 
+							throws MessagingException {
 		if (toList.isEmpty() && ccList.isEmpty() && bccList.isEmpty())
 			return;
 
@@ -233,87 +326,51 @@ public class DefaultMailManager implements MailManager, Serializable {
 		}
 		
 		if (sendSetting != null) {
-			Properties properties = new Properties();
-	        properties.setProperty("mail.smtp.host", sendSetting.getSmtpHost());
-	        properties.setProperty("mail.smtp.port", String.valueOf(sendSetting.getSmtpPort()));
-	        properties.setProperty("mail.transport.protocol", "smtp");
-	 
-	        properties.setProperty("mail.smtp.connectiontimeout", String.valueOf(Bootstrap.SOCKET_CONNECT_TIMEOUT));
-	        properties.setProperty("mail.smtp.timeout", String.valueOf(sendSetting.getTimeout()*1000));
-	        properties.setProperty("mail.smtp.starttls.enable", String.valueOf(sendSetting.isEnableStartTLS()));
-	        properties.setProperty("mail.smtp.starttls.required", "false");
-	        
-	        Authenticator authenticator;
-	        if (sendSetting.getSmtpUser() != null) {
-	        	properties.setProperty("mail.smtp.auth", "true");
-	        	if (sendSetting.getSmtpCredential() instanceof OAuthAccessToken)
-	        		properties.setProperty("mail.smtp.auth.mechanisms", "XOAUTH2");
-	        	String smtpUser = sendSetting.getSmtpUser();
-	        	String credentialValue = sendSetting.getSmtpCredential()!=null?sendSetting.getSmtpCredential().getValue():null;
-	        	authenticator = new Authenticator() {
-		        	
-		            @Override
-		            protected PasswordAuthentication getPasswordAuthentication() {
-		                return new PasswordAuthentication(smtpUser, credentialValue);
-		            }
-		            
-		        };	        	
-	        } else {
-	        	authenticator = null;
-	        }
-	        
-	        try {
-				Session session = Session.getInstance(properties, authenticator);	        
-				
-				MimeMultipart bodyPart = new MimeMultipart("alternative");
-				
-				MimeBodyPart htmlPart = new MimeBodyPart();
-				htmlPart.setContent(htmlBody, "text/html; charset=" + StandardCharsets.UTF_8.name());
-				bodyPart.addBodyPart(htmlPart, 0);
-				
-				MimeBodyPart textPart = new MimeBodyPart();
-				textPart.setText(textBody, StandardCharsets.UTF_8.name());
-				bodyPart.addBodyPart(textPart, 0);
+			Session session = transportPool.getSession(sendSetting);
+			
+			MimeMultipart bodyPart = new MimeMultipart("alternative");
+			
+			MimeBodyPart htmlPart = new MimeBodyPart();
+			htmlPart.setContent(htmlBody, "text/html; charset=" + StandardCharsets.UTF_8.name());
+			bodyPart.addBodyPart(htmlPart, 0);
+			
+			MimeBodyPart textPart = new MimeBodyPart();
+			textPart.setText(textBody, StandardCharsets.UTF_8.name());
+			bodyPart.addBodyPart(textPart, 0);
 
-				Message message = new MimeMessage(session);
-				
-				if (references != null) {
-				    Map<String, String> headers = CollectionUtils.newHashMap(
-				    		"References", references, 
-				    		"In-Reply-To", references, 
-				    		"Thread-Index", getThreadIndex(references));
-				    
-				    for (Map.Entry<String, String> entry: headers.entrySet())
-				    	message.addHeader(entry.getKey(), createFoldedHeaderValue(entry.getKey(), entry.getValue()));
-				}
-				
-				if (senderName == null)
-					senderName = QUOTE_MARK;
-				else 
-					senderName += " " + QUOTE_MARK;
-				message.setFrom(createInetAddress(sendSetting.getSenderAddress(), senderName));
-				
-				if (toList.isEmpty() && ccList.isEmpty() && bccList.isEmpty())
-					throw new ExplicitException("At least one receiver address should be specified");
-				
-				message.setRecipients(RecipientType.TO, 
-						toList.stream().map(it->createInetAddress(it, null)).toArray(InternetAddress[]::new));
-				message.setRecipients(RecipientType.CC, 
-						ccList.stream().map(it->createInetAddress(it, null)).toArray(InternetAddress[]::new));
-				message.setRecipients(RecipientType.BCC, 
-						bccList.stream().map(it->createInetAddress(it, null)).toArray(InternetAddress[]::new));
-				if (replyAddress != null)
-					message.setReplyTo(new InternetAddress[]{createInetAddress(replyAddress, null)});
+			Message message = new MimeMessage(session);
+			
+			if (references != null) {
+			    Map<String, String> headers = CollectionUtils.newHashMap(
+			    		"References", references, 
+			    		"In-Reply-To", references, 
+			    		"Thread-Index", getThreadIndex(references));
+			    
+			    for (Map.Entry<String, String> entry: headers.entrySet())
+			    	message.addHeader(entry.getKey(), createFoldedHeaderValue(entry.getKey(), entry.getValue()));
+			}
+			
+			if (senderName == null)
+				senderName = QUOTE_MARK;
+			else 
+				senderName += " " + QUOTE_MARK;
+			message.setFrom(createInetAddress(sendSetting.getSenderAddress(), senderName));
+			
+			message.setRecipients(RecipientType.TO, 
+					toList.stream().map(it->createInetAddress(it, null)).toArray(InternetAddress[]::new));
+			message.setRecipients(RecipientType.CC, 
+					ccList.stream().map(it->createInetAddress(it, null)).toArray(InternetAddress[]::new));
+			message.setRecipients(RecipientType.BCC, 
+					bccList.stream().map(it->createInetAddress(it, null)).toArray(InternetAddress[]::new));
+			if (replyAddress != null)
+				message.setReplyTo(new InternetAddress[]{createInetAddress(replyAddress, null)});
 
-				message.setSubject(subject);
-				message.setContent(bodyPart);
+			message.setSubject(subject);
+			message.setContent(bodyPart);
 
-				logger.debug("Sending email (subject: {}, to: {}, cc: {}, bcc: {})... ", subject, toList, ccList, bccList);
-				
-	            Transport.send(message);
-			} catch (MessagingException e) {
-				throw new RuntimeException(e);
-			}
+			logger.debug("Sending email (subject: {}, to: {}, cc: {}, bcc: {})... ", subject, toList, ccList, bccList);
+			
+			transportPool.send(sendSetting, message);
 		} else {
 			logger.warn("Unable to send mail as mail setting is not specified");
 		}
@@ -871,10 +928,25 @@ public class DefaultMailManager implements MailManager, Serializable {
 			}
 		});
 		thread.start();
+		
+		dispatching = true;
+		for (int i=0; i<MAX_SMTP_TRANSPORTS; i++) {
+			executorService.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					dispatchMails();
+				}
+				
+			});
+		}
 	}
 	
 	@Listen
 	public void on(SystemStopping event) {
+		dispatching = false;
+		transportPool.close();
+		
 		Thread copy = thread;
 		thread = null;
 		if (copy != null) {
@@ -1197,6 +1269,42 @@ public class DefaultMailManager implements MailManager, Serializable {
 		return comment.contains(String.format("<div class='%s'>", COMMENT_MARKER));
 	}
 
+	private static class QueuedMail {
+		
+		final Collection<String> toList;
+		
+		final Collection<String> ccList;
+		
+		final Collection<String> bccList;
+		
+		final String subject;
+		
+		final String htmlBody;
+		
+		final String textBody;
+		
+		final String replyAddress;
+		
+		final String senderName;
+		
+		final String references;
+
+		QueuedMail(Collection<String> toList, Collection<String> ccList, Collection<String> bccList, 
+				String subject, String htmlBody, String textBody, @Nullable String replyAddress, 
+				@Nullable String senderName, @Nullable String references) {
+			this.toList = toList;
+			this.ccList = ccList;
+			this.bccList = bccList;
+			this.subject = subject;
+			this.htmlBody = htmlBody;
+			this.textBody = textBody;
+			this.replyAddress = replyAddress;
+			this.senderName = senderName;
+			this.references = references;
+		}
+		
+	}
+	
 	private static class ImageAttachment extends Attachment {
 
 		public ImageAttachment(String url, String fileName) {
@@ -0,0 +1,258 @@
+package io.onedev.server.mail;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Semaphore;
+
+import javax.annotation.Nullable;
+import javax.mail.Address;
+import javax.mail.Authenticator;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.PasswordAuthentication;
+import javax.mail.SendFailedException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang3.SerializationUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.bootstrap.Bootstrap;
+
+/**
+ * Keeps connected SMTP transports around so that consecutive mails sent to same server reuse
+ * established connections instead of doing TLS handshake and authentication for each mail.
+ * Number of transports per server is limited, and senders exceeding the limit wait for a
+ * transport to be released.
+ */
+public class SmtpTransportPool {
+
+	private static final Logger logger = LoggerFactory.getLogger(SmtpTransportPool.class);
+
+	private final int maxTransportsPerServer;
+
+	private final long maxIdleTime;
+
+	private final long maxTransportAge;
+
+	private final Map<String, Server> servers = new HashMap<>();
+
+	/**
+	 * @param maxTransportsPerServer
+	 * 			max number of transports connected to a single SMTP server
+	 * @param maxIdleTime
+	 * 			idle transports exceeding this time in milliseconds will be closed
+	 * @param maxTransportAge
+	 * 			transports connected longer than this time in milliseconds will be closed upon release.
+	 * 			This limits life of OAuth access tokens used to authenticate the connection
+	 */
+	public SmtpTransportPool(int maxTransportsPerServer, long maxIdleTime, long maxTransportAge) {
+		this.maxTransportsPerServer = maxTransportsPerServer;
+		this.maxIdleTime = maxIdleTime;
+		this.maxTransportAge = maxTransportAge;
+	}
+
+	/**
+	 * Get mail session of specified send setting. Messages passed to {@link #send(MailSendSetting, Message)}
+	 * should be created with this session
+	 */
+	public Session getSession(MailSendSetting sendSetting) {
+		return getServer(sendSetting).session;
+	}
+
+	private synchronized Server getServer(MailSendSetting sendSetting) {
+		// Send setting and its credential are immutable, so serialized form identifies the server
+		String key = DigestUtils.sha256Hex(SerializationUtils.serialize(sendSetting));
+		Server server = servers.get(key);
+		if (server == null) {
+			server = new Server(newSession(sendSetting), maxTransportsPerServer);
+			servers.put(key, server);
+		}
+		server.lastUsed = System.currentTimeMillis();
+		return server;
+	}
+
+	private Session newSession(MailSendSetting sendSetting) {
+		Properties properties = new Properties();
+		properties.setProperty("mail.smtp.host", sendSetting.getSmtpHost());
+		properties.setProperty("mail.smtp.port", String.valueOf(sendSetting.getSmtpPort()));
+		properties.setProperty("mail.transport.protocol", "smtp");
+
+		properties.setProperty("mail.smtp.connectiontimeout", String.valueOf(Bootstrap.SOCKET_CONNECT_TIMEOUT));
+		properties.setProperty("mail.smtp.timeout", String.valueOf(sendSetting.getTimeout()*1000));
+		properties.setProperty("mail.smtp.starttls.enable", String.valueOf(sendSetting.isEnableStartTLS()));
+		properties.setProperty("mail.smtp.starttls.required", "false");
+
+		Authenticator authenticator;
+		if (sendSetting.getSmtpUser() != null) {
+			properties.setProperty("mail.smtp.auth", "true");
+			if (sendSetting.getSmtpCredential() instanceof OAuthAccessToken)
+				properties.setProperty("mail.smtp.auth.mechanisms", "XOAUTH2");
+			String smtpUser = sendSetting.getSmtpUser();
+			MailCredential credential = sendSetting.getSmtpCredential();
+			authenticator = new Authenticator() {
+
+				// Called upon connecting, so that OAuth access token is only requested for new transports
+				@Override
+				protected PasswordAuthentication getPasswordAuthentication() {
+					return new PasswordAuthentication(smtpUser, credential!=null?credential.getValue():null);
+				}
+
+			};
+		} else {
+			authenticator = null;
+		}
+
+		return Session.getInstance(properties, authenticator);
+	}
+
+	/**
+	 * Send specified message over a pooled transport of specified send setting, connecting a new
+	 * one if no idle transport is available. If a reused transport turns out to be broken (for
+	 * instance closed by server due to inactivity), the message will be sent again over a new
+	 * transport
+	 *
+	 * @param sendSetting
+	 * 			send setting to locate SMTP server
+	 * @param message
+	 * 			message to send. It should be created with session returned from {@link #getSession(MailSendSetting)}
+	 * @throws MessagingException
+	 */
+	public void send(MailSendSetting sendSetting, Message message) throws MessagingException {
+		Server server = getServer(sendSetting);
+		try {
+			server.permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessagingException("Interrupted waiting for SMTP transport");
+		}
+		try {
+			message.saveChanges();
+			Address[] recipients = message.getAllRecipients();
+
+			PooledTransport transport = borrow(server);
+			if (transport != null) {
+				try {
+					transport.transport.sendMessage(message, recipients);
+					release(server, transport);
+					return;
+				} catch (SendFailedException e) {
+					close(transport);
+					throw e;
+				} catch (MessagingException e) {
+					close(transport);
+					logger.debug("Error sending over pooled SMTP transport, retrying with new transport", e);
+				}
+			}
+
+			transport = new PooledTransport(server.session.getTransport());
+			transport.transport.connect();
+			try {
+				transport.transport.sendMessage(message, recipients);
+			} catch (MessagingException e) {
+				close(transport);
+				throw e;
+			}
+			release(server, transport);
+		} finally {
+			server.permits.release();
+		}
+	}
+
+	@Nullable
+	private synchronized PooledTransport borrow(Server server) {
+		long now = System.currentTimeMillis();
+		PooledTransport transport;
+		while ((transport = server.idleTransports.pollFirst()) != null) {
+			if (now - transport.lastUsed < maxIdleTime && now - transport.connected < maxTransportAge)
+				return transport;
+			else
+				close(transport);
+		}
+		return null;
+	}
+
+	private synchronized void release(Server server, PooledTransport transport) {
+		transport.lastUsed = System.currentTimeMillis();
+		if (transport.lastUsed - transport.connected < maxTransportAge)
+			server.idleTransports.addFirst(transport);
+		else
+			close(transport);
+	}
+
+	private void close(PooledTransport transport) {
+		try {
+			transport.transport.close();
+		} catch (Exception e) {
+			logger.debug("Error closing SMTP transport", e);
+		}
+	}
+
+	/**
+	 * Close transports idle longer than max idle time, and forget servers no longer used
+	 */
+	public synchronized void evictIdleTransports() {
+		long now = System.currentTimeMillis();
+		for (Iterator<Map.Entry<String, Server>> it = servers.entrySet().iterator(); it.hasNext();) {
+			Server server = it.next().getValue();
+			for (Iterator<PooledTransport> itTransport = server.idleTransports.iterator(); itTransport.hasNext();) {
+				PooledTransport transport = itTransport.next();
+				if (now - transport.lastUsed >= maxIdleTime) {
+					close(transport);
+					itTransport.remove();
+				}
+			}
+			if (server.idleTransports.isEmpty()
+					&& server.permits.availablePermits() == maxTransportsPerServer
+					&& now - server.lastUsed >= maxIdleTime) {
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void close() {
+		for (Server server: servers.values()) {
+			for (PooledTransport transport: server.idleTransports)
+				close(transport);
+		}
+		servers.clear();
+	}
+
+	private static class Server {
+
+		final Session session;
+
+		final Semaphore permits;
+
+		final Deque<PooledTransport> idleTransports = new ArrayDeque<>();
+
+		long lastUsed;
+
+		Server(Session session, int maxTransports) {
+			this.session = session;
+			permits = new Semaphore(maxTransports, true);
+		}
+
+	}
+
+	private static class PooledTransport {
+
+		final Transport transport;
+
+		final long connected = System.currentTimeMillis();
+
+		long lastUsed = connected;
+
+		PooledTransport(Transport transport) {
+			this.transport = transport;
+		}
+
+	}
+
+}
@@ -1,5 +1,9 @@
 package io.onedev.server.markdown;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
 import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
 import com.vladsch.flexmark.ext.autolink.AutolinkExtension;
 import com.vladsch.flexmark.ext.definition.DefinitionExtension;
@@ -20,12 +24,26 @@ import com.vladsch.flexmark.util.data.DataHolder;
 import com.vladsch.flexmark.util.data.MutableDataHolder;
 import com.vladsch.flexmark.util.data.MutableDataSet;
 import com.vladsch.flexmark.util.misc.Extension;
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.StringUtils;
+import io.onedev.server.OneDev;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
-import io.onedev.server.model.Project;
+import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.*;
+import io.onedev.server.persistence.TransactionManager;
 import io.onedev.server.util.HtmlUtils;
 import io.onedev.server.web.component.markdown.SuggestionSupport;
 import io.onedev.server.web.page.project.blob.render.BlobRenderContext;
 import io.onedev.server.web.resource.AttachmentResource;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.wicket.request.cycle.RequestCycle;
 import org.jetbrains.annotations.NotNull;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
@@ -33,26 +51,67 @@ import org.jsoup.nodes.Element;
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-import java.util.Set;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 @Singleton
-public class DefaultMarkdownManager implements MarkdownManager {
+public class DefaultMarkdownManager implements MarkdownManager, Serializable {
+	
+	private static final long serialVersionUID = 1L;
+
+	private static final long MAX_CACHE_WEIGHT = 16*1024*1024;
+	
+	private static final int MAX_BUILD_VERSIONS = 10000;
 	
 	private final SettingManager settingManager;
 	
+	private final TransactionManager transactionManager;
+	
+	private final ClusterManager clusterManager;
+	
 	private final Set<Extension> contributedExtensions;
 	
 	private final Set<MarkdownProcessor> htmlTransformers;
 	
+	private final Parser parser;
+	
+	private final HtmlRenderer renderer;
+	
+	private final Cache<ProcessKey, Processed> processCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHE_WEIGHT)
+			.weigher((Weigher<ProcessKey, Processed>) (key, value) -> value.html.length())
+			.recordStats()
+			.build();
+	
+	private final Cache<String, Optional<String>> buildVersionCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_BUILD_VERSIONS)
+			.expireAfterWrite(1, TimeUnit.MINUTES)
+			.build();
+	
 	@Inject
-	public DefaultMarkdownManager(SettingManager settingManager, Set<Extension> contributedExtensions, 
+	public DefaultMarkdownManager(SettingManager settingManager, TransactionManager transactionManager, 
+			ClusterManager clusterManager, Set<Extension> contributedExtensions, 
 			Set<MarkdownProcessor> htmlTransformers) {
 		this.settingManager = settingManager;
+		this.transactionManager = transactionManager;
+		this.clusterManager = clusterManager;
 		this.contributedExtensions = contributedExtensions;
 		this.htmlTransformers = htmlTransformers;
+		
+		// Parser and renderer are thread-safe and are expensive to build, so reuse them
+		MutableDataHolder options = setupOptions();
+		parser = Parser.builder(options).build();
+		renderer = HtmlRenderer.builder(options).build();
+	}
+	
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(MarkdownManager.class);
 	}
 
 	private MutableDataHolder setupOptions() {
@@ -82,8 +141,7 @@ public class DefaultMarkdownManager implements MarkdownManager {
 	
 	@Override
 	public String render(String markdown) {
-		Node node = parse(markdown);
-		return HtmlRenderer.builder(setupOptions()).build().render(node);
+		return renderer.render(parse(markdown));
 	}
 
 	@Override
@@ -114,13 +172,127 @@ public class DefaultMarkdownManager implements MarkdownManager {
 			@Nullable BlobRenderContext blobRenderContext, 
 			@Nullable SuggestionSupport suggestionSupport, 
 			boolean forExternal) {
-		return process(HtmlUtils.parse(html), project, blobRenderContext, suggestionSupport, forExternal).body().html();
+		if (blobRenderContext == null && suggestionSupport == null) {
+			/*
+			 * Links generated by Wicket are relative to current url, so base url has to be 
+			 * part of the cache key 
+			 */
+			String baseUrl;
+			if (RequestCycle.get() != null)
+				baseUrl = RequestCycle.get().getUrlRenderer().getBaseUrl().toString();
+			else
+				baseUrl = null;
+			ProcessKey key = new ProcessKey(DigestUtils.sha256Hex(html.getBytes(UTF_8)), 
+					project != null? project.getId(): null, forExternal, baseUrl);
+			Processed processed = processCache.getIfPresent(key);
+			if (processed == null || !processed.isValid()) {
+				Document document = process(HtmlUtils.parse(html), project, null, null, forExternal);
+				processed = new Processed(document.body().html());
+				processed.collectReferences(document);
+				processCache.put(key, processed);
+			}
+			return processed.html;
+		} else {
+			return process(HtmlUtils.parse(html), project, blobRenderContext, suggestionSupport, forExternal).body().html();
+		}
+	}
+	
+	/*
+	 * Rendered references are validated when cache entry is read, so changes of issues and 
+	 * pull requests do not invalidate the cache. Creation of user or project may turn plain 
+	 * text into references, and project path and user name are encoded into rendered links
+	 */
+	@Listen
+	public void on(EntityPersisted event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof User && event.isNew() || entity instanceof Project) 
+			invalidateAfterCommit();
+		else if (entity instanceof Build) 
+			invalidateBuildVersionAfterCommit(((Build) entity).getFQN().toString());
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof User || entity instanceof Project)
+			invalidateAfterCommit();
+	}
+	
+	private void invalidateAfterCommit() {
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						processCache.invalidateAll();
+						buildVersionCache.invalidateAll();
+						return null;
+					}
+					
+				});
+			}
+			
+		});
+	}
+	
+	private void invalidateBuildVersionAfterCommit(String reference) {
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				buildVersionCache.invalidate(reference);
+			}
+			
+		});
+	}
+	
+	@Nullable
+	private Project findProject(String reference) {
+		String projectPath = StringUtils.substringBefore(reference, "#");
+		return projectPath.length() != 0? OneDev.getInstance(ProjectManager.class).findByPath(projectPath): null;
+	}
+	
+	/*
+	 * Build version is rendered into build reference. It is cached to avoid hitting database 
+	 * on each cache read, and may be stale for a short while on other servers of the cluster
+	 */
+	private Optional<String> getBuildVersion(String reference) {
+		try {
+			return buildVersionCache.get(reference, new Callable<Optional<String>>() {
+
+				@Override
+				public Optional<String> call() throws Exception {
+					Project project = findProject(reference);
+					if (project != null) {
+						try {
+							Long number = Long.valueOf(StringUtils.substringAfter(reference, "#"));
+							Build build = OneDev.getInstance(BuildManager.class).find(project, number);
+							if (build != null)
+								return Optional.ofNullable(build.getVersion());
+						} catch (NumberFormatException e) {
+						}
+					}
+					return Optional.empty();
+				}
+				
+			});
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	@Override
+	public CacheStats getCacheStats() {
+		return processCache.stats();
 	}
 
 	@Override
 	public Node parse(String markdown) {
-		MutableDataHolder options = setupOptions();
-		Parser parser = Parser.builder(options).build();
 		return parser.parse(markdown);
 	}
 
@@ -172,4 +344,92 @@ public class DefaultMarkdownManager implements MarkdownManager {
 		return Formatter.builder().extensions(extensions).build().render(node);	
 	}
 	
+	private static class ProcessKey {
+		
+		private final String htmlHash;
+		
+		private final Long projectId;
+		
+		private final boolean forExternal;
+		
+		private final String baseUrl;
+		
+		ProcessKey(String htmlHash, @Nullable Long projectId, boolean forExternal, @Nullable String baseUrl) {
+			this.htmlHash = htmlHash;
+			this.projectId = projectId;
+			this.forExternal = forExternal;
+			this.baseUrl = baseUrl;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof ProcessKey)) 
+				return false;
+			if (this == other)
+				return true;
+			ProcessKey otherKey = (ProcessKey) other;
+			return htmlHash.equals(otherKey.htmlHash) 
+					&& Objects.equals(projectId, otherKey.projectId) 
+					&& forExternal == otherKey.forExternal 
+					&& Objects.equals(baseUrl, otherKey.baseUrl);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(htmlHash, projectId, forExternal, baseUrl);
+		}
+		
+	}
+	
+	private class Processed {
+		
+		private final String html;
+		
+		private final Set<String> references = new HashSet<>();
+		
+		private final Map<String, Optional<String>> buildVersions = new HashMap<>();
+		
+		private final Set<String> mentions = new HashSet<>();
+		
+		Processed(String html) {
+			this.html = html;
+		}
+		
+		void collectReferences(Document document) {
+			for (Element element: document.body().getElementsByAttribute("data-reference")) {
+				String reference = element.attr("data-reference");
+				if (element.hasClass("issue") || element.hasClass("pull-request")) 
+					references.add(reference);
+				else if (element.hasClass("build")) 
+					buildVersions.put(reference, getBuildVersion(reference));
+				else if (element.hasClass("mention")) 
+					mentions.add(reference);
+			}
+		}
+		
+		/*
+		 * Check whether rendered references are still the same. Projects and users are looked 
+		 * up from in-memory caches, and build versions from build version cache
+		 */
+		boolean isValid() {
+			for (String reference: references) {
+				if (findProject(reference) == null)
+					return false;
+			}
+			for (Map.Entry<String, Optional<String>> entry: buildVersions.entrySet()) {
+				if (findProject(entry.getKey()) == null 
+						|| !getBuildVersion(entry.getKey()).equals(entry.getValue())) {
+					return false;
+				}
+			}
+			UserManager userManager = OneDev.getInstance(UserManager.class);
+			for (String mention: mentions) {
+				if (userManager.findByName(mention) == null)
+					return false;
+			}
+			return true;
+		}
+		
+	}
+	
 }
@@ -6,6 +6,7 @@ import javax.annotation.Nullable;
 
 import org.jsoup.nodes.Document;
 
+import com.google.common.cache.CacheStats;
 import com.vladsch.flexmark.formatter.NodeFormattingHandler;
 import com.vladsch.flexmark.util.ast.Node;
 
@@ -42,4 +43,9 @@ public interface MarkdownManager {
 	
 	String format(String markdown, Set<NodeFormattingHandler<?>> handlers);
 	
+	/**
+	 * Get statistics of processed html cache
+	 */
+	CacheStats getCacheStats();
+	
 }
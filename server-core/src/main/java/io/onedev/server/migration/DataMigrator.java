@@ -5179,4 +5179,21 @@ public class DataMigrator {
 			}
 		}
 	}	
+	
+	private void migrate117(File dataDir, Stack<Integer> versions) {
+		for (File file: dataDir.listFiles()) {
+			if (file.getName().startsWith("Settings.xml")) {
+				VersionedXmlDoc dom = VersionedXmlDoc.fromFile(file);
+				for (Element element: dom.getRootElement().elements()) {
+					if (element.elementTextTrim("key").equals("PERFORMANCE")) {
+						Element valueElement = element.element("value");
+						if (valueElement != null) 
+							valueElement.addElement("shareLfsObjects").setText("true");
+					}
+				}
+				dom.writeToFile(file, false);
+			}
+		}
+	}
+	
 }
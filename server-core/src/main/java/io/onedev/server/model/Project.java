@@ -3,6 +3,7 @@ package io.onedev.server.model;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import io.onedev.commons.utils.ExplicitException;
@@ -23,6 +24,7 @@ import io.onedev.server.model.Build.Status;
 import io.onedev.server.model.support.*;
 import io.onedev.server.model.support.build.*;
 import io.onedev.server.model.support.code.BranchProtection;
+import io.onedev.server.model.support.code.PushRequirement;
 import io.onedev.server.model.support.code.FileProtection;
 import io.onedev.server.model.support.code.GitPackConfig;
 import io.onedev.server.model.support.code.TagProtection;
@@ -51,9 +53,6 @@ import io.onedev.server.annotation.Markdown;
 import io.onedev.server.web.page.project.setting.ContributedProjectSetting;
 import io.onedev.server.web.util.ProjectAware;
 import io.onedev.server.web.util.WicketUtils;
-import org.apache.commons.collections4.map.AbstractReferenceMap.ReferenceStrength;
-import org.apache.commons.collections4.map.ReferenceMap;
-import org.apache.commons.lang3.SerializationUtils;
 import org.apache.shiro.authz.Permission;
 import org.apache.tika.mime.MediaType;
 import org.apache.wicket.util.encoding.UrlEncoder;
@@ -162,8 +161,19 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 		stack.get().pop();
 	}
 	
-	private static final ReferenceMap<ObjectId, Optional<byte[]>> buildSpecBytesCache = 
-			new ReferenceMap<>(ReferenceStrength.HARD, ReferenceStrength.SOFT);
+	private static final int MAX_CACHED_BUILD_SPEC_COMMITS = 10000;
+	
+	// Budget of cached build specs in terms of their yaml size
+	private static final long MAX_CACHED_BUILD_SPEC_BYTES = 16*1024*1024;
+	
+	private static final com.google.common.cache.Cache<ObjectId, Optional<ObjectId>> buildSpecBlobIdCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_BUILD_SPEC_COMMITS)
+			.build();
+	
+	private static final com.google.common.cache.Cache<ObjectId, ParsedBuildSpec> parsedBuildSpecCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_BUILD_SPEC_BYTES)
+			.<ObjectId, ParsedBuildSpec>weigher((key, value) -> value.size)
+			.build();
 
 	private transient Map<ObjectId, Optional<BuildSpec>> buildSpecCache;
 
@@ -744,35 +754,32 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 	 */
 	@Nullable
 	private BuildSpec loadBuildSpec(ObjectId commitId) {
-		Optional<byte[]> buildSpecBytes;
-		synchronized (buildSpecBytesCache) {
-			buildSpecBytes = buildSpecBytesCache.get(commitId);
+		Optional<ObjectId> blobId = buildSpecBlobIdCache.getIfPresent(commitId);
+		Blob blob = null;
+		if (blobId == null) {
+			blob = getBlob(new BlobIdent(commitId.name(), BuildSpec.BLOB_PATH, FileMode.TYPE_FILE), false);
+			if (blob == null) 
+				blob = getBlob(new BlobIdent(commitId.name(), ".onedev-buildspec", FileMode.TYPE_FILE), false);
+			blobId = Optional.fromNullable(blob != null? blob.getBlobId(): null);
+			buildSpecBlobIdCache.put(commitId, blobId);
 		}
-		if (buildSpecBytes == null) {
-			Blob blob = getBlob(new BlobIdent(commitId.name(), BuildSpec.BLOB_PATH, FileMode.TYPE_FILE), false);
-			BuildSpec buildSpec;
-			if (blob != null) {  
-				buildSpec = BuildSpec.parse(blob.getBytes());
-			} else { 
-				Blob oldBlob = getBlob(new BlobIdent(commitId.name(), ".onedev-buildspec", FileMode.TYPE_FILE), false);
-				if (oldBlob != null)
-					buildSpec = BuildSpec.parse(oldBlob.getBytes());
-				else
-					buildSpec = null;
-			}
-			if (buildSpec != null)
-				buildSpecBytes = Optional.of(SerializationUtils.serialize(buildSpec));
-			else
-				buildSpecBytes = Optional.absent();
-			synchronized (buildSpecBytesCache) {
-				buildSpecBytesCache.put(commitId, buildSpecBytes);
-			}
-			return buildSpec;
-		} else if (buildSpecBytes.isPresent()) {
-			return SerializationUtils.deserialize(buildSpecBytes.get());
-		} else {
+		if (!blobId.isPresent())
 			return null;
+		
+		ParsedBuildSpec parsed = parsedBuildSpecCache.getIfPresent(blobId.get());
+		if (parsed == null) {
+			if (blob == null) {
+				blob = getBlob(new BlobIdent(commitId.name(), BuildSpec.BLOB_PATH, FileMode.TYPE_FILE), false);
+				if (blob == null) 
+					blob = getBlob(new BlobIdent(commitId.name(), ".onedev-buildspec", FileMode.TYPE_FILE), true);
+			}
+			parsed = new ParsedBuildSpec(BuildSpec.parseUncached(blob.getBytes()), blob.getBytes().length);
+			parsedBuildSpecCache.put(blobId.get(), parsed);
 		}
+		if (parsed.buildSpec != null)
+			return parsed.buildSpec.newView();
+		else
+			return null;
 	}
 	
 	@Nullable
@@ -1382,20 +1389,18 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 				&& getSettingManager().getGpgSetting().getSigningKey() == null;
 	}
 	
-	public boolean isReviewRequiredForPush(User user, String branch, ObjectId oldObjectId, 
-			ObjectId newObjectId, Map<String, String> gitEnvs) {
-		return getHierarchyBranchProtection(branch, user).isReviewRequiredForPush(user, this, branch, oldObjectId, newObjectId, gitEnvs);
+	public boolean isReviewOrBuildRequiredForPush(User user, String branch, ObjectId oldObjectId, 
+			ObjectId newObjectId, @Nullable Map<String, String> gitEnvs) {
+		BranchProtection protection = getHierarchyBranchProtection(branch, user);
+		PushRequirement requirement = protection.getPushRequirement(this, oldObjectId, newObjectId, gitEnvs);
+		return requirement.isReviewRequired() 
+				|| protection.isBuildRequiredForPush(this, newObjectId, requirement.getRequiredJobs());
 	}
 	
 	public boolean isBuildRequiredForModification(User user, String branch, @Nullable String file) {
 		return getHierarchyBranchProtection(branch, user).isBuildRequiredForModification(this, branch, file);
 	}
 	
-	public boolean isBuildRequiredForPush(User user, String branch, ObjectId oldObjectId, ObjectId newObjectId, 
-			Map<String, String> gitEnvs) {
-		return getHierarchyBranchProtection(branch, user).isBuildRequiredForPush(this, oldObjectId, newObjectId, gitEnvs);
-	}
-	
 	@Nullable
 	public List<String> readLines(BlobIdent blobIdent, WhitespaceOption whitespaceOption, boolean mustExist) {
 		Blob blob = getBlob(blobIdent, mustExist);
@@ -1699,5 +1704,19 @@ public class Project extends AbstractEntity implements LabelSupport<ProjectLabel
 		}
 		return builds;
 	}
+	
+	private static class ParsedBuildSpec {
+		
+		// Never handed out directly to avoid sharing import resolution and modifications
+		final BuildSpec buildSpec;
+		
+		final int size;
+		
+		ParsedBuildSpec(@Nullable BuildSpec buildSpec, int size) {
+			this.buildSpec = buildSpec;
+			this.size = size;
+		}
+		
+	}
 
 }
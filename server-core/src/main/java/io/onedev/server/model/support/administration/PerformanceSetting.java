@@ -24,6 +24,8 @@ public class PerformanceSetting implements Serializable {
 	
 	private int maxCodeSearchEntries = 100;
 	
+	private boolean shareLfsObjects = true;
+	
 	public PerformanceSetting() {
 		try {
 			HardwareAbstractionLayer hardware = new SystemInfo().getHardware();
@@ -74,4 +76,15 @@ public class PerformanceSetting implements Serializable {
 		this.maxCodeSearchEntries = maxCodeSearchEntries;
 	}
 
+	@Editable(order=900, name="Share Git LFS Objects", description="Whether or not to store identical "
+			+ "Git LFS objects of different projects only once via hard links. This only takes effect on unix "
+			+ "like systems with projects and site directory on same file system")
+	public boolean isShareLfsObjects() {
+		return shareLfsObjects;
+	}
+
+	public void setShareLfsObjects(boolean shareLfsObjects) {
+		this.shareLfsObjects = shareLfsObjects;
+	}
+
 }
@@ -281,11 +281,17 @@ public class BranchProtection implements Serializable {
 		return !getJobNames().isEmpty() || file != null && !getFileProtection(file).getJobNames().isEmpty();
 	}
 
+	public BuildRequirement getBuildRequirement(Project project, ObjectId oldObjectId, ObjectId newObjectId,
+												Map<String, String> gitEnvs) {
+		Collection<String> requiredJobs = getPushRequirement(project, oldObjectId, newObjectId, gitEnvs).getRequiredJobs();
+		return new BuildRequirement(requiredJobs, isRequireStrictBuilds());
+	}
+	
 	/**
-	 * Check if specified user can push specified commit to specified ref.
+	 * Evaluate review and build requirements of specified push in one go. Changed files are 
+	 * calculated at most once, and only if some file protection may still change the result. 
+	 * Matching stops as soon as all file protections are either applied or irrelevant.
 	 *
-	 * @param user
-	 * 			user to be checked
 	 * @param oldObjectId
 	 * 			old object id of the ref
 	 * @param newObjectId
@@ -293,39 +299,59 @@ public class BranchProtection implements Serializable {
 	 * @param gitEnvs
 	 * 			git environments
 	 * @return
-	 * 			result of the check
+	 * 			requirement of the push
 	 */
-	public boolean isReviewRequiredForPush(User user, Project project, String branch, ObjectId oldObjectId, 
-			ObjectId newObjectId, Map<String, String> gitEnvs) {
-		ReviewRequirement requirement = getParsedReviewRequirement();
-		if (!requirement.getUsers().isEmpty() || !requirement.getGroups().isEmpty()) 
-			return true;
+	public PushRequirement getPushRequirement(Project project, ObjectId oldObjectId, ObjectId newObjectId, 
+			@Nullable Map<String, String> gitEnvs) {
+		boolean reviewRequired = isReviewRequired(getParsedReviewRequirement());
+		Collection<String> requiredJobs = new LinkedHashSet<>(getJobNames());
 		
-		for (String changedFile: getGitService().getChangedFiles(project, oldObjectId, newObjectId, gitEnvs)) {
-			requirement = getFileProtection(changedFile).getParsedReviewRequirement();
-			if (!requirement.getUsers().isEmpty() || !requirement.getGroups().isEmpty())
-				return true;
+		Map<FileProtection, PatternSet> pendingProtections = new LinkedHashMap<>();
+		for (FileProtection protection: fileProtections) {
+			if (!isSettled(protection, reviewRequired, requiredJobs))
+				pendingProtections.put(protection, PatternSet.parse(protection.getPaths()));
 		}
-
-		return false;
+		
+		if (!pendingProtections.isEmpty()) {
+			PathMatcher matcher = new PathMatcher();
+			for (String changedFile: getGitService().getChangedFiles(project, oldObjectId, newObjectId, gitEnvs)) {
+				for (Iterator<Map.Entry<FileProtection, PatternSet>> it = pendingProtections.entrySet().iterator(); it.hasNext();) {
+					Map.Entry<FileProtection, PatternSet> entry = it.next();
+					if (entry.getValue().matches(matcher, changedFile)) {
+						FileProtection protection = entry.getKey();
+						if (isReviewRequired(protection.getParsedReviewRequirement()))
+							reviewRequired = true;
+						requiredJobs.addAll(protection.getJobNames());
+						it.remove();
+					}
+				}
+				for (Iterator<FileProtection> it = pendingProtections.keySet().iterator(); it.hasNext();) {
+					if (isSettled(it.next(), reviewRequired, requiredJobs))
+						it.remove();
+				}
+				if (pendingProtections.isEmpty())
+					break;
+			}
+		}
+		return new PushRequirement(reviewRequired, requiredJobs);
 	}
-
-	public BuildRequirement getBuildRequirement(Project project, ObjectId oldObjectId, ObjectId newObjectId,
-												Map<String, String> gitEnvs) {
-		Collection<String> requiredJobs = new LinkedHashSet<>(getJobNames());
-		for (String changedFile: getGitService().getChangedFiles(project, oldObjectId, newObjectId, gitEnvs)) 
-			requiredJobs.addAll(getFileProtection(changedFile).getJobNames());
-		return new BuildRequirement(requiredJobs, isRequireStrictBuilds());
+	
+	private static boolean isReviewRequired(ReviewRequirement requirement) {
+		return !requirement.getUsers().isEmpty() || !requirement.getGroups().isEmpty();
+	}
+	
+	private static boolean isSettled(FileProtection protection, boolean reviewRequired, 
+			Collection<String> requiredJobs) {
+		return (reviewRequired || !isReviewRequired(protection.getParsedReviewRequirement())) 
+				&& requiredJobs.containsAll(protection.getJobNames());
 	}
 	
 	private GitService getGitService() {
 		return OneDev.getInstance(GitService.class);
 	}
 	
-	public boolean isBuildRequiredForPush(Project project, ObjectId oldObjectId, ObjectId newObjectId, 
-			Map<String, String> gitEnvs) {
-		Collection<String> requiredJobs = getBuildRequirement(project, oldObjectId, newObjectId, gitEnvs).getRequiredJobs();
-
+	public boolean isBuildRequiredForPush(Project project, ObjectId newObjectId, Collection<String> requiredJobs) {
+		requiredJobs = new HashSet<>(requiredJobs);
 		Collection<Build> builds = OneDev.getInstance(BuildManager.class).query(project, newObjectId, null);
 		for (Build build: builds) {
 			if (requiredJobs.contains(build.getJobName()) && build.getStatus() != Status.SUCCESSFUL)
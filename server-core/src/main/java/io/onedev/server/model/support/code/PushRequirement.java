@@ -0,0 +1,24 @@
+package io.onedev.server.model.support.code;
+
+import java.util.Collection;
+
+public class PushRequirement {
+	
+	private final boolean reviewRequired;
+	
+	private final Collection<String> requiredJobs;
+	
+	public PushRequirement(boolean reviewRequired, Collection<String> requiredJobs) {
+		this.reviewRequired = reviewRequired;
+		this.requiredJobs = requiredJobs;
+	}
+
+	public boolean isReviewRequired() {
+		return reviewRequired;
+	}
+
+	public Collection<String> getRequiredJobs() {
+		return requiredJobs;
+	}
+	
+}
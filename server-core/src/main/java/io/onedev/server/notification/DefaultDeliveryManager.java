@@ -0,0 +1,439 @@
+package io.onedev.server.notification;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.bootstrap.Bootstrap;
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStarting;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.infomanager.AbstractSingleEnvironmentManager;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+
+@Singleton
+public class DefaultDeliveryManager extends AbstractSingleEnvironmentManager
+		implements DeliveryManager, SchedulableTask, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultDeliveryManager.class);
+
+	private static final int INFO_VERSION = 2;
+
+	private static final String DELIVERIES_STORE = "deliveries";
+
+	private static final int MAX_CONCURRENT_DELIVERIES = 16;
+
+	private static final int MAX_CONCURRENT_DELIVERIES_PER_ENDPOINT = 2;
+
+	// Deliveries exceeding this limit will be dropped to keep memory and disk usage bounded
+	private static final int MAX_PENDING_DELIVERIES = 100000;
+
+	private static final int MAX_ATTEMPTS = 8;
+
+	private static final long INITIAL_RETRY_DELAY = 5000;
+
+	private static final long MAX_RETRY_DELAY = 3600000;
+
+	private static final int CONNECT_TIMEOUT = 10000;
+
+	private static final int SOCKET_TIMEOUT = 30000;
+
+	private static final int IDLE_CONNECTION_TIMEOUT = 60;
+
+	private final ExecutorService executorService;
+
+	private final TaskScheduler taskScheduler;
+
+	private final SessionManager sessionManager;
+
+	private final Map<String, Endpoint> endpoints = new HashMap<>();
+
+	private CloseableHttpClient httpClient;
+
+	private long lastDeliveryId;
+
+	private int pendingCount;
+
+	private int runningCount;
+
+	private long deliveredCount;
+
+	private long retriedCount;
+
+	private long droppedCount;
+
+	private boolean started;
+
+	private String taskId;
+
+	@Inject
+	public DefaultDeliveryManager(ExecutorService executorService, TaskScheduler taskScheduler, 
+			SessionManager sessionManager) {
+		this.executorService = executorService;
+		this.taskScheduler = taskScheduler;
+		this.sessionManager = sessionManager;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(DeliveryManager.class);
+	}
+
+	@Listen
+	public synchronized void on(SystemStarting event) {
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(MAX_CONCURRENT_DELIVERIES);
+		connectionManager.setDefaultMaxPerRoute(MAX_CONCURRENT_DELIVERIES_PER_ENDPOINT);
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(CONNECT_TIMEOUT)
+				.setSocketTimeout(SOCKET_TIMEOUT)
+				.build();
+		httpClient = HttpClientBuilder.create()
+				.useSystemProperties()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS)
+				.build();
+
+		// Recover deliveries not sent before last shutdown
+		Environment env = getEnv();
+		Store store = getStore(env, DELIVERIES_STORE);
+		env.executeInReadonlyTransaction(txn -> {
+			try (Cursor cursor = store.openCursor(txn)) {
+				while (cursor.getNext()) {
+					long deliveryId = ByteBuffer.wrap(cursor.getKey().getBytesUnsafe()).getLong();
+					ByteIterable value = cursor.getValue();
+					Delivery delivery = SerializationUtils.deserialize(
+							Arrays.copyOf(value.getBytesUnsafe(), value.getLength()));
+					queue(new Pending(deliveryId, delivery.target.getEndpoint(), System.currentTimeMillis()));
+					pendingCount++;
+					lastDeliveryId = deliveryId;
+				}
+			}
+		});
+	}
+
+	@Listen
+	public synchronized void on(SystemStarted event) {
+		started = true;
+		taskId = taskScheduler.schedule(this);
+		dispatch();
+	}
+
+	@Listen
+	@Override
+	public void on(SystemStopping event) {
+		synchronized (this) {
+			started = false;
+			if (taskId != null)
+				taskScheduler.unschedule(taskId);
+		}
+		if (httpClient != null) {
+			try {
+				httpClient.close();
+			} catch (IOException e) {
+			}
+		}
+		super.on(event);
+	}
+
+	@Override
+	public void deliver(DeliveryTarget target, String json) {
+		Delivery delivery = new Delivery(target, json);
+		long deliveryId;
+		synchronized (this) {
+			if (pendingCount >= MAX_PENDING_DELIVERIES) {
+				droppedCount++;
+				logger.error("Too many pending deliveries, dropping delivery to '{}'", target.getEndpoint());
+				return;
+			}
+			deliveryId = ++lastDeliveryId;
+			// Count as pending before persisted so that the limit also applies to concurrent calls
+			pendingCount++;
+		}
+		
+		// Persist outside of the monitor so that disk writes do not hold up other deliveries
+		try {
+			write(deliveryId, delivery);
+		} catch (Exception e) {
+			synchronized (this) {
+				pendingCount--;
+			}
+			throw e;
+		}
+		
+		synchronized (this) {
+			queue(new Pending(deliveryId, target.getEndpoint(), System.currentTimeMillis()));
+			dispatch();
+		}
+	}
+
+	@Override
+	public synchronized DeliveryStats getStats() {
+		return new DeliveryStats(pendingCount, deliveredCount, retriedCount, droppedCount);
+	}
+
+	@Override
+	public void execute() {
+		dispatch();
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatSecondlyForever();
+	}
+
+	private void queue(Pending pending) {
+		Endpoint endpoint = endpoints.get(pending.endpoint);
+		if (endpoint == null) {
+			endpoint = new Endpoint();
+			endpoints.put(pending.endpoint, endpoint);
+		}
+		endpoint.queued.add(pending);
+	}
+
+	/*
+	 * Send due deliveries without exceeding global and per endpoint concurrency limits
+	 */
+	private synchronized void dispatch() {
+		if (!started)
+			return;
+		long now = System.currentTimeMillis();
+		for (Endpoint endpoint: endpoints.values()) {
+			while (runningCount < MAX_CONCURRENT_DELIVERIES
+					&& endpoint.runningCount < MAX_CONCURRENT_DELIVERIES_PER_ENDPOINT
+					&& !endpoint.queued.isEmpty()
+					&& endpoint.queued.peek().dueTime <= now) {
+				Pending pending = endpoint.queued.poll();
+				runningCount++;
+				endpoint.runningCount++;
+				executorService.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						try {
+							send(pending);
+						} catch (Exception e) {
+							logger.error("Error sending delivery", e);
+						} finally {
+							synchronized (DefaultDeliveryManager.this) {
+								runningCount--;
+								endpoint.runningCount--;
+								if (endpoint.runningCount == 0 && endpoint.queued.isEmpty())
+									endpoints.remove(pending.endpoint);
+							}
+							dispatch();
+						}
+					}
+
+				});
+			}
+			if (runningCount >= MAX_CONCURRENT_DELIVERIES)
+				break;
+		}
+	}
+
+	private void send(Pending pending) {
+		Delivery delivery = read(pending.deliveryId);
+		if (delivery == null) {
+			synchronized (this) {
+				pendingCount--;
+			}
+			return;
+		}
+
+		DeliveryTarget.Resolved resolved = sessionManager.call(() -> delivery.target.resolve());
+		if (resolved == null) {
+			delete(pending.deliveryId);
+			synchronized (this) {
+				droppedCount++;
+				pendingCount--;
+			}
+			logger.debug("Delivery target no longer exists, dropping delivery to '{}'", pending.endpoint);
+			return;
+		}
+		
+		String failure;
+		boolean retryable;
+		try {
+			HttpPost post = new HttpPost(resolved.getUrl());
+			for (Map.Entry<String, String> entry: resolved.getHeaders().entrySet())
+				post.setHeader(entry.getKey(), entry.getValue());
+			post.setEntity(new StringEntity(delivery.json, ContentType.APPLICATION_JSON));
+			try (CloseableHttpResponse response = httpClient.execute(post)) {
+				int statusCode = response.getStatusLine().getStatusCode();
+				HttpEntity responseEntity = response.getEntity();
+				String responseText = responseEntity != null? EntityUtils.toString(responseEntity): null;
+				if (statusCode >= 200 && statusCode < 300) {
+					failure = null;
+					retryable = false;
+				} else {
+					if (responseText != null)
+						failure = String.format("status code: %d, response: %s", statusCode, responseText);
+					else
+						failure = String.format("status code: %d", statusCode);
+					retryable = statusCode >= 500 || statusCode == HttpStatus.SC_REQUEST_TIMEOUT
+							|| statusCode == 429; // too many requests
+				}
+			}
+		} catch (IOException e) {
+			failure = e.getMessage();
+			retryable = true;
+		} catch (IllegalArgumentException e) {
+			// Malformed url
+			failure = e.getMessage();
+			retryable = false;
+		}
+
+		/*
+		 * Url may contain credentials (for instance Slack and Discord webhook urls), so only 
+		 * endpoint is logged. Store is updated outside of the monitor
+		 */
+		if (failure == null) {
+			delete(pending.deliveryId);
+			synchronized (this) {
+				deliveredCount++;
+				pendingCount--;
+			}
+		} else if (retryable && delivery.attempts + 1 < MAX_ATTEMPTS) {
+			delivery.attempts++;
+			write(pending.deliveryId, delivery);
+			long retryDelay = Math.min(INITIAL_RETRY_DELAY << (delivery.attempts - 1), MAX_RETRY_DELAY);
+			synchronized (this) {
+				queue(new Pending(pending.deliveryId, pending.endpoint, System.currentTimeMillis() + retryDelay));
+				retriedCount++;
+			}
+			logger.warn("Error delivering to '{}', will retry in {} seconds ({})",
+					pending.endpoint, retryDelay / 1000, failure);
+		} else {
+			delete(pending.deliveryId);
+			synchronized (this) {
+				droppedCount++;
+				pendingCount--;
+			}
+			logger.error("Error delivering to '{}' ({})", pending.endpoint, failure);
+		}
+	}
+
+	private ByteIterable getKey(long deliveryId) {
+		return new ArrayByteIterable(ByteBuffer.allocate(Long.BYTES).putLong(deliveryId).array());
+	}
+
+	private Delivery read(long deliveryId) {
+		Environment env = getEnv();
+		Store store = getStore(env, DELIVERIES_STORE);
+		byte[] bytes = env.computeInReadonlyTransaction(txn -> readBytes(store, txn, getKey(deliveryId)));
+		if (bytes != null)
+			return SerializationUtils.deserialize(bytes);
+		else
+			return null;
+	}
+
+	private void write(long deliveryId, Delivery delivery) {
+		Environment env = getEnv();
+		Store store = getStore(env, DELIVERIES_STORE);
+		byte[] bytes = SerializationUtils.serialize(delivery);
+		env.executeInTransaction(txn -> store.put(txn, getKey(deliveryId), new ArrayByteIterable(bytes)));
+	}
+
+	private void delete(long deliveryId) {
+		Environment env = getEnv();
+		Store store = getStore(env, DELIVERIES_STORE);
+		env.executeInTransaction(txn -> store.delete(txn, getKey(deliveryId)));
+	}
+
+	@Override
+	protected File getEnvDir() {
+		File envDir = new File(Bootstrap.getSiteDir(), "deliveries");
+		FileUtils.createDir(envDir);
+		return envDir;
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	private static class Delivery implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		final DeliveryTarget target;
+
+		final String json;
+
+		int attempts;
+
+		Delivery(DeliveryTarget target, String json) {
+			this.target = target;
+			this.json = json;
+		}
+
+	}
+
+	private static class Pending {
+
+		final long deliveryId;
+
+		final String endpoint;
+
+		final long dueTime;
+
+		Pending(long deliveryId, String endpoint, long dueTime) {
+			this.deliveryId = deliveryId;
+			this.endpoint = endpoint;
+			this.dueTime = dueTime;
+		}
+
+	}
+
+	private static class Endpoint {
+
+		final PriorityQueue<Pending> queued = new PriorityQueue<>(
+				Comparator.<Pending>comparingLong(it -> it.dueTime).thenComparingLong(it -> it.deliveryId));
+
+		int runningCount;
+
+	}
+
+}
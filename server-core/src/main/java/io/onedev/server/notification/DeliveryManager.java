@@ -0,0 +1,23 @@
+package io.onedev.server.notification;
+
+/**
+ * Delivers json posts to outbound endpoints such as web hooks and chat channels
+ */
+public interface DeliveryManager {
+
+	/**
+	 * Queue posting of specified json to specified target. Queued deliveries are persisted to survive
+	 * server restart, and are sent with a shared pooled http client with limited concurrency per
+	 * endpoint. Failed deliveries are retried with exponential backoff
+	 *
+	 * @param target
+	 * 			target to post json to. Url and headers of the target are resolved when delivery 
+	 * 			is sent, and delivery is dropped if target no longer exists
+	 * @param json
+	 * 			json to post
+	 */
+	void deliver(DeliveryTarget target, String json);
+
+	DeliveryStats getStats();
+
+}
@@ -0,0 +1,53 @@
+package io.onedev.server.notification;
+
+public class DeliveryStats {
+
+	private final int pendingCount;
+
+	private final long deliveredCount;
+
+	private final long retriedCount;
+
+	private final long droppedCount;
+
+	public DeliveryStats(int pendingCount, long deliveredCount, long retriedCount, long droppedCount) {
+		this.pendingCount = pendingCount;
+		this.deliveredCount = deliveredCount;
+		this.retriedCount = retriedCount;
+		this.droppedCount = droppedCount;
+	}
+
+	/**
+	 * @return
+	 * 			number of deliveries queued or being sent
+	 */
+	public int getPendingCount() {
+		return pendingCount;
+	}
+
+	/**
+	 * @return
+	 * 			number of deliveries succeeded since server start
+	 */
+	public long getDeliveredCount() {
+		return deliveredCount;
+	}
+
+	/**
+	 * @return
+	 * 			number of failed attempts scheduled for retry since server start
+	 */
+	public long getRetriedCount() {
+		return retriedCount;
+	}
+
+	/**
+	 * @return
+	 * 			number of deliveries given up since server start, either due to permanent failure,
+	 * 			running out of attempts, or queue overflow
+	 */
+	public long getDroppedCount() {
+		return droppedCount;
+	}
+
+}
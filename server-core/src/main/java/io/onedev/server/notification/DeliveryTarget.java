@@ -0,0 +1,86 @@
+package io.onedev.server.notification;
+
+import java.io.Serializable;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * Target of a delivery. Targets are persisted along with pending deliveries, so they should not 
+ * hold credentials such as secret headers or webhook urls. Instead they reference the setting 
+ * defining the target, and resolve actual url and headers when delivery is sent.
+ */
+public abstract class DeliveryTarget implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String endpoint;
+	
+	public DeliveryTarget(String url) {
+		endpoint = getEndpoint(url);
+	}
+	
+	/*
+	 * Deliveries of same endpoint are usually sent over same keep-alive connection, so we use
+	 * scheme, host and port of the url as endpoint to apply concurrency limit. User info is 
+	 * excluded as it may contain credentials
+	 */
+	private static String getEndpoint(String url) {
+		try {
+			URI uri = new URI(url);
+			String endpoint = uri.getScheme() + "://" + uri.getHost();
+			if (uri.getPort() != -1)
+				endpoint += ":" + uri.getPort();
+			return endpoint;
+		} catch (URISyntaxException e) {
+			return "<malformed url>";
+		}
+	}
+	
+	public String getEndpoint() {
+		return endpoint;
+	}
+	
+	/**
+	 * Hash url to identify it without storing it
+	 */
+	protected static String hash(String url) {
+		return DigestUtils.sha256Hex(url.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Resolve url and headers of this target. Called with a Hibernate session.
+	 * 
+	 * @return
+	 * 			resolved target, or <tt>null</tt> if the target no longer exists
+	 */
+	@Nullable
+	public abstract Resolved resolve();
+	
+	public static class Resolved {
+		
+		private final String url;
+		
+		private final Map<String, String> headers;
+		
+		public Resolved(String url, Map<String, String> headers) {
+			this.url = url;
+			this.headers = headers;
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public Map<String, String> getHeaders() {
+			return headers;
+		}
+		
+	}
+	
+}
@@ -5,7 +5,6 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -27,13 +26,8 @@ import io.onedev.server.model.Group;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.IssueWatch;
 import io.onedev.server.model.User;
-import io.onedev.server.model.support.NamedQuery;
-import io.onedev.server.model.support.QueryPersonalization;
 import io.onedev.server.persistence.annotation.Transactional;
-import io.onedev.server.search.entity.EntityQuery;
-import io.onedev.server.search.entity.QueryWatchBuilder;
-import io.onedev.server.search.entity.issue.IssueQuery;
-import io.onedev.server.search.entity.issue.IssueQueryParseOption;
+import io.onedev.server.search.entity.QuerySubscriptionIndex;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.commenttext.MarkdownText;
 
@@ -52,12 +46,15 @@ public class IssueNotificationManager extends AbstractNotificationManager {
 	
 	private final IssueMentionManager mentionManager;
 	
+	private final QuerySubscriptionIndex querySubscriptionIndex;
+	
 	@Inject
 	public IssueNotificationManager(MarkdownManager markdownManager, MailManager mailManager, 
 									IssueWatchManager watchManager, VisitInfoManager userInfoManager, 
 									UserManager userManager, SettingManager settingManager, 
 									IssueAuthorizationManager authorizationManager, 
-									IssueMentionManager mentionManager) {
+									IssueMentionManager mentionManager, 
+									QuerySubscriptionIndex querySubscriptionIndex) {
 		super(markdownManager, settingManager);
 		
 		this.mailManager = mailManager;
@@ -66,6 +63,7 @@ public class IssueNotificationManager extends AbstractNotificationManager {
 		this.userManager = userManager;
 		this.authorizationManager = authorizationManager;
 		this.mentionManager = mentionManager;
+		this.querySubscriptionIndex = querySubscriptionIndex;
 	}
 	
 	@Transactional
@@ -89,58 +87,7 @@ public class IssueNotificationManager extends AbstractNotificationManager {
 			summary = StringUtils.capitalize(event.getActivity());
 		}
 
-		for (Map.Entry<User, Boolean> entry: new QueryWatchBuilder<Issue>() {
-
-			@Override
-			protected Issue getEntity() {
-				return issue;
-			}
-
-			@Override
-			protected Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
-				return issue.getProject().getIssueQueryPersonalizations();
-			}
-
-			@Override
-			protected EntityQuery<Issue> parse(String queryString) {
-				IssueQueryParseOption option = new IssueQueryParseOption().withCurrentUserCriteria(true);
-				return IssueQuery.parse(issue.getProject(), queryString, option, true);
-			}
-
-			@Override
-			protected Collection<? extends NamedQuery> getNamedQueries() {
-				return issue.getProject().getNamedIssueQueries();
-			}
-			
-		}.getWatches().entrySet()) {
-			if (SecurityUtils.canAccess(entry.getKey().asSubject(), issue))
-				watchManager.watch(issue, entry.getKey(), entry.getValue());
-		}
-		
-		for (Map.Entry<User, Boolean> entry: new QueryWatchBuilder<Issue>() {
-
-			@Override
-			protected Issue getEntity() {
-				return issue;
-			}
-
-			@Override
-			protected Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
-				return userManager.query().stream().map(it->it.getIssueQueryPersonalization()).collect(Collectors.toList());
-			}
-
-			@Override
-			protected EntityQuery<Issue> parse(String queryString) {
-				IssueQueryParseOption option = new IssueQueryParseOption().withCurrentBuildCriteria(true);
-				return IssueQuery.parse(null, queryString, option, true);
-			}
-
-			@Override
-			protected Collection<? extends NamedQuery> getNamedQueries() {
-				return settingManager.getIssueSetting().getNamedQueries();
-			}
-			
-		}.getWatches().entrySet()) {
+		for (Map.Entry<User, Boolean> entry: querySubscriptionIndex.getIssueWatches(issue).entrySet()) {
 			if (SecurityUtils.canAccess(entry.getKey().asSubject(), issue))
 				watchManager.watch(issue, entry.getKey(), entry.getValue());
 		}
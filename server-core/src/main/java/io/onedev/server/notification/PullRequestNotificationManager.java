@@ -14,16 +14,12 @@ import io.onedev.server.markdown.MarkdownManager;
 import io.onedev.server.markdown.MentionParser;
 import io.onedev.server.model.*;
 import io.onedev.server.model.PullRequestReview.Status;
-import io.onedev.server.model.support.NamedQuery;
-import io.onedev.server.model.support.QueryPersonalization;
 import io.onedev.server.model.support.pullrequest.changedata.PullRequestApproveData;
 import io.onedev.server.model.support.pullrequest.changedata.PullRequestChangeData;
 import io.onedev.server.model.support.pullrequest.changedata.PullRequestDiscardData;
 import io.onedev.server.model.support.pullrequest.changedata.PullRequestRequestedForChangesData;
 import io.onedev.server.persistence.annotation.Transactional;
-import io.onedev.server.search.entity.EntityQuery;
-import io.onedev.server.search.entity.QueryWatchBuilder;
-import io.onedev.server.search.entity.pullrequest.PullRequestQuery;
+import io.onedev.server.search.entity.QuerySubscriptionIndex;
 import io.onedev.server.security.permission.ProjectPermission;
 import io.onedev.server.security.permission.ReadCode;
 import io.onedev.server.util.commenttext.MarkdownText;
@@ -34,7 +30,6 @@ import org.apache.shiro.authz.Permission;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 import java.util.*;
-import java.util.stream.Collectors;
 
 @Singleton
 public class PullRequestNotificationManager extends AbstractNotificationManager {
@@ -49,18 +44,22 @@ public class PullRequestNotificationManager extends AbstractNotificationManager
 
 	private final PullRequestMentionManager mentionManager;
 
+	private final QuerySubscriptionIndex querySubscriptionIndex;
+
 	@Inject
 	public PullRequestNotificationManager(MailManager mailManager, MarkdownManager markdownManager,
 										  PullRequestWatchManager watchManager,
 										  VisitInfoManager userInfoManager,
 										  UserManager userManager, SettingManager settingManager,
-										  PullRequestMentionManager mentionManager) {
+										  PullRequestMentionManager mentionManager,
+										  QuerySubscriptionIndex querySubscriptionIndex) {
 		super(markdownManager, settingManager);
 		this.mailManager = mailManager;
 		this.watchManager = watchManager;
 		this.userInfoManager = userInfoManager;
 		this.userManager = userManager;
 		this.mentionManager = mentionManager;
+		this.querySubscriptionIndex = querySubscriptionIndex;
 	}
 
 	@Transactional
@@ -71,57 +70,8 @@ public class PullRequestNotificationManager extends AbstractNotificationManager
 
 		String url = event.getUrl();
 
-		for (Map.Entry<User, Boolean> entry : new QueryWatchBuilder<PullRequest>() {
-
-			@Override
-			protected PullRequest getEntity() {
-				return request;
-			}
-
-			@Override
-			protected Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
-				return request.getTargetProject().getPullRequestQueryPersonalizations();
-			}
-
-			@Override
-			protected EntityQuery<PullRequest> parse(String queryString) {
-				return PullRequestQuery.parse(request.getTargetProject(), queryString, true);
-			}
-
-			@Override
-			protected Collection<? extends NamedQuery> getNamedQueries() {
-				return request.getTargetProject().getNamedPullRequestQueries();
-			}
-
-		}.getWatches().entrySet()) {
+		for (Map.Entry<User, Boolean> entry : querySubscriptionIndex.getPullRequestWatches(request).entrySet()) 
 			watchManager.watch(request, entry.getKey(), entry.getValue());
-		}
-
-		for (Map.Entry<User, Boolean> entry : new QueryWatchBuilder<PullRequest>() {
-
-			@Override
-			protected PullRequest getEntity() {
-				return request;
-			}
-
-			@Override
-			protected Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
-				return userManager.query().stream().map(it -> it.getPullRequestQueryPersonalization()).collect(Collectors.toList());
-			}
-
-			@Override
-			protected EntityQuery<PullRequest> parse(String queryString) {
-				return PullRequestQuery.parse(null, queryString, true);
-			}
-
-			@Override
-			protected Collection<? extends NamedQuery> getNamedQueries() {
-				return settingManager.getPullRequestSetting().getNamedQueries();
-			}
-
-		}.getWatches().entrySet()) {
-			watchManager.watch(request, entry.getKey(), entry.getValue());
-		}
 
 		Collection<User> notifiedUsers = Sets.newHashSet();
 		if (user != null) {
@@ -0,0 +1,54 @@
+package io.onedev.server.notification;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.support.WebHook;
+
+/**
+ * Web hook of a project, identified by hash of its post url. Secret of the web hook is looked up 
+ * when delivery is sent
+ */
+public class WebHookTarget extends DeliveryTarget {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String SIGNATURE_HEAD = "X-OneDev-Signature";
+	
+	private final Long projectId;
+	
+	private final String postUrlHash;
+	
+	public WebHookTarget(Project project, WebHook webHook) {
+		super(webHook.getPostUrl());
+		projectId = project.getId();
+		postUrlHash = hash(webHook.getPostUrl());
+	}
+
+	@Nullable
+	@Override
+	public Resolved resolve() {
+		Project project = OneDev.getInstance(ProjectManager.class).get(projectId);
+		if (project != null) {
+			for (WebHook webHook: project.getHierarchyWebHooks()) {
+				if (hash(webHook.getPostUrl()).equals(postUrlHash)) {
+					Map<String, String> headers = new HashMap<>();
+					headers.put(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+					headers.put(HttpHeaders.ACCEPT_CHARSET, StandardCharsets.UTF_8.name());
+					headers.put(SIGNATURE_HEAD, webHook.getSecret());
+					return new Resolved(webHook.getPostUrl(), headers);
+				}
+			}
+		}
+		return null;
+	}
+	
+}
@@ -95,9 +95,11 @@ public class JobRunResource {
 			if (!SecurityUtils.canRunJob(request.getProject(), jobRun.getJobName()))		
 				throw new UnauthorizedException();
 
+			// Merge preview of pull requests not accessed recently may be deferred
+			pullRequestManager.access(request);
 			MergePreview preview = request.checkMergePreview();
 			if (preview == null)
-				throw new ValidationException("Pull request merge preview not calculated yet");
+				throw new ValidationException("Pull request merge preview not calculated yet, please retry later");
 			if (preview.getMergeCommitHash() == null)
 				throw new ValidationException("Pull request has merge conflicts");
 			
@@ -77,6 +77,8 @@ public class PullRequestResource {
 		PullRequest pullRequest = pullRequestManager.load(requestId);
     	if (!SecurityUtils.canReadCode(pullRequest.getProject())) 
 			throw new UnauthorizedException();
+		// Merge preview of pull requests not accessed recently may be deferred
+		pullRequestManager.access(pullRequest);
     	return pullRequest.checkMergePreview();
     }
 	
@@ -340,11 +340,12 @@ public class DefaultCodeIndexManager implements CodeIndexManager, Serializable {
 	private IndexResult doIndex(Project project, ObjectId commit, Directory directory, IndexSearcher searcher) {
 		IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE));
 		writerConfig.setOpenMode(OpenMode.CREATE_OR_APPEND);
-		try (IndexWriter writer = new IndexWriter(directory, writerConfig)) {
+		try (	IndexWriter writer = new IndexWriter(directory, writerConfig);
+				Repository repository = projectManager.openRepository(project.getId())) {
 			try {
 				logger.debug("Indexing commit (project: {}, commit: {})", project.getPath(), commit.getName());
-				IndexResult indexResult = index(projectManager.getRepository(project.getId()), 
-						commit, writer, searcher, project.findCodeAnalysisPatterns());
+				IndexResult indexResult = index(repository, commit, writer, searcher, 
+						project.findCodeAnalysisPatterns());
 				writer.commit();
 				return indexResult;
 			} catch (Exception e) {
@@ -0,0 +1,580 @@
+package io.onedev.server.search.entity;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.hibernate.Transaction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Build;
+import io.onedev.server.model.BuildQueryPersonalization;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.IssueQueryPersonalization;
+import io.onedev.server.model.LabelSpec;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.PullRequestQueryPersonalization;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.User;
+import io.onedev.server.model.support.NamedQuery;
+import io.onedev.server.model.support.QueryPersonalization;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.search.entity.build.BuildQuery;
+import io.onedev.server.search.entity.issue.IssueQuery;
+import io.onedev.server.search.entity.issue.IssueQueryParseOption;
+import io.onedev.server.search.entity.pullrequest.PullRequestQuery;
+import io.onedev.server.util.criteria.Criteria;
+
+@Singleton
+public class DefaultQuerySubscriptionIndex implements QuerySubscriptionIndex, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultQuerySubscriptionIndex.class);
+
+	private final TransactionManager transactionManager;
+
+	private final ClusterManager clusterManager;
+
+	private final SettingManager settingManager;
+
+	private final UserManager userManager;
+
+	private final Map<ScopeKey, CompiledScope> compiledScopes = new ConcurrentHashMap<>();
+
+	/*
+	 * Increased on each invalidation to prevent a scope compiled before the invalidation from
+	 * being cached after the invalidation
+	 */
+	private long version;
+
+	@Inject
+	public DefaultQuerySubscriptionIndex(TransactionManager transactionManager, ClusterManager clusterManager,
+			SettingManager settingManager, UserManager userManager) {
+		this.transactionManager = transactionManager;
+		this.clusterManager = clusterManager;
+		this.settingManager = settingManager;
+		this.userManager = userManager;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(QuerySubscriptionIndex.class);
+	}
+
+	@Override
+	public Map<User, Boolean> getIssueWatches(Issue issue) {
+		Project project = issue.getProject();
+		Collection<String> tokens = MatchTokens.of(issue);
+		Map<User, Boolean> watches = new HashMap<>();
+		match(new ScopeSupport<Issue>(ScopeType.ISSUE, project.getId()) {
+
+			@Override
+			Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
+				return project.getIssueQueryPersonalizations();
+			}
+
+			@Override
+			Collection<? extends NamedQuery> getNamedQueries() {
+				return project.getNamedIssueQueries();
+			}
+
+			@Override
+			EntityQuery<Issue> parse(String queryString, boolean withCurrentUserCriteria) {
+				IssueQueryParseOption option = new IssueQueryParseOption()
+						.withCurrentUserCriteria(withCurrentUserCriteria);
+				return IssueQuery.parse(project, queryString, option, true);
+			}
+
+			@Override
+			String describe() {
+				return "issue: " + issue.getFQN();
+			}
+
+		}, issue, tokens, watches);
+
+		match(new ScopeSupport<Issue>(ScopeType.ISSUE, null) {
+
+			@Override
+			Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
+				List<QueryPersonalization<?>> personalizations = new ArrayList<>();
+				for (User user: userManager.query())
+					personalizations.add(user.getIssueQueryPersonalization());
+				return personalizations;
+			}
+
+			@Override
+			Collection<? extends NamedQuery> getNamedQueries() {
+				return settingManager.getIssueSetting().getNamedQueries();
+			}
+
+			@Override
+			EntityQuery<Issue> parse(String queryString, boolean withCurrentUserCriteria) {
+				IssueQueryParseOption option = new IssueQueryParseOption().withCurrentBuildCriteria(true);
+				return IssueQuery.parse(null, queryString, option, true);
+			}
+
+			@Override
+			String describe() {
+				return "issue: " + issue.getFQN();
+			}
+
+		}, issue, tokens, watches);
+
+		return watches;
+	}
+
+	@Override
+	public Map<User, Boolean> getPullRequestWatches(PullRequest request) {
+		Project project = request.getTargetProject();
+		Collection<String> tokens = MatchTokens.of(request);
+		Map<User, Boolean> watches = new HashMap<>();
+		match(new ScopeSupport<PullRequest>(ScopeType.PULL_REQUEST, project.getId()) {
+
+			@Override
+			Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
+				return project.getPullRequestQueryPersonalizations();
+			}
+
+			@Override
+			Collection<? extends NamedQuery> getNamedQueries() {
+				return project.getNamedPullRequestQueries();
+			}
+
+			@Override
+			EntityQuery<PullRequest> parse(String queryString, boolean withCurrentUserCriteria) {
+				return PullRequestQuery.parse(project, queryString, withCurrentUserCriteria);
+			}
+
+			@Override
+			String describe() {
+				return "pull request: " + request.getFQN();
+			}
+
+		}, request, tokens, watches);
+
+		match(new ScopeSupport<PullRequest>(ScopeType.PULL_REQUEST, null) {
+
+			@Override
+			Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
+				List<QueryPersonalization<?>> personalizations = new ArrayList<>();
+				for (User user: userManager.query())
+					personalizations.add(user.getPullRequestQueryPersonalization());
+				return personalizations;
+			}
+
+			@Override
+			Collection<? extends NamedQuery> getNamedQueries() {
+				return settingManager.getPullRequestSetting().getNamedQueries();
+			}
+
+			@Override
+			EntityQuery<PullRequest> parse(String queryString, boolean withCurrentUserCriteria) {
+				return PullRequestQuery.parse(null, queryString, withCurrentUserCriteria);
+			}
+
+			@Override
+			String describe() {
+				return "pull request: " + request.getFQN();
+			}
+
+		}, request, tokens, watches);
+
+		return watches;
+	}
+
+	@Override
+	public Collection<User> getBuildSubscribers(Build build) {
+		Project project = build.getProject();
+		Collection<String> tokens = MatchTokens.of(build);
+		Map<User, Boolean> subscriptions = new HashMap<>();
+		match(new ScopeSupport<Build>(ScopeType.BUILD, project.getId()) {
+
+			@Override
+			Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
+				return project.getBuildQueryPersonalizations();
+			}
+
+			@Override
+			Collection<? extends NamedQuery> getNamedQueries() {
+				return project.getNamedBuildQueries();
+			}
+
+			@Override
+			EntityQuery<Build> parse(String queryString, boolean withCurrentUserCriteria) {
+				return BuildQuery.parse(project, queryString, withCurrentUserCriteria, true);
+			}
+
+			@Override
+			String describe() {
+				return "build: " + build.getFQN();
+			}
+
+		}, build, tokens, subscriptions);
+
+		match(new ScopeSupport<Build>(ScopeType.BUILD, null) {
+
+			@Override
+			Collection<? extends QueryPersonalization<?>> getQueryPersonalizations() {
+				List<QueryPersonalization<?>> personalizations = new ArrayList<>();
+				for (User user: userManager.query())
+					personalizations.add(user.getBuildQueryPersonalization());
+				return personalizations;
+			}
+
+			@Override
+			Collection<? extends NamedQuery> getNamedQueries() {
+				return settingManager.getBuildSetting().getNamedQueries();
+			}
+
+			@Override
+			EntityQuery<Build> parse(String queryString, boolean withCurrentUserCriteria) {
+				return BuildQuery.parse(null, queryString, withCurrentUserCriteria, true);
+			}
+
+			@Override
+			String describe() {
+				return "build: " + build.getFQN();
+			}
+
+		}, build, tokens, subscriptions);
+
+		return subscriptions.keySet();
+	}
+
+	private <T extends AbstractEntity> void match(ScopeSupport<T> support, T entity,
+			Collection<String> tokens, Map<User, Boolean> result) {
+		// User id to matched subscription coming first in user's subscription list
+		Map<Long, Subscription> matchedSubscriptions = new HashMap<>();
+		for (CompiledQuery compiledQuery: getCompiledScope(support).getCandidates(tokens)) {
+			EntityQuery<T> query;
+			try {
+				query = support.parse(compiledQuery.queryString, true);
+			} catch (Exception e) {
+				continue;
+			}
+			if (compiledQuery.userDependent) {
+				for (Subscription subscription: compiledQuery.subscriptions) {
+					Subscription matchedSubscription = matchedSubscriptions.get(subscription.userId);
+					if (matchedSubscription == null || matchedSubscription.order > subscription.order) {
+						User user = userManager.load(subscription.userId);
+						User.push(user);
+						try {
+							if (query.matches(entity))
+								matchedSubscriptions.put(subscription.userId, subscription);
+						} catch (Exception e) {
+							String message = String.format("Error processing query subscription (user: %s, %s, query: %s)",
+									user.getName(), support.describe(), compiledQuery.queryString);
+							logger.error(message, e);
+						} finally {
+							User.pop();
+						}
+					}
+				}
+			} else {
+				try {
+					if (query.matches(entity)) {
+						for (Subscription subscription: compiledQuery.subscriptions) {
+							Subscription matchedSubscription = matchedSubscriptions.get(subscription.userId);
+							if (matchedSubscription == null || matchedSubscription.order > subscription.order)
+								matchedSubscriptions.put(subscription.userId, subscription);
+						}
+					}
+				} catch (Exception e) {
+					String message = String.format("Error processing query subscription (%s, query: %s)",
+							support.describe(), compiledQuery.queryString);
+					logger.error(message, e);
+				}
+			}
+		}
+		for (Subscription subscription: matchedSubscriptions.values())
+			result.putIfAbsent(userManager.load(subscription.userId), subscription.value);
+	}
+
+	private CompiledScope getCompiledScope(ScopeSupport<?> support) {
+		CompiledScope compiledScope = compiledScopes.get(support.key);
+		if (compiledScope == null) {
+			long versionBeforeCompile;
+			synchronized (this) {
+				versionBeforeCompile = version;
+			}
+			compiledScope = compile(support);
+			synchronized (this) {
+				if (version == versionBeforeCompile)
+					compiledScopes.put(support.key, compiledScope);
+			}
+		}
+		return compiledScope;
+	}
+
+	private <T extends AbstractEntity> CompiledScope compile(ScopeSupport<T> support) {
+		Map<String, CompiledQuery> compiledQueries = new LinkedHashMap<>();
+		for (QueryPersonalization<?> personalization: support.getQueryPersonalizations()) {
+			Map<String, Boolean> subscribedNames = new LinkedHashMap<>();
+			if (personalization.getQueryWatchSupport() != null) {
+				subscribedNames.putAll(personalization.getQueryWatchSupport().getQueryWatches());
+			} else if (personalization.getQuerySubscriptionSupport() != null) {
+				for (String name: personalization.getQuerySubscriptionSupport().getQuerySubscriptions())
+					subscribedNames.put(name, true);
+			}
+
+			int order = 0;
+			for (Map.Entry<String, Boolean> entry: subscribedNames.entrySet()) {
+				NamedQuery namedQuery = null;
+				String commonName = NamedQuery.getCommonName(entry.getKey());
+				if (commonName != null)
+					namedQuery = NamedQuery.find(support.getNamedQueries(), commonName);
+				String personalName = NamedQuery.getPersonalName(entry.getKey());
+				if (namedQuery == null && personalName != null)
+					namedQuery = NamedQuery.find(personalization.getQueries(), personalName);
+				if (namedQuery != null) {
+					CompiledQuery compiledQuery = compiledQueries.get(namedQuery.getQuery());
+					if (compiledQuery == null) {
+						compiledQuery = compile(support, namedQuery.getQuery());
+						compiledQueries.put(namedQuery.getQuery(), compiledQuery);
+					}
+					compiledQuery.subscriptions.add(new Subscription(
+							personalization.getUser().getId(), order++, entry.getValue()));
+				}
+			}
+		}
+		return new CompiledScope(compiledQueries.values());
+	}
+
+	/*
+	 * Parse query without current user criteria to find out whether it can be evaluated once
+	 * for all subscribed users
+	 */
+	private <T extends AbstractEntity> CompiledQuery compile(ScopeSupport<T> support, String queryString) {
+		try {
+			return new CompiledQuery(queryString, false, getMatchTokens(support.parse(queryString, false)));
+		} catch (Exception e) {
+			try {
+				return new CompiledQuery(queryString, true, getMatchTokens(support.parse(queryString, true)));
+			} catch (Exception e2) {
+				// Query may become valid later, for instance when referenced entities are created
+				return new CompiledQuery(queryString, true, null);
+			}
+		}
+	}
+
+	@Nullable
+	private <T extends AbstractEntity> Collection<String> getMatchTokens(EntityQuery<T> query) {
+		Criteria<T> criteria = query.getCriteria();
+		if (criteria != null)
+			return criteria.getMatchTokens();
+		else
+			return null;
+	}
+
+	@Listen
+	public void on(EntityPersisted event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof IssueQueryPersonalization
+				|| entity instanceof PullRequestQueryPersonalization
+				|| entity instanceof BuildQueryPersonalization) {
+			Project project = ((QueryPersonalization<?>) entity).getProject();
+			invalidateAfterTransaction(false, project.getId());
+		} else if (entity instanceof User && !event.isNew()) {
+			// Global query personalizations are stored with user
+			invalidateAfterTransaction(false, null);
+		} else if (entity instanceof Project && !event.isNew()
+				|| entity instanceof Setting || entity instanceof LabelSpec) {
+			// Named queries are inherited by child projects, and label definitions affect parsing
+			invalidateAfterTransaction(true, null);
+		}
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof IssueQueryPersonalization
+				|| entity instanceof PullRequestQueryPersonalization
+				|| entity instanceof BuildQueryPersonalization) {
+			Project project = ((QueryPersonalization<?>) entity).getProject();
+			invalidateAfterTransaction(false, project.getId());
+		} else if (entity instanceof User || entity instanceof Project || entity instanceof LabelSpec) {
+			invalidateAfterTransaction(true, null);
+		}
+	}
+
+	/*
+	 * Invalidate after transaction completes even if it is rolled back, as scopes might have
+	 * been compiled with uncommitted changes in current transaction
+	 *
+	 * @param projectId
+	 * 			id of project to invalidate scopes of, or <tt>null</tt> to invalidate global scopes
+	 */
+	private void invalidateAfterTransaction(boolean all, @Nullable Long projectId) {
+		Runnable runnable = new Runnable() {
+
+			@Override
+			public void run() {
+				clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						invalidate(all, projectId);
+						return null;
+					}
+
+				});
+			}
+
+		};
+
+		Transaction transaction = transactionManager.getTransaction();
+		if (transaction != null && transaction.isActive())
+			transactionManager.mustRunAfterTransaction(runnable);
+		else
+			runnable.run();
+	}
+
+	private synchronized void invalidate(boolean all, @Nullable Long projectId) {
+		version++;
+		if (all)
+			compiledScopes.clear();
+		else
+			compiledScopes.keySet().removeIf(it -> Objects.equals(it.projectId, projectId));
+	}
+
+	private static enum ScopeType {ISSUE, PULL_REQUEST, BUILD}
+
+	private static class ScopeKey {
+
+		final ScopeType type;
+
+		// null for global queries
+		final Long projectId;
+
+		ScopeKey(ScopeType type, @Nullable Long projectId) {
+			this.type = type;
+			this.projectId = projectId;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof ScopeKey))
+				return false;
+			ScopeKey otherKey = (ScopeKey) other;
+			return type == otherKey.type && Objects.equals(projectId, otherKey.projectId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(type, projectId);
+		}
+
+	}
+
+	private static abstract class ScopeSupport<T extends AbstractEntity> {
+
+		final ScopeKey key;
+
+		ScopeSupport(ScopeType type, @Nullable Long projectId) {
+			key = new ScopeKey(type, projectId);
+		}
+
+		abstract Collection<? extends QueryPersonalization<?>> getQueryPersonalizations();
+
+		abstract Collection<? extends NamedQuery> getNamedQueries();
+
+		abstract EntityQuery<T> parse(String queryString, boolean withCurrentUserCriteria);
+
+		// Describe the entity being matched for logging purpose
+		abstract String describe();
+
+	}
+
+	private static class Subscription {
+
+		final Long userId;
+
+		// Position in user's subscription list, first matched one decides the watch status
+		final int order;
+
+		final boolean value;
+
+		Subscription(Long userId, int order, boolean value) {
+			this.userId = userId;
+			this.order = order;
+			this.value = value;
+		}
+
+	}
+
+	private static class CompiledQuery {
+
+		final String queryString;
+
+		// Whether the query references current user and has to be evaluated for each user
+		final boolean userDependent;
+
+		// Entity has to contain one of these tokens to be matched, null to evaluate against all entities
+		final Collection<String> matchTokens;
+
+		final List<Subscription> subscriptions = new ArrayList<>();
+
+		CompiledQuery(String queryString, boolean userDependent, @Nullable Collection<String> matchTokens) {
+			this.queryString = queryString;
+			this.userDependent = userDependent;
+			this.matchTokens = matchTokens;
+		}
+
+	}
+
+	private static class CompiledScope {
+
+		final Map<String, List<CompiledQuery>> tokenIndex = new HashMap<>();
+
+		final List<CompiledQuery> unindexedQueries = new ArrayList<>();
+
+		CompiledScope(Collection<CompiledQuery> compiledQueries) {
+			for (CompiledQuery compiledQuery: compiledQueries) {
+				if (compiledQuery.matchTokens != null) {
+					for (String token: compiledQuery.matchTokens)
+						tokenIndex.computeIfAbsent(token, it -> new ArrayList<>()).add(compiledQuery);
+				} else {
+					unindexedQueries.add(compiledQuery);
+				}
+			}
+		}
+
+		Collection<CompiledQuery> getCandidates(Collection<String> tokens) {
+			Set<CompiledQuery> candidates = new LinkedHashSet<>(unindexedQueries);
+			for (String token: tokens) {
+				List<CompiledQuery> indexedQueries = tokenIndex.get(token);
+				if (indexedQueries != null)
+					candidates.addAll(indexedQueries);
+			}
+			return candidates;
+		}
+
+	}
+
+}
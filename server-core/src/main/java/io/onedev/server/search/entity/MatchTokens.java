@@ -0,0 +1,58 @@
+package io.onedev.server.search.entity;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.LabelSpec;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.support.EntityLabel;
+
+/**
+ * Tokens describing selective attributes of entities. Criteria report tokens an entity must have
+ * to be matched, so that criteria can be indexed by tokens and only evaluated against entities
+ * having some of them
+ */
+public class MatchTokens {
+
+	public static String ofState(String state) {
+		return "state:" + state;
+	}
+
+	public static String ofStatus(Enum<?> status) {
+		return "status:" + status.name();
+	}
+
+	public static String ofLabel(LabelSpec labelSpec) {
+		return "label:" + labelSpec.getId();
+	}
+
+	public static String ofJob(String jobName) {
+		return "job:" + jobName.toLowerCase();
+	}
+
+	public static Collection<String> of(Issue issue) {
+		Collection<String> tokens = new HashSet<>();
+		tokens.add(ofState(issue.getState()));
+		return tokens;
+	}
+
+	public static Collection<String> of(PullRequest request) {
+		Collection<String> tokens = new HashSet<>();
+		tokens.add(ofStatus(request.getStatus()));
+		for (EntityLabel label: request.getLabels())
+			tokens.add(ofLabel(label.getSpec()));
+		return tokens;
+	}
+
+	public static Collection<String> of(Build build) {
+		Collection<String> tokens = new HashSet<>();
+		tokens.add(ofStatus(build.getStatus()));
+		tokens.add(ofJob(build.getJobName()));
+		for (EntityLabel label: build.getLabels())
+			tokens.add(ofLabel(label.getSpec()));
+		return tokens;
+	}
+
+}
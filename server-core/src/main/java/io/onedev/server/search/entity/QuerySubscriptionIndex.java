@@ -0,0 +1,42 @@
+package io.onedev.server.search.entity;
+
+import java.util.Collection;
+import java.util.Map;
+
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Issue;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.User;
+
+/**
+ * Index of watched and subscribed named queries. Queries are compiled once and grouped by query
+ * string, so that an entity is only evaluated against candidate queries, and evaluated once for
+ * all users sharing the query unless the query references current user. Compiled queries are
+ * invalidated when relevant personalizations, projects, users or settings change
+ */
+public interface QuerySubscriptionIndex {
+
+	/**
+	 * Get users watching specified issue via watched queries
+	 *
+	 * @return
+	 * 			map of watching user to watch status. Watches of project queries take precedence
+	 * 			over watches of global queries
+	 */
+	Map<User, Boolean> getIssueWatches(Issue issue);
+
+	/**
+	 * Get users watching specified pull request via watched queries
+	 *
+	 * @return
+	 * 			map of watching user to watch status. Watches of project queries take precedence
+	 * 			over watches of global queries
+	 */
+	Map<User, Boolean> getPullRequestWatches(PullRequest request);
+
+	/**
+	 * Get users subscribing specified build via subscribed queries
+	 */
+	Collection<User> getBuildSubscribers(Build build);
+
+}
@@ -1,12 +1,17 @@
 package io.onedev.server.search.entity.build;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.server.model.Build;
+import io.onedev.server.search.entity.MatchTokens;
 import io.onedev.server.util.criteria.Criteria;
 
 public class FinishedCriteria extends Criteria<Build> {
@@ -31,6 +36,15 @@ public class FinishedCriteria extends Criteria<Build> {
 				|| build.getStatus() == Build.Status.CANCELLED;
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		return Sets.newHashSet(
+				MatchTokens.ofStatus(Build.Status.SUCCESSFUL), 
+				MatchTokens.ofStatus(Build.Status.FAILED), 
+				MatchTokens.ofStatus(Build.Status.TIMED_OUT), 
+				MatchTokens.ofStatus(Build.Status.CANCELLED));
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return BuildQuery.getRuleName(BuildQueryLexer.Running);
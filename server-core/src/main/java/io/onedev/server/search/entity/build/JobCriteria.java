@@ -1,12 +1,17 @@
 package io.onedev.server.search.entity.build;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.server.model.Build;
+import io.onedev.server.search.entity.MatchTokens;
 import io.onedev.server.util.criteria.Criteria;
 import io.onedev.server.util.match.WildcardUtils;
 
@@ -32,6 +37,14 @@ public class JobCriteria extends Criteria<Build> {
 		return WildcardUtils.matchString(jobName.toLowerCase(), build.getJobName().toLowerCase());
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		if (jobName.indexOf('*') == -1 && jobName.indexOf('?') == -1)
+			return Sets.newHashSet(MatchTokens.ofJob(jobName));
+		else
+			return null;
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return quote(Build.NAME_JOB) + " " 
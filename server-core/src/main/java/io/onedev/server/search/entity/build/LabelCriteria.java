@@ -1,14 +1,19 @@
 package io.onedev.server.search.entity.build;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.server.model.Build;
 import io.onedev.server.model.BuildLabel;
 import io.onedev.server.model.LabelSpec;
 import io.onedev.server.model.Project;
+import io.onedev.server.search.entity.MatchTokens;
 import io.onedev.server.util.criteria.Criteria;
 
 public class LabelCriteria extends Criteria<Build> {
@@ -37,6 +42,11 @@ public class LabelCriteria extends Criteria<Build> {
 		return build.getLabels().stream().anyMatch(it->it.getSpec().equals(labelSpec));
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		return Sets.newHashSet(MatchTokens.ofLabel(labelSpec));
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return Criteria.quote(Project.NAME_LABEL) + " " 
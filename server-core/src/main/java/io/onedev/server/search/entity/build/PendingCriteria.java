@@ -1,12 +1,17 @@
 package io.onedev.server.search.entity.build;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.server.model.Build;
+import io.onedev.server.search.entity.MatchTokens;
 import io.onedev.server.util.criteria.Criteria;
 
 public class PendingCriteria extends Criteria<Build> {
@@ -24,6 +29,11 @@ public class PendingCriteria extends Criteria<Build> {
 		return build.getStatus() == Build.Status.PENDING;
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		return Sets.newHashSet(MatchTokens.ofStatus(Build.Status.PENDING));
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return BuildQuery.getRuleName(BuildQueryLexer.Pending);
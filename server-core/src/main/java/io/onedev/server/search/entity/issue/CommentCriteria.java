@@ -1,15 +1,20 @@
 package io.onedev.server.search.entity.issue;
 
+import java.util.Optional;
+
+import javax.annotation.Nullable;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
-import javax.persistence.criteria.Join;
-import javax.persistence.criteria.JoinType;
-import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.IssueComment;
+import io.onedev.server.search.entitytext.EntityCandidates;
+import io.onedev.server.search.entitytext.IssueTextManager;
 import io.onedev.server.util.criteria.Criteria;
 
 public class CommentCriteria extends Criteria<Issue> {
@@ -18,18 +23,35 @@ public class CommentCriteria extends Criteria<Issue> {
 
 	private final String value;
 	
+	// Resolved once so that count and list queries of same criteria hit the index only once
+	private transient Optional<EntityCandidates> resolvedCandidates;
+	
 	public CommentCriteria(String value) {
 		this.value = value;
 	}
 
 	@Override
 	public Predicate getPredicate(CriteriaQuery<?> query, From<Issue, Issue> from, CriteriaBuilder builder) {
-		Join<?, ?> join = from.join(Issue.PROP_COMMENTS, JoinType.LEFT);
-		Path<String> attribute = join.get(IssueComment.PROP_CONTENT);
-		join.on(builder.like(builder.lower(attribute), "%" + value.toLowerCase() + "%"));
-		return join.isNotNull();
+		Subquery<IssueComment> commentQuery = query.subquery(IssueComment.class);
+		Root<IssueComment> comment = commentQuery.from(IssueComment.class);
+		commentQuery.select(comment);
+		commentQuery.where(builder.and(
+				builder.equal(comment.get(IssueComment.PROP_ISSUE), from), 
+				builder.like(builder.lower(comment.get(IssueComment.PROP_CONTENT)), "%" + value.toLowerCase() + "%")));
+		Predicate predicate = builder.exists(commentQuery);
+		EntityCandidates candidates = getCandidates();
+		if (candidates != null)
+			predicate = builder.and(candidates.getPredicate(builder, from.get(Issue.PROP_ID)), predicate);
+		return predicate;
 	}
 
+	@Nullable
+	private EntityCandidates getCandidates() {
+		if (resolvedCandidates == null) 
+			resolvedCandidates = Optional.ofNullable(OneDev.getInstance(IssueTextManager.class).getCommentCandidates(value));
+		return resolvedCandidates.orElse(null);
+	}
+	
 	@Override
 	public boolean matches(Issue issue) {
 		for (IssueComment comment: issue.getComments()) {
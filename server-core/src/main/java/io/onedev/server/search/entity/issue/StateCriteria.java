@@ -10,10 +10,13 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.model.Issue;
 import io.onedev.server.model.support.administration.GlobalIssueSetting;
+import io.onedev.server.search.entity.MatchTokens;
 import io.onedev.server.util.criteria.Criteria;
 import io.onedev.server.web.component.issue.workflowreconcile.UndefinedStateResolution;
 
@@ -58,6 +61,14 @@ public class StateCriteria extends Criteria<Issue> {
 		return ordinal;
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		if (operator != IssueQueryLexer.IsBefore && operator != IssueQueryLexer.IsAfter)
+			return Sets.newHashSet(MatchTokens.ofState(value));
+		else
+			return null;
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return quote(Issue.NAME_STATE) + " " 
@@ -1,10 +1,15 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestComment;
+import io.onedev.server.search.entitytext.EntityCandidates;
+import io.onedev.server.search.entitytext.PullRequestTextManager;
 import io.onedev.server.util.criteria.Criteria;
 
+import javax.annotation.Nullable;
 import javax.persistence.criteria.*;
+import java.util.Optional;
 
 public class CommentCriteria extends Criteria<PullRequest> {
 
@@ -12,18 +17,35 @@ public class CommentCriteria extends Criteria<PullRequest> {
 
 	private final String value;
 	
+	// Resolved once so that count and list queries of same criteria hit the index only once
+	private transient Optional<EntityCandidates> resolvedCandidates;
+	
 	public CommentCriteria(String value) {
 		this.value = value;
 	}
 
 	@Override
 	public Predicate getPredicate(CriteriaQuery<?> query, From<PullRequest, PullRequest> from, CriteriaBuilder builder) {
-		Join<?, ?> join = from.join(PullRequest.PROP_COMMENTS, JoinType.LEFT);
-		Path<String> attribute = join.get(PullRequestComment.PROP_CONTENT);
-		join.on(builder.like(builder.lower(attribute), "%" + value.toLowerCase() + "%"));
-		return join.isNotNull();
+		Subquery<PullRequestComment> commentQuery = query.subquery(PullRequestComment.class);
+		Root<PullRequestComment> comment = commentQuery.from(PullRequestComment.class);
+		commentQuery.select(comment);
+		commentQuery.where(builder.and(
+				builder.equal(comment.get(PullRequestComment.PROP_REQUEST), from), 
+				builder.like(builder.lower(comment.get(PullRequestComment.PROP_CONTENT)), "%" + value.toLowerCase() + "%")));
+		Predicate predicate = builder.exists(commentQuery);
+		EntityCandidates candidates = getCandidates();
+		if (candidates != null)
+			predicate = builder.and(candidates.getPredicate(builder, from.get(PullRequest.PROP_ID)), predicate);
+		return predicate;
 	}
 
+	@Nullable
+	private EntityCandidates getCandidates() {
+		if (resolvedCandidates == null) 
+			resolvedCandidates = Optional.ofNullable(OneDev.getInstance(PullRequestTextManager.class).getCommentCandidates(value));
+		return resolvedCandidates.orElse(null);
+	}
+	
 	@Override
 	public boolean matches(PullRequest request) {
 		for (PullRequestComment comment: request.getComments()) { 
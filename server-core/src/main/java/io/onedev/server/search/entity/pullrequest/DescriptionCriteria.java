@@ -1,12 +1,18 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.Optional;
+
+import javax.annotation.Nullable;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Expression;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 
+import io.onedev.server.OneDev;
 import io.onedev.server.model.PullRequest;
+import io.onedev.server.search.entitytext.EntityCandidates;
+import io.onedev.server.search.entitytext.PullRequestTextManager;
 import io.onedev.server.util.criteria.Criteria;
 import io.onedev.server.util.match.WildcardUtils;
 
@@ -16,6 +22,9 @@ public class DescriptionCriteria extends Criteria<PullRequest> {
 
 	private final String value;
 	
+	// Resolved once so that count and list queries of same criteria hit the index only once
+	private transient Optional<EntityCandidates> resolvedCandidates;
+	
 	public DescriptionCriteria(String value) {
 		this.value = value;
 	}
@@ -23,9 +32,20 @@ public class DescriptionCriteria extends Criteria<PullRequest> {
 	@Override
 	public Predicate getPredicate(CriteriaQuery<?> query, From<PullRequest, PullRequest> from, CriteriaBuilder builder) {
 		Expression<String> attribute = from.get(PullRequest.PROP_DESCRIPTION);
-		return builder.like(builder.lower(attribute), "%" + value.toLowerCase().replace('*', '%') + "%");
+		Predicate predicate = builder.like(builder.lower(attribute), "%" + value.toLowerCase().replace('*', '%') + "%");
+		EntityCandidates candidates = getCandidates();
+		if (candidates != null)
+			predicate = builder.and(candidates.getPredicate(builder, from.get(PullRequest.PROP_ID)), predicate);
+		return predicate;
 	}
 
+	@Nullable
+	private EntityCandidates getCandidates() {
+		if (resolvedCandidates == null) 
+			resolvedCandidates = Optional.ofNullable(OneDev.getInstance(PullRequestTextManager.class).getDescriptionCandidates(value));
+		return resolvedCandidates.orElse(null);
+	}
+	
 	@Override
 	public boolean matches(PullRequest request) {
 		String description = request.getDescription();
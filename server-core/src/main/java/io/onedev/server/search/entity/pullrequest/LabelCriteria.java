@@ -1,13 +1,18 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.server.model.LabelSpec;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequestLabel;
+import io.onedev.server.search.entity.MatchTokens;
 import io.onedev.server.util.criteria.Criteria;
 
 public class LabelCriteria extends Criteria<PullRequest> {
@@ -36,6 +41,11 @@ public class LabelCriteria extends Criteria<PullRequest> {
 		return request.getLabels().stream().anyMatch(it->it.getSpec().equals(labelSpec));
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		return Sets.newHashSet(MatchTokens.ofLabel(labelSpec));
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return Criteria.quote(PullRequest.NAME_LABEL) + " " 
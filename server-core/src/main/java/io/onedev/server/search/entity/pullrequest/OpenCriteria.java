@@ -1,5 +1,7 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
@@ -27,6 +29,11 @@ public class OpenCriteria extends Criteria<PullRequest> {
 		return getCriteria().matches(request);
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		return getCriteria().getMatchTokens();
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return PullRequestQuery.getRuleName(PullRequestQueryLexer.Open);
@@ -1,12 +1,17 @@
 package io.onedev.server.search.entity.pullrequest;
 
+import java.util.Collection;
+
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.From;
 import javax.persistence.criteria.Predicate;
 
+import com.google.common.collect.Sets;
+
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.model.PullRequest.Status;
+import io.onedev.server.search.entity.MatchTokens;
 import io.onedev.server.util.criteria.Criteria;
 
 public class StatusCriteria extends Criteria<PullRequest> {
@@ -29,6 +34,11 @@ public class StatusCriteria extends Criteria<PullRequest> {
 		return request.getStatus() == status;
 	}
 
+	@Override
+	public Collection<String> getMatchTokens() {
+		return Sets.newHashSet(MatchTokens.ofStatus(status));
+	}
+
 	@Override
 	public String toStringWithoutParens() {
 		return quote(PullRequest.NAME_STATUS) + " " 
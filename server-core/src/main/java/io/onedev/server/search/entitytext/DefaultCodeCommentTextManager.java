@@ -65,7 +65,7 @@ public class DefaultCodeCommentTextManager extends ProjectTextManager<CodeCommen
 	
 	@Override
 	protected int getIndexVersion() {
-		return 4;
+		return 5;
 	}
 
 	@Override
@@ -8,9 +8,12 @@ import io.onedev.server.entitymanager.IssueFieldManager;
 import io.onedev.server.entitymanager.IssueLinkManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.Listen;
 import io.onedev.server.event.project.issue.*;
 import io.onedev.server.model.Issue;
+import io.onedev.server.model.IssueChange;
 import io.onedev.server.model.IssueComment;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.support.issue.changedata.IssueChangeData;
@@ -61,6 +64,8 @@ public class DefaultIssueTextManager extends ProjectTextManager<Issue> implement
 	
 	private static final String FIELD_COMMENTS = "comments";
 	
+	private static final String FIELD_SYSTEM_COMMENTS = "systemComments";
+	
 	private final IssueFieldManager fieldManager;
 	
 	private final UserManager userManager;
@@ -84,7 +89,7 @@ public class DefaultIssueTextManager extends ProjectTextManager<Issue> implement
 	
 	@Override
 	protected int getIndexVersion() {
-		return 5;
+		return 7;
 	}
 
 	@Override
@@ -95,12 +100,45 @@ public class DefaultIssueTextManager extends ProjectTextManager<Issue> implement
 		if (entity.getDescription() != null)
 			document.add(new TextField(FIELD_DESCRIPTION, entity.getDescription(), Store.NO));
 		StringBuilder builder = new StringBuilder();
+		StringBuilder systemBuilder = new StringBuilder();
 		for (IssueComment comment: entity.getComments()) {
 			if (!comment.getUser().equals(userManager.getSystem()))
 				builder.append(comment.getContent()).append("\n");
+			else
+				systemBuilder.append(comment.getContent()).append("\n");
 		}
 		if (builder.length() != 0)
 			document.add(new TextField(FIELD_COMMENTS, builder.toString(), Store.NO));
+		// Not used for full text search, but for resolving comment criteria of entity queries 
+		if (systemBuilder.length() != 0)
+			document.add(new TextField(FIELD_SYSTEM_COMMENTS, systemBuilder.toString(), Store.NO));
+	}
+	
+	@Listen
+	public void on(EntityPersisted event) {
+		Issue issue = null;
+		if (event.getEntity() instanceof Issue) {
+			if (event.isNew())
+				issue = (Issue) event.getEntity();
+		} else if (event.getEntity() instanceof IssueChange) {
+			IssueChange change = (IssueChange) event.getEntity();
+			if (change.getData() instanceof IssueTitleChangeData 
+					|| change.getData() instanceof IssueDescriptionChangeData) {
+				issue = change.getIssue();
+			}
+		} else if (event.getEntity() instanceof IssueComment) {
+			issue = ((IssueComment) event.getEntity()).getIssue();
+		}
+		if (issue != null)
+			requestIndexBeforeCommit(issue.getProject().getId(), issue.getId());
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof IssueComment) {
+			Issue issue = ((IssueComment) event.getEntity()).getIssue();
+			requestIndexBeforeCommit(issue.getProject().getId(), issue.getId());
+		}
 	}
 	
 	@Sessional
@@ -311,4 +349,16 @@ public class DefaultIssueTextManager extends ProjectTextManager<Issue> implement
 			return 0;
 	}
 	
+	@Nullable
+	@Override
+	public EntityCandidates getDescriptionCandidates(String text) {
+		return queryCandidates(new String[] {FIELD_DESCRIPTION}, text);
+	}
+
+	@Nullable
+	@Override
+	public EntityCandidates getCommentCandidates(String text) {
+		return queryCandidates(new String[] {FIELD_COMMENTS, FIELD_SYSTEM_COMMENTS}, text);
+	}
+	
 }
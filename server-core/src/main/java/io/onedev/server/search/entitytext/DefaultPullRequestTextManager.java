@@ -7,10 +7,13 @@ import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.PullRequestReviewManager;
 import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.Listen;
 import io.onedev.server.event.project.pullrequest.*;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.PullRequestChange;
 import io.onedev.server.model.PullRequestComment;
 import io.onedev.server.model.support.pullrequest.changedata.PullRequestChangeData;
 import io.onedev.server.model.support.pullrequest.changedata.PullRequestDescriptionChangeData;
@@ -57,6 +60,8 @@ public class DefaultPullRequestTextManager extends ProjectTextManager<PullReques
 
 	private static final String FIELD_COMMENTS = "comments";
 	
+	private static final String FIELD_SYSTEM_COMMENTS = "systemComments";
+	
 	private final PullRequestReviewManager reviewManager;
 	
 	private final BuildManager buildManager;
@@ -81,7 +86,7 @@ public class DefaultPullRequestTextManager extends ProjectTextManager<PullReques
 	
 	@Override
 	protected int getIndexVersion() {
-		return 4;
+		return 6;
 	}
 
 	@Override
@@ -91,14 +96,47 @@ public class DefaultPullRequestTextManager extends ProjectTextManager<PullReques
 		if (entity.getDescription() != null)
 			document.add(new TextField(FIELD_DESCRIPTION, entity.getDescription(), Store.NO));
 		StringBuilder builder = new StringBuilder();
+		StringBuilder systemBuilder = new StringBuilder();
 		for (PullRequestComment comment: entity.getComments()) {
 			if (!comment.getUser().equals(userManager.getSystem()))
 				builder.append(comment.getContent()).append("\n");
+			else
+				systemBuilder.append(comment.getContent()).append("\n");
 		}
 		if (builder.length() != 0)
 			document.add(new TextField(FIELD_COMMENTS, builder.toString(), Store.NO));
+		// Not used for full text search, but for resolving comment criteria of entity queries 
+		if (systemBuilder.length() != 0)
+			document.add(new TextField(FIELD_SYSTEM_COMMENTS, systemBuilder.toString(), Store.NO));
 	}
 
+	@Listen
+	public void on(EntityPersisted event) {
+		PullRequest request = null;
+		if (event.getEntity() instanceof PullRequest) {
+			if (event.isNew())
+				request = (PullRequest) event.getEntity();
+		} else if (event.getEntity() instanceof PullRequestChange) {
+			PullRequestChange change = (PullRequestChange) event.getEntity();
+			if (change.getData() instanceof PullRequestTitleChangeData 
+					|| change.getData() instanceof PullRequestDescriptionChangeData) {
+				request = change.getRequest();
+			}
+		} else if (event.getEntity() instanceof PullRequestComment) {
+			request = ((PullRequestComment) event.getEntity()).getRequest();
+		}
+		if (request != null)
+			requestIndexBeforeCommit(request.getProject().getId(), request.getId());
+	}
+	
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof PullRequestComment) {
+			PullRequest request = ((PullRequestComment) event.getEntity()).getRequest();
+			requestIndexBeforeCommit(request.getProject().getId(), request.getId());
+		}
+	}
+	
 	@Sessional
 	@Listen
 	public void on(PullRequestOpened event) {
@@ -218,4 +256,16 @@ public class DefaultPullRequestTextManager extends ProjectTextManager<PullReques
 			return 0;
 	}
 	
+	@Nullable
+	@Override
+	public EntityCandidates getDescriptionCandidates(String text) {
+		return queryCandidates(new String[] {FIELD_DESCRIPTION}, text);
+	}
+
+	@Nullable
+	@Override
+	public EntityCandidates getCommentCandidates(String text) {
+		return queryCandidates(new String[] {FIELD_COMMENTS, FIELD_SYSTEM_COMMENTS}, text);
+	}
+	
 }
@@ -0,0 +1,66 @@
+package io.onedev.server.search.entitytext;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+
+import io.onedev.server.util.criteria.Criteria;
+
+/**
+ * Ids of entities possibly matching some text criteria, as resolved from entity text index.
+ * Entities not yet indexed are always considered as candidates, so an entity not contained
+ * here does not match the criteria, unless the text crosses split of an indexed token longer 
+ * than max token length of the analyzer.
+ */
+public class EntityCandidates implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Collection<Long> ids;
+
+	private final long lastIndexedId;
+
+	public EntityCandidates(Collection<Long> ids, long lastIndexedId) {
+		this.ids = ids;
+		this.lastIndexedId = lastIndexedId;
+	}
+
+	/**
+	 * @return
+	 * 			ids of matched entities in the index, plus ids of entities whose changes are
+	 * 			not indexed yet
+	 */
+	public Collection<Long> getIds() {
+		return ids;
+	}
+
+	/**
+	 * @return
+	 * 			entities with id larger than this are not indexed yet
+	 */
+	public long getLastIndexedId() {
+		return lastIndexedId;
+	}
+
+	public Predicate getPredicate(CriteriaBuilder builder, Path<Long> idPath) {
+		List<Predicate> predicates = new ArrayList<>();
+		predicates.add(builder.greaterThan(idPath, lastIndexedId));
+		List<Long> inClause = new ArrayList<>();
+		for (Long id: ids) {
+			inClause.add(id);
+			if (inClause.size() == Criteria.IN_CLAUSE_LIMIT) {
+				predicates.add(idPath.in(inClause));
+				inClause = new ArrayList<>();
+			}
+		}
+		if (!inClause.isEmpty())
+			predicates.add(idPath.in(inClause));
+		return builder.or(predicates.toArray(new Predicate[0]));
+	}
+
+}
@@ -14,4 +14,22 @@ public interface IssueTextManager {
 	List<Issue> query(@Nullable ProjectScope projectScope, String queryString, 
 			boolean loadFieldsAndLinks, int firstResult, int maxResults);
 	
+	/**
+	 * Get candidates of issues whose description contains specified text
+	 * 
+	 * @return
+	 * 			candidates of issues, or <tt>null</tt> if not able to resolve via index
+	 */
+	@Nullable
+	EntityCandidates getDescriptionCandidates(String text);
+	
+	/**
+	 * Get candidates of issues with some comment containing specified text
+	 * 
+	 * @return
+	 * 			candidates of issues, or <tt>null</tt> if not able to resolve via index
+	 */
+	@Nullable
+	EntityCandidates getCommentCandidates(String text);
+	
 }
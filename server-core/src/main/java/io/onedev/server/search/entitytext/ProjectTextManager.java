@@ -1,5 +1,7 @@
 package io.onedev.server.search.entitytext;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.WordUtils;
@@ -22,6 +24,7 @@ import io.onedev.server.util.concurrent.BatchWorkManager;
 import io.onedev.server.util.concurrent.BatchWorker;
 import io.onedev.server.util.concurrent.Prioritized;
 import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
 import org.apache.lucene.analysis.CharArraySet;
 import org.apache.lucene.analysis.WordlistLoader;
 import org.apache.lucene.analysis.da.DanishAnalyzer;
@@ -39,6 +42,7 @@ import org.apache.lucene.analysis.ru.RussianAnalyzer;
 import org.apache.lucene.analysis.snowball.SnowballFilter;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.analysis.sv.SwedishAnalyzer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.LongPoint;
@@ -62,6 +66,11 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
 public abstract class ProjectTextManager<T extends ProjectBelonging> implements Serializable {
 
 	private static final long serialVersionUID = 1L;
@@ -81,6 +90,18 @@ public abstract class ProjectTextManager<T extends ProjectBelonging> implements
 	private static final int INDEXING_PRIORITY = 20;
 
 	private static final int BATCH_SIZE = 5000;
+	
+	private static final int MAX_CANDIDATES = 10000;
+	
+	/*
+	 * Default max token length of StandardAnalyzer is 255, and longer tokens such as hashes or 
+	 * long identifiers are split, which breaks resolving candidates of text crossing the split. 
+	 * Lucene rejects terms longer than 32766 bytes, and this is the max length guaranteed to 
+	 * fit in UTF-8 encoding
+	 */
+	private static final int MAX_TOKEN_LENGTH = 8191;
+	
+	private static final Pattern CANDIDATE_WORD = Pattern.compile("[\\p{L}\\p{N}]+");
 
 	private static final CharArraySet STOP_WORDS = new CharArraySet(1000, false);
 
@@ -125,6 +146,14 @@ public abstract class ProjectTextManager<T extends ProjectBelonging> implements
 
 	private volatile SearcherManager searcherManager;
 	
+	// Entities requested to be indexed, mapped to sequence of latest request 
+	private final ConcurrentMap<Long, Long> pendingEntities = new ConcurrentHashMap<>();
+	
+	private final AtomicLong indexRequestSequence = new AtomicLong();
+	
+	// Entities changed in ongoing transactions of this server, mapped to number of such transactions
+	private final ConcurrentMap<Long, Integer> changingEntities = new ConcurrentHashMap<>();
+	
 	@SuppressWarnings("unchecked")
 	public ProjectTextManager(Dao dao, StorageManager storageManager, BatchWorkManager batchWorkManager,
 			TransactionManager transactionManager, ProjectManager projectManager, 
@@ -235,7 +264,47 @@ public abstract class ProjectTextManager<T extends ProjectBelonging> implements
 	}
 	
 	protected void requestIndexLocal(T entity) {
-		batchWorkManager.submit(getBatchWorker(), new IndexWork(INDEXING_PRIORITY, entity.getId()));
+		requestIndexLocal(entity.getId());
+	}
+	
+	private void requestIndexLocal(Long entityId) {
+		pendingEntities.put(entityId, indexRequestSequence.incrementAndGet());
+		batchWorkManager.submit(getBatchWorker(), new IndexWork(INDEXING_PRIORITY, entityId));
+	}
+	
+	/**
+	 * Request to index specified entity whose text is being changed in current transaction. Index 
+	 * requests triggered by entity events are only dispatched to project server after commit and 
+	 * asynchronously, and the changed entity would be neither indexed nor pending in between. 
+	 * Entities requested here are considered as candidates from before commit until project 
+	 * server takes over the request
+	 */
+	protected void requestIndexBeforeCommit(Long projectId, Long entityId) {
+		changingEntities.merge(entityId, 1, Integer::sum);
+		transactionManager.mustRunAfterTransaction(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					projectManager.runOnProjectServer(projectId, new ClusterTask<Void>() {
+
+						private static final long serialVersionUID = 1L;
+
+						@Override
+						public Void call() throws Exception {
+							requestIndexLocal(entityId);
+							return null;
+						}
+						
+					});
+				} catch (Exception e) {
+					logger.error("Error requesting index (entity id: " + entityId + ")", e);
+				} finally {
+					changingEntities.computeIfPresent(entityId, (key, value) -> value>1? value-1: null);
+				}
+			}
+			
+		});
 	}
 	
 	protected void doWithWriter(WriterRunnable runnable) {
@@ -251,8 +320,9 @@ public abstract class ProjectTextManager<T extends ProjectBelonging> implements
 					writer.rollback();
 					throw ExceptionUtils.unchecked(e);
 				} finally {
+					// Block so that entities no longer pending are guaranteed to be searchable
 					if (searcherManager != null)
-						searcherManager.maybeRefresh();
+						searcherManager.maybeRefreshBlocking();
 				}
 			}
 		} catch (IOException e) {
@@ -261,7 +331,9 @@ public abstract class ProjectTextManager<T extends ProjectBelonging> implements
 	}
 
 	protected Analyzer newAnalyzer() {
-		return new StandardAnalyzer(STOP_WORDS);
+		StandardAnalyzer analyzer = new StandardAnalyzer(STOP_WORDS);
+		analyzer.setMaxTokenLength(MAX_TOKEN_LENGTH);
+		return analyzer;
 	}
 
 	private int getIndexVersion(IndexSearcher searcher) throws IOException {
@@ -301,7 +373,17 @@ public abstract class ProjectTextManager<T extends ProjectBelonging> implements
 						checkNewEntities = true;
 				}
 
+				Map<Long, Long> requestSequences = new HashMap<>();
+				for (Long entityId: entityIds) {
+					Long requestSequence = pendingEntities.get(entityId);
+					if (requestSequence != null)
+						requestSequences.put(entityId, requestSequence);
+				}
+				
 				index(entityIds);
+				
+				for (Map.Entry<Long, Long> entry: requestSequences.entrySet())
+					pendingEntities.remove(entry.getKey(), entry.getValue());
 
 				if (checkNewEntities) {
 					// do the work batch by batch to avoid consuming too much memory
@@ -477,6 +559,149 @@ public abstract class ProjectTextManager<T extends ProjectBelonging> implements
 		}
 	}
 
+	/**
+	 * Get candidates of entities containing specified text in any of specified fields, for the 
+	 * purpose of narrowing down database queries. As index is analyzed, text is only resolved if 
+	 * it consists of words guaranteed to be tokenized the same way in indexed content. Tokens 
+	 * longer than {@link #MAX_TOKEN_LENGTH} are split in indexed content, and text crossing the 
+	 * split is not resolved as candidate.
+	 * 
+	 * @return
+	 * 			candidates of entities, or <tt>null</tt> if text can not be resolved via index, 
+	 * 			or there are too many candidates to be useful
+	 */
+	@Nullable
+	protected EntityCandidates queryCandidates(String[] fieldNames, String text) {
+		Query query = buildContainingQuery(fieldNames, text);
+		if (query == null)
+			return null;
+		
+		/*
+		 * Collect entities being changed on all servers first. An entity no longer being changed 
+		 * is then guaranteed to be either pending or searchable on its project server below
+		 */
+		Collection<Long> candidateIds = new HashSet<>();
+		for (Collection<Long> changingIds: clusterManager.runOnAllServers(new ClusterTask<ArrayList<Long>>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public ArrayList<Long> call() throws Exception {
+				return new ArrayList<>(changingEntities.keySet());
+			}
+			
+		}).values()) {
+			candidateIds.addAll(changingIds);
+		}
+		if (candidateIds.size() > MAX_CANDIDATES)
+			return null;
+		
+		String queryString = query.toString();
+		long lastIndexedId = Long.MAX_VALUE;
+		for (EntityCandidates candidates: clusterManager.runOnAllServers(new ClusterTask<EntityCandidates>() {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public EntityCandidates call() throws Exception {
+				if (searcherManager != null) {
+					// Get pending entities before acquiring searcher, so that an entity no longer 
+					// pending is guaranteed to be visible to the searcher
+					Collection<Long> ids = new HashSet<>(pendingEntities.keySet());
+					if (ids.size() > MAX_CANDIDATES)
+						return null;
+					IndexSearcher indexSearcher = searcherManager.acquire();
+					try {
+						TopDocs topDocs = indexSearcher.search(parse(queryString), MAX_CANDIDATES + 1);
+						for (var scoreDoc: topDocs.scoreDocs) {
+							Document doc = indexSearcher.doc(scoreDoc.doc);
+							ids.add(Long.valueOf(doc.get(FIELD_ENTITY_ID)));
+						}
+						if (ids.size() > MAX_CANDIDATES)
+							return null;
+						return new EntityCandidates(ids, getLastEntityId(indexSearcher));
+					} finally {
+						searcherManager.release(indexSearcher);
+					}
+				} else {
+					return null;
+				}
+			}
+			
+		}).values()) {
+			if (candidates == null)
+				return null;
+			candidateIds.addAll(candidates.getIds());
+			if (candidateIds.size() > MAX_CANDIDATES)
+				return null;
+			lastIndexedId = Math.min(lastIndexedId, candidates.getLastIndexedId());
+		}
+		
+		return new EntityCandidates(candidateIds, lastIndexedId);
+	}
+	
+	/*
+	 * Build a query matching all documents with specified text as substring of any specified 
+	 * field. The first word may be suffix of an indexed token, the last word may be prefix of 
+	 * an indexed token, and words in between should match indexed tokens exactly
+	 */
+	@Nullable
+	Query buildContainingQuery(String[] fieldNames, String text) {
+		List<String> words = Splitter.on(CharMatcher.whitespace()).omitEmptyStrings().splitToList(text);
+		if (words.isEmpty())
+			return null;
+		
+		List<String> tokens = new ArrayList<>();
+		try (Analyzer analyzer = newAnalyzer(); TokenStream stream = analyzer.tokenStream("", text)) {
+			CharTermAttribute termAttribute = stream.addAttribute(CharTermAttribute.class);
+			stream.reset();
+			while (stream.incrementToken())
+				tokens.add(termAttribute.toString());
+			stream.end();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		if (tokens.size() != words.size())
+			return null;
+		
+		for (int i=0; i<words.size(); i++) {
+			if (!CANDIDATE_WORD.matcher(words.get(i)).matches() 
+					|| !tokens.get(i).equals(words.get(i).toLowerCase(Locale.ROOT))) {
+				return null;
+			}
+		}
+		
+		// Stop words are not indexed, so text being part of them can not be resolved
+		String firstToken = tokens.get(0);
+		String lastToken = tokens.get(tokens.size()-1);
+		for (Object stopWord: STOP_WORDS) {
+			String stopWordString = new String((char[]) stopWord);
+			if (tokens.size() == 1) {
+				if (stopWordString.contains(firstToken))
+					return null;
+			} else if (stopWordString.endsWith(firstToken) || stopWordString.startsWith(lastToken)) {
+				return null;
+			}
+		}
+		
+		BooleanQuery.Builder queryBuilder = new BooleanQuery.Builder();
+		for (String fieldName: fieldNames) {
+			Query fieldQuery;
+			if (tokens.size() == 1) {
+				fieldQuery = new WildcardQuery(new Term(fieldName, "*" + firstToken + "*"));
+			} else {
+				BooleanQuery.Builder fieldQueryBuilder = new BooleanQuery.Builder();
+				fieldQueryBuilder.add(new WildcardQuery(new Term(fieldName, "*" + firstToken)), BooleanClause.Occur.MUST);
+				for (String token: tokens.subList(1, tokens.size()-1))
+					fieldQueryBuilder.add(new TermQuery(new Term(fieldName, token)), BooleanClause.Occur.MUST);
+				fieldQueryBuilder.add(new PrefixQuery(new Term(fieldName, lastToken)), BooleanClause.Occur.MUST);
+				fieldQuery = fieldQueryBuilder.build();
+			}
+			queryBuilder.add(fieldQuery, BooleanClause.Occur.SHOULD);
+		}
+		return queryBuilder.build();
+	}
+	
 	private void index(IndexWriter writer, T entity) throws IOException {
 		Document document = new Document();
 		document.add(new StringField(FIELD_ENTITY_ID, String.valueOf(entity.getId()), Store.YES));
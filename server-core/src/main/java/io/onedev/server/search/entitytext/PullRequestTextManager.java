@@ -14,4 +14,22 @@ public interface PullRequestTextManager {
 	List<PullRequest> query(@Nullable Project project, String queryString, 
 			boolean loadReviewsAndBuilds, int firstResult, int maxResults);
 	
+	/**
+	 * Get candidates of pull requests whose description contains specified text
+	 * 
+	 * @return
+	 * 			candidates of pull requests, or <tt>null</tt> if not able to resolve via index
+	 */
+	@Nullable
+	EntityCandidates getDescriptionCandidates(String text);
+	
+	/**
+	 * Get candidates of pull requests with some comment containing specified text
+	 * 
+	 * @return
+	 * 			candidates of pull requests, or <tt>null</tt> if not able to resolve via index
+	 */
+	@Nullable
+	EntityCandidates getCommentCandidates(String text);
+	
 }
@@ -0,0 +1,319 @@
+package io.onedev.server.security;
+
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.shiro.authz.Permission;
+import org.hibernate.Transaction;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Sets;
+
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.server.cluster.ClusterManager;
+import io.onedev.server.cluster.ClusterTask;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.model.Group;
+import io.onedev.server.model.GroupAuthorization;
+import io.onedev.server.model.Membership;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.Role;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.User;
+import io.onedev.server.model.UserAuthorization;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.security.permission.AccessBuild;
+import io.onedev.server.security.permission.AccessBuildLog;
+import io.onedev.server.security.permission.AccessBuildReports;
+import io.onedev.server.security.permission.AccessConfidentialIssues;
+import io.onedev.server.security.permission.AccessProject;
+import io.onedev.server.security.permission.CreateChildren;
+import io.onedev.server.security.permission.CreateRootProjects;
+import io.onedev.server.security.permission.JobPermission;
+import io.onedev.server.security.permission.ManageBuilds;
+import io.onedev.server.security.permission.ManageCodeComments;
+import io.onedev.server.security.permission.ManageIssues;
+import io.onedev.server.security.permission.ManageJob;
+import io.onedev.server.security.permission.ManageProject;
+import io.onedev.server.security.permission.ManagePullRequests;
+import io.onedev.server.security.permission.ProjectPermission;
+import io.onedev.server.security.permission.ReadCode;
+import io.onedev.server.security.permission.RunJob;
+import io.onedev.server.security.permission.ScheduleIssues;
+import io.onedev.server.security.permission.SystemAdministration;
+import io.onedev.server.security.permission.WriteCode;
+import io.onedev.server.util.facade.ProjectFacade;
+
+@Singleton
+public class DefaultPermissionCache implements PermissionCache, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int MAX_CACHE_SIZE = 100000;
+
+	// Privileges without state, decision of which only depends on privilege class
+	@SuppressWarnings("unchecked")
+	private static final Set<Class<? extends Permission>> STATELESS_PRIVILEGES = Sets.newHashSet(
+			AccessBuild.class, AccessBuildLog.class, AccessConfidentialIssues.class, AccessProject.class,
+			CreateChildren.class, CreateRootProjects.class, ManageBuilds.class, ManageCodeComments.class,
+			ManageIssues.class, ManageJob.class, ManageProject.class, ManagePullRequests.class,
+			ReadCode.class, RunJob.class, ScheduleIssues.class, SystemAdministration.class, WriteCode.class);
+
+	private final TransactionManager transactionManager;
+
+	private final ClusterManager clusterManager;
+
+	private final ProjectManager projectManager;
+
+	private final SettingManager settingManager;
+
+	private final Cache<DecisionKey, Boolean> decisionCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHE_SIZE)
+			.recordStats()
+			.build();
+
+	/*
+	 * Increased on each invalidation to prevent a decision calculated before the
+	 * invalidation from being cached after the invalidation
+	 */
+	private long version;
+
+	@Inject
+	public DefaultPermissionCache(TransactionManager transactionManager, ClusterManager clusterManager,
+			ProjectManager projectManager, SettingManager settingManager) {
+		this.transactionManager = transactionManager;
+		this.clusterManager = clusterManager;
+		this.projectManager = projectManager;
+		this.settingManager = settingManager;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(PermissionCache.class);
+	}
+
+	@Override
+	public boolean isPermitted(Long userId, Permission permission, Supplier<Boolean> decider) {
+		DecisionKey key = getDecisionKey(userId, permission);
+		if (key != null) {
+			Boolean permitted = decisionCache.getIfPresent(key);
+			if (permitted == null) {
+				long versionBeforeDecision;
+				synchronized (this) {
+					versionBeforeDecision = version;
+				}
+				permitted = decider.get();
+				synchronized (this) {
+					if (version == versionBeforeDecision)
+						decisionCache.put(key, permitted);
+				}
+			}
+			return permitted;
+		} else {
+			return decider.get();
+		}
+	}
+
+	@Nullable
+	private DecisionKey getDecisionKey(Long userId, Permission permission) {
+		if (permission instanceof ProjectPermission) {
+			ProjectPermission projectPermission = (ProjectPermission) permission;
+			Long projectId = projectPermission.getProject().getId();
+			String privilegeKey = getPrivilegeKey(projectPermission.getPrivilege());
+			if (projectId != null && privilegeKey != null)
+				return new DecisionKey(userId, projectId, privilegeKey);
+			else
+				return null;
+		} else {
+			String privilegeKey = getPrivilegeKey(permission);
+			if (privilegeKey != null)
+				return new DecisionKey(userId, 0L, privilegeKey);
+			else
+				return null;
+		}
+	}
+
+	@Nullable
+	private String getPrivilegeKey(Permission privilege) {
+		if (STATELESS_PRIVILEGES.contains(privilege.getClass())) {
+			return privilege.getClass().getSimpleName();
+		} else if (privilege instanceof JobPermission) {
+			JobPermission jobPermission = (JobPermission) privilege;
+			String privilegeKey = getPrivilegeKey(jobPermission.getPrivilege());
+			if (privilegeKey != null)
+				return privilegeKey + ":" + jobPermission.getJobNames();
+			else
+				return null;
+		} else if (privilege instanceof AccessBuildReports) {
+			return AccessBuildReports.class.getSimpleName() + ":"
+					+ ((AccessBuildReports) privilege).getReportNames();
+		} else {
+			return null;
+		}
+	}
+
+	/*
+	 * Persisting a user does not affect permissions, as permissions of a user are derived 
+	 * from its id, memberships and authorizations, which are handled separately here
+	 */
+	@Listen
+	public void on(EntityPersisted event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof Membership) {
+			invalidateUsers(Sets.newHashSet(((Membership) entity).getUser().getId()));
+		} else if (entity instanceof UserAuthorization) {
+			invalidateUsers(Sets.newHashSet(((UserAuthorization) entity).getUser().getId()));
+		} else if (entity instanceof GroupAuthorization) {
+			invalidateGroup(((GroupAuthorization) entity).getGroup());
+		} else if (entity instanceof Group && !event.isNew()) {
+			invalidateGroup((Group) entity);
+		} else if (entity instanceof Role && !event.isNew()) {
+			invalidateAll();
+		} else if (entity instanceof Project && !event.isNew()) {
+			// Project facade is updated after commit, so it still reflects state before the change
+			Project project = (Project) entity;
+			ProjectFacade facade = projectManager.findFacadeById(project.getId());
+			if (facade == null
+					|| !Objects.equals(facade.getParentId(), Project.idOf(project.getParent()))
+					|| !Objects.equals(facade.getDefaultRoleId(), Role.idOf(project.getDefaultRole()))) {
+				invalidateProjects(new HashSet<>(projectManager.getSubtreeIds(project.getId())));
+			}
+		} else if (entity instanceof Setting && ((Setting) entity).getKey() == Setting.Key.SECURITY) {
+			// Default login group or anonymous access might be changed
+			invalidateAll();
+		}
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		AbstractEntity entity = event.getEntity();
+		if (entity instanceof Membership) {
+			invalidateUsers(Sets.newHashSet(((Membership) entity).getUser().getId()));
+		} else if (entity instanceof UserAuthorization) {
+			invalidateUsers(Sets.newHashSet(((UserAuthorization) entity).getUser().getId()));
+		} else if (entity instanceof GroupAuthorization) {
+			invalidateGroup(((GroupAuthorization) entity).getGroup());
+		} else if (entity instanceof User) {
+			invalidateUsers(Sets.newHashSet(entity.getId()));
+		} else if (entity instanceof Group || entity instanceof Role) {
+			invalidateAll();
+		} else if (entity instanceof Project) {
+			invalidateProjects(new HashSet<>(projectManager.getSubtreeIds(entity.getId())));
+		}
+	}
+
+	private void invalidateGroup(Group group) {
+		if (group.getName().equals(settingManager.getSecuritySetting().getDefaultLoginGroupName())) {
+			invalidateAll();
+		} else {
+			HashSet<Long> userIds = new HashSet<>();
+			for (Membership membership: group.getMemberships())
+				userIds.add(membership.getUser().getId());
+			invalidateUsers(userIds);
+		}
+	}
+
+	private void invalidateUsers(HashSet<Long> userIds) {
+		invalidateAfterTransaction(userIds, null);
+	}
+
+	private void invalidateProjects(HashSet<Long> projectIds) {
+		invalidateAfterTransaction(null, projectIds);
+	}
+
+	private void invalidateAll() {
+		invalidateAfterTransaction(null, null);
+	}
+
+	/*
+	 * Invalidate after transaction completes even if it is rolled back, as decisions might
+	 * have been calculated and cached with uncommitted changes in current transaction
+	 */
+	private void invalidateAfterTransaction(@Nullable HashSet<Long> userIds, @Nullable HashSet<Long> projectIds) {
+		Runnable runnable = new Runnable() {
+
+			@Override
+			public void run() {
+				clusterManager.submitToAllServers(new ClusterTask<Void>() {
+
+					private static final long serialVersionUID = 1L;
+
+					@Override
+					public Void call() throws Exception {
+						invalidate(userIds, projectIds);
+						return null;
+					}
+
+				});
+			}
+
+		};
+
+		Transaction transaction = transactionManager.getTransaction();
+		if (transaction != null && transaction.isActive())
+			transactionManager.mustRunAfterTransaction(runnable);
+		else
+			runnable.run();
+	}
+
+	private synchronized void invalidate(@Nullable Collection<Long> userIds, @Nullable Collection<Long> projectIds) {
+		version++;
+		if (userIds != null)
+			decisionCache.asMap().keySet().removeIf(it -> userIds.contains(it.userId));
+		else if (projectIds != null)
+			decisionCache.asMap().keySet().removeIf(it -> projectIds.contains(it.projectId));
+		else
+			decisionCache.invalidateAll();
+	}
+
+	@Override
+	public CacheStats getCacheStats() {
+		return decisionCache.stats();
+	}
+
+	private static class DecisionKey {
+
+		final long userId;
+
+		final long projectId;
+
+		final String privilegeKey;
+
+		DecisionKey(long userId, long projectId, String privilegeKey) {
+			this.userId = userId;
+			this.projectId = projectId;
+			this.privilegeKey = privilegeKey;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof DecisionKey))
+				return false;
+			DecisionKey otherKey = (DecisionKey) other;
+			return userId == otherKey.userId && projectId == otherKey.projectId
+					&& privilegeKey.equals(otherKey.privilegeKey);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(userId, projectId, privilegeKey);
+		}
+
+	}
+
+}
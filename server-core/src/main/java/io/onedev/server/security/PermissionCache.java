@@ -0,0 +1,33 @@
+package io.onedev.server.security;
+
+import java.util.function.Supplier;
+
+import org.apache.shiro.authz.Permission;
+
+import com.google.common.cache.CacheStats;
+
+/**
+ * Cache of permission decisions keyed by user, project and privilege. Cached decisions are 
+ * invalidated across the cluster when entities affecting authorization change
+ */
+public interface PermissionCache {
+
+	/**
+	 * Check if specified user has specified permission
+	 * 
+	 * @param userId
+	 * 			id of the user to check, <tt>0</tt> for anonymous user
+	 * @param permission
+	 * 			permission to check
+	 * @param decider
+	 * 			decider to calculate the decision if it is not cached, or the permission is not 
+	 * 			cacheable 
+	 */
+	boolean isPermitted(Long userId, Permission permission, Supplier<Boolean> decider);
+	
+	/**
+	 * Get statistics of permission decision cache
+	 */
+	CacheStats getCacheStats();
+	
+}
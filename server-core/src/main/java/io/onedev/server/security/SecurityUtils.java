@@ -115,8 +115,7 @@ public class SecurityUtils extends org.apache.shiro.SecurityUtils {
 	public static boolean canPush(Project project, String branch, ObjectId oldObjectId, ObjectId newObjectId) {
 		User user = getUser();
 		return canWriteCode(project) 
-				&& !project.isReviewRequiredForPush(user, branch, oldObjectId, newObjectId, null)
-				&& !project.isBuildRequiredForPush(user, branch, oldObjectId, newObjectId, null); 
+				&& !project.isReviewOrBuildRequiredForPush(user, branch, oldObjectId, newObjectId, null); 
 	}
 	
 	public static boolean canEditIssueField(Project project, String fieldName) {
@@ -15,6 +15,10 @@ public class AccessBuildReports implements Permission {
 		this.reportNames = reportNames;
 	}
 
+	public String getReportNames() {
+		return reportNames;
+	}
+
 	private PatternSet getReportPatterns() {
 		if (reportPatterns == null)
 			reportPatterns = PatternSet.parse(reportNames);
@@ -18,6 +18,14 @@ public class JobPermission implements Permission {
 		this.privilege = privilege;
 	}
 	
+	public String getJobNames() {
+		return jobNames;
+	}
+
+	public Permission getPrivilege() {
+		return privilege;
+	}
+
 	private PatternSet getJobNamesPatternSet() {
 		if (jobNamesPatternSet == null)
 			jobNamesPatternSet = PatternSet.parse(jobNames);
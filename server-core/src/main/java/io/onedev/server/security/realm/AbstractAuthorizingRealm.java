@@ -7,6 +7,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 import javax.inject.Inject;
 
@@ -29,6 +30,7 @@ import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.model.UserAuthorization;
 import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.security.PermissionCache;
 import io.onedev.server.security.permission.ConfidentialIssuePermission;
 import io.onedev.server.security.permission.ProjectPermission;
 import io.onedev.server.security.permission.SystemAdministration;
@@ -46,18 +48,22 @@ public abstract class AbstractAuthorizingRealm extends AuthorizingRealm {
     
     protected final SettingManager settingManager;
     
+    protected final PermissionCache permissionCache;
+    
     @SuppressWarnings("serial")
 	private static final MetaDataKey<Map<Long, AuthorizationInfo>> AUTHORIZATION_INFOS = 
 			new MetaDataKey<Map<Long, AuthorizationInfo>>() {};    
     
 	@Inject
     public AbstractAuthorizingRealm(UserManager userManager, GroupManager groupManager, 
-    		ProjectManager projectManager, SessionManager sessionManager, SettingManager settingManager) {
+    		ProjectManager projectManager, SessionManager sessionManager, SettingManager settingManager, 
+    		PermissionCache permissionCache) {
     	this.userManager = userManager;
     	this.groupManager = groupManager;
     	this.projectManager = projectManager;
     	this.sessionManager = sessionManager;
     	this.settingManager = settingManager;
+    	this.permissionCache = permissionCache;
     }
 
 	private AuthorizationInfo newAuthorizationInfo(Long userId) {
@@ -143,6 +149,19 @@ public abstract class AbstractAuthorizingRealm extends AuthorizingRealm {
 		};		
 	}
 	
+	@Override
+	public boolean isPermitted(PrincipalCollection principals, Permission permission) {
+		Long userId = (Long) principals.getPrimaryPrincipal();
+		return permissionCache.isPermitted(userId, permission, new Supplier<Boolean>() {
+
+			@Override
+			public Boolean get() {
+				return AbstractAuthorizingRealm.super.isPermitted(principals, permission);
+			}
+			
+		});
+	}
+	
 	@Override
 	protected AuthorizationInfo doGetAuthorizationInfo(PrincipalCollection principals) {
 		Long userId = (Long) principals.getPrimaryPrincipal();						
@@ -14,14 +14,16 @@ import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.entitymanager.UserManager;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.security.BearerAuthenticationToken;
+import io.onedev.server.security.PermissionCache;
 
 @Singleton
 public class BearerAuthorizingRealm extends AbstractAuthorizingRealm {
 
 	@Inject
     public BearerAuthorizingRealm(UserManager userManager, GroupManager groupManager, 
-    		ProjectManager projectManager, SessionManager sessionManager, SettingManager settingManager) {
-		super(userManager, groupManager, projectManager, sessionManager, settingManager);
+    		ProjectManager projectManager, SessionManager sessionManager, SettingManager settingManager, 
+    		PermissionCache permissionCache) {
+		super(userManager, groupManager, projectManager, sessionManager, settingManager, permissionCache);
 		setCredentialsMatcher(new AllowAllCredentialsMatcher());
     }
 
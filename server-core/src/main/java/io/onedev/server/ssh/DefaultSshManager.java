@@ -5,30 +5,47 @@ import java.security.GeneralSecurityException;
 import java.security.KeyPair;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.apache.sshd.client.SshClient;
+import org.apache.sshd.client.channel.ChannelExec;
 import org.apache.sshd.client.keyverifier.RequiredServerKeyVerifier;
 import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.common.channel.Channel;
+import org.apache.sshd.common.channel.ChannelListener;
 import org.apache.sshd.common.config.keys.KeyUtils;
 import org.apache.sshd.common.keyprovider.KeyIdentityProvider;
 import org.apache.sshd.common.keyprovider.KeyPairProvider;
 import org.apache.sshd.common.session.SessionContext;
+import org.apache.sshd.common.session.SessionHeartbeatController.HeartbeatType;
 import org.apache.sshd.server.SshServer;
 import org.apache.sshd.server.auth.pubkey.CachingPublicKeyAuthenticator;
 import org.apache.sshd.server.command.Command;
 import org.apache.sshd.server.shell.UnknownCommand;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.google.common.collect.Lists;
 import com.hazelcast.cluster.MembershipEvent;
 import com.hazelcast.cluster.MembershipListener;
 import com.hazelcast.core.HazelcastInstance;
 
+import io.onedev.commons.utils.ExplicitException;
 import io.onedev.server.ServerConfig;
 import io.onedev.server.cluster.ClusterManager;
 import io.onedev.server.entitymanager.SettingManager;
@@ -36,14 +53,28 @@ import io.onedev.server.event.Listen;
 import io.onedev.server.event.system.SystemStarted;
 import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.User;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
 
 @Singleton
-public class DefaultSshManager implements SshManager {
+public class DefaultSshManager implements SshManager, SchedulableTask {
 
+	private static final Logger logger = LoggerFactory.getLogger(DefaultSshManager.class);
+	
 	private static final int CLIENT_VERIFY_TIMEOUT = 5000;
 	
 	private static final int CLIENT_AUTH_TIMEOUT = 5000;
 	
+	private static final int MAX_CHANNELS_PER_SERVER = 100;
+	
+	private static final int MAX_CHANNELS_PER_SESSION = 10;
+	
+	private static final int CHANNEL_WAIT_TIMEOUT = 60;
+	
+	private static final long MAX_SESSION_IDLE_TIME = 300000L;
+	
+	private static final int SESSION_HEARTBEAT_INTERVAL = 30;
+	
     private final ServerConfig serverConfig;
     
     private final SettingManager settingManager;
@@ -59,16 +90,23 @@ public class DefaultSshManager implements SshManager {
 	private volatile Map<UUID, Integer> sshPorts;
 	
 	private volatile SshClient client;
+	
+	private final TaskScheduler taskScheduler;
+	
+	private final Map<UUID, SessionPool> sessionPools = new ConcurrentHashMap<>();
+	
+	private String taskId;
     
     @Inject
     public DefaultSshManager(SettingManager settingManager, ServerConfig serverConfig, 
     		SshAuthenticator authenticator, Set<CommandCreator> commandCreators, 
-    		ClusterManager clusterManager) {
+    		ClusterManager clusterManager, TaskScheduler taskScheduler) {
     	this.settingManager = settingManager;
         this.serverConfig = serverConfig;
         this.authenticator = authenticator;
         this.commandCreators = commandCreators;
         this.clusterManager = clusterManager;
+        this.taskScheduler = taskScheduler;
     }
     
     @Listen
@@ -127,6 +165,9 @@ public class DefaultSshManager implements SshManager {
 			public void memberRemoved(MembershipEvent membershipEvent) {
 				if (clusterManager.isLeaderServer()) 
 					sshPorts.remove(membershipEvent.getMember().getUuid());
+				SessionPool sessionPool = sessionPools.remove(membershipEvent.getMember().getUuid());
+				if (sessionPool != null)
+					sessionPool.close();
 			}
 			
 		});
@@ -137,11 +178,20 @@ public class DefaultSshManager implements SshManager {
 		client.setKeyIdentityProvider(KeyIdentityProvider.wrapKeyPairs(
 				new KeyPair(publicKey, privateKey)));
 		client.setServerKeyVerifier(new RequiredServerKeyVerifier(publicKey));
+		// Detect broken pooled sessions and keep them from being closed by idle timeout of server 
+		client.setSessionHeartbeat(HeartbeatType.IGNORE, Duration.ofSeconds(SESSION_HEARTBEAT_INTERVAL));
 		client.start();
+		
+		taskId = taskScheduler.schedule(this);
 	}
 
     @Listen
     public void on(SystemStopping event) throws IOException {
+    	if (taskId != null)
+    		taskScheduler.unschedule(taskId);
+    	for (SessionPool sessionPool: sessionPools.values())
+    		sessionPool.close();
+    	sessionPools.clear();
 		if (client != null) {
 			if (client.isStarted())
 				client.stop();
@@ -156,18 +206,164 @@ public class DefaultSshManager implements SshManager {
 		}
     }
     
-	@Override
-	public ClientSession ssh(UUID serverUUID) {
+	private ClientSession connect(UUID serverUUID) {
 		try {
 			String serverAddress = clusterManager.getServerAddress(serverUUID);
 			int serverPort = sshPorts.get(serverUUID);
 			ClientSession session = client.connect(User.SYSTEM_NAME, serverAddress, serverPort)
 					.verify(CLIENT_VERIFY_TIMEOUT).getSession();
-			session.auth().verify(CLIENT_AUTH_TIMEOUT);
+			try {
+				session.auth().verify(CLIENT_AUTH_TIMEOUT);
+			} catch (IOException e) {
+				session.close(true);
+				throw e;
+			}
 			return session;
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
 	}
+	
+	@Override
+	public ChannelExec createExecChannel(UUID serverUUID, String command) {
+		SessionPool sessionPool = sessionPools.computeIfAbsent(serverUUID, it -> new SessionPool(serverUUID));
+		try {
+			if (!sessionPool.channelPermits.tryAcquire(CHANNEL_WAIT_TIMEOUT, TimeUnit.SECONDS)) 
+				throw new ExplicitException("Too many concurrent ssh channels to server: " + serverUUID);
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		PooledSession session = null;
+		try {
+			session = sessionPool.borrow();
+			ChannelExec channel;
+			try {
+				channel = session.session.createExecChannel(command);
+			} catch (IOException e) {
+				// Session may be broken without being noticed yet, retry over a new one 
+				logger.debug("Error creating channel over pooled ssh session, retrying with new session", e);
+				sessionPool.discard(session);
+				session = sessionPool.borrow();
+				channel = session.session.createExecChannel(command);
+			}
+			
+			PooledSession channelSession = session;
+			AtomicBoolean released = new AtomicBoolean(false);
+			channel.addChannelListener(new ChannelListener() {
+
+				@Override
+				public void channelClosed(Channel channel, Throwable reason) {
+					if (released.compareAndSet(false, true)) {
+						sessionPool.release(channelSession);
+						sessionPool.channelPermits.release();
+					}
+				}
+				
+			});
+			return channel;
+		} catch (Exception e) {
+			if (session != null)
+				sessionPool.release(session);
+			sessionPool.channelPermits.release();
+			if (e instanceof RuntimeException)
+				throw (RuntimeException) e;
+			else
+				throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Close pooled sessions without active channels for some time
+	 */
+	@Override
+	public void execute() {
+		for (SessionPool sessionPool: sessionPools.values()) 
+			sessionPool.evictIdleSessions();
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatMinutelyForever();
+	}
+	
+	private class SessionPool {
+		
+		final UUID serverUUID;
+		
+		final Semaphore channelPermits = new Semaphore(MAX_CHANNELS_PER_SERVER, true);
+		
+		final List<PooledSession> sessions = new ArrayList<>();
+		
+		SessionPool(UUID serverUUID) {
+			this.serverUUID = serverUUID;
+		}
+		
+		/*
+		 * Get least loaded healthy session, and connect a new one if all sessions are full. Connecting
+		 * while holding the lock is intentional so that concurrent callers reuse the new session
+		 */
+		synchronized PooledSession borrow() {
+			PooledSession leastLoaded = null;
+			for (Iterator<PooledSession> it = sessions.iterator(); it.hasNext();) {
+				PooledSession session = it.next();
+				if (!session.session.isOpen() || !session.session.isAuthenticated()) {
+					it.remove();
+					session.session.close(true);
+				} else if (session.activeChannels < MAX_CHANNELS_PER_SESSION 
+						&& (leastLoaded == null || session.activeChannels < leastLoaded.activeChannels)) {
+					leastLoaded = session;
+				}
+			}
+			if (leastLoaded == null) {
+				leastLoaded = new PooledSession(connect(serverUUID));
+				sessions.add(leastLoaded);
+			}
+			leastLoaded.activeChannels++;
+			return leastLoaded;
+		}
+		
+		synchronized void release(PooledSession session) {
+			session.activeChannels--;
+			session.lastUsed = System.currentTimeMillis();
+		}
+		
+		synchronized void discard(PooledSession session) {
+			sessions.remove(session);
+			session.session.close(true);
+		}
+		
+		synchronized void evictIdleSessions() {
+			long now = System.currentTimeMillis();
+			for (Iterator<PooledSession> it = sessions.iterator(); it.hasNext();) {
+				PooledSession session = it.next();
+				if (!session.session.isOpen() 
+						|| session.activeChannels == 0 && now - session.lastUsed >= MAX_SESSION_IDLE_TIME) {
+					it.remove();
+					session.session.close(false);
+				}
+			}
+		}
+		
+		synchronized void close() {
+			for (PooledSession session: sessions)
+				session.session.close(true);
+			sessions.clear();
+		}
+		
+	}
+	
+	private static class PooledSession {
+		
+		final ClientSession session;
+		
+		int activeChannels;
+		
+		long lastUsed = System.currentTimeMillis();
+		
+		PooledSession(ClientSession session) {
+			this.session = session;
+		}
+		
+	}
     
 }
@@ -2,10 +2,16 @@ package io.onedev.server.ssh;
 
 import java.util.UUID;
 
-import org.apache.sshd.client.session.ClientSession;
+import org.apache.sshd.client.channel.ChannelExec;
 
 public interface SshManager {
 
-	ClientSession ssh(UUID serverUUID);
+	/**
+	 * Create exec channel to run specified command on specified server. The channel is created over
+	 * a pooled session authenticated as system user, so that no key exchange and authentication is
+	 * needed if an established session is available. Caller should open the channel after setting
+	 * its streams, and close it after use to release it from the pool.
+	 */
+	ChannelExec createExecChannel(UUID serverUUID, String command);
 	
 }
@@ -0,0 +1,63 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import io.onedev.server.util.patternset.PatternSet;
+
+/**
+ * Content addressed store of build artifacts. Artifact files are hard linked to blobs named by
+ * their content hash, so that identical artifacts published by different builds only occupy disk
+ * space once, and dependencies can be transferred and materialized by content.
+ */
+public interface ArtifactStore {
+
+	/**
+	 * Link newly added or changed artifacts of specified build to blobs, and record their content
+	 * hashes in manifest of the build. Caller should hold write lock of build artifacts.
+	 *
+	 * @return
+	 * 			map of artifact path to content hash for all artifacts of the build
+	 */
+	Map<String, String> intern(Long projectId, Long buildNumber);
+
+	/**
+	 * Get content hashes of artifacts matching specified pattern set. Matching artifacts not interned
+	 * yet are interned, while other artifacts are left untouched. Caller should not hold lock of
+	 * build artifacts.
+	 *
+	 * @return
+	 * 			map of artifact path to content hash
+	 */
+	Map<String, String> getManifest(Long projectId, Long buildNumber, PatternSet patternSet);
+
+	/**
+	 * Create files of artifacts of specified local build matching specified pattern set under target 
+	 * dir. Artifacts are read under read lock of build artifacts, so caller should not hold the lock.
+	 *
+	 * @param link
+	 * 			whether to hard link files to artifacts instead of copying. Only specify this if created
+	 * 			files will not be modified
+	 */
+	void materialize(Long projectId, Long buildNumber, PatternSet patternSet, File targetDir, boolean link);
+
+	/**
+	 * Create files of specified manifest under target dir. Content is taken from blobs if exist and
+	 * still match their hashes, otherwise it is read from specified source and saved as blob for
+	 * later use.
+	 *
+	 * @param link
+	 * 			whether to hard link files to blobs instead of copying. Only specify this if created
+	 * 			files will not be modified, as modification will affect all builds sharing the blob
+	 */
+	void materialize(Map<String, String> manifest, ArtifactSource source, File targetDir, boolean link);
+
+	interface ArtifactSource {
+
+		InputStream open(String artifactPath) throws IOException;
+
+	}
+
+}
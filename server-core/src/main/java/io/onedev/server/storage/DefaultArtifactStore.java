@@ -0,0 +1,495 @@
+package io.onedev.server.storage;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.commons.bootstrap.Bootstrap;
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.Build;
+import io.onedev.server.util.patternset.PatternSet;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+@Singleton
+public class DefaultArtifactStore implements ArtifactStore, SchedulableTask, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultArtifactStore.class);
+
+	private static final String BLOBS_DIR = "artifact-blobs";
+
+	private static final String MANIFEST_FILE = "artifacts.manifest";
+
+	private static final String BLOBS_LOCK = "artifact-blobs";
+
+	// Blobs no longer linked by any build are kept this long to serve as cache of remote dependencies
+	private static final long UNUSED_BLOB_RETENTION = 24*3600*1000L;
+
+	private static final int MAX_VERIFIED_BLOBS = 100000;
+
+	private final StorageManager storageManager;
+
+	private final TaskScheduler taskScheduler;
+
+	/*
+	 * Unused blobs are detected via link count, which is only available on unix like systems
+	 */
+	private final boolean linkSupported = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+	// Map of blob hash to size and modification time of the blob when its content was verified
+	private final Cache<String, String> verifiedBlobs = CacheBuilder.newBuilder()
+			.maximumSize(MAX_VERIFIED_BLOBS)
+			.build();
+
+	private String taskId;
+
+	@Inject
+	public DefaultArtifactStore(StorageManager storageManager, TaskScheduler taskScheduler) {
+		this.storageManager = storageManager;
+		this.taskScheduler = taskScheduler;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(ArtifactStore.class);
+	}
+
+	private File getBlobsDir() {
+		File blobsDir = new File(Bootstrap.getSiteDir(), BLOBS_DIR);
+		FileUtils.createDir(blobsDir);
+		return blobsDir;
+	}
+
+	private File getBlobFile(String hash) {
+		return new File(getBlobsDir(), hash.substring(0, 2) + "/" + hash);
+	}
+
+	private File getManifestFile(Long projectId, Long buildNumber) {
+		return new File(storageManager.getBuildDir(projectId, buildNumber), MANIFEST_FILE);
+	}
+
+	@Override
+	public Map<String, String> intern(Long projectId, Long buildNumber) {
+		try {
+			return doIntern(projectId, buildNumber, null);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Hash and link specified artifacts, or all artifacts if pattern set is not specified. Caller 
+	 * should hold write lock of build artifacts. Blobs lock is only held while linking, so that 
+	 * hashing large artifacts does not hold up blob cleanup
+	 */
+	private Map<String, String> doIntern(Long projectId, Long buildNumber, 
+			@Nullable PatternSet patternSet) throws IOException {
+		File artifactsDir = Build.getArtifactsDir(projectId, buildNumber);
+		File manifestFile = getManifestFile(projectId, buildNumber);
+		Map<String, ManifestEntry> oldEntries = readManifest(manifestFile);
+		Map<String, ManifestEntry> entries;
+		if (patternSet != null) 
+			entries = new LinkedHashMap<>(oldEntries);
+		else 
+			entries = new LinkedHashMap<>();
+		Map<String, String> manifest = new LinkedHashMap<>();
+		boolean changed = false;
+		for (Map.Entry<String, File> artifact: listArtifacts(artifactsDir, patternSet).entrySet()) {
+			String artifactPath = artifact.getKey();
+			File file = artifact.getValue();
+			ManifestEntry entry = oldEntries.get(artifactPath);
+			if (!isUpToDate(entry, file)) {
+				String hash = hash(file);
+				if (linkSupported)
+					linkToBlob(file, hash);
+				entry = new ManifestEntry(hash, file.length(), file.lastModified());
+				changed = true;
+			}
+			entries.put(artifactPath, entry);
+			manifest.put(artifactPath, entry.hash);
+		}
+		if (changed || entries.size() != oldEntries.size())
+			writeManifest(manifestFile, entries);
+		return manifest;
+	}
+
+	private Map<String, File> listArtifacts(File artifactsDir, @Nullable PatternSet patternSet) throws IOException {
+		Map<String, File> artifacts = new LinkedHashMap<>();
+		if (artifactsDir.exists()) {
+			Path basePath = artifactsDir.toPath();
+			if (patternSet != null) {
+				for (File file: FileUtils.listFiles(artifactsDir, patternSet.getIncludes(), patternSet.getExcludes())) 
+					artifacts.put(basePath.relativize(file.toPath()).toString().replace('\\', '/'), file);
+			} else {
+				try (Stream<Path> stream = Files.walk(basePath)) {
+					for (Path path: stream.filter(Files::isRegularFile).collect(Collectors.toList()))
+						artifacts.put(basePath.relativize(path).toString().replace('\\', '/'), path.toFile());
+				}
+			}
+		}
+		return artifacts;
+	}
+
+	private boolean isUpToDate(@Nullable ManifestEntry entry, File file) {
+		return entry != null && entry.size == file.length() && entry.lastModified == file.lastModified();
+	}
+
+	private String hash(File file) throws IOException {
+		try (InputStream is = new FileInputStream(file)) {
+			return DigestUtils.sha256Hex(is);
+		}
+	}
+
+	private String getStamp(File blobFile) {
+		return blobFile.length() + ":" + blobFile.lastModified();
+	}
+
+	/*
+	 * Blobs are not protected from in-place modification through artifacts or workspace files linked 
+	 * to them, so verify their content before reusing them. Content is only hashed again if size or 
+	 * modification time changed since last verification
+	 */
+	private boolean isIntact(File blobFile, String hash) throws IOException {
+		if (!blobFile.exists())
+			return false;
+		String stamp = getStamp(blobFile);
+		if (stamp.equals(verifiedBlobs.getIfPresent(hash)))
+			return true;
+		if (hash(blobFile).equals(hash)) {
+			verifiedBlobs.put(hash, stamp);
+			return true;
+		} else {
+			verifiedBlobs.invalidate(hash);
+			return false;
+		}
+	}
+
+	private void linkToBlob(File file, String hash) {
+		LockUtils.read(BLOBS_LOCK, new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				File blobFile = getBlobFile(hash);
+				File tempFile = null;
+				try {
+					if (isIntact(blobFile, hash)) {
+						// Replace the artifact with link to existing blob to release its disk space
+						tempFile = new File(file.getParentFile(), "." + UUID.randomUUID().toString());
+						Files.createLink(tempFile.toPath(), blobFile.toPath());
+						Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+								StandardCopyOption.ATOMIC_MOVE);
+					} else {
+						// Blob is either absent or modified in place, make the artifact the new blob
+						FileUtils.createDir(blobFile.getParentFile());
+						tempFile = new File(blobFile.getParentFile(), UUID.randomUUID().toString());
+						Files.createLink(tempFile.toPath(), file.toPath());
+						Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+								StandardCopyOption.ATOMIC_MOVE);
+						verifiedBlobs.put(hash, getStamp(blobFile));
+					}
+				} catch (IOException e) {
+					if (tempFile != null)
+						tempFile.delete();
+					logger.warn("Unable to link artifact to blob, artifact will not be deduplicated (artifact: " 
+							+ file + ", error: " + e.getMessage() + ")");
+				}
+				return null;
+			}
+
+		});
+	}
+
+	@Override
+	public Map<String, String> getManifest(Long projectId, Long buildNumber, PatternSet patternSet) {
+		Map<String, String> manifest = LockUtils.read(Build.getArtifactsLockName(projectId, buildNumber), new Callable<Map<String, String>>() {
+
+			@Override
+			public Map<String, String> call() throws Exception {
+				Map<String, ManifestEntry> entries = readManifest(getManifestFile(projectId, buildNumber));
+				Map<String, String> manifest = new LinkedHashMap<>();
+				for (Map.Entry<String, File> artifact: listArtifacts(Build.getArtifactsDir(projectId, buildNumber), patternSet).entrySet()) {
+					ManifestEntry entry = entries.get(artifact.getKey());
+					if (isUpToDate(entry, artifact.getValue()))
+						manifest.put(artifact.getKey(), entry.hash);
+					else 
+						return null;
+				}
+				return manifest;
+			}
+
+		});
+		if (manifest != null)
+			return manifest;
+
+		// Some matching artifacts are added by other means than publishing, intern them 
+		return LockUtils.write(Build.getArtifactsLockName(projectId, buildNumber), new Callable<Map<String, String>>() {
+
+			@Override
+			public Map<String, String> call() throws Exception {
+				return doIntern(projectId, buildNumber, patternSet);
+			}
+
+		});
+	}
+
+	@Override
+	public void materialize(Long projectId, Long buildNumber, PatternSet patternSet, File targetDir, boolean link) {
+		/*
+		 * Artifacts of local build are the content themselves, so read them directly under read lock of 
+		 * build artifacts. This avoids verifying blobs, and artifacts can not be republished in between
+		 */
+		LockUtils.read(Build.getArtifactsLockName(projectId, buildNumber), new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				for (Map.Entry<String, File> artifact: listArtifacts(Build.getArtifactsDir(projectId, buildNumber), patternSet).entrySet()) {
+					File targetFile = new File(targetDir, artifact.getKey());
+					FileUtils.createDir(targetFile.getParentFile());
+					if (targetFile.exists())
+						FileUtils.deleteFile(targetFile);
+					if (link) {
+						try {
+							Files.createLink(targetFile.toPath(), artifact.getValue().toPath());
+							continue;
+						} catch (IOException e) {
+							logger.debug("Error linking artifact, copying instead", e);
+						}
+					}
+					Files.copy(artifact.getValue().toPath(), targetFile.toPath());
+				}
+				return null;
+			}
+
+		});
+	}
+
+	@Override
+	public void materialize(Map<String, String> manifest, ArtifactSource source, File targetDir, boolean link) {
+		try {
+			for (Map.Entry<String, String> entry: manifest.entrySet()) {
+				String artifactPath = entry.getKey();
+				String hash = entry.getValue();
+				File targetFile = new File(targetDir, artifactPath);
+				FileUtils.createDir(targetFile.getParentFile());
+				if (targetFile.exists())
+					FileUtils.deleteFile(targetFile);
+				if (linkSupported) {
+					if (!materializeFromBlob(hash, null, targetFile, link)) {
+						// Download outside of blobs lock, and only move it into place while holding the lock
+						File tempFile;
+						try (InputStream is = source.open(artifactPath)) {
+							tempFile = download(hash, is);
+						}
+						try {
+							materializeFromBlob(hash, tempFile, targetFile, link);
+						} finally {
+							if (tempFile.exists())
+								tempFile.delete();
+						}
+					}
+				} else {
+					try (InputStream is = source.open(artifactPath)) {
+						Files.copy(is, targetFile.toPath());
+					}
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/*
+	 * Create target file from blob of specified hash, saving specified downloaded file as the blob 
+	 * first if provided. Returns false if blob is not available
+	 */
+	private boolean materializeFromBlob(String hash, @Nullable File downloadedFile, File targetFile, boolean link) {
+		return LockUtils.read(BLOBS_LOCK, new Callable<Boolean>() {
+
+			@Override
+			public Boolean call() throws Exception {
+				File blobFile = getBlobFile(hash);
+				if (downloadedFile != null) {
+					Files.move(downloadedFile.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+							StandardCopyOption.ATOMIC_MOVE);
+					verifiedBlobs.put(hash, getStamp(blobFile));
+				} else if (!isIntact(blobFile, hash)) {
+					return false;
+				}
+				if (link) {
+					try {
+						Files.createLink(targetFile.toPath(), blobFile.toPath());
+						return true;
+					} catch (IOException e) {
+						logger.debug("Error linking artifact blob, copying instead", e);
+					}
+				}
+				Files.copy(blobFile.toPath(), targetFile.toPath());
+				return true;
+			}
+
+		});
+	}
+
+	private File download(String hash, InputStream is) throws IOException {
+		File blobFile = getBlobFile(hash);
+		FileUtils.createDir(blobFile.getParentFile());
+		File tempFile = new File(blobFile.getParentFile(), UUID.randomUUID().toString());
+		boolean successful = false;
+		try {
+			MessageDigest digest = DigestUtils.getSha256Digest();
+			try (InputStream dis = new DigestInputStream(is, digest)) {
+				Files.copy(dis, tempFile.toPath());
+			}
+			String actualHash = Hex.encodeHexString(digest.digest());
+			if (!actualHash.equals(hash))
+				throw new ExplicitException("Artifact content does not match its hash: " + hash);
+			successful = true;
+			return tempFile;
+		} finally {
+			if (!successful)
+				tempFile.delete();
+		}
+	}
+
+	private Map<String, ManifestEntry> readManifest(File manifestFile) throws IOException {
+		Map<String, ManifestEntry> entries = new HashMap<>();
+		if (manifestFile.exists()) {
+			try (BufferedReader reader = Files.newBufferedReader(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String[] fields = line.split("\t", 4);
+					if (fields.length == 4) {
+						entries.put(fields[3], new ManifestEntry(fields[0],
+								Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+					}
+				}
+			}
+		}
+		return entries;
+	}
+
+	private void writeManifest(File manifestFile, Map<String, ManifestEntry> entries) throws IOException {
+		File tempFile = new File(manifestFile.getParentFile(), MANIFEST_FILE + ".tmp");
+		try (Writer writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, ManifestEntry> entry: entries.entrySet()) {
+				ManifestEntry value = entry.getValue();
+				writer.write(value.hash + "\t" + value.size + "\t" + value.lastModified + "\t" + entry.getKey() + "\n");
+			}
+		}
+		Files.move(tempFile.toPath(), manifestFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+
+	/*
+	 * Delete blobs no longer linked by any build artifact. Blobs are listed without holding the lock, 
+	 * and each candidate is checked again while holding it
+	 */
+	@Override
+	public void execute() {
+		if (!linkSupported)
+			return;
+		List<Path> blobs;
+		try (Stream<Path> stream = Files.walk(getBlobsDir().toPath())) {
+			blobs = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		for (Path blob: blobs) {
+			try {
+				if (isUnused(blob)) {
+					LockUtils.write(BLOBS_LOCK, new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							if (Files.exists(blob) && isUnused(blob))
+								Files.delete(blob);
+							return null;
+						}
+
+					});
+				}
+			} catch (Exception e) {
+				logger.error("Error cleaning up artifact blob: " + blob, e);
+			}
+		}
+	}
+
+	private boolean isUnused(Path blob) throws IOException {
+		int linkCount = (Integer) Files.getAttribute(blob, "unix:nlink");
+		return linkCount == 1 && System.currentTimeMillis() - Files.getLastModifiedTime(blob).toMillis() > UNUSED_BLOB_RETENTION;
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return CronScheduleBuilder.dailyAtHourAndMinute(2, 0);
+	}
+
+	private static class ManifestEntry {
+
+		final String hash;
+
+		final long size;
+
+		final long lastModified;
+
+		ManifestEntry(String hash, long size, long lastModified) {
+			this.hash = hash;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+	}
+
+}
@@ -0,0 +1,292 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.quartz.CronScheduleBuilder;
+import org.quartz.ScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.commons.bootstrap.Bootstrap;
+import io.onedev.commons.loader.ManagedSerializedForm;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.event.Listen;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.LfsObject;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+@Singleton
+public class DefaultLfsObjectStore implements LfsObjectStore, SchedulableTask, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultLfsObjectStore.class);
+
+	private static final String BLOBS_DIR = "lfs-blobs";
+
+	private static final String BLOBS_LOCK = "lfs-blobs";
+
+	private static final Pattern OBJECT_ID_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+	private static final int MAX_VERIFIED_BLOBS = 100000;
+
+	private final TaskScheduler taskScheduler;
+
+	private final SettingManager settingManager;
+
+	/*
+	 * Blobs no longer referenced are detected via link count, which is only available on unix like
+	 * systems
+	 */
+	private final boolean linkSupported = FileSystems.getDefault().supportedFileAttributeViews().contains("unix");
+
+	// Map of object id to size and modification time of the blob when its content was verified
+	private final Cache<String, String> verifiedBlobs = CacheBuilder.newBuilder()
+			.maximumSize(MAX_VERIFIED_BLOBS)
+			.build();
+
+	private String taskId;
+
+	@Inject
+	public DefaultLfsObjectStore(TaskScheduler taskScheduler, SettingManager settingManager) {
+		this.taskScheduler = taskScheduler;
+		this.settingManager = settingManager;
+	}
+
+	public Object writeReplace() throws ObjectStreamException {
+		return new ManagedSerializedForm(LfsObjectStore.class);
+	}
+
+	private File getBlobsDir() {
+		File blobsDir = new File(Bootstrap.getSiteDir(), BLOBS_DIR);
+		FileUtils.createDir(blobsDir);
+		return blobsDir;
+	}
+
+	private File getBlobFile(String objectId) {
+		return new File(getBlobsDir(), objectId.substring(0, 2) + "/" + objectId);
+	}
+
+	private String getStamp(File blobFile) {
+		return blobFile.length() + ":" + blobFile.lastModified();
+	}
+
+	private String hash(File file) throws IOException {
+		try (InputStream is = new FileInputStream(file)) {
+			return DigestUtils.sha256Hex(is);
+		}
+	}
+
+	/*
+	 * Blob may be corrupted or modified in place via any project linking to it, and replacing 
+	 * objects with links to such blob spreads the damage, so verify its content before reusing. 
+	 * Content is only hashed again if size or modification time changed since last verification
+	 */
+	private boolean isIntact(File blobFile, String objectId, long size) throws IOException {
+		if (!blobFile.exists() || blobFile.length() != size)
+			return false;
+		String stamp = getStamp(blobFile);
+		if (stamp.equals(verifiedBlobs.getIfPresent(objectId)))
+			return true;
+		if (hash(blobFile).equals(objectId)) {
+			verifiedBlobs.put(objectId, stamp);
+			return true;
+		} else {
+			verifiedBlobs.invalidate(objectId);
+			return false;
+		}
+	}
+
+	private boolean isSharingEnabled() {
+		return linkSupported && settingManager.getPerformanceSetting().isShareLfsObjects();
+	}
+
+	@Override
+	public void intern(File file, String objectId, boolean verified) {
+		if (!isSharingEnabled())
+			return;
+		LockUtils.read(BLOBS_LOCK, new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				if ((Integer) Files.getAttribute(file.toPath(), "unix:nlink") > 1)
+					return null;
+
+				File blobFile = getBlobFile(objectId);
+				File tempFile = null;
+				try {
+					if (isIntact(blobFile, objectId, file.length())) {
+						// Replace the object with link to existing blob to release its disk space
+						tempFile = new File(file.getParentFile(), "." + UUID.randomUUID().toString());
+						Files.createLink(tempFile.toPath(), blobFile.toPath());
+						Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+								StandardCopyOption.ATOMIC_MOVE);
+					} else {
+						// Blob is either absent or damaged, make the object the new blob
+						if (!verified && !hash(file).equals(objectId))
+							return null;
+						FileUtils.createDir(blobFile.getParentFile());
+						tempFile = new File(blobFile.getParentFile(), UUID.randomUUID().toString());
+						Files.createLink(tempFile.toPath(), file.toPath());
+						Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+								StandardCopyOption.ATOMIC_MOVE);
+						// Discourage in-place modification as it is visible to all projects sharing the blob
+						blobFile.setWritable(false, false);
+						verifiedBlobs.put(objectId, getStamp(blobFile));
+					}
+				} catch (IOException e) {
+					if (tempFile != null)
+						tempFile.delete();
+					logger.warn("Unable to link LFS object to blob, LFS object will not be deduplicated (object: " 
+							+ file + ", error: " + e.getMessage() + ")");
+				}
+				return null;
+			}
+
+		});
+	}
+
+	@Override
+	public void internAll(File lfsObjectsDir) {
+		if (!isSharingEnabled())
+			return;
+		for (Path path: listObjects(lfsObjectsDir)) {
+			String objectId = path.getFileName().toString();
+			LockUtils.write(LfsObject.getLockName(objectId), new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					// Objects fetched by git lfs are verified against their ids by git lfs
+					if (path.toFile().exists())
+						intern(path.toFile(), objectId, true);
+					return null;
+				}
+
+			});
+		}
+	}
+
+	@Override
+	public boolean linkAll(File fromLfsObjectsDir, File toLfsObjectsDir) {
+		if (!isSharingEnabled())
+			return false;
+		Path fromBasePath = fromLfsObjectsDir.toPath();
+		for (Path fromPath: listObjects(fromLfsObjectsDir)) {
+			String objectId = fromPath.getFileName().toString();
+			File toFile = new File(toLfsObjectsDir, fromBasePath.relativize(fromPath).toString());
+			LockUtils.write(LfsObject.getLockName(objectId), new Callable<Void>() {
+
+				@Override
+				public Void call() throws Exception {
+					if (fromPath.toFile().exists() && !toFile.exists()) {
+						FileUtils.createDir(toFile.getParentFile());
+						try {
+							Files.createLink(toFile.toPath(), fromPath);
+						} catch (IOException e) {
+							logger.debug("Error linking LFS object, copying instead", e);
+							Files.copy(fromPath, toFile.toPath());
+						}
+					}
+					return null;
+				}
+
+			});
+		}
+		return true;
+	}
+
+	private List<Path> listObjects(File lfsObjectsDir) {
+		if (!lfsObjectsDir.exists())
+			return new ArrayList<>();
+		try (Stream<Path> stream = Files.walk(lfsObjectsDir.toPath())) {
+			return stream
+					.filter(it -> Files.isRegularFile(it) && OBJECT_ID_PATTERN.matcher(it.getFileName().toString()).matches())
+					.collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+	}
+
+	/*
+	 * Delete blobs no longer referenced by any project. Blobs are listed without holding the lock, 
+	 * and each candidate is checked again while holding it, so that interning of LFS objects is 
+	 * not blocked by the walk
+	 */
+	@Override
+	public void execute() {
+		if (!linkSupported)
+			return;
+		List<Path> blobs;
+		try (Stream<Path> stream = Files.walk(getBlobsDir().toPath())) {
+			blobs = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		for (Path blob: blobs) {
+			try {
+				if (isUnused(blob)) {
+					LockUtils.write(BLOBS_LOCK, new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							if (Files.exists(blob) && isUnused(blob))
+								Files.delete(blob);
+							return null;
+						}
+
+					});
+				}
+			} catch (Exception e) {
+				logger.error("Error cleaning up LFS blob: " + blob, e);
+			}
+		}
+	}
+
+	private boolean isUnused(Path blob) throws IOException {
+		return (Integer) Files.getAttribute(blob, "unix:nlink") == 1;
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return CronScheduleBuilder.dailyAtHourAndMinute(2, 30);
+	}
+
+}
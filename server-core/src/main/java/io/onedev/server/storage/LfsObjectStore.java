@@ -0,0 +1,39 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+
+/**
+ * Content addressed store of LFS objects shared by all projects stored on this server. LFS object
+ * files of projects are hard linked to blobs named by object id, so that forks and other projects
+ * containing same LFS objects only occupy disk space once. Number of projects referencing a blob
+ * is tracked by link count of the blob file, and blobs no longer referenced are deleted periodically.
+ * Sharing can be turned off in performance setting.
+ */
+public interface LfsObjectStore {
+
+	/**
+	 * Link specified LFS object file to shared blob. Caller should hold write lock of the object.
+	 *
+	 * @param verified
+	 * 			whether content of the file is known to match the object id. Unverified files will
+	 * 			be hashed before being used as shared blob
+	 */
+	void intern(File file, String objectId, boolean verified);
+
+	/**
+	 * Intern all LFS objects under specified dir. Objects under the dir should already be verified
+	 * against their ids, for instance objects fetched by git lfs
+	 */
+	void internAll(File lfsObjectsDir);
+
+	/**
+	 * Make LFS objects under specified source dir available under specified target dir by linking
+	 * them, for instance when forking a project stored on the same server
+	 *
+	 * @return
+	 * 			<tt>false</tt> if LFS object sharing is disabled or not supported, in which case
+	 * 			nothing is done and caller should copy LFS objects by other means
+	 */
+	boolean linkAll(File fromLfsObjectsDir, File toLfsObjectsDir);
+
+}
@@ -0,0 +1,83 @@
+package io.onedev.server.util;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.annotation.Nullable;
+
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.server.OneDev;
+
+/**
+ * Parses files in other threads, and consumes parse results in current thread in order of 
+ * the files. At most <tt>parallelism</tt> files are being parsed or waiting for consumption 
+ * at any time, so that memory consumption is bounded no matter how many files are processed
+ * 
+ * @param <T>
+ */
+public abstract class ParallelFileParser<T> {
+
+	private final int parallelism;
+	
+	public ParallelFileParser(int parallelism) {
+		this.parallelism = parallelism;
+	}
+	
+	public ParallelFileParser() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+	
+	public void process(Collection<File> files) {
+		ExecutorService executorService = OneDev.getInstance(ExecutorService.class);
+		Iterator<File> it = files.iterator();
+		Deque<File> pendingFiles = new ArrayDeque<>();
+		Deque<Future<T>> pendingResults = new ArrayDeque<>();
+		try {
+			while (true) {
+				while (it.hasNext() && pendingResults.size() < parallelism) {
+					File file = it.next();
+					pendingFiles.add(file);
+					pendingResults.add(executorService.submit(new Callable<T>() {
+
+						@Override
+						public T call() throws Exception {
+							return parse(file);
+						}
+						
+					}));
+				}
+				if (!pendingResults.isEmpty()) 
+					consume(pendingFiles.poll(), pendingResults.poll().get());
+				else 
+					break;
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} finally {
+			for (Future<T> result: pendingResults)
+				result.cancel(true);
+		}
+	}
+	
+	/**
+	 * Parse specified file. This method is called in different threads concurrently, and 
+	 * should not access entities or other objects bound to current session
+	 */
+	@Nullable
+	protected abstract T parse(File file) throws Exception;
+	
+	/**
+	 * Consume parse result of specified file. This method is called in current thread
+	 */
+	protected abstract void consume(File file, @Nullable T result);
+	
+}
@@ -0,0 +1,114 @@
+package io.onedev.server.util;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.dom4j.DocumentHelper;
+import org.dom4j.Element;
+
+/**
+ * StAX based xml parser visiting elements while they are read. Only subtrees of elements
+ * claimed as records via {@link #isRecord(String)} are materialized as dom4j elements, so
+ * that memory consumption is bounded by size of a single record instead of whole document,
+ * which matters for large report files produced by test and coverage tools.
+ * <p>
+ * Elements are identified by path, which is names of the element and its ancestors
+ * separated by slash, for instance <tt>testsuites/testsuite/testcase</tt>.
+ *
+ */
+public abstract class StreamingXmlParser {
+
+	public void parse(File file) throws IOException, XMLStreamException {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
+			parse(is);
+		}
+	}
+
+	public void parse(InputStream is) throws XMLStreamException {
+		XMLStreamReader reader = XmlUtils.newInputFactory().createXMLStreamReader(is);
+		try {
+			List<String> paths = new ArrayList<>();
+			while (reader.hasNext()) {
+				int event = reader.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = reader.getLocalName();
+					String path = paths.isEmpty()? name: paths.get(paths.size()-1) + "/" + name;
+					if (isRecord(path)) {
+						onRecord(path, readElement(reader));
+					} else {
+						paths.add(path);
+						onStart(path, readAttributes(reader));
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String path = paths.remove(paths.size()-1);
+					onEnd(path);
+				}
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	private Element readAttributes(XMLStreamReader reader) {
+		Element element = DocumentHelper.createElement(reader.getLocalName());
+		for (int i=0; i<reader.getAttributeCount(); i++)
+			element.addAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+		return element;
+	}
+
+	private Element readElement(XMLStreamReader reader) throws XMLStreamException {
+		Element element = readAttributes(reader);
+		while (true) {
+			int event = reader.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				element.add(readElement(reader));
+			else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)
+				element.addText(reader.getText());
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				return element;
+		}
+	}
+
+	/**
+	 * Whether or not element of specified path is a record. A record element will be
+	 * materialized with all its descendants and passed to {@link #onRecord(String, Element)},
+	 * and its descendants will not be visited separately
+	 */
+	protected boolean isRecord(String path) {
+		return false;
+	}
+
+	/**
+	 * Called when a non-record element starts
+	 *
+	 * @param element
+	 * 			element containing attributes only, as content of the element is not read yet
+	 */
+	protected void onStart(String path, Element element) {
+	}
+
+	/**
+	 * Called when a non-record element ends
+	 */
+	protected void onEnd(String path) {
+	}
+
+	/**
+	 * Called when a record element is read
+	 *
+	 * @param element
+	 * 			the record element with all its descendants
+	 */
+	protected void onRecord(String path, Element element) {
+	}
+
+}
@@ -1,5 +1,7 @@
 package io.onedev.server.util;
 
+import javax.xml.stream.XMLInputFactory;
+
 import org.dom4j.io.SAXReader;
 import org.xml.sax.SAXException;
 
@@ -14,6 +16,16 @@ public class XmlUtils {
 		}
 	}
 	
+	// Prevent XXE attack for StAX parsing. DTD is ignored instead of disallowed, so there
+	// is no need to strip doctype which requires reading whole xml into memory
+	public static XMLInputFactory newInputFactory() {
+		XMLInputFactory factory = XMLInputFactory.newFactory();
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return factory;
+	}
+	
 	public static String stripDoctype(String xml) {
 		return xml.replaceFirst("<!DOCTYPE\\s.*?>", "");
 	}
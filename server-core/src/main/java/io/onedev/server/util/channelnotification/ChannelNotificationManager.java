@@ -1,7 +1,7 @@
 package io.onedev.server.util.channelnotification;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nimbusds.jose.util.IOUtils;
 import io.onedev.server.event.Listen;
 import io.onedev.server.event.project.ProjectEvent;
 import io.onedev.server.event.project.RefUpdated;
@@ -12,21 +12,12 @@ import io.onedev.server.event.project.issue.IssueEvent;
 import io.onedev.server.event.project.pullrequest.PullRequestEvent;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.model.*;
+import io.onedev.server.notification.DeliveryManager;
 import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.util.ReflectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.HttpEntity;
-import org.apache.http.HttpStatus;
-import org.apache.http.client.methods.CloseableHttpResponse;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.CloseableHttpClient;
-import org.apache.http.impl.client.HttpClientBuilder;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import javax.inject.Inject;
 import java.util.Collection;
@@ -36,16 +27,17 @@ import java.util.Map;
 
 public abstract class ChannelNotificationManager<T extends ChannelNotificationSetting> {
 
-	private static final Logger logger = LoggerFactory.getLogger(ChannelNotificationManager.class);
-
 	private final ObjectMapper objectMapper;
 
+	private final DeliveryManager deliveryManager;
+
 	private final Class<T> settingClass;
 
 	@SuppressWarnings("unchecked")
 	@Inject
-	public ChannelNotificationManager(ObjectMapper objectMapper) {
+	public ChannelNotificationManager(ObjectMapper objectMapper, DeliveryManager deliveryManager) {
 		this.objectMapper = objectMapper;
+		this.deliveryManager = deliveryManager;
 
 		List<Class<?>> typeArguments = ReflectionUtils.getTypeArguments(ChannelNotificationManager.class, getClass());
 		if (typeArguments.size() == 1 && ChannelNotificationSetting.class.isAssignableFrom(typeArguments.get(0))) {
@@ -148,32 +140,17 @@ public abstract class ChannelNotificationManager<T extends ChannelNotificationSe
 	}
 
 	private void postIfApplicable(String title, ProjectEvent event) {
-		Object data = toJsonObject(title, event);
-
+		String json = null;
 		for (ChannelNotification notification : getNotifications(event.getProject())) {
 			if (notification.matches(event)) {
-				try (CloseableHttpClient client = HttpClientBuilder.create().useSystemProperties().build()) {
-					HttpPost post = new HttpPost(notification.getWebhookUrl());
-
-					StringEntity requestEntity = new StringEntity(objectMapper.writeValueAsString(data), ContentType.APPLICATION_JSON);
-					post.setEntity(requestEntity);
-
-					try (CloseableHttpResponse response = client.execute(post)) {
-						if (response.getStatusLine().getStatusCode() != HttpStatus.SC_OK && response.getStatusLine().getStatusCode() != HttpStatus.SC_NO_CONTENT) {
-							HttpEntity responseEntity = response.getEntity();
-							String errorMessage;
-							if (responseEntity != null) {
-								String content = IOUtils.readInputStreamToString(responseEntity.getContent());
-								errorMessage = String.format("Error sending channel notification (status code: %d, response: %s)", response.getStatusLine().getStatusCode(), content);
-							} else {
-								errorMessage = String.format("Error sending channel notification (status code: %d)", response.getStatusLine().getStatusCode());
-							}
-							logger.error(errorMessage);
-						}
+				if (json == null) {
+					try {
+						json = objectMapper.writeValueAsString(toJsonObject(title, event));
+					} catch (JsonProcessingException e) {
+						throw new RuntimeException(e);
 					}
-				} catch (Exception e) {
-					logger.error("Error sending channel notification", e);
 				}
+				deliveryManager.deliver(new ChannelTarget(event.getProject(), settingClass, notification), json);
 			}
 		}
 	}
@@ -0,0 +1,54 @@
+package io.onedev.server.util.channelnotification;
+
+import java.util.HashMap;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.notification.DeliveryTarget;
+import io.onedev.server.web.page.project.setting.ContributedProjectSetting;
+
+/**
+ * Channel notification of a project, identified by hash of its webhook url, as the url itself 
+ * is a credential
+ */
+public class ChannelTarget extends DeliveryTarget {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long projectId;
+	
+	// Class name is stored as setting class may be defined in a plugin
+	private final String settingClassName;
+	
+	private final String webhookUrlHash;
+	
+	public ChannelTarget(Project project, Class<? extends ChannelNotificationSetting> settingClass, 
+			ChannelNotification notification) {
+		super(notification.getWebhookUrl());
+		projectId = project.getId();
+		settingClassName = settingClass.getName();
+		webhookUrlHash = hash(notification.getWebhookUrl());
+	}
+
+	@Nullable
+	@Override
+	public Resolved resolve() {
+		Project project = OneDev.getInstance(ProjectManager.class).get(projectId);
+		while (project != null) {
+			ContributedProjectSetting setting = project.getContributedSettings().get(settingClassName);
+			if (setting instanceof ChannelNotificationSetting) {
+				for (ChannelNotificationWrapper wrapper: ((ChannelNotificationSetting) setting).getNotifications()) {
+					String webhookUrl = wrapper.getChannelNotification().getWebhookUrl();
+					if (webhookUrl != null && hash(webhookUrl).equals(webhookUrlHash))
+						return new Resolved(webhookUrl, new HashMap<>());
+				}
+			}
+			project = project.getParent();
+		}
+		return null;
+	}
+	
+}
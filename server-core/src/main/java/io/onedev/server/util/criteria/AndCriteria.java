@@ -143,6 +143,19 @@ public class AndCriteria<T> extends Criteria<T> {
 		return !criterias.isEmpty();
 	}
 	
+	@Override
+	public Collection<String> getMatchTokens() {
+		Collection<String> matchTokens = null;
+		for (Criteria<T> criteria: criterias) {
+			Collection<String> criteriaMatchTokens = criteria.getMatchTokens();
+			if (criteriaMatchTokens != null 
+					&& (matchTokens == null || criteriaMatchTokens.size() < matchTokens.size())) {
+				matchTokens = criteriaMatchTokens;
+			}
+		}
+		return matchTokens;
+	}
+	
 	@Override
 	public void fill(T object) {
 		for (Criteria<T> criteria: criterias)
@@ -178,6 +178,18 @@ public abstract class Criteria<T> implements Serializable {
 		return true;
 	}
 	
+	/**
+	 * Get match tokens of this criteria. An object can only be matched by this criteria if it has
+	 * at least one of returned tokens, see {@link io.onedev.server.search.entity.MatchTokens}
+	 * 
+	 * @return
+	 * 			match tokens, or <tt>null</tt> if this criteria can not be narrowed down by tokens
+	 */
+	@Nullable
+	public Collection<String> getMatchTokens() {
+		return null;
+	}
+	
 	public static String quote(String value) {
 		return "\"" + StringUtils.escape(value, "\"") + "\"";
 	}
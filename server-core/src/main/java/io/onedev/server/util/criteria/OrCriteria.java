@@ -143,6 +143,19 @@ public class OrCriteria<T> extends Criteria<T> {
 		return !criterias.isEmpty();
 	}	
 	
+	@Override
+	public Collection<String> getMatchTokens() {
+		Set<String> matchTokens = new HashSet<>();
+		for (Criteria<T> criteria: criterias) {
+			Collection<String> criteriaMatchTokens = criteria.getMatchTokens();
+			if (criteriaMatchTokens != null)
+				matchTokens.addAll(criteriaMatchTokens);
+			else
+				return null;
+		}
+		return matchTokens;
+	}
+	
 	@Override
 	public String toString(boolean addParensIfNecessary) {
 		if (!withParens() && criterias.size() > 1)
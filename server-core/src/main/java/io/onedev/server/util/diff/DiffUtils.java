@@ -11,17 +11,16 @@ import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
-import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.commons.utils.StringUtils;
-import io.onedev.server.util.diff.DiffMatchPatch.Diff;
 import io.onedev.server.util.diff.DiffMatchPatch.Operation;
 
 public class DiffUtils {
 
-	public static final int MAX_DIFF_SIZE = 65535;
+	// Regions of diff not resolved within this time (in milliseconds) are treated as replaced as a whole
+	private static final long DIFF_TIMEOUT = 1000;
 	
 	public static final int MAX_LINE_LEN = 10000;
 	
@@ -57,45 +56,40 @@ public class DiffUtils {
 	}
 	
 	public static <T> List<DiffBlock<T>> diff(List<T> oldElements, List<T> newElements, Function<T, T> processor) {
-		Preconditions.checkArgument(oldElements.size() + newElements.size() <= MAX_DIFF_SIZE, 
-				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
+		Map<T, Integer> tokens = new HashMap<>();
+		int[] oldTokens = new int[oldElements.size()];
+		for (int i=0; i<oldTokens.length; i++) 
+			oldTokens[i] = tokens.computeIfAbsent(processor.apply(oldElements.get(i)), it->tokens.size());
+		int[] newTokens = new int[newElements.size()];
+		for (int i=0; i<newTokens.length; i++) 
+			newTokens[i] = tokens.computeIfAbsent(processor.apply(newElements.get(i)), it->tokens.size());
 		
-		List<T> processedOldElements = new ArrayList<>();
-		for (T element: oldElements) 
-			processedOldElements.add(processor.apply(element));
-		
-		List<T> processedNewElements = new ArrayList<>();
-		for (T element: newElements) 
-			processedNewElements.add(processor.apply(element));
-		
-		DiffMatchPatch dmp = new DiffMatchPatch();
-		TokensToCharsResult<T> result1 = tokensToChars(processedOldElements, processedNewElements);
-		
-		List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result1.chars1, result1.chars2, false);
+		TokenDiff tokenDiff = new TokenDiff(oldTokens, newTokens, System.currentTimeMillis() + DIFF_TIMEOUT);
 
 		List<DiffBlock<T>> diffBlocks = new ArrayList<>();
 		int oldElementIndex = 0;
 		int newElementIndex = 0;
-		for (Diff diff: diffs) {
+		while (oldElementIndex < oldTokens.length || newElementIndex < newTokens.length) {
 			List<T> elements = new ArrayList<>();
-			if (diff.operation == Operation.EQUAL) {
-				for (int i = 0; i < diff.text.length(); i++) {
+			if (oldElementIndex < oldTokens.length && tokenDiff.isDeleted(oldElementIndex)) {
+				while (oldElementIndex < oldTokens.length && tokenDiff.isDeleted(oldElementIndex))
+					elements.add(oldElements.get(oldElementIndex++));
+				diffBlocks.add(new DiffBlock<>(Operation.DELETE, elements, 
+						oldElementIndex-elements.size(), newElementIndex));
+			} else if (newElementIndex < newTokens.length && tokenDiff.isInserted(newElementIndex)) {
+				while (newElementIndex < newTokens.length && tokenDiff.isInserted(newElementIndex))
+					elements.add(newElements.get(newElementIndex++));
+				diffBlocks.add(new DiffBlock<>(Operation.INSERT, elements, 
+						oldElementIndex, newElementIndex-elements.size()));
+			} else {
+				while (oldElementIndex < oldTokens.length && newElementIndex < newTokens.length 
+						&& !tokenDiff.isDeleted(oldElementIndex) && !tokenDiff.isInserted(newElementIndex)) {
 					elements.add(newElements.get(newElementIndex));
 					oldElementIndex++;
 					newElementIndex++;
 				}
-				diffBlocks.add(new DiffBlock<>(diff.operation, elements, 
+				diffBlocks.add(new DiffBlock<>(Operation.EQUAL, elements, 
 						oldElementIndex-elements.size(), newElementIndex-elements.size()));
-			} else if (diff.operation == Operation.INSERT) {
-				for (int i = 0; i < diff.text.length(); i++)
-					elements.add(newElements.get(newElementIndex++));
-				diffBlocks.add(new DiffBlock<>(diff.operation, elements, 
-						oldElementIndex, newElementIndex-elements.size()));
-			} else {
-				for (int i = 0; i < diff.text.length(); i++)
-					elements.add(oldElements.get(oldElementIndex++));
-				diffBlocks.add(new DiffBlock<>(diff.operation, elements, 
-						oldElementIndex-elements.size(), newElementIndex));
 			}
 		}
 		
@@ -116,59 +110,24 @@ public class DiffUtils {
 	public static LinkedHashMap<Integer, List<DiffBlock<String>>> diffLines(List<String> deleteLines, List<String> insertLines) {
 		LinkedHashMap<Integer, List<DiffBlock<String>>> lineDiffs = new LinkedHashMap<>();
 		
-		DiffMatchPatch dmp = new DiffMatchPatch();
-		
 		for (int i=0; i<deleteLines.size(); i++) {
 			String deleteLine = deleteLines.get(i);
-			List<String> deleteTokens = getTokens(deleteLine);
 			if (i < insertLines.size()) {
 				String insertLine = insertLines.get(i);
-				List<String> insertTokens = getTokens(insertLine);
-				
-				TokensToCharsResult<String> result = DiffUtils.tokensToChars(deleteTokens, insertTokens);						
-				List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result.chars1, result.chars2, false);
+				List<DiffBlock<String>> diffBlocks = diff(getTokens(deleteLine), getTokens(insertLine));
 				int equal = 0;
 				int total = 0;
-				for (DiffMatchPatch.Diff diff: diffs) {
-					for (int k=0; k<diff.text.length(); k++) {
-						int pos = diff.text.charAt(k);
-						String token = result.tokenArray.get(pos);
+				for (DiffBlock<String> diffBlock: diffBlocks) {
+					for (String token: diffBlock.getElements()) {
 						if (StringUtils.isNotBlank(token)) {
 							total += token.length();
-							if (diff.operation == Operation.EQUAL)
+							if (diffBlock.getOperation() == Operation.EQUAL)
 								equal += token.length();
 						}
 					}
 				}
-				if (equal*3 >= total) {
-					List<DiffBlock<String>> diffBlocks = new ArrayList<>();
-					int oldLineNo = 0;
-					int newLineNo = 0;
-					for (Diff diff : diffs) {
-						List<String> tokens = new ArrayList<>();
-						if (diff.operation == Operation.EQUAL) {
-							for (int k = 0; k < diff.text.length(); k++) {
-								tokens.add(insertTokens.get(newLineNo));
-								oldLineNo++;
-								newLineNo++;
-							}
-							diffBlocks.add(new DiffBlock<String>(
-									diff.operation, tokens, oldLineNo-tokens.size(), newLineNo-tokens.size()));
-						} else if (diff.operation == Operation.INSERT) {
-							for (int k = 0; k < diff.text.length(); k++)
-								tokens.add(insertTokens.get(newLineNo++));
-							diffBlocks.add(new DiffBlock<>(
-									diff.operation, tokens, oldLineNo, newLineNo-tokens.size()));
-						} else {
-							for (int k = 0; k < diff.text.length(); k++)
-								tokens.add(deleteTokens.get(oldLineNo++));
-							diffBlocks.add(new DiffBlock<>(
-									diff.operation, tokens, oldLineNo-tokens.size(), newLineNo));
-						}
-					}
-
+				if (equal*3 >= total) 
 					lineDiffs.put(i, diffBlocks);
-				}
 			}
 		}
 		return lineDiffs;
@@ -248,46 +207,5 @@ public class DiffUtils {
 		}
 		return lineMapping;
 	}
-	
-	public static <T> TokensToCharsResult<T> tokensToChars(List<T> tokens1, List<T> tokens2) {
-		List<T> tokenArray = new ArrayList<>();
-		Map<T, Integer> tokenHash = new HashMap<>();
-		// e.g. linearray[4] == "Hello\n"
-		// e.g. linehash.get("Hello\n") == 4
-
-		// "\x00" is a valid character, but various debuggers don't like it.
-		// So we'll insert a junk entry to avoid generating a null character.
-		tokenArray.add(null);
-
-		String chars1 = tokensToCharsMunge(tokens1, tokenArray, tokenHash);
-		String chars2 = tokensToCharsMunge(tokens2, tokenArray, tokenHash);
-		return new TokensToCharsResult<T>(chars1, chars2, tokenArray);
-	}
-
-	private static <T> String tokensToCharsMunge(List<T> tokens, List<T> tokenArray, Map<T, Integer> tokenHash) {
-		StringBuilder chars = new StringBuilder();
-		for (T token: tokens) {
-			if (tokenHash.containsKey(token)) {
-				chars.append(String.valueOf((char) (int) tokenHash.get(token)));
-			} else {
-				tokenArray.add(token);
-				tokenHash.put(token, tokenArray.size() - 1);
-				chars.append(String.valueOf((char) (tokenArray.size() - 1)));
-			}
-		}
-		return chars.toString();
-	}
-	
-	private static class TokensToCharsResult<T> {
-		private String chars1;
-		private String chars2;
-		private List<T> tokenArray;
-
-		private TokensToCharsResult(String chars1, String chars2, List<T> tokenArray) {
-			this.chars1 = chars1;
-			this.chars2 = chars2;
-			this.tokenArray = tokenArray;
-		}
-	}
 
 }
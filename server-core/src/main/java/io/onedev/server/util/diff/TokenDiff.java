@@ -0,0 +1,167 @@
+package io.onedev.server.util.diff;
+
+import java.util.Arrays;
+
+/**
+ * Myers diff of token sequences, with tokens interned as integers. Common prefix and suffix are
+ * trimmed before each bisection, and middle snakes are used to split the problem so that space
+ * stays linear. Regions not resolved when deadline is reached are treated as deleted and inserted
+ * as a whole.
+ */
+class TokenDiff {
+
+	private final int[] oldTokens;
+
+	private final int[] newTokens;
+
+	private final boolean[] deleted;
+
+	private final boolean[] inserted;
+
+	private final long deadline;
+
+	private final int[] forward;
+
+	private final int[] backward;
+
+	TokenDiff(int[] oldTokens, int[] newTokens, long deadline) {
+		this.oldTokens = oldTokens;
+		this.newTokens = newTokens;
+		this.deadline = deadline;
+		deleted = new boolean[oldTokens.length];
+		inserted = new boolean[newTokens.length];
+
+		// Vectors are shared by all bisections as they are no longer needed once middle snake is found
+		int maxLength = 2 * ((oldTokens.length + newTokens.length + 1) / 2) + 2;
+		forward = new int[maxLength];
+		backward = new int[maxLength];
+
+		compare(0, oldTokens.length, 0, newTokens.length);
+	}
+
+	boolean isDeleted(int oldIndex) {
+		return deleted[oldIndex];
+	}
+
+	boolean isInserted(int newIndex) {
+		return inserted[newIndex];
+	}
+
+	private void compare(int oldFrom, int oldTo, int newFrom, int newTo) {
+		while (oldFrom < oldTo && newFrom < newTo && oldTokens[oldFrom] == newTokens[newFrom]) {
+			oldFrom++;
+			newFrom++;
+		}
+		while (oldFrom < oldTo && newFrom < newTo && oldTokens[oldTo-1] == newTokens[newTo-1]) {
+			oldTo--;
+			newTo--;
+		}
+
+		if (oldFrom == oldTo) {
+			Arrays.fill(inserted, newFrom, newTo, true);
+		} else if (newFrom == newTo) {
+			Arrays.fill(deleted, oldFrom, oldTo, true);
+		} else {
+			long split = bisect(oldFrom, oldTo, newFrom, newTo);
+			if (split != -1) {
+				int oldSplit = (int) (split >>> 32);
+				int newSplit = (int) split;
+				compare(oldFrom, oldSplit, newFrom, newSplit);
+				compare(oldSplit, oldTo, newSplit, newTo);
+			} else {
+				Arrays.fill(deleted, oldFrom, oldTo, true);
+				Arrays.fill(inserted, newFrom, newTo, true);
+			}
+		}
+	}
+
+	/*
+	 * Find the middle snake by walking forward from start and backward from end at the same
+	 * time. Returns old index in high 32 bits and new index in low 32 bits of the split point,
+	 * or -1 if deadline is reached
+	 */
+	private long bisect(int oldFrom, int oldTo, int newFrom, int newTo) {
+		int oldLength = oldTo - oldFrom;
+		int newLength = newTo - newFrom;
+		int maxD = (oldLength + newLength + 1) / 2;
+		int offset = maxD;
+		int length = 2 * maxD;
+		Arrays.fill(forward, 0, length, -1);
+		Arrays.fill(backward, 0, length, -1);
+		forward[offset + 1] = 0;
+		backward[offset + 1] = 0;
+		int delta = oldLength - newLength;
+
+		// If total number of tokens is odd, front path collides with reverse path
+		boolean front = (delta % 2 != 0);
+
+		// Offsets for start and end of k loop to skip diagonals running out of the edit graph
+		int k1Start = 0;
+		int k1End = 0;
+		int k2Start = 0;
+		int k2End = 0;
+		for (int d = 0; d < maxD; d++) {
+			if (System.currentTimeMillis() > deadline)
+				break;
+
+			for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+				int k1Offset = offset + k1;
+				int x1;
+				if (k1 == -d || (k1 != d && forward[k1Offset - 1] < forward[k1Offset + 1]))
+					x1 = forward[k1Offset + 1];
+				else
+					x1 = forward[k1Offset - 1] + 1;
+				int y1 = x1 - k1;
+				while (x1 < oldLength && y1 < newLength
+						&& oldTokens[oldFrom + x1] == newTokens[newFrom + y1]) {
+					x1++;
+					y1++;
+				}
+				forward[k1Offset] = x1;
+				if (x1 > oldLength) {
+					k1End += 2;
+				} else if (y1 > newLength) {
+					k1Start += 2;
+				} else if (front) {
+					int k2Offset = offset + delta - k1;
+					if (k2Offset >= 0 && k2Offset < length && backward[k2Offset] != -1) {
+						int x2 = oldLength - backward[k2Offset];
+						if (x1 >= x2)
+							return ((long)(oldFrom + x1) << 32) | (newFrom + y1);
+					}
+				}
+			}
+
+			for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+				int k2Offset = offset + k2;
+				int x2;
+				if (k2 == -d || (k2 != d && backward[k2Offset - 1] < backward[k2Offset + 1]))
+					x2 = backward[k2Offset + 1];
+				else
+					x2 = backward[k2Offset - 1] + 1;
+				int y2 = x2 - k2;
+				while (x2 < oldLength && y2 < newLength
+						&& oldTokens[oldTo - x2 - 1] == newTokens[newTo - y2 - 1]) {
+					x2++;
+					y2++;
+				}
+				backward[k2Offset] = x2;
+				if (x2 > oldLength) {
+					k2End += 2;
+				} else if (y2 > newLength) {
+					k2Start += 2;
+				} else if (!front) {
+					int k1Offset = offset + delta - k2;
+					if (k1Offset >= 0 && k1Offset < length && forward[k1Offset] != -1) {
+						int x1 = forward[k1Offset];
+						int y1 = offset + x1 - k1Offset;
+						if (x1 >= oldLength - x2)
+							return ((long)(oldFrom + x1) << 32) | (newFrom + y1);
+					}
+				}
+			}
+		}
+		return -1;
+	}
+
+}
@@ -1,5 +1,28 @@
 package io.onedev.server.util.match;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
 public interface Matcher {
+	
 	boolean matches(String pattern, String value);
+	
+	/**
+	 * Compile specified patterns into a predicate testing whether a value matches any of them. 
+	 * Use this instead of calling {@link #matches(String, String)} repeatedly when same patterns 
+	 * are checked against many values
+	 */
+	default Predicate<String> compile(Collection<String> patterns) {
+		List<String> copyOfPatterns = new ArrayList<>(patterns);
+		return value -> {
+			for (String pattern: copyOfPatterns) {
+				if (matches(pattern, value))
+					return true;
+			}
+			return false;
+		};
+	}
+	
 }
@@ -18,6 +18,13 @@
  */
 package io.onedev.server.util.match;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
 import io.onedev.commons.utils.StringUtils;
 
 /**
@@ -114,6 +121,13 @@ public class PathMatcher implements Matcher {
 
         String[] pattDirs = StringUtils.tokenizeToStringArray(pattern, this.pathSeparator);
         String[] pathDirs = StringUtils.tokenizeToStringArray(str, this.pathSeparator);
+        return doMatch(pattern, pattDirs, str, pathDirs, fullMatch);
+    }
+    
+    private boolean doMatch(String pattern, String[] pattDirs, String str, String[] pathDirs, boolean fullMatch) {
+        if (str.startsWith(this.pathSeparator) != pattern.startsWith(this.pathSeparator)) {
+            return false;
+        }
 
         int pattIdxStart = 0;
         int pattIdxEnd = pattDirs.length - 1;
@@ -231,6 +245,115 @@ public class PathMatcher implements Matcher {
         return true;
     }
 
+    /**
+     * Compile specified patterns for repeated matching. Literal patterns and patterns only 
+     * having trailing <code>**</code> are looked up by hash against the path and its ancestors, 
+     * so that cost of matching a path does not grow with number of such patterns. Other 
+     * patterns are tokenized only once.
+     */
+    @Override
+    public Predicate<String> compile(Collection<String> patterns) {
+    	Set<String> literals = new HashSet<>();
+    	Set<String> prefixes = new HashSet<>();
+    	List<CompiledPattern> others = new ArrayList<>();
+    	List<CompiledPattern> all = new ArrayList<>();
+    	for (String pattern: patterns) {
+    		if (pattern.endsWith(this.pathSeparator))
+    			pattern += "**";
+    		CompiledPattern compiled = new CompiledPattern(pattern, 
+    				StringUtils.tokenizeToStringArray(pattern, this.pathSeparator));
+    		all.add(compiled);
+    		
+    		int wildcardIndex = 0;
+    		while (wildcardIndex < compiled.dirs.length && !isPattern(compiled.dirs[wildcardIndex]))
+    			wildcardIndex++;
+    		if (!isCanonical(pattern, compiled.dirs)) {
+    			others.add(compiled);
+    		} else if (wildcardIndex == compiled.dirs.length) {
+    			literals.add(pattern);
+    		} else if (wildcardIndex != 0 && wildcardIndex == compiled.dirs.length - 1 
+    				&& compiled.dirs[wildcardIndex].equals("**")) {
+    			prefixes.add(pattern.substring(0, pattern.length() - this.pathSeparator.length() - 2));
+    		} else {
+    			others.add(compiled);
+    		}
+    	}
+    	
+    	if (literals.isEmpty() && prefixes.isEmpty()) 
+    		return path -> matchesAny(others, path, StringUtils.tokenizeToStringArray(path, this.pathSeparator));
+    	
+    	return path -> {
+    		String[] pathDirs = StringUtils.tokenizeToStringArray(path, this.pathSeparator);
+    		if (!isCanonical(path, pathDirs)) 
+    			return matchesAny(all, path, pathDirs);
+    		if (literals.contains(path))
+    			return true;
+    		if (!prefixes.isEmpty()) {
+    			String ancestor = path;
+    			if (ancestor.endsWith(this.pathSeparator))
+    				ancestor = ancestor.substring(0, ancestor.length() - this.pathSeparator.length());
+    			while (true) {
+    				if (prefixes.contains(ancestor))
+    					return true;
+    				int index = ancestor.lastIndexOf(this.pathSeparator);
+    				if (index <= 0)
+    					break;
+    				ancestor = ancestor.substring(0, index);
+    			}
+    		}
+    		return matchesAny(others, path, pathDirs);
+    	};
+    }
+    
+    private boolean matchesAny(List<CompiledPattern> patterns, String path, String[] pathDirs) {
+    	for (CompiledPattern pattern: patterns) {
+    		if (doMatch(pattern.pattern, pattern.dirs, path, pathDirs, true))
+    			return true;
+    	}
+    	return false;
+    }
+    
+    /*
+     * Whether specified path is the same as joining its tokens. Canonical path and 
+     * pattern without wildcards match each other if and only if they are equal
+     */
+    private boolean isCanonical(String path, String[] dirs) {
+    	StringBuilder builder = new StringBuilder();
+    	if (path.startsWith(this.pathSeparator))
+    		builder.append(this.pathSeparator);
+    	for (int i=0; i<dirs.length; i++) {
+    		if (i != 0)
+    			builder.append(this.pathSeparator);
+    		builder.append(dirs[i]);
+    	}
+    	if (dirs.length != 0 && path.endsWith(this.pathSeparator))
+    		builder.append(this.pathSeparator);
+    	return builder.toString().equals(path);
+    }
+    
+    @Override
+    public boolean equals(Object other) {
+    	return other instanceof PathMatcher && ((PathMatcher) other).pathSeparator.equals(pathSeparator);
+    }
+    
+    @Override
+    public int hashCode() {
+    	return pathSeparator.hashCode();
+    }
+    
+    private static class CompiledPattern {
+    	
+    	final String pattern;
+    	
+    	final String[] dirs;
+    	
+    	CompiledPattern(String pattern, String[] dirs) {
+    		this.pattern = pattern;
+    		this.dirs = dirs;
+    	}
+    	
+    }
+    
     /**
      * Given a pattern and a full path, determine the pattern-mapped part.
      * <p>For example:
@@ -1,5 +1,12 @@
 package io.onedev.server.util.match;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
 public class StringMatcher implements Matcher {
 
 	@Override
@@ -135,4 +142,39 @@ public class StringMatcher implements Matcher {
 		return true;
 	}
 
+	/**
+	 * Compile specified patterns for repeated matching. Patterns without wildcards are looked 
+	 * up by hash, so that cost of matching a string does not grow with number of such patterns
+	 */
+	@Override
+	public Predicate<String> compile(Collection<String> patterns) {
+		Set<String> literals = new HashSet<>();
+		List<String> others = new ArrayList<>();
+		for (String pattern: patterns) {
+			if (pattern.indexOf('*') == -1 && pattern.indexOf('?') == -1)
+				literals.add(pattern);
+			else
+				others.add(pattern);
+		}
+		return str -> {
+			if (literals.contains(str))
+				return true;
+			for (String pattern: others) {
+				if (matches(pattern, str))
+					return true;
+			}
+			return false;
+		};
+	}
+	
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof StringMatcher;
+	}
+	
+	@Override
+	public int hashCode() {
+		return StringMatcher.class.hashCode();
+	}
+	
 }
@@ -1,7 +1,9 @@
 package io.onedev.server.util.match;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
 
@@ -10,6 +12,8 @@ import org.apache.commons.lang3.StringUtils;
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 
 import io.onedev.commons.utils.LinearRange;
 
@@ -19,6 +23,16 @@ public class WildcardUtils {
 	
 	private static final StringMatcher STRING_MATCHER = new StringMatcher();
 	
+	private static final int MAX_CACHED_PATTERNS = 10000;
+	
+	private static final Cache<String, Predicate<String>> compiledPathPatterns = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_PATTERNS)
+			.build();
+	
+	private static final Cache<String, Predicate<String>> compiledStringPatterns = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_PATTERNS)
+			.build();
+	
 	/**
      * Tests whether or not a given path matches a given pattern using of 
      * <a href="http://ant.apache.org/manual/dirtasks.html">Ant path pattern</a>.
@@ -33,7 +47,7 @@ public class WildcardUtils {
      * 
      */
     public static boolean matchPath(String pattern, String path) {
-    	return PATH_MATCHER.matches(pattern, path);
+    	return compile(compiledPathPatterns, PATH_MATCHER, pattern).test(path);
     }
     
     /**
@@ -50,7 +64,17 @@ public class WildcardUtils {
      * 			true if the string matches against the pattern, or false otherwise.
      */
     public static boolean matchString(String pattern, String str) {
-    	return STRING_MATCHER.matches(pattern, str);
+    	return compile(compiledStringPatterns, STRING_MATCHER, pattern).test(str);
+    }
+    
+    private static Predicate<String> compile(Cache<String, Predicate<String>> cache, 
+    		Matcher matcher, String pattern) {
+    	Predicate<String> compiled = cache.getIfPresent(pattern);
+    	if (compiled == null) {
+    		compiled = matcher.compile(Collections.singleton(pattern));
+    		cache.put(pattern, compiled);
+    	}
+    	return compiled;
     }
     
     private static int indexOf(String str, String substr, int index) {
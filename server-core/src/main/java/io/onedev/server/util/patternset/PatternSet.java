@@ -4,8 +4,10 @@ import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.function.Predicate;
 
 import javax.annotation.Nullable;
 
@@ -18,27 +20,43 @@ import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
 import org.apache.tools.ant.DirectoryScanner;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 import io.onedev.commons.codeassist.FenceAware;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.util.match.Matcher;
 import io.onedev.server.util.patternset.PatternSetParser.PatternContext;
 import io.onedev.server.util.patternset.PatternSetParser.PatternsContext;
 
+/**
+ * Immutable set of include and exclude patterns. Parsed pattern sets are cached and shared, 
+ * and each of them compiles its patterns on first match, so that repeatedly parsing and 
+ * matching same pattern set string is cheap.
+ */
 public class PatternSet implements Serializable {
 
 	private static final long serialVersionUID = 1L;
+	
+	private static final int MAX_CACHED_PATTERN_SETS = 10000;
+	
+	private static final Cache<String, PatternSet> parseCache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_PATTERN_SETS)
+			.build();
 
 	private final Set<String> includes;
 	
 	private final Set<String> excludes;
 	
+	private transient volatile CompiledPatternSet compiled;
+	
 	public PatternSet() {
 		this(new HashSet<>(), new HashSet<>());
 	}
 	
 	public PatternSet(Set<String> includes, Set<String> excludes) {
-		this.includes = includes;
-		this.excludes = excludes;
+		this.includes = Collections.unmodifiableSet(new HashSet<>(includes));
+		this.excludes = Collections.unmodifiableSet(new HashSet<>(excludes));
 	}
 
 	public Set<String> getIncludes() {
@@ -50,14 +68,15 @@ public class PatternSet implements Serializable {
 	}
 
 	public boolean matches(Matcher matcher, String value) {
-		for (String exclude: excludes) {
-			if (matcher.matches(exclude, value))
-				return false;
-		}
-		for (String include: includes) {
-			if (matcher.matches(include, value))
-				return true;
+		CompiledPatternSet compiled = this.compiled;
+		if (compiled == null || !compiled.matcher.equals(matcher)) {
+			compiled = new CompiledPatternSet(matcher, matcher.compile(includes), matcher.compile(excludes));
+			this.compiled = compiled;
 		}
+		if (compiled.excludes.test(value))
+			return false;
+		if (compiled.includes.test(value))
+			return true;
 		if (excludes.isEmpty()) 
 			return false;
 		else 
@@ -80,42 +99,52 @@ public class PatternSet implements Serializable {
 	}
 	
 	public static PatternSet parse(@Nullable String patternSetString) {
+		if (patternSetString == null)
+			return new PatternSet();
+		
+		PatternSet patternSet = parseCache.getIfPresent(patternSetString);
+		if (patternSet == null) {
+			patternSet = doParse(patternSetString);
+			parseCache.put(patternSetString, patternSet);
+		}
+		return patternSet;
+	}
+	
+	private static PatternSet doParse(String patternSetString) {
 		Set<String> includes = new HashSet<>();
 		Set<String> excludes = new HashSet<>();
 		
-		if (patternSetString != null) {
-			CharStream is = CharStreams.fromString(patternSetString); 
-			PatternSetLexer lexer = new PatternSetLexer(is);
-			lexer.removeErrorListeners();
-			lexer.addErrorListener(new BaseErrorListener() {
+		CharStream is = CharStreams.fromString(patternSetString); 
+		PatternSetLexer lexer = new PatternSetLexer(is);
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(new BaseErrorListener() {
 
-				@Override
-				public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
-						int charPositionInLine, String msg, RecognitionException e) {
-					throw new RuntimeException("Malformed pattern set");
-				}
-				
-			});
-			CommonTokenStream tokens = new CommonTokenStream(lexer);
-			PatternSetParser parser = new PatternSetParser(tokens);
-			parser.removeErrorListeners();
-			parser.setErrorHandler(new BailErrorStrategy());
-			
-			PatternsContext patternsContext = parser.patterns();
+			@Override
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+					int charPositionInLine, String msg, RecognitionException e) {
+				throw new RuntimeException("Malformed pattern set");
+			}
 			
-			for (PatternContext pattern: patternsContext.pattern()) {
-				String value;
-				if (pattern.Quoted() != null) 
-					value = FenceAware.unfence(pattern.Quoted().getText());
-				else 
-					value = pattern.NQuoted().getText();
-				value = StringUtils.unescape(value);
-				if (pattern.Excluded() != null)
-					excludes.add(value);
-				else 
-					includes.add(value);
-			}			
-		}
+		});
+		CommonTokenStream tokens = new CommonTokenStream(lexer);
+		PatternSetParser parser = new PatternSetParser(tokens);
+		parser.removeErrorListeners();
+		parser.setErrorHandler(new BailErrorStrategy());
+		
+		PatternsContext patternsContext = parser.patterns();
+		
+		for (PatternContext pattern: patternsContext.pattern()) {
+			String value;
+			if (pattern.Quoted() != null) 
+				value = FenceAware.unfence(pattern.Quoted().getText());
+			else 
+				value = pattern.NQuoted().getText();
+			value = StringUtils.unescape(value);
+			if (pattern.Excluded() != null)
+				excludes.add(value);
+			else 
+				includes.add(value);
+		}			
 		
 		return new PatternSet(includes, excludes);
 	}
@@ -137,4 +166,20 @@ public class PatternSet implements Serializable {
 		return builder.toString().trim();
 	}
 	
-}
\ No newline at end of file
+	private static class CompiledPatternSet {
+		
+		final Matcher matcher;
+		
+		final Predicate<String> includes;
+		
+		final Predicate<String> excludes;
+		
+		CompiledPatternSet(Matcher matcher, Predicate<String> includes, Predicate<String> excludes) {
+			this.matcher = matcher;
+			this.includes = includes;
+			this.excludes = excludes;
+		}
+		
+	}
+	
+}
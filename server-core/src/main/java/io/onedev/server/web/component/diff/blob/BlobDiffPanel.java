@@ -18,7 +18,6 @@ import io.onedev.server.git.LfsObject;
 import io.onedev.server.git.LfsPointer;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.PullRequest;
-import io.onedev.server.util.diff.DiffUtils;
 import io.onedev.server.web.WebConstants;
 import io.onedev.server.web.component.diff.DiffRenderer;
 import io.onedev.server.web.component.diff.blob.text.BlobTextDiffPanel;
@@ -81,9 +80,7 @@ public class BlobDiffPanel extends Panel {
 		if (diffPanel != null) {
 			add(diffPanel);
 		} else if (blob.getText() != null) {
-			if (blob.getText().getLines().size() > DiffUtils.MAX_DIFF_SIZE) {
-				add(newFragment("Unable to diff as the file is too large.", true));
-			} else if (change.getAdditions()+change.getDeletions() > WebConstants.MAX_SINGLE_DIFF_LINES) {
+			if (change.getAdditions()+change.getDeletions() > WebConstants.MAX_SINGLE_DIFF_LINES) {
 				add(newFragment("Diff is too large to be displayed.", true));
 			} else if (change.getDiffBlocks().isEmpty()) {
 				if (change.getNewBlobIdent().path != null)
@@ -136,9 +133,7 @@ public class BlobDiffPanel extends Panel {
 				if (diffPanel != null) {
 					add(diffPanel);
 				} else if (change.getOldText() != null && change.getNewText() != null) {
-					if (change.getOldText().getLines().size() + change.getNewText().getLines().size() > DiffUtils.MAX_DIFF_SIZE) {
-						add(newFragment("Unable to diff as the file is too large.", true));
-					} else if (change.getOldText().getLines().stream().anyMatch(it->it.length()>MAX_LINE_LEN)
+					if (change.getOldText().getLines().stream().anyMatch(it->it.length()>MAX_LINE_LEN)
 							|| change.getOldText().getLines().stream().anyMatch(it->it.length()>MAX_LINE_LEN)) {
 						add(newFragment("Unable to diff as some line is too long.", true));
 					} else if (change.getAdditions() + change.getDeletions() > WebConstants.MAX_SINGLE_DIFF_LINES) {
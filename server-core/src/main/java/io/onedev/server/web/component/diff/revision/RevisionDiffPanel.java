@@ -66,6 +66,8 @@ import io.onedev.server.codequality.CoverageStatus;
 import io.onedev.server.entitymanager.PendingSuggestionApplyManager;
 import io.onedev.server.event.project.CommitIndexed;
 import io.onedev.server.git.BlobChange;
+import io.onedev.server.git.BlobDiffKey;
+import io.onedev.server.git.BlobDiffManager;
 import io.onedev.server.git.BlobEdits;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
@@ -85,6 +87,7 @@ import io.onedev.server.search.code.CodeIndexManager;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.Pair;
 import io.onedev.server.util.PathComparator;
+import io.onedev.server.util.diff.DiffBlock;
 import io.onedev.server.util.diff.WhitespaceOption;
 import io.onedev.server.util.match.Matcher;
 import io.onedev.server.util.match.PathMatcher;
@@ -126,6 +129,8 @@ public abstract class RevisionDiffPanel extends Panel {
 	private static final String COOKIE_VIEW_MODE = "onedev.server.diff.viewmode";
 	
 	private static final String COOKIE_COMMENT_WIDTH = "revisionDiff.comment.width";
+	
+	private static final int DIFF_BATCH_SIZE = 20;
 
 	private final String oldRev;
 	
@@ -254,7 +259,14 @@ public abstract class RevisionDiffPanel extends Panel {
 			
 	    	List<BlobChange> displayChanges = new ArrayList<>();
 	    	int totalChangedLines = 0;
-	    	for (BlobChange change: diffChanges) {
+	    	for (int i=0; i<diffChanges.size(); i++) {
+	    		/*
+	    		 * Calculate diffs of next batch of files in parallel. Files beyond the display 
+	    		 * limit will not be diffed at all
+	    		 */
+	    		if (i % DIFF_BATCH_SIZE == 0)
+	    			calcDiffBlocks(diffChanges.subList(i, Math.min(i+DIFF_BATCH_SIZE, diffChanges.size())));
+	    		BlobChange change = diffChanges.get(i);
 	    		int changedLines = change.getAdditions() + change.getDeletions(); 
 	    		/*
 	    		 * we do not count large diff in a single file in order to
@@ -882,6 +894,59 @@ public abstract class RevisionDiffPanel extends Panel {
 		return totalChangesModel.getObject();
 	}
 	
+	private void calcDiffBlocks(List<BlobChange> changes) {
+		Map<String, ObjectId> oldBlobIds = new HashMap<>();
+		Map<String, ObjectId> newBlobIds = new HashMap<>();
+		for (DiffEntryFacade entry: diffEntriesModel.getObject()) {
+			if (entry.getOldBlobId() != null)
+				oldBlobIds.put(entry.getOldPath(), entry.getOldBlobId());
+			if (entry.getNewBlobId() != null)
+				newBlobIds.put(entry.getNewPath(), entry.getNewBlobId());
+		}
+		
+		List<BlobChange> keyedChanges = new ArrayList<>();
+		List<BlobDiffKey> keys = new ArrayList<>();
+		for (BlobChange change: changes) {
+			BlobIdent oldBlobIdent = change.getOldBlobIdent();
+			BlobIdent newBlobIdent = change.getNewBlobIdent();
+			ObjectId oldBlobId = oldBlobIdent.path != null? oldBlobIds.get(oldBlobIdent.path): null;
+			ObjectId newBlobId = newBlobIdent.path != null? newBlobIds.get(newBlobIdent.path): null;
+			BlobDiffKey key;
+			if (change.getType() == ChangeType.ADD || change.getType() == ChangeType.COPY) {
+				if (newBlobId != null && !newBlobIdent.isGitLink()) {
+					key = new BlobDiffKey(null, null, null, 
+							newBlobIdent.path, newBlobIdent.mode, newBlobId, WhitespaceOption.DEFAULT);
+				} else {
+					key = null;
+				}
+			} else if (change.getType() == ChangeType.DELETE) {
+				if (oldBlobId != null && !oldBlobIdent.isGitLink()) {
+					key = new BlobDiffKey(oldBlobIdent.path, oldBlobIdent.mode, oldBlobId, 
+							null, null, null, WhitespaceOption.DEFAULT);
+				} else {
+					key = null;
+				}
+			} else if (oldBlobId != null && newBlobId != null 
+					&& !oldBlobIdent.isGitLink() && !newBlobIdent.isGitLink()) {
+				key = new BlobDiffKey(oldBlobIdent.path, oldBlobIdent.mode, oldBlobId, 
+						newBlobIdent.path, newBlobIdent.mode, newBlobId, change.getWhitespaceOption());
+			} else {
+				key = null;
+			}
+			if (key != null) {
+				keyedChanges.add(change);
+				keys.add(key);
+			}
+		}
+		
+		if (!keys.isEmpty()) {
+			List<List<DiffBlock<String>>> diffBlocks = OneDev.getInstance(BlobDiffManager.class)
+					.getDiffBlocks(getProject().getId(), keys);
+			for (int i=0; i<keyedChanges.size(); i++)
+				keyedChanges.get(i).setDiffBlocks(diffBlocks.get(i));
+		}
+	}
+	
 	private List<BlobChange> getDisplayChanges() {
 		return displayChangesModel.getObject();
 	}
@@ -9,6 +9,14 @@ import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
+import com.google.common.cache.CacheStats;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.markdown.MarkdownManager;
+import io.onedev.server.notification.DeliveryManager;
+import io.onedev.server.notification.DeliveryStats;
+import io.onedev.server.security.PermissionCache;
 import io.onedev.server.util.DateUtils;
 import io.onedev.server.web.page.admin.AdministrationPage;
 
@@ -67,6 +75,54 @@ public class ServerInformationPage extends AdministrationPage {
 		
 		add(new Label("osUserName", System.getProperty("user.name")));
 		
+		add(new Label("markdownCacheHitRate", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				CacheStats stats = OneDev.getInstance(MarkdownManager.class).getCacheStats();
+				return String.format("%.1f%% (%d hits, %d misses)", 
+						stats.hitRate() * 100, stats.hitCount(), stats.missCount());
+			}
+			
+		}));
+		
+		add(new Label("permissionCacheHitRate", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				CacheStats stats = OneDev.getInstance(PermissionCache.class).getCacheStats();
+				return String.format("%.1f%% (%d hits, %d misses)", 
+						stats.hitRate() * 100, stats.hitCount(), stats.missCount());
+			}
+			
+		}));
+		
+		add(new Label("repositoryCacheStats", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				ProjectManager projectManager = OneDev.getInstance(ProjectManager.class);
+				CacheStats stats = projectManager.getRepositoryCacheStats();
+				long cached = projectManager.getCachedRepositoryCount();
+				return String.format("%.1f%% (%d hits, %d misses), %d cached, %d evicted but still opened", 
+						stats.hitRate() * 100, stats.hitCount(), stats.missCount(), cached, 
+						Math.max(0, projectManager.getOpenRepositoryCount() - cached));
+			}
+			
+		}));
+		
+		add(new Label("deliveryStats", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				DeliveryStats stats = OneDev.getInstance(DeliveryManager.class).getStats();
+				return String.format("%d pending, %d delivered, %d retried, %d dropped", 
+						stats.getPendingCount(), stats.getDeliveredCount(), 
+						stats.getRetriedCount(), stats.getDroppedCount());
+			}
+			
+		}));
+		
 		add(new Link<Void>("gc") {
 
 			@Override
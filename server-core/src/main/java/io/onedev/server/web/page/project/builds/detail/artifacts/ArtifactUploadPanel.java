@@ -116,6 +116,9 @@ public abstract class ArtifactUploadPanel extends Panel {
 									String filePath = getArtifactPath(upload);
 									File file = new File(artifactsDir, filePath);
 									FileUtils.createDir(file.getParentFile());
+									// Existing artifact may be linked to a blob shared with other builds
+									if (file.exists())
+										FileUtils.deleteFile(file);
 									try (	InputStream is = upload.getInputStream();
 											OutputStream os = new FileOutputStream(file)) {
 										IOUtils.copy(is, os, BUFFER_SIZE);
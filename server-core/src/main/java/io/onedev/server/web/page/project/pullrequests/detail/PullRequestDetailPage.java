@@ -302,6 +302,8 @@ public abstract class PullRequestDetailPage extends ProjectPage implements PullR
 	@Override
 	protected void onInitialize() {
 		super.onInitialize();
+		
+		getPullRequestManager().access(getPullRequest());
 
 		add(newRequestHead());
 		add(newStatusBarContainer());
@@ -1,28 +1,35 @@
 package io.onedev.server.web.resource;
 
+import com.google.common.base.Splitter;
 import io.onedev.k8shelper.KubernetesHelper;
 import io.onedev.server.OneDev;
 import io.onedev.server.cluster.ClusterManager;
 import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.git.GitUtils;
+import io.onedev.server.git.archive.ArchiveManager;
+import io.onedev.server.git.archive.ArchiveStream;
+import io.onedev.server.git.exception.ObjectNotFoundException;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.User;
 import io.onedev.server.security.SecurityUtils;
-import org.apache.commons.io.IOUtils;
+import io.onedev.server.util.ExceptionUtils;
+import io.onedev.server.util.IOUtils;
+import io.onedev.server.util.LongRange;
+import io.onedev.server.web.util.WicketUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.tika.mime.MimeTypes;
+import org.apache.wicket.request.cycle.AbstractRequestCycleListener;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
-import org.eclipse.jgit.api.ArchiveCommand;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.archive.TgzFormat;
-import org.eclipse.jgit.archive.ZipFormat;
-import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jetty.io.EofException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
 import javax.ws.rs.client.Invocation;
@@ -31,14 +38,11 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.UUID;
 
-import static io.onedev.commons.bootstrap.Bootstrap.BUFFER_SIZE;
-
 public class ArchiveResource extends AbstractResource {
 
 	private static final long serialVersionUID = 1L;
@@ -49,9 +53,11 @@ public class ArchiveResource extends AbstractResource {
 	
 	private static final String PARAM_FORMAT = "format";
 	
-	public static final String FORMAT_ZIP = "zip";
+	public static final String FORMAT_ZIP = ArchiveManager.FORMAT_ZIP;
+	
+	public static final String FORMAT_TGZ = ArchiveManager.FORMAT_TGZ;
 	
-	public static final String FORMAT_TGZ = "tgz";
+	private static final Logger logger = LoggerFactory.getLogger(ArchiveResource.class);
 	
 	@Override
 	protected ResourceResponse newResourceResponse(Attributes attributes) {
@@ -68,17 +74,58 @@ public class ArchiveResource extends AbstractResource {
 			throw new IllegalArgumentException("format parameter should be specified either zip or tar.gz");
 		}
 		
+		ObjectId commitId;
 		if (!SecurityUtils.getUserId().equals(User.SYSTEM_ID)) {
 			// Perform database operations only if it is not a cluster access to avoid possible deadlocks
-			Project project = OneDev.getInstance(ProjectManager.class).load(projectId);
+			Project project = getProjectManager().load(projectId);
 			if (!SecurityUtils.canReadCode(project)) 
 				throw new UnauthorizedException();
+			commitId = project.getRevCommit(revision, true).copy();
+		} else {
+			commitId = GitUtils.resolve(getProjectManager().getRepository(projectId), revision + "^{commit}", true);
+			if (commitId == null)
+				throw new ObjectNotFoundException("Unable to find commit associated with revision: " + revision);
 		}
 		
+		// Archive of a commit never changes, so commit id and format identify its content
+		String etag = "\"" + commitId.name() + "-" + format + "\"";
+		
 		ResourceResponse response = new ResourceResponse();
-		response.setContentType(MimeTypes.OCTET_STREAM);
+		response.getHeaders().addHeader(HttpHeaders.ETAG, etag);
+		if (!ObjectId.isId(revision))
+			response.disableCaching();
+		
+		if (isMatched(attributes, etag)) {
+			response.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+			response.setWriteCallback(new WriteCallback() {
+
+				@Override
+				public void writeData(Attributes attributes) throws IOException {
+				}
+				
+			});
+			return response;
+		}
 		
-		response.disableCaching();
+		/*
+		 * Open archive here to get its size, and read it later in write callback, so that size 
+		 * and content always come from same archive. Stream is closed at end of request in case 
+		 * write callback is not called
+		 */
+		ArchiveStream archiveStream = openArchive(projectId, commitId, format);
+		RequestCycle.get().getListeners().add(new AbstractRequestCycleListener() {
+
+			@Override
+			public void onDetach(RequestCycle cycle) {
+				IOUtils.closeQuietly(archiveStream);
+			}
+			
+		});
+		long contentLength = archiveStream.getSize();
+		
+		response.setContentType(MimeTypes.OCTET_STREAM);
+		response.setAcceptRange(ContentRangeType.BYTES);
+		response.setContentLength(contentLength);
 		
 		try {
 			String fileName;
@@ -94,61 +141,93 @@ public class ArchiveResource extends AbstractResource {
 
 			@Override
 			public void writeData(Attributes attributes) throws IOException {
-				ProjectManager projectManager = OneDev.getInstance(ProjectManager.class);
-				UUID storageServerUUID = projectManager.getStorageServerUUID(projectId, true);
-				ClusterManager clusterManager = OneDev.getInstance(ClusterManager.class);
-				if (storageServerUUID.equals(clusterManager.getLocalServerUUID())) {
-					if (format.equals("zip"))
-						ArchiveCommand.registerFormat(format, new ZipFormat());
-					else
-						ArchiveCommand.registerFormat(format, new TgzFormat());
-					try {
-						RevCommit commit;
-						Repository repository = OneDev.getInstance(ProjectManager.class).getRepository(projectId);
-						try (RevWalk revWalk = new RevWalk(repository)) {
-							commit = revWalk.parseCommit(repository.resolve(revision));
-						}
-						ArchiveCommand archive = Git.wrap(repository).archive();
-						archive.setFormat(format);
-						archive.setTree(commit);
-						archive.setOutputStream(attributes.getResponse().getOutputStream());
-						archive.call();
-					} catch (GitAPIException e) {
-						throw new RuntimeException(e);
-					} finally {
-						ArchiveCommand.unregisterFormat(format);
-					}
-				} else {
-	    			Client client = ClientBuilder.newClient();
-	    			try {
-	    				CharSequence path = RequestCycle.get().urlFor(
-	    						new ArchiveResourceReference(), 
-	    						ArchiveResource.paramsOf(projectId, revision, format));
-	    				String storageServerUrl = clusterManager.getServerUrl(storageServerUUID) + path;
-	    				
-	    				WebTarget target = client.target(storageServerUrl).path(path.toString());
-	    				Invocation.Builder builder =  target.request();
-	    				builder.header(HttpHeaders.AUTHORIZATION, 
-	    						KubernetesHelper.BEARER + " " + clusterManager.getCredentialValue());
-	    				
-	    				try (Response response = builder.get()) {
-	    					KubernetesHelper.checkStatus(response);
-	    					try (
-	    							InputStream is = response.readEntity(InputStream.class);
-	    							OutputStream os = attributes.getResponse().getOutputStream()) {
-	    						IOUtils.copy(is, os, BUFFER_SIZE);
-	    					} 
-	    				} 
-	    			} finally {
-	    				client.close();
-	    			}
+				LongRange range = WicketUtils.getRequestContentRange(contentLength - 1);
+				try (InputStream is = archiveStream) {
+					IOUtils.copyRange(is, attributes.getResponse().getOutputStream(), range);
+				} catch (Exception e) {
+					EofException eofException = ExceptionUtils.find(e, EofException.class);
+					if (eofException != null) 
+						logger.trace("EOF while writing data", eofException);
+					else 
+						throw e;
 				}
-			}				
+			}
+			
 		});
 
 		return response;
 	}
+	
+	private ArchiveStream openArchive(Long projectId, ObjectId commitId, String format) {
+		UUID storageServerUUID = getProjectManager().getStorageServerUUID(projectId, true);
+		ClusterManager clusterManager = OneDev.getInstance(ClusterManager.class);
+		if (storageServerUUID.equals(clusterManager.getLocalServerUUID())) {
+			return getArchiveManager().openArchive(projectId, commitId, format);
+		} else {
+			Client client = ClientBuilder.newClient();
+			try {
+				String serverUrl = clusterManager.getServerUrl(storageServerUUID);
+				WebTarget target = client.target(serverUrl).path("~api/cluster/archive")
+						.queryParam("projectId", projectId)
+						.queryParam("commitId", commitId.name())
+						.queryParam("format", format);
+				Invocation.Builder builder =  target.request();
+				builder.header(HttpHeaders.AUTHORIZATION, 
+						KubernetesHelper.BEARER + " " + clusterManager.getCredentialValue());
+				
+				Response response = builder.get();
+				try {
+					KubernetesHelper.checkStatus(response);
+					InputStream is = response.readEntity(InputStream.class);
+					return new ArchiveStream(is, response.getLength()) {
 
+						private boolean closed;
+						
+						@Override
+						public void close() throws IOException {
+							if (!closed) {
+								closed = true;
+								try {
+									super.close();
+								} finally {
+									response.close();
+									client.close();
+								}
+							}
+						}
+						
+					};
+				} catch (Exception e) {
+					response.close();
+					throw e;
+				}
+			} catch (Exception e) {
+				client.close();
+				throw ExceptionUtils.unchecked(e);
+			}
+		}
+	}
+	
+	private boolean isMatched(Attributes attributes, String etag) {
+		HttpServletRequest request = (HttpServletRequest) attributes.getRequest().getContainerRequest();
+		String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+		if (ifNoneMatch != null) {
+			for (String each: Splitter.on(',').trimResults().split(ifNoneMatch)) {
+				if (each.equals("*") || each.equals(etag) || each.equals("W/" + etag))
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	private ProjectManager getProjectManager() {
+		return OneDev.getInstance(ProjectManager.class);
+	}
+	
+	private ArchiveManager getArchiveManager() {
+		return OneDev.getInstance(ArchiveManager.class);
+	}
+	
 	public static PageParameters paramsOf(Long projectId, String revision, String format) {
 		PageParameters params = new PageParameters();
 		params.set(PARAM_PROJECT, projectId);
@@ -0,0 +1,108 @@
+package io.onedev.server.codequality;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class ReportFilePackTest {
+
+	private static final int[] VALUES = new int[] {
+			0, 1, 63, 64, 127, 128, 255, 16383, 16384, 2097151, 2097152, 
+			Integer.MAX_VALUE, -1, -64, -65, -128, -16384, Integer.MIN_VALUE};
+	
+	@Test
+	public void testVarInt() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		for (int value: VALUES) 
+			ReportFilePack.writeVarInt(os, value);
+		ByteBuffer buffer = ByteBuffer.wrap(os.toByteArray());
+		for (int value: VALUES) 
+			assertEquals(value, ReportFilePack.readVarInt(buffer));
+		assertEquals(0, buffer.remaining());
+		
+		os = new ByteArrayOutputStream();
+		ReportFilePack.writeVarInt(os, 127);
+		assertEquals(1, os.size());
+		ReportFilePack.writeVarInt(os, 128);
+		assertEquals(3, os.size());
+	}
+
+	@Test
+	public void testVarLong() throws IOException {
+		long[] values = new long[] {0, 1, 127, 128, Integer.MAX_VALUE, 1L<<35, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		for (long value: values) 
+			ReportFilePack.writeVarLong(os, value);
+		ByteBuffer buffer = ByteBuffer.wrap(os.toByteArray());
+		for (long value: values) 
+			assertEquals(value, ReportFilePack.readVarLong(buffer));
+		assertEquals(0, buffer.remaining());
+	}
+	
+	@Test
+	public void testSignedVarInt() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		for (int value: VALUES) 
+			ReportFilePack.writeSignedVarInt(os, value);
+		ByteBuffer buffer = ByteBuffer.wrap(os.toByteArray());
+		for (int value: VALUES) 
+			assertEquals(value, ReportFilePack.readSignedVarInt(buffer));
+		assertEquals(0, buffer.remaining());
+		
+		os = new ByteArrayOutputStream();
+		ReportFilePack.writeSignedVarInt(os, -1);
+		assertEquals(1, os.size());
+	}
+	
+	@Test
+	public void testPack() throws IOException {
+		File tempDir = FileUtils.createTempDir();
+		try {
+			File packFile = new File(tempDir, "files.pack");
+			try (ReportFilePack.Writer writer = new ReportFilePack.Writer(packFile)) {
+				assertEquals(0, writer.intern("first"));
+				assertEquals(1, writer.intern("\u4e2d\u6587"));
+				assertEquals(0, writer.intern("first"));
+				
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				ReportFilePack.writeVarInt(data, 300);
+				ReportFilePack.writeSignedVarInt(data, -5);
+				writer.write("src/a.java", data);
+				
+				writer.write("src/empty.java", new ByteArrayOutputStream());
+				
+				data = new ByteArrayOutputStream();
+				data.write(42);
+				writer.write("src/b.java", data);
+			}
+			
+			ReportFilePack pack = ReportFilePack.open(packFile);
+			assertEquals("first", pack.getString(0));
+			assertEquals("\u4e2d\u6587", pack.getString(1));
+			
+			ByteBuffer buffer = pack.get("src/a.java");
+			assertEquals(300, ReportFilePack.readVarInt(buffer));
+			assertEquals(-5, ReportFilePack.readSignedVarInt(buffer));
+			assertEquals(0, buffer.remaining());
+			
+			assertEquals(0, pack.get("src/empty.java").remaining());
+			
+			buffer = pack.get("src/b.java");
+			assertEquals(1, buffer.remaining());
+			assertEquals(42, buffer.get());
+			
+			assertNull(pack.get("src/c.java"));
+		} finally {
+			FileUtils.deleteDir(tempDir);
+		}
+	}
+	
+}
@@ -41,6 +41,8 @@ import io.onedev.server.git.exception.NotTreeException;
 import io.onedev.server.git.exception.ObjectAlreadyExistsException;
 import io.onedev.server.git.exception.ObjectNotFoundException;
 import io.onedev.server.git.exception.ObsoleteCommitException;
+import io.onedev.server.infomanager.BlameInfoManager;
+import io.onedev.server.infomanager.CommitInfoManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.support.administration.GpgSetting;
 import io.onedev.server.persistence.SessionManager;
@@ -80,9 +82,12 @@ public class DefaultGitServiceCommitTest extends AbstractGitTest {
 		var clusterManager = mock(ClusterManager.class);
 		var storageManager = mock(StorageManager.class);
 		var listenerRegistry = mock(ListenerRegistry.class);
+		var commitInfoManager = mock(CommitInfoManager.class);
+		var blameInfoManager = mock(BlameInfoManager.class);
 		
 		gitService = new DefaultGitService(projectManager, settingManager, 
-				sessionManager, clusterManager, storageManager, listenerRegistry);
+				sessionManager, clusterManager, storageManager, listenerRegistry, 
+				commitInfoManager, blameInfoManager);
 	}
 	
 	@Test
@@ -0,0 +1,111 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.git.command.FileChange;
+import io.onedev.server.git.command.GitCommit;
+import io.onedev.server.git.command.LogCommand;
+import io.onedev.server.git.command.RevListCommand;
+import io.onedev.server.git.command.RevListOptions;
+
+public class CommitMetadataIndexTest extends AbstractGitTest {
+
+	private int time;
+	
+	private void addFileAndCommit(String path, String content, String comment, String name) {
+		// Use distinct commit time for deterministic ordering
+		user = new PersonIdent(name, name + "@example.com", new Date(1700000000000L + time++ * 1000L), 
+				TimeZone.getTimeZone("UTC"));
+		addFileAndCommit(path, content, comment);
+	}
+	
+	private CommitMetadataIndex buildIndex() {
+		List<GitCommit> commits = new ArrayList<>();
+		new LogCommand(gitDir, Lists.newArrayList("--branches")) {
+
+			@Override
+			protected void consume(GitCommit commit) {
+				commits.add(commit);
+			}
+
+		}.fields(EnumSet.complementOf(EnumSet.of(LogCommand.Field.LINE_CHANGES))).run();
+		Collections.reverse(commits);
+
+		List<CommitMetadataIndex.Record> records = new ArrayList<>();
+		for (GitCommit commit: commits) {
+			List<ObjectId> parentIds = new ArrayList<>();
+			for (String parentHash: commit.getParentHashes())
+				parentIds.add(ObjectId.fromString(parentHash));
+			Set<String> paths = new HashSet<>();
+			for (FileChange change: commit.getFileChanges())
+				paths.addAll(change.getPaths());
+			String message = commit.getSubject();
+			if (commit.getBody() != null)
+				message += "\n\n" + commit.getBody();
+			records.add(new CommitMetadataIndex.Record(records.size(), ObjectId.fromString(commit.getHash()),
+					commit.getCommitDate().getTime() / 1000, CommitMetadataIndex.describe(commit.getAuthor()),
+					CommitMetadataIndex.describe(commit.getCommitter()), parentIds,
+					CommitMetadataIndex.tokenize(message), paths));
+		}
+
+		CommitMetadataIndex index = new CommitMetadataIndex();
+		index.append(records.subList(0, records.size()/2));
+		long halfSize = index.getEstimatedSize();
+		index.append(records);
+		assertTrue(index.getEstimatedSize() > halfSize);
+		return index;
+	}
+
+	private void assertSameAsGit(CommitMetadataIndex index, RevListOptions options) {
+		assertEquals(new RevListCommand(gitDir).options(options).run(), index.query(git.getRepository(), options));
+	}
+
+	@Test
+	public void test() throws GitAPIException {
+		addFileAndCommit("src/a.java", "a", "initial commit", "foo");
+		addFileAndCommit("src/a.java", "a\nb", "Fix parser bug", "foo");
+		git.checkout().setCreateBranch(true).setName("feature").call();
+		addFileAndCommit("docs/readme.md", "readme", "add feature docs", "foo");
+		addFileAndCommit("src/b.java", "b", "feature: more fixes", "bar");
+		git.checkout().setName("main").call();
+		addFileAndCommit("c.txt", "c", "update c", "foo");
+		addFileAndCommit("d.txt", "d", "add d", "bar");
+
+		CommitMetadataIndex index = buildIndex();
+
+		assertSameAsGit(index, new RevListOptions());
+		assertSameAsGit(index, new RevListOptions().count(2).skip(1));
+		assertSameAsGit(index, new RevListOptions().revisions(Lists.newArrayList("feature", "^main~1")));
+		assertSameAsGit(index, new RevListOptions().revisions(Lists.newArrayList("feature")).firstParent(true));
+		assertSameAsGit(index, new RevListOptions().paths(Lists.newArrayList("src")));
+		assertSameAsGit(index, new RevListOptions().paths(Lists.newArrayList("docs/readme.md")));
+		assertSameAsGit(index, new RevListOptions().authors(Lists.newArrayList("<bar@example.com>")));
+		assertSameAsGit(index, new RevListOptions().ignoreCase(true).messages(Lists.newArrayList("FIX")));
+		assertSameAsGit(index, new RevListOptions().ignoreCase(true).messages(Lists.newArrayList("parser bug")));
+		assertSameAsGit(index, new RevListOptions().messages(Lists.newArrayList("feature.*fixes")));
+
+		assertNull(index.query(git.getRepository(), new RevListOptions().paths(Lists.newArrayList("*.java"))));
+		assertNull(index.query(git.getRepository(), new RevListOptions().messages(Lists.newArrayList("^fix"))));
+		assertNull(index.query(git.getRepository(), new RevListOptions().revisions(Lists.newArrayList("nonexistent"))));
+	}
+
+}
@@ -0,0 +1,69 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.diff.MyersDiff;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.diff.RawTextComparator;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.Test;
+
+import io.onedev.commons.utils.LinearRange;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.git.BlameBlock;
+import io.onedev.server.git.BlameCommit;
+import io.onedev.server.git.command.BlameCommand;
+
+public class FileBlameTest extends AbstractGitTest {
+
+	private RawText getText(RevWalk revWalk, RevCommit commit) throws IOException {
+		try (TreeWalk treeWalk = TreeWalk.forPath(revWalk.getObjectReader(), "file", commit.getTree())) {
+			return new RawText(revWalk.getObjectReader().open(treeWalk.getObjectId(0)).getBytes());
+		}
+	}
+
+	private Set<String> toStrings(Collection<BlameBlock> blocks) {
+		return blocks.stream().map(BlameBlock::toString).collect(Collectors.toSet());
+	}
+
+	@Test
+	public void test() throws IOException {
+		addFileAndCommit("file", "1\n2\n3\n4\n5\n6\n7\n8\n9\n", "initial commit");
+		addFileAndCommit("file", "1\ntwo\n3\n4\n5\n6\n7\n8\n9\n", "second commit");
+		ObjectId parentId = git.getRepository().resolve("main");
+		addFileAndCommit("file", "0\n1\ntwo\n3\n5\nsix\n6\n7\n8\n", "third commit");
+		ObjectId commitId = git.getRepository().resolve("main");
+
+		try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+			RevCommit parent = revWalk.parseCommit(parentId);
+			RevCommit commit = revWalk.parseCommit(commitId);
+			FileBlame parentBlame = FileBlame.fromBlocks(
+					new BlameCommand(gitDir, parentId, "file").run());
+			parentBlame = FileBlame.fromBytes(parentBlame.toBytes(), 0);
+
+			RawText parentText = getText(revWalk, parent);
+			RawText text = getText(revWalk, commit);
+			FileBlame blame = parentBlame.derive(
+					new BlameCommit(commit.name(), user, user, commit.getShortMessage()),
+					MyersDiff.INSTANCE.diff(RawTextComparator.DEFAULT, parentText, text),
+					text.size());
+
+			assertEquals(text.size(), blame.getLineCount());
+			assertEquals(
+					toStrings(new BlameCommand(gitDir, commitId, "file").run()),
+					toStrings(blame.getBlocks(null)));
+			assertEquals(
+					toStrings(new BlameCommand(gitDir, commitId, "file").range(new LinearRange(2, 5)).run()),
+					toStrings(blame.getBlocks(new LinearRange(2, 5))));
+		}
+	}
+
+}
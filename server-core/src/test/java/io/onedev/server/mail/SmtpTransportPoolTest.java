@@ -0,0 +1,158 @@
+package io.onedev.server.mail;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SmtpTransportPoolTest {
+
+	private SmtpServer server;
+
+	private SmtpTransportPool pool;
+
+	@Before
+	public void before() throws IOException {
+		server = new SmtpServer();
+		pool = new SmtpTransportPool(2, 60000, 600000);
+	}
+
+	@After
+	public void after() throws IOException {
+		pool.close();
+		server.close();
+	}
+
+	@Test
+	public void shouldReuseTransport() throws Exception {
+		MailSendSetting sendSetting = newSendSetting();
+		for (int i=0; i<5; i++)
+			pool.send(sendSetting, newMessage(sendSetting, "mail " + i));
+
+		assertEquals(5, server.messages.get());
+		assertEquals(1, server.connections.get());
+	}
+
+	@Test
+	public void shouldReconnectBrokenTransport() throws Exception {
+		MailSendSetting sendSetting = newSendSetting();
+		pool.send(sendSetting, newMessage(sendSetting, "mail 1"));
+		server.dropConnections();
+		pool.send(sendSetting, newMessage(sendSetting, "mail 2"));
+
+		assertEquals(2, server.messages.get());
+		assertEquals(2, server.connections.get());
+	}
+
+	private MailSendSetting newSendSetting() {
+		return new MailSendSetting("localhost", server.getPort(), null, null, "onedev@localhost", false, 10);
+	}
+
+	private Message newMessage(MailSendSetting sendSetting, String subject) throws MessagingException {
+		Message message = new MimeMessage(pool.getSession(sendSetting));
+		message.setFrom(new InternetAddress(sendSetting.getSenderAddress()));
+		message.setRecipient(Message.RecipientType.TO, new InternetAddress("user@localhost"));
+		message.setSubject(subject);
+		message.setText("body");
+		return message;
+	}
+
+	/**
+	 * Minimal SMTP stand-in accepting every mail and counting connections and messages
+	 */
+	private static class SmtpServer {
+
+		final ServerSocket serverSocket;
+
+		final AtomicInteger connections = new AtomicInteger();
+
+		final AtomicInteger messages = new AtomicInteger();
+
+		final Collection<Socket> sockets = new ConcurrentLinkedQueue<>();
+
+		SmtpServer() throws IOException {
+			serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			Thread thread = new Thread(() -> {
+				while (!serverSocket.isClosed()) {
+					try {
+						Socket socket = serverSocket.accept();
+						connections.incrementAndGet();
+						sockets.add(socket);
+						Thread sessionThread = new Thread(() -> serve(socket));
+						sessionThread.setDaemon(true);
+						sessionThread.start();
+					} catch (IOException e) {
+					}
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		int getPort() {
+			return serverSocket.getLocalPort();
+		}
+
+		void serve(Socket socket) {
+			try (	BufferedReader reader = new BufferedReader(new InputStreamReader(
+							socket.getInputStream(), StandardCharsets.US_ASCII));
+					PrintWriter writer = new PrintWriter(socket.getOutputStream(), true)) {
+				reply(writer, "220 localhost");
+				String line;
+				while ((line = reader.readLine()) != null) {
+					String command = line.toUpperCase();
+					if (command.startsWith("DATA")) {
+						reply(writer, "354 End data with <CR><LF>.<CR><LF>");
+						while ((line = reader.readLine()) != null && !line.equals("."));
+						messages.incrementAndGet();
+						reply(writer, "250 OK");
+					} else if (command.startsWith("QUIT")) {
+						reply(writer, "221 Bye");
+						break;
+					} else {
+						reply(writer, "250 OK");
+					}
+				}
+			} catch (IOException e) {
+			} finally {
+				sockets.remove(socket);
+			}
+		}
+
+		void reply(PrintWriter writer, String line) {
+			writer.print(line + "\r\n");
+			writer.flush();
+		}
+
+		void dropConnections() throws IOException {
+			for (Socket socket: sockets)
+				socket.close();
+			sockets.clear();
+		}
+
+		void close() throws IOException {
+			serverSocket.close();
+			dropConnections();
+		}
+
+	}
+
+}
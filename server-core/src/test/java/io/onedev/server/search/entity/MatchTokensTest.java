@@ -0,0 +1,42 @@
+package io.onedev.server.search.entity;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import io.onedev.server.model.Build;
+import io.onedev.server.search.entity.build.FailedCriteria;
+import io.onedev.server.search.entity.build.FinishedCriteria;
+import io.onedev.server.search.entity.build.JobCriteria;
+import io.onedev.server.util.criteria.AndCriteria;
+import io.onedev.server.util.criteria.Criteria;
+import io.onedev.server.util.criteria.NotCriteria;
+import io.onedev.server.util.criteria.OrCriteria;
+
+public class MatchTokensTest {
+
+	@Test
+	public void test() {
+		Criteria<Build> criteria = new AndCriteria<>(Lists.newArrayList(
+				new FinishedCriteria(), new JobCriteria("CI")));
+		assertEquals(Sets.newHashSet(MatchTokens.ofJob("ci")), criteria.getMatchTokens());
+
+		criteria = new AndCriteria<>(Lists.newArrayList(
+				new FinishedCriteria(), new JobCriteria("ci*")));
+		assertEquals(4, criteria.getMatchTokens().size());
+
+		criteria = new OrCriteria<>(Lists.newArrayList(
+				new FailedCriteria(), new JobCriteria("release")));
+		assertEquals(Sets.newHashSet(MatchTokens.ofStatus(Build.Status.FAILED), MatchTokens.ofJob("release")),
+				criteria.getMatchTokens());
+
+		criteria = new OrCriteria<>(Lists.newArrayList(
+				new FailedCriteria(), new NotCriteria<>(new JobCriteria("release"))));
+		assertNull(criteria.getMatchTokens());
+	}
+
+}
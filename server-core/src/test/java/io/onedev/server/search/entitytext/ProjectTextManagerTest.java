@@ -0,0 +1,74 @@
+package io.onedev.server.search.entitytext;
+
+import static org.junit.Assert.*;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.Query;
+import org.junit.Test;
+
+import com.google.common.base.Strings;
+
+import io.onedev.server.model.Issue;
+
+public class ProjectTextManagerTest {
+
+	private final ProjectTextManager<Issue> textManager = new ProjectTextManager<Issue>(
+			null, null, null, null, null, null) {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected int getIndexVersion() {
+			return 0;
+		}
+
+		@Override
+		protected void addFields(Document document, Issue entity) {
+		}
+		
+	};
+	
+	private String buildContainingQuery(String text, String...fieldNames) {
+		Query query = textManager.buildContainingQuery(fieldNames, text);
+		return query != null? query.toString(): null;
+	}
+	
+	@Test
+	public void testSingleWord() {
+		assertEquals("description:*onedev*", buildContainingQuery("OneDev", "description"));
+		assertEquals("description:*onedev*", buildContainingQuery("  onedev ", "description"));
+		assertEquals("title:*onedev* description:*onedev*", 
+				buildContainingQuery("onedev", "title", "description"));
+		assertNull(buildContainingQuery("", "description"));
+		assertNull(buildContainingQuery("foo-bar", "description"));
+		
+		String longWord = Strings.repeat("0123456789abcdef", 32);
+		assertEquals("description:*" + longWord + "*", buildContainingQuery(longWord, "description"));
+	}
+	
+	@Test
+	public void testMultiWord() {
+		assertEquals("(+description:*quick +description:brown +description:fox*)", 
+				buildContainingQuery("quick brown fox", "description"));
+		assertEquals("(+title:*quick +title:fox*) (+description:*quick +description:fox*)", 
+				buildContainingQuery("Quick  Fox", "title", "description"));
+	}
+	
+	@Test
+	public void testStopWordOverlap() {
+		assertNull(buildContainingQuery("the", "description"));
+		assertNull(buildContainingQuery("he", "description"));
+		assertNull(buildContainingQuery("fox th", "description"));
+		assertNull(buildContainingQuery("ing fox", "description"));
+		assertNull(buildContainingQuery("quick the fox", "description"));
+	}
+	
+	@Test
+	public void testMixedScripts() {
+		assertEquals("(+description:*build +description:сборка*)", 
+				buildContainingQuery("build сборка", "description"));
+		assertNull(buildContainingQuery("中文", "description"));
+		assertNull(buildContainingQuery("hello世界", "description"));
+	}
+	
+}
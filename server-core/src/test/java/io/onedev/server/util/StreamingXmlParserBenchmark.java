@@ -0,0 +1,105 @@
+package io.onedev.server.util;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dom4j.Document;
+import org.dom4j.Element;
+import org.dom4j.io.SAXReader;
+
+/**
+ * Compares time and heap consumption of dom4j and streaming parsing against a synthetic 
+ * JUnit report. Run with a small heap (for instance <tt>-Xmx256m</tt>) to see dom4j 
+ * parsing running out of memory while streaming parsing does not
+ */
+public class StreamingXmlParserBenchmark {
+
+	private static final int TEST_SUITES = 2000;
+	
+	private static final int TEST_CASES_PER_SUITE = 500;
+	
+	public static void main(String[] args) throws Exception {
+		File file = File.createTempFile("junit-report", ".xml");
+		try {
+			generate(file);
+			System.out.println("Report size: " + file.length()/1024/1024 + "MB");
+			
+			long time = System.currentTimeMillis();
+			System.out.println("Streaming parsed test cases: " + parseWithStreaming(file) 
+					+ ", took: " + (System.currentTimeMillis()-time) + "ms, heap used: " + getUsedHeap() + "MB");
+			
+			time = System.currentTimeMillis();
+			System.out.println("Dom4j parsed test cases: " + parseWithDom4j(file) 
+					+ ", took: " + (System.currentTimeMillis()-time) + "ms, heap used: " + getUsedHeap() + "MB");
+		} finally {
+			file.delete();
+		}
+	}
+	
+	private static long getUsedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		return (runtime.totalMemory() - runtime.freeMemory())/1024/1024;
+	}
+	
+	private static void generate(File file) throws IOException {
+		try (Writer writer = new BufferedWriter(new FileWriter(file))) {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testsuites>\n");
+			for (int i=0; i<TEST_SUITES; i++) {
+				writer.write("<testsuite name=\"io.onedev.Suite" + i + "\" tests=\"" + TEST_CASES_PER_SUITE 
+						+ "\" failures=\"1\" errors=\"0\" time=\"1.5\">\n");
+				for (int j=0; j<TEST_CASES_PER_SUITE; j++) {
+					writer.write("<testcase name=\"test" + j + "\" time=\"0.003\">");
+					if (j == 0) {
+						writer.write("<failure>");
+						for (int k=0; k<50; k++)
+							writer.write("\tat io.onedev.Suite" + i + ".test" + j + "(Suite" + i + ".java:" + k + ")\n");
+						writer.write("</failure>");
+					}
+					writer.write("</testcase>\n");
+				}
+				writer.write("</testsuite>\n");
+			}
+			writer.write("</testsuites>\n");
+		}
+	}
+	
+	private static int parseWithStreaming(File file) throws Exception {
+		AtomicInteger count = new AtomicInteger(0);
+		new StreamingXmlParser() {
+
+			@Override
+			protected boolean isRecord(String path) {
+				return path.equals("testsuites/testsuite/testcase");
+			}
+
+			@Override
+			protected void onRecord(String path, Element element) {
+				element.attributeValue("name");
+				count.incrementAndGet();
+			}
+			
+		}.parse(file);
+		return count.get();
+	}
+	
+	private static int parseWithDom4j(File file) throws Exception {
+		int count = 0;
+		try (InputStream is = new FileInputStream(file)) {
+			Document doc = new SAXReader().read(is);
+			for (Element testSuiteElement: doc.getRootElement().elements("testsuite")) {
+				for (Element testCaseElement: testSuiteElement.elements("testcase")) {
+					testCaseElement.attributeValue("name");
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+	
+}
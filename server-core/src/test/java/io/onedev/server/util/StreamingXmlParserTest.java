@@ -0,0 +1,82 @@
+package io.onedev.server.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.dom4j.Element;
+import org.junit.Test;
+
+public class StreamingXmlParserTest {
+
+	@Test
+	public void test() throws XMLStreamException {
+		String xml = ""
+				+ "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+				+ "<!DOCTYPE report PUBLIC \"-//JACOCO//DTD Report 1.1//EN\" \"report.dtd\">\n"
+				+ "<testsuites>\n"
+				+ "  <testsuite name=\"suite1\">\n"
+				+ "    <properties><property name=\"a\" value=\"b\"/></properties>\n"
+				+ "    <testcase name=\"case1\"><failure>line1\nline2 &amp; <![CDATA[<cdata>]]></failure></testcase>\n"
+				+ "    <testcase name=\"case2\"/>\n"
+				+ "  </testsuite>\n"
+				+ "  <testsuite name=\"suite2\">\n"
+				+ "    <testcase name=\"case3\"><skipped/></testcase>\n"
+				+ "  </testsuite>\n"
+				+ "</testsuites>";
+		
+		List<String> events = new ArrayList<>();
+		new StreamingXmlParser() {
+
+			@Override
+			protected boolean isRecord(String path) {
+				return path.equals("testsuites/testsuite/testcase");
+			}
+
+			@Override
+			protected void onStart(String path, Element element) {
+				events.add("start:" + path + ":" + element.attributeValue("name"));
+			}
+
+			@Override
+			protected void onEnd(String path) {
+				events.add("end:" + path);
+			}
+
+			@Override
+			protected void onRecord(String path, Element element) {
+				String event = "record:" + element.attributeValue("name");
+				Element failureElement = element.element("failure");
+				if (failureElement != null)
+					event += ":" + failureElement.getText();
+				if (element.element("skipped") != null)
+					event += ":skipped";
+				events.add(event);
+			}
+			
+		}.parse(new ByteArrayInputStream(xml.getBytes(UTF_8)));
+		
+		List<String> expected = new ArrayList<>();
+		expected.add("start:testsuites:null");
+		expected.add("start:testsuites/testsuite:suite1");
+		expected.add("start:testsuites/testsuite/properties:null");
+		expected.add("start:testsuites/testsuite/properties/property:a");
+		expected.add("end:testsuites/testsuite/properties/property");
+		expected.add("end:testsuites/testsuite/properties");
+		expected.add("record:case1:line1\nline2 & <cdata>");
+		expected.add("record:case2");
+		expected.add("end:testsuites/testsuite");
+		expected.add("start:testsuites/testsuite:suite2");
+		expected.add("record:case3:skipped");
+		expected.add("end:testsuites/testsuite");
+		expected.add("end:testsuites");
+		
+		assertEquals(expected, events);
+	}
+	
+}
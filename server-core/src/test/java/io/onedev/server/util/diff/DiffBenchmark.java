@@ -0,0 +1,64 @@
+package io.onedev.server.util.diff;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+
+/**
+ * Measures time of line diffs against synthetic files of different sizes, with changes
+ * scattered across the file, and with the file reordered as a whole to exercise the
+ * timeout path
+ */
+public class DiffBenchmark {
+
+	private static final int[] LINES = new int[] {10000, 100000, 1000000};
+
+	private static final int CHANGES = 2000;
+
+	public static void main(String[] args) {
+		Random random = new Random(0);
+		for (int lines: LINES) {
+			List<String> oldLines = new ArrayList<>();
+			for (int i=0; i<lines; i++)
+				oldLines.add("line " + i);
+
+			List<String> newLines = new ArrayList<>(oldLines);
+			for (int i=0; i<CHANGES; i++) {
+				int index = random.nextInt(newLines.size());
+				switch (i % 3) {
+				case 0:
+					newLines.set(index, "changed line " + i);
+					break;
+				case 1:
+					newLines.remove(index);
+					break;
+				default:
+					newLines.add(index, "added line " + i);
+				}
+			}
+			benchmark(lines + " lines with " + CHANGES + " scattered changes", oldLines, newLines);
+
+			newLines = new ArrayList<>(oldLines);
+			for (int i=0; i<newLines.size()-1; i+=2) {
+				String line = newLines.get(i);
+				newLines.set(i, newLines.get(i+1));
+				newLines.set(i+1, line);
+			}
+			benchmark(lines + " lines with every two lines swapped", oldLines, newLines);
+		}
+	}
+
+	private static void benchmark(String description, List<String> oldLines, List<String> newLines) {
+		long time = System.currentTimeMillis();
+		int changes = 0;
+		for (DiffBlock<String> diffBlock: DiffUtils.diff(oldLines, newLines)) {
+			if (diffBlock.getOperation() != Operation.EQUAL)
+				changes += diffBlock.getElements().size();
+		}
+		System.out.println(description + ": " + changes + " changed lines, took: "
+				+ (System.currentTimeMillis()-time) + "ms");
+	}
+
+}
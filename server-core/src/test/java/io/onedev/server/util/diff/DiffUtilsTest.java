@@ -2,12 +2,15 @@ package io.onedev.server.util.diff;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
 
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+
 public class DiffUtilsTest extends DiffUtils {
 
 	@Test
@@ -54,4 +57,36 @@ public class DiffUtilsTest extends DiffUtils {
 		assertFalse(DiffUtils.isVisible(diffBlocks, false, 18, 3));
 	}
 
+	@Test
+	public void testDiffLargeFile() {
+		List<String> oldLines = new ArrayList<>();
+		for (int i=0; i<100000; i++)
+			oldLines.add("line " + i);
+		List<String> newLines = new ArrayList<>(oldLines);
+		newLines.set(10, "changed line");
+		newLines.remove(50000);
+		newLines.add(99990, "added line");
+		
+		List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+		
+		List<String> restoredOldLines = new ArrayList<>();
+		List<String> restoredNewLines = new ArrayList<>();
+		int changes = 0;
+		for (DiffBlock<String> diffBlock: diffBlocks) {
+			if (diffBlock.getOperation() != Operation.INSERT) {
+				assertEquals(restoredOldLines.size(), diffBlock.getOldStart());
+				restoredOldLines.addAll(diffBlock.getElements());
+			}
+			if (diffBlock.getOperation() != Operation.DELETE) {
+				assertEquals(restoredNewLines.size(), diffBlock.getNewStart());
+				restoredNewLines.addAll(diffBlock.getElements());
+			} 
+			if (diffBlock.getOperation() != Operation.EQUAL)
+				changes += diffBlock.getElements().size();
+		}
+		assertEquals(oldLines, restoredOldLines);
+		assertEquals(newLines, restoredNewLines);
+		assertEquals(4, changes);
+	}
+	
 }
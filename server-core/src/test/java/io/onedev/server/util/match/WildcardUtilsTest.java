@@ -3,6 +3,9 @@ package io.onedev.server.util.match;
 import static io.onedev.server.util.match.WildcardUtils.*;
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.function.Predicate;
+
 import org.junit.Test;
 
 public class WildcardUtilsTest {
@@ -19,6 +22,23 @@ public class WildcardUtilsTest {
 		assertFalse(matchPath("src/**////*.java", "resource/com/example/Test.java"));
 	}
 	
+	@Test
+	public void shouldMatchCompiledPathPatterns() {
+		String[] patterns = {"a/b", "a/b/", "/a/**", "a/**/c", "a//b", "**", "a/?"};
+		String[] paths = {"a", "a/b", "a/b/", "a/b/c", "/a/b", "a//b", "a/bc", "x/c", "a/x/c", ""};
+		PathMatcher matcher = new PathMatcher();
+		Predicate<String> compiledAll = matcher.compile(Arrays.asList(patterns));
+		for (String path: paths) {
+			boolean matchesAny = false;
+			for (String pattern: patterns) {
+				boolean matches = matcher.matches(pattern, path);
+				assertEquals(pattern + ": " + path, matches, matcher.compile(Arrays.asList(pattern)).test(path));
+				matchesAny |= matches;
+			}
+			assertEquals(path, matchesAny, compiledAll.test(path));
+		}
+	}
+	
 	@Test
 	public void shouldMatchString() {
 		assertTrue(matchString("hello?world", "hello world"));
@@ -161,7 +161,8 @@ public class KubernetesResource {
 				JobContext jobContext = jobManager.getJobContext(getJobToken(), true);
 				File tempDir = FileUtils.createTempDir();
 				try {
-					jobManager.copyDependencies(jobContext, tempDir);
+					// Dependencies are only read to be tarred, so link them to save copying
+					jobManager.copyDependencies(jobContext, tempDir, true);
 					FileUtils.tar(tempDir, output, false);
 					output.flush();
 				} finally {
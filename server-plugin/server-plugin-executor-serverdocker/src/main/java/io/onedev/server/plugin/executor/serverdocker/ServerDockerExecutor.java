@@ -274,7 +274,7 @@ public class ServerDockerExecutor extends JobExecutor implements Testable<TestDa
 								cache.installSymbolinks(hostWorkspace);
 
 								jobLogger.log("Copying job dependencies...");
-								getJobManager().copyDependencies(jobContext, hostWorkspace);
+								getJobManager().copyDependencies(jobContext, hostWorkspace, false);
 
 								String containerBuildHome;
 								String containerWorkspace;
@@ -160,7 +160,7 @@ public class ServerShellExecutor extends JobExecutor implements Testable<TestDat
 						cache.installSymbolinks(workspaceDir);
 
 						jobLogger.log("Copying job dependencies...");
-						getJobManager().copyDependencies(jobContext, workspaceDir);
+						getJobManager().copyDependencies(jobContext, workspaceDir, false);
 
 						File userHome = new File(buildHome, "user");
 						FileUtils.createDir(userHome);
@@ -18,6 +18,7 @@ import io.onedev.server.event.project.ProjectEvent;
 import io.onedev.server.markdown.ExternalLinkFormatter;
 import io.onedev.server.markdown.MarkdownManager;
 import io.onedev.server.notification.ActivityDetail;
+import io.onedev.server.notification.DeliveryManager;
 import io.onedev.server.util.CollectionUtils;
 import io.onedev.server.util.channelnotification.ChannelNotificationManager;
 import io.onedev.server.util.commenttext.CommentText;
@@ -30,8 +31,9 @@ public class DiscordNotificationManager extends ChannelNotificationManager<Disco
 	private final MarkdownManager markdownManager;
 	
 	@Inject
-	public DiscordNotificationManager(ObjectMapper objectMapper, MarkdownManager markdownManager) {
-		super(objectMapper);
+	public DiscordNotificationManager(ObjectMapper objectMapper, DeliveryManager deliveryManager, 
+			MarkdownManager markdownManager) {
+		super(objectMapper, deliveryManager);
 		this.markdownManager = markdownManager;
 	}
 
@@ -24,6 +24,7 @@ import com.vladsch.flexmark.formatter.NodeFormattingHandler.CustomNodeFormatter;
 import io.onedev.server.event.project.ProjectEvent;
 import io.onedev.server.markdown.MarkdownManager;
 import io.onedev.server.notification.ActivityDetail;
+import io.onedev.server.notification.DeliveryManager;
 import io.onedev.server.util.CollectionUtils;
 import io.onedev.server.util.channelnotification.ChannelNotificationManager;
 import io.onedev.server.util.commenttext.CommentText;
@@ -36,8 +37,9 @@ public class SlackNotificationManager extends ChannelNotificationManager<SlackNo
 	private final MarkdownManager markdownManager;
 	
 	@Inject
-	public SlackNotificationManager(ObjectMapper objectMapper, MarkdownManager markdownManager) {
-		super(objectMapper);
+	public SlackNotificationManager(ObjectMapper objectMapper, DeliveryManager deliveryManager, 
+			MarkdownManager markdownManager) {
+		super(objectMapper, deliveryManager);
 		this.markdownManager = markdownManager;
 	} 
 	
@@ -1,21 +1,18 @@
 package io.onedev.server.plugin.report.checkstyle;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 import javax.validation.constraints.NotEmpty;
+import javax.xml.stream.XMLStreamException;
+
+import org.dom4j.Element;
 import org.unbescape.html.HtmlEscape;
 
 import io.onedev.commons.codeassist.InputSuggestion;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.PlanarRange;
 import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.buildspec.BuildSpec;
@@ -26,7 +23,8 @@ import io.onedev.server.git.BlobIdent;
 import io.onedev.server.model.Build;
 import io.onedev.server.plugin.report.problem.ProblemReport;
 import io.onedev.server.plugin.report.problem.PublishProblemReportStep;
-import io.onedev.server.util.XmlUtils;
+import io.onedev.server.util.ParallelFileParser;
+import io.onedev.server.util.StreamingXmlParser;
 import io.onedev.server.annotation.Editable;
 import io.onedev.server.annotation.Interpolative;
 import io.onedev.server.annotation.Patterns;
@@ -65,63 +63,87 @@ public class PublishCheckstyleReportStep extends PublishProblemReportStep {
 	@Override
 	protected ProblemReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger) {
 		int baseLen = inputDir.getAbsolutePath().length() + 1;
-		SAXReader reader = new SAXReader();
-		XmlUtils.disallowDocTypeDecl(reader);
 
 		List<CodeProblem> problems = new ArrayList<>();
-		for (File file: getPatternSet().listFiles(inputDir)) {
-			String relativePath = file.getAbsolutePath().substring(baseLen);
-			logger.log("Processing checkstyle report '" + relativePath + "'...");
-			try {
-				String xml = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-				Document doc = reader.read(new StringReader(XmlUtils.stripDoctype(xml)));
-				for (Element fileElement: doc.getRootElement().elements("file")) {
-					String blobPath = fileElement.attributeValue("name");
-					if (build.getJobWorkspace() != null && blobPath.startsWith(build.getJobWorkspace())) { 
-						blobPath = blobPath.substring(build.getJobWorkspace().length()+1);
-						BlobIdent blobIdent = new BlobIdent(build.getCommitHash(), blobPath);
-						if (build.getProject().getBlob(blobIdent, false) != null) {
-							List<CodeProblem> problemsOfFile = new ArrayList<>();
-							for (Element violationElement: fileElement.elements()) {
-								Severity severity;
-								String severityStr = violationElement.attributeValue("severity");
-								if (severityStr.equalsIgnoreCase("error"))
-									severity = Severity.MEDIUM;
-								else
-									severity = Severity.LOW;
-								String message = HtmlEscape.escapeHtml5(violationElement.attributeValue("message"));
-								String rule = violationElement.attributeValue("source");
-								int lineNo = Integer.parseInt(violationElement.attributeValue("line"))-1;
-								String column = violationElement.attributeValue("column");
+		String jobWorkspace = build.getJobWorkspace();
+		new ParallelFileParser<Map<String, List<CodeProblem>>>() {
 
-								PlanarRange range;
-								if (column != null) {
-									int columnNo = Integer.parseInt(column)-1;
-									range = new PlanarRange(lineNo, columnNo, lineNo, -1, TAB_WIDTH);
-								} else {
-									range = new PlanarRange(lineNo, -1, lineNo, -1, TAB_WIDTH);
-								}
-								
-								CodeProblem problem = new CodeProblem(severity, rule, blobPath, range, message);
-								problemsOfFile.add(problem);
-								problems.add(problem);
+			@Override
+			protected Map<String, List<CodeProblem>> parse(File file) throws Exception {
+				String relativePath = file.getAbsolutePath().substring(baseLen);
+				logger.log("Processing checkstyle report '" + relativePath + "'...");
+				Map<String, List<CodeProblem>> problemsOfFiles = new LinkedHashMap<>();
+				try {
+					new StreamingXmlParser() {
+
+						@Override
+						protected boolean isRecord(String path) {
+							return path.equals("checkstyle/file");
+						}
+
+						@Override
+						protected void onRecord(String path, Element fileElement) {
+							String blobPath = fileElement.attributeValue("name");
+							if (jobWorkspace != null && blobPath.startsWith(jobWorkspace)) { 
+								blobPath = blobPath.substring(jobWorkspace.length()+1);
+								List<CodeProblem> problemsOfFile = new ArrayList<>();
+								for (Element violationElement: fileElement.elements()) 
+									problemsOfFile.add(parseProblem(blobPath, violationElement));
+								if (!problemsOfFile.isEmpty())
+									problemsOfFiles.computeIfAbsent(blobPath, it -> new ArrayList<>()).addAll(problemsOfFile);
 							}
-							if (!problemsOfFile.isEmpty())
-								writeFileProblems(build, blobPath, problemsOfFile);
-						}						
+						}
+						
+					}.parse(file);
+				} catch (XMLStreamException e) {
+					logger.warning("Ignored checkstyle report '" + relativePath + "' as it is not a valid XML");
+					return null;
+				}
+				return problemsOfFiles;
+			}
+
+			@Override
+			protected void consume(File file, Map<String, List<CodeProblem>> result) {
+				if (result != null) {
+					for (Map.Entry<String, List<CodeProblem>> entry: result.entrySet()) {
+						BlobIdent blobIdent = new BlobIdent(build.getCommitHash(), entry.getKey());
+						if (build.getProject().getBlob(blobIdent, false) != null) {
+							writeFileProblems(build, entry.getKey(), entry.getValue());
+							problems.addAll(entry.getValue());
+						}
 					}
 				}
-			} catch (DocumentException e) {
-				logger.warning("Ignored checkstyle report '" + relativePath + "' as it is not a valid XML");
-			} catch (IOException e) {
-				throw new RuntimeException(e);
 			}
-		}
+			
+		}.process(getPatternSet().listFiles(inputDir));
 
 		if (!problems.isEmpty())
 			return new ProblemReport(problems);
 		else
 			return null;
 	}
+	
+	private CodeProblem parseProblem(String blobPath, Element violationElement) {
+		Severity severity;
+		String severityStr = violationElement.attributeValue("severity");
+		if (severityStr.equalsIgnoreCase("error"))
+			severity = Severity.MEDIUM;
+		else
+			severity = Severity.LOW;
+		String message = HtmlEscape.escapeHtml5(violationElement.attributeValue("message"));
+		String rule = violationElement.attributeValue("source");
+		int lineNo = Integer.parseInt(violationElement.attributeValue("line"))-1;
+		String column = violationElement.attributeValue("column");
+
+		PlanarRange range;
+		if (column != null) {
+			int columnNo = Integer.parseInt(column)-1;
+			range = new PlanarRange(lineNo, columnNo, lineNo, -1, TAB_WIDTH);
+		} else {
+			range = new PlanarRange(lineNo, -1, lineNo, -1, TAB_WIDTH);
+		}
+		
+		return new CodeProblem(severity, rule, blobPath, range, message);
+	}
 
 }
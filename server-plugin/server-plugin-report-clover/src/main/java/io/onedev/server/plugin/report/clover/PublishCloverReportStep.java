@@ -1,22 +1,20 @@
 package io.onedev.server.plugin.report.clover;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
+import javax.annotation.Nullable;
 import javax.validation.constraints.NotEmpty;
+import javax.xml.stream.XMLStreamException;
+
+import org.dom4j.Element;
 
 import io.onedev.commons.codeassist.InputSuggestion;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.buildspec.BuildSpec;
 import io.onedev.server.buildspec.step.StepGroup;
@@ -28,7 +26,8 @@ import io.onedev.server.plugin.report.coverage.CoverageReport;
 import io.onedev.server.plugin.report.coverage.FileCoverageInfo;
 import io.onedev.server.plugin.report.coverage.PackageCoverageInfo;
 import io.onedev.server.plugin.report.coverage.PublishCoverageReportStep;
-import io.onedev.server.util.XmlUtils;
+import io.onedev.server.util.ParallelFileParser;
+import io.onedev.server.util.StreamingXmlParser;
 import io.onedev.server.annotation.Editable;
 import io.onedev.server.annotation.Interpolative;
 import io.onedev.server.annotation.Patterns;
@@ -63,137 +62,51 @@ public class PublishCloverReportStep extends PublishCoverageReportStep {
 	@Override
 	protected CoverageReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger) {
 		int baseLen = inputDir.getAbsolutePath().length() + 1;
-		SAXReader reader = new SAXReader();
-		XmlUtils.disallowDocTypeDecl(reader);
-
-		int totalStatements = 0;
-		int coveredStatements = 0;
-		int totalMethods = 0;
-		int coveredMethods = 0;
-		int totalBranches = 0;
-		int coveredBranches = 0;
-		int totalLines = 0;
-		int coveredLines = 0;
-		
+
 		List<PackageCoverageInfo> packageCoverages = new ArrayList<>();
+		AtomicReference<CoverageInfo> coverageInfoRef = new AtomicReference<>(new CoverageInfo(
+				new Coverage(0, 0), new Coverage(0, 0), new Coverage(0, 0), new Coverage(0, 0)));
 		
-		for (File file: getPatternSet().listFiles(inputDir)) {
-			String relativePath = file.getAbsolutePath().substring(baseLen);
-			logger.log("Processing clover report '" + relativePath + "'...");
-			Document doc;
-			try {
-				String xml = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-				doc = reader.read(new StringReader(XmlUtils.stripDoctype(xml)));
-				for (Element projectElement: doc.getRootElement().elements("project")) {
-					Element metricsElement = projectElement.element("metrics");
-					
-					totalStatements += Integer.parseInt(metricsElement.attributeValue("statements"));
-					totalMethods += Integer.parseInt(metricsElement.attributeValue("methods"));
-					totalBranches += Integer.parseInt(metricsElement.attributeValue("conditionals"));
-					
-					coveredStatements += Integer.parseInt(metricsElement.attributeValue("coveredstatements"));
-					coveredMethods += Integer.parseInt(metricsElement.attributeValue("coveredmethods"));
-					coveredBranches += Integer.parseInt(metricsElement.attributeValue("coveredconditionals"));
-					
-					for (Element packageElement: projectElement.elements("package")) {
-						String packageName = packageElement.attributeValue("name");
-
-						metricsElement = packageElement.element("metrics");
-						
-						Coverage packageStatementCoverage = new Coverage(
-								Integer.parseInt(metricsElement.attributeValue("statements")),
-								Integer.parseInt(metricsElement.attributeValue("coveredstatements")));
-						Coverage packageMethodCoverage = new Coverage(
-								Integer.parseInt(metricsElement.attributeValue("methods")),
-								Integer.parseInt(metricsElement.attributeValue("coveredmethods")));
-						Coverage packageBranchCoverage = new Coverage(
-								Integer.parseInt(metricsElement.attributeValue("conditionals")), 
-								Integer.parseInt(metricsElement.attributeValue("coveredconditionals")));
-
-						int packageTotalLines = 0;
-						int packageCoveredLines = 0;
-					
-						List<FileCoverageInfo> fileCoverages = new ArrayList<>();
-						for (Element fileElement: packageElement.elements("file")) {
-							String fileName = fileElement.attributeValue("name");
-							String blobPath = fileElement.attributeValue("path");
-							if (build.getJobWorkspace() != null && blobPath.startsWith(build.getJobWorkspace())) { 
-								blobPath = blobPath.substring(build.getJobWorkspace().length()+1);
-
-								metricsElement = fileElement.element("metrics");
-								
-								Coverage fileStatementCoverage = new Coverage(
-										Integer.parseInt(metricsElement.attributeValue("statements")),
-										Integer.parseInt(metricsElement.attributeValue("coveredstatements")));
-								Coverage fileMethodCoverage = new Coverage(
-										Integer.parseInt(metricsElement.attributeValue("methods")),
-										Integer.parseInt(metricsElement.attributeValue("coveredmethods")));
-								Coverage fileBranchCoverage = new Coverage(
-										Integer.parseInt(metricsElement.attributeValue("conditionals")), 
-										Integer.parseInt(metricsElement.attributeValue("coveredconditionals")));
-								
-								Map<Integer, CoverageStatus> lineCoverages = new HashMap<>();
-								for (Element lineElement: fileElement.elements("line")) {
-									int lineNum = Integer.parseInt(lineElement.attributeValue("num")) - 1;
-									CoverageStatus prevStatus = lineCoverages.get(lineNum);
-									
-									String countStr = lineElement.attributeValue("count");
-									if (countStr != null)
-										lineCoverages.put(lineNum, getCoverageStatus(prevStatus, countStr));
-									
-									countStr = lineElement.attributeValue("truecount");
-									if (countStr != null)
-										lineCoverages.put(lineNum, getCoverageStatus(prevStatus, countStr));
-									
-									countStr = lineElement.attributeValue("falsecount");
-									if (countStr != null)
-										lineCoverages.put(lineNum, getCoverageStatus(prevStatus, countStr));
-								}
-								int fileTotalLines = lineCoverages.size();
-								int fileCoveredLines = (int) lineCoverages.entrySet().stream().filter(it->it.getValue()!=CoverageStatus.NOT_COVERED).count();
-								
-								Coverage fileLineCoverage = new Coverage(fileTotalLines, fileCoveredLines);
-								
-								packageTotalLines += fileTotalLines;
-								packageCoveredLines += fileCoveredLines;
-								
-								if (!lineCoverages.isEmpty())
-									writeLineCoverages(build, blobPath, lineCoverages);
-								
-								fileCoverages.add(new FileCoverageInfo(fileName, 
-										fileStatementCoverage, fileMethodCoverage, fileBranchCoverage, fileLineCoverage, 
-										blobPath));
-							}
-						}
-						
-						Coverage packageLineCoverage = new Coverage(packageTotalLines, packageCoveredLines);
-						
-						packageCoverages.add(new PackageCoverageInfo(
-								packageName, packageStatementCoverage, packageMethodCoverage, 
-								packageBranchCoverage, packageLineCoverage, fileCoverages));
-						
-						totalLines += packageTotalLines;
-						coveredLines += packageCoveredLines;
-					}
+		String jobWorkspace = build.getJobWorkspace();
+		
+		new ParallelFileParser<CloverParser>() {
+
+			@Override
+			protected CloverParser parse(File file) throws Exception {
+				String relativePath = file.getAbsolutePath().substring(baseLen);
+				logger.log("Processing clover report '" + relativePath + "'...");
+				
+				CloverParser parser = new CloverParser(jobWorkspace);
+				try {
+					parser.parse(file);
+				} catch (XMLStreamException e) {
+					logger.warning("Ignored clover report '" + relativePath + "' as it is not a valid XML");
+					return null;
+				}
+				return parser;
+			}
+
+			@Override
+			protected void consume(File file, CloverParser result) {
+				if (result != null) {
+					for (Map.Entry<String, Map<Integer, CoverageStatus>> entry: result.lineCoverages.entrySet())
+						writeLineCoverages(build, entry.getKey(), entry.getValue());
+					packageCoverages.addAll(result.packageCoverages);
+					CoverageInfo coverageInfo = new CoverageInfo(
+							new Coverage(result.totalStatements, result.coveredStatements), 
+							new Coverage(result.totalMethods, result.coveredMethods), 
+							new Coverage(result.totalBranches, result.coveredBranches), 
+							new Coverage(result.totalLines, result.coveredLines));
+					coverageInfoRef.set(coverageInfoRef.get().mergeWith(coverageInfo));
 				}
-			} catch (DocumentException e) {
-				logger.warning("Ignored clover report '" + relativePath + "' as it is not a valid XML");
-			} catch (IOException e) {
-				throw new RuntimeException(e);
 			}
-		}
-		
-		if (!packageCoverages.isEmpty()) {
-			CoverageInfo coverageInfo = new CoverageInfo(
-					new Coverage(totalStatements, coveredStatements), 
-					new Coverage(totalMethods, coveredMethods), 
-					new Coverage(totalBranches, coveredBranches), 
-					new Coverage(totalLines, coveredLines));
 			
-			return new CoverageReport(coverageInfo, packageCoverages);
-		} else {
+		}.process(getPatternSet().listFiles(inputDir));
+		
+		if (!packageCoverages.isEmpty()) 
+			return new CoverageReport(coverageInfoRef.get(), packageCoverages);
+		else 
 			return null;
-		}
 	}
 
 	private CoverageStatus getCoverageStatus(CoverageStatus prevStatus, String countStr) {
@@ -215,4 +128,154 @@ public class PublishCloverReportStep extends PublishCoverageReportStep {
 		}
 	}
 	
+	private class CloverParser extends StreamingXmlParser {
+		
+		private final String jobWorkspace;
+		
+		private final List<PackageCoverageInfo> packageCoverages = new ArrayList<>();
+		
+		private final Map<String, Map<Integer, CoverageStatus>> lineCoverages = new LinkedHashMap<>();
+		
+		private int totalStatements = 0;
+		
+		private int coveredStatements = 0;
+		
+		private int totalMethods = 0;
+		
+		private int coveredMethods = 0;
+		
+		private int totalBranches = 0;
+		
+		private int coveredBranches = 0;
+		
+		private int totalLines = 0;
+		
+		private int coveredLines = 0;
+		
+		private String packageName;
+		
+		private Element packageMetricsElement;
+		
+		private List<FileCoverageInfo> fileCoverages;
+		
+		private int packageTotalLines;
+		
+		private int packageCoveredLines;
+		
+		CloverParser(@Nullable String jobWorkspace) {
+			this.jobWorkspace = jobWorkspace;
+		}
+
+		@Override
+		protected boolean isRecord(String path) {
+			return path.equals("coverage/project/metrics") 
+					|| path.equals("coverage/project/package/metrics")
+					|| path.equals("coverage/project/package/file");
+		}
+
+		@Override
+		protected void onStart(String path, Element element) {
+			if (path.equals("coverage/project/package")) {
+				packageName = element.attributeValue("name");
+				packageMetricsElement = null;
+				fileCoverages = new ArrayList<>();
+				packageTotalLines = 0;
+				packageCoveredLines = 0;
+			}
+		}
+
+		@Override
+		protected void onEnd(String path) {
+			if (path.equals("coverage/project/package")) {
+				Coverage packageStatementCoverage = new Coverage(
+						Integer.parseInt(packageMetricsElement.attributeValue("statements")),
+						Integer.parseInt(packageMetricsElement.attributeValue("coveredstatements")));
+				Coverage packageMethodCoverage = new Coverage(
+						Integer.parseInt(packageMetricsElement.attributeValue("methods")),
+						Integer.parseInt(packageMetricsElement.attributeValue("coveredmethods")));
+				Coverage packageBranchCoverage = new Coverage(
+						Integer.parseInt(packageMetricsElement.attributeValue("conditionals")), 
+						Integer.parseInt(packageMetricsElement.attributeValue("coveredconditionals")));
+				Coverage packageLineCoverage = new Coverage(packageTotalLines, packageCoveredLines);
+				
+				packageCoverages.add(new PackageCoverageInfo(
+						packageName, packageStatementCoverage, packageMethodCoverage, 
+						packageBranchCoverage, packageLineCoverage, fileCoverages));
+				
+				totalLines += packageTotalLines;
+				coveredLines += packageCoveredLines;
+			}
+		}
+
+		@Override
+		protected void onRecord(String path, Element element) {
+			if (path.equals("coverage/project/metrics")) {
+				totalStatements += Integer.parseInt(element.attributeValue("statements"));
+				totalMethods += Integer.parseInt(element.attributeValue("methods"));
+				totalBranches += Integer.parseInt(element.attributeValue("conditionals"));
+				
+				coveredStatements += Integer.parseInt(element.attributeValue("coveredstatements"));
+				coveredMethods += Integer.parseInt(element.attributeValue("coveredmethods"));
+				coveredBranches += Integer.parseInt(element.attributeValue("coveredconditionals"));
+			} else if (path.equals("coverage/project/package/metrics")) {
+				packageMetricsElement = element;
+			} else {
+				processFile(element);
+			}
+		}
+		
+		private void processFile(Element fileElement) {
+			String fileName = fileElement.attributeValue("name");
+			String blobPath = fileElement.attributeValue("path");
+			if (jobWorkspace != null && blobPath.startsWith(jobWorkspace)) { 
+				blobPath = blobPath.substring(jobWorkspace.length()+1);
+
+				Element metricsElement = fileElement.element("metrics");
+				
+				Coverage fileStatementCoverage = new Coverage(
+						Integer.parseInt(metricsElement.attributeValue("statements")),
+						Integer.parseInt(metricsElement.attributeValue("coveredstatements")));
+				Coverage fileMethodCoverage = new Coverage(
+						Integer.parseInt(metricsElement.attributeValue("methods")),
+						Integer.parseInt(metricsElement.attributeValue("coveredmethods")));
+				Coverage fileBranchCoverage = new Coverage(
+						Integer.parseInt(metricsElement.attributeValue("conditionals")), 
+						Integer.parseInt(metricsElement.attributeValue("coveredconditionals")));
+				
+				Map<Integer, CoverageStatus> lineCoveragesOfFile = new HashMap<>();
+				for (Element lineElement: fileElement.elements("line")) {
+					int lineNum = Integer.parseInt(lineElement.attributeValue("num")) - 1;
+					CoverageStatus prevStatus = lineCoveragesOfFile.get(lineNum);
+					
+					String countStr = lineElement.attributeValue("count");
+					if (countStr != null)
+						lineCoveragesOfFile.put(lineNum, getCoverageStatus(prevStatus, countStr));
+					
+					countStr = lineElement.attributeValue("truecount");
+					if (countStr != null)
+						lineCoveragesOfFile.put(lineNum, getCoverageStatus(prevStatus, countStr));
+					
+					countStr = lineElement.attributeValue("falsecount");
+					if (countStr != null)
+						lineCoveragesOfFile.put(lineNum, getCoverageStatus(prevStatus, countStr));
+				}
+				int fileTotalLines = lineCoveragesOfFile.size();
+				int fileCoveredLines = (int) lineCoveragesOfFile.entrySet().stream().filter(it->it.getValue()!=CoverageStatus.NOT_COVERED).count();
+				
+				Coverage fileLineCoverage = new Coverage(fileTotalLines, fileCoveredLines);
+				
+				packageTotalLines += fileTotalLines;
+				packageCoveredLines += fileCoveredLines;
+				
+				if (!lineCoveragesOfFile.isEmpty())
+					lineCoverages.put(blobPath, lineCoveragesOfFile);
+				
+				fileCoverages.add(new FileCoverageInfo(fileName, 
+						fileStatementCoverage, fileMethodCoverage, fileBranchCoverage, fileLineCoverage, 
+						blobPath));
+			}
+		}
+		
+	}
+	
 }
@@ -4,6 +4,7 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -25,6 +26,7 @@ import io.onedev.server.OneDev;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.codequality.CoverageStatus;
 import io.onedev.server.codequality.LineCoverageContribution;
+import io.onedev.server.codequality.ReportFilePack;
 import io.onedev.server.entitymanager.BuildMetricManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.model.Build;
@@ -200,8 +202,14 @@ public class CoverageModule extends AbstractPluginModule {
 					if (categoryDir.exists()) {
 						for (File reportDir: categoryDir.listFiles()) {
 							if (reportName == null || reportName.equals(reportDir.getName())) { 
+								File packFile = new File(reportDir, CoverageReport.FILES_PACK);
 								File lineCoveragesFile = new File(reportDir, CoverageReport.FILES_DIR + "/" + blobPath);
-								if (lineCoveragesFile.exists()) {
+								if (packFile.exists()) {
+									ByteBuffer buffer = ReportFilePack.open(packFile).get(blobPath);
+									if (buffer != null)
+										coverages.put(reportDir.getName(), LineCoverageCodec.decode(buffer));
+								} else if (lineCoveragesFile.exists()) {
+									// Reports published by previous versions
 									try (InputStream is = new BufferedInputStream(new FileInputStream(lineCoveragesFile))) {
 										coverages.put(reportDir.getName(), (Map<Integer, CoverageStatus>) SerializationUtils.deserialize(is));
 									}
@@ -23,6 +23,8 @@ public class CoverageReport implements Serializable {
 	
 	public static final String FILES_DIR = "files";
 	
+	public static final String FILES_PACK = "files.pack";
+	
 	private static final String FILE_NAME = "report.ser";
 	
 	private final CoverageInfo coverages;
@@ -0,0 +1,76 @@
+package io.onedev.server.plugin.report.coverage;
+
+import static io.onedev.server.codequality.ReportFilePack.readVarInt;
+import static io.onedev.server.codequality.ReportFilePack.writeVarInt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import io.onedev.server.codequality.CoverageStatus;
+
+/**
+ * Encodes line coverages of a file as runs of consecutive lines for each coverage status. 
+ * Covered lines of a file usually form long runs, so this is much more compact than a map 
+ * of boxed line numbers
+ */
+public class LineCoverageCodec {
+
+	public static ByteArrayOutputStream encode(Map<Integer, CoverageStatus> lineCoverages) {
+		Map<CoverageStatus, List<int[]>> runs = new HashMap<>();
+		for (CoverageStatus status: CoverageStatus.values())
+			runs.put(status, new ArrayList<>());
+		
+		for (Map.Entry<Integer, CoverageStatus> entry: new TreeMap<>(lineCoverages).entrySet()) {
+			List<int[]> runsOfStatus = runs.get(entry.getValue());
+			int line = entry.getKey();
+			if (!runsOfStatus.isEmpty()) {
+				int[] lastRun = runsOfStatus.get(runsOfStatus.size()-1);
+				if (lastRun[0] + lastRun[1] == line) {
+					lastRun[1]++;
+					continue;
+				}
+			}
+			runsOfStatus.add(new int[] {line, 1});
+		}
+		
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try {
+			for (CoverageStatus status: CoverageStatus.values()) {
+				List<int[]> runsOfStatus = runs.get(status);
+				writeVarInt(os, runsOfStatus.size());
+				int lastEnd = 0;
+				for (int[] run: runsOfStatus) {
+					writeVarInt(os, run[0] - lastEnd);
+					writeVarInt(os, run[1]);
+					lastEnd = run[0] + run[1];
+				}
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return os;
+	}
+	
+	public static Map<Integer, CoverageStatus> decode(ByteBuffer buffer) {
+		Map<Integer, CoverageStatus> lineCoverages = new HashMap<>();
+		for (CoverageStatus status: CoverageStatus.values()) {
+			int runCount = readVarInt(buffer);
+			int lastEnd = 0;
+			for (int i=0; i<runCount; i++) {
+				int start = lastEnd + readVarInt(buffer);
+				int length = readVarInt(buffer);
+				for (int line=start; line<start+length; line++)
+					lineCoverages.put(line, status);
+				lastEnd = start + length;
+			}
+		}
+		return lineCoverages;
+	}
+	
+}
@@ -1,17 +1,12 @@
 package io.onedev.server.plugin.report.coverage;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.Serializable;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
-import org.apache.commons.lang.SerializationUtils;
-
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
@@ -19,6 +14,7 @@ import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.step.PublishReportStep;
 import io.onedev.server.codequality.CoverageStatus;
+import io.onedev.server.codequality.ReportFilePack;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.CoverageMetric;
 import io.onedev.server.persistence.dao.Dao;
@@ -29,6 +25,12 @@ public abstract class PublishCoverageReportStep extends PublishReportStep {
 
 	private static final long serialVersionUID = 1L;
 	
+	/*
+	 * Pack writers of reports being created, keyed by report directory. Step instances may be 
+	 * shared by concurrent builds, so this is not kept as a field of the step
+	 */
+	private static final Map<String, ReportFilePack.Writer> packWriters = new ConcurrentHashMap<>();
+	
 	@Override
 	public Map<String, byte[]> run(Build build, File inputDir, TaskLogger logger) {
 		CoverageReport report = LockUtils.write(CoverageReport.getReportLockName(build), new Callable<CoverageReport>() {
@@ -38,8 +40,17 @@ public abstract class PublishCoverageReportStep extends PublishReportStep {
 				File reportDir = new File(build.getDir(), CoverageReport.CATEGORY + "/" + getReportName());
 
 				FileUtils.createDir(reportDir);
+				String packKey = reportDir.getAbsolutePath();
 				try {
-					CoverageReport report = createReport(build, inputDir, reportDir, logger);
+					CoverageReport report;
+					try (ReportFilePack.Writer packWriter = new ReportFilePack.Writer(new File(reportDir, CoverageReport.FILES_PACK))) {
+						packWriters.put(packKey, packWriter);
+						try {
+							report = createReport(build, inputDir, reportDir, logger);
+						} finally {
+							packWriters.remove(packKey);
+						}
+					}
 					if (report != null) {
 						report.writeTo(reportDir);
 						return report;
@@ -75,19 +86,16 @@ public abstract class PublishCoverageReportStep extends PublishReportStep {
 		
 		return null;
 	}
-
+	
 	@Nullable
 	protected abstract CoverageReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger);
 
 	protected void writeLineCoverages(Build build, String blobPath, Map<Integer, CoverageStatus> lineCoverages) {
 		File reportDir = new File(build.getDir(), CoverageReport.CATEGORY + "/" + getReportName());
-		File lineCoverageFile = new File(reportDir, CoverageReport.FILES_DIR + "/" + blobPath);
-		FileUtils.createDir(lineCoverageFile.getParentFile());
-		try (OutputStream os = new FileOutputStream(lineCoverageFile)) {
-			SerializationUtils.serialize((Serializable) lineCoverages, os);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		};
+		ReportFilePack.Writer packWriter = packWriters.get(reportDir.getAbsolutePath());
+		if (packWriter == null)
+			throw new IllegalStateException("Line coverages can only be written while creating report");
+		packWriter.write(blobPath, LineCoverageCodec.encode(lineCoverages));
 	}
 	
 }
@@ -0,0 +1,39 @@
+package io.onedev.server.plugin.report.coverage;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.onedev.server.codequality.CoverageStatus;
+
+public class LineCoverageCodecTest {
+
+	@Test
+	public void test() {
+		assertEquals(new HashMap<>(), roundTrip(new HashMap<>()));
+		
+		Map<Integer, CoverageStatus> lineCoverages = new HashMap<>();
+		lineCoverages.put(0, CoverageStatus.COVERED);
+		for (int line=10; line<20; line++)
+			lineCoverages.put(line, CoverageStatus.COVERED);
+		lineCoverages.put(20, CoverageStatus.NOT_COVERED);
+		lineCoverages.put(21, CoverageStatus.PARTIALLY_COVERED);
+		for (int line=22; line<30; line++)
+			lineCoverages.put(line, CoverageStatus.COVERED);
+		lineCoverages.put(31, CoverageStatus.NOT_COVERED);
+		lineCoverages.put(100000, CoverageStatus.PARTIALLY_COVERED);
+		assertEquals(lineCoverages, roundTrip(lineCoverages));
+	}
+	
+	private Map<Integer, CoverageStatus> roundTrip(Map<Integer, CoverageStatus> lineCoverages) {
+		ByteBuffer buffer = ByteBuffer.wrap(LineCoverageCodec.encode(lineCoverages).toByteArray());
+		Map<Integer, CoverageStatus> decoded = LineCoverageCodec.decode(buffer);
+		assertEquals(0, buffer.remaining());
+		return decoded;
+	}
+	
+}
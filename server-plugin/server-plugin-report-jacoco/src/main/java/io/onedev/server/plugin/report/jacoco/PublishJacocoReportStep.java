@@ -1,22 +1,18 @@
 package io.onedev.server.plugin.report.jacoco;
 
 import java.io.File;
-import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 import javax.validation.constraints.NotEmpty;
+import javax.xml.stream.XMLStreamException;
+
+import org.dom4j.Element;
 
 import io.onedev.commons.codeassist.InputSuggestion;
-import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.TaskLogger;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
@@ -30,7 +26,9 @@ import io.onedev.server.plugin.report.coverage.FileCoverageInfo;
 import io.onedev.server.plugin.report.coverage.PackageCoverageInfo;
 import io.onedev.server.plugin.report.coverage.PublishCoverageReportStep;
 import io.onedev.server.search.code.CodeSearchManager;
-import io.onedev.server.util.XmlUtils;
+import io.onedev.server.util.Pair;
+import io.onedev.server.util.ParallelFileParser;
+import io.onedev.server.util.StreamingXmlParser;
 import io.onedev.server.annotation.Editable;
 import io.onedev.server.annotation.Interpolative;
 import io.onedev.server.annotation.Patterns;
@@ -63,34 +61,69 @@ public class PublishJacocoReportStep extends PublishCoverageReportStep {
 	@Override
 	protected CoverageReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger) {
 		int baseLen = inputDir.getAbsolutePath().length() + 1;
-		SAXReader reader = new SAXReader();
-		XmlUtils.disallowDocTypeDecl(reader);
 
 		List<PackageCoverageInfo> packageCoverages = new ArrayList<>();
-		CoverageInfo coverageInfo = new CoverageInfo(new Coverage(0, 0), new Coverage(0, 0), 
-				new Coverage(0, 0), new Coverage(0, 0));
+		AtomicReference<CoverageInfo> coverageInfoRef = new AtomicReference<>(new CoverageInfo(
+				new Coverage(0, 0), new Coverage(0, 0), new Coverage(0, 0), new Coverage(0, 0)));
 		
 		CodeSearchManager searchManager = OneDev.getInstance(CodeSearchManager.class);
 		
-		for (File file: getPatternSet().listFiles(inputDir)) {
-			String relativePath = file.getAbsolutePath().substring(baseLen);
-			logger.log("Processing JaCoCo report '" + relativePath + "'...");
-			Document doc;
-			try {
-				String xml = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-				doc = reader.read(new StringReader(XmlUtils.stripDoctype(xml)));
-				for (Element packageElement: doc.getRootElement().elements("package")) {
-					String packageName = packageElement.attributeValue("name");
-					CoverageInfo packageCoverageInfo = getCoverageInfo(packageElement);
-					List<FileCoverageInfo> fileCoverages = new ArrayList<>();
-					
-					for (Element fileElement: packageElement.elements("sourcefile")) {
-						String fileName = fileElement.attributeValue("name");
-						CoverageInfo fileCoverageInfo = getCoverageInfo(fileElement);
-						String blobPath = searchManager.findBlobPath(build.getProject(), build.getCommitId(), 
-								fileName, packageName + "/" + fileName);
-						if (blobPath != null) {
-							fileCoverages.add(new FileCoverageInfo(fileName, fileCoverageInfo, blobPath));
+		new ParallelFileParser<Pair<List<ParsedPackage>, CoverageInfo>>() {
+
+			@Override
+			protected Pair<List<ParsedPackage>, CoverageInfo> parse(File file) throws Exception {
+				String relativePath = file.getAbsolutePath().substring(baseLen);
+				logger.log("Processing JaCoCo report '" + relativePath + "'...");
+				
+				List<ParsedPackage> packagesOfFile = new ArrayList<>();
+				AtomicReference<CoverageInfo> coverageInfoOfFileRef = new AtomicReference<>();
+				try {
+					new StreamingXmlParser() {
+
+						private Element reportElement;
+						
+						private Element packageElement;
+						
+						private List<ParsedFile> files;
+						
+						@Override
+						protected boolean isRecord(String path) {
+							return path.equals("report/counter") 
+									|| path.equals("report/package/counter") 
+									|| path.equals("report/package/sourcefile");
+						}
+
+						@Override
+						protected void onStart(String path, Element element) {
+							if (path.equals("report")) {
+								reportElement = element;
+							} else if (path.equals("report/package")) {
+								packageElement = element;
+								files = new ArrayList<>();
+							}
+						}
+
+						@Override
+						protected void onEnd(String path) {
+							if (path.equals("report")) {
+								coverageInfoOfFileRef.set(getCoverageInfo(reportElement));
+							} else if (path.equals("report/package")) {
+								packagesOfFile.add(new ParsedPackage(packageElement.attributeValue("name"), 
+										getCoverageInfo(packageElement), files));
+							}
+						}
+
+						@Override
+						protected void onRecord(String path, Element element) {
+							if (path.equals("report/counter")) 
+								reportElement.add(element);
+							else if (path.equals("report/package/counter")) 
+								packageElement.add(element);
+							else 
+								files.add(parseFile(element));
+						}
+						
+						private ParsedFile parseFile(Element fileElement) {
 							Map<Integer, CoverageStatus> lineCoverages = new HashMap<>();
 							for (Element lineElement: fileElement.elements("line")) {
 								int lineNum = Integer.parseInt(lineElement.attributeValue("nr")) - 1;
@@ -107,25 +140,44 @@ public class PublishJacocoReportStep extends PublishCoverageReportStep {
 									coverageStatus = CoverageStatus.PARTIALLY_COVERED;
 								lineCoverages.put(lineNum, coverageStatus);
 							}
-							writeLineCoverages(build, blobPath, lineCoverages);
-						} else {
-							logger.warning("Can not map file '" + fileName + "' under package '" 
-									+ packageName + "' to blob path, ignoring coverage info...");
+							return new ParsedFile(fileElement.attributeValue("name"), getCoverageInfo(fileElement), lineCoverages);
+						}
+						
+					}.parse(file);
+				} catch (XMLStreamException e) {
+					logger.warning("Ignored JaCoCo report '" + relativePath + "' as it is not a valid XML");
+					return null;
+				}
+				return new Pair<>(packagesOfFile, coverageInfoOfFileRef.get());
+			}
+
+			@Override
+			protected void consume(File file, Pair<List<ParsedPackage>, CoverageInfo> result) {
+				if (result != null) {
+					for (ParsedPackage parsedPackage: result.getFirst()) {
+						List<FileCoverageInfo> fileCoverages = new ArrayList<>();
+						for (ParsedFile parsedFile: parsedPackage.files) {
+							String blobPath = searchManager.findBlobPath(build.getProject(), build.getCommitId(), 
+									parsedFile.name, parsedPackage.name + "/" + parsedFile.name);
+							if (blobPath != null) {
+								fileCoverages.add(new FileCoverageInfo(parsedFile.name, parsedFile.coverageInfo, blobPath));
+								writeLineCoverages(build, blobPath, parsedFile.lineCoverages);
+							} else {
+								logger.warning("Can not map file '" + parsedFile.name + "' under package '" 
+										+ parsedPackage.name + "' to blob path, ignoring coverage info...");
+							}
 						}
+						packageCoverages.add(new PackageCoverageInfo(parsedPackage.name, parsedPackage.coverageInfo, fileCoverages));
 					}
-					
-					packageCoverages.add(new PackageCoverageInfo(packageName, packageCoverageInfo, fileCoverages));
+					if (result.getSecond() != null)
+						coverageInfoRef.set(coverageInfoRef.get().mergeWith(result.getSecond()));
 				}
-				coverageInfo = coverageInfo.mergeWith(getCoverageInfo(doc.getRootElement()));
-			} catch (DocumentException e) {
-				logger.warning("Ignored clover report '" + relativePath + "' as it is not a valid XML");
-			} catch (IOException e) {
-				throw new RuntimeException(e);
 			}
-		}
+			
+		}.process(getPatternSet().listFiles(inputDir));
 		
 		if (!packageCoverages.isEmpty()) 
-			return new CoverageReport(coverageInfo, packageCoverages);
+			return new CoverageReport(coverageInfoRef.get(), packageCoverages);
 		else 
 			return null;
 	}
@@ -156,4 +208,36 @@ public class PublishJacocoReportStep extends PublishCoverageReportStep {
 		return new CoverageInfo(statementCoverage, methodCoverage, branchCoverage, lineCoverage);
 	}
 
+	private static class ParsedPackage {
+		
+		final String name;
+		
+		final CoverageInfo coverageInfo;
+		
+		final List<ParsedFile> files;
+		
+		ParsedPackage(String name, CoverageInfo coverageInfo, List<ParsedFile> files) {
+			this.name = name;
+			this.coverageInfo = coverageInfo;
+			this.files = files;
+		}
+		
+	}
+	
+	private static class ParsedFile {
+		
+		final String name;
+		
+		final CoverageInfo coverageInfo;
+		
+		final Map<Integer, CoverageStatus> lineCoverages;
+		
+		ParsedFile(String name, CoverageInfo coverageInfo, Map<Integer, CoverageStatus> lineCoverages) {
+			this.name = name;
+			this.coverageInfo = coverageInfo;
+			this.lineCoverages = lineCoverages;
+		}
+		
+	}
+	
 }
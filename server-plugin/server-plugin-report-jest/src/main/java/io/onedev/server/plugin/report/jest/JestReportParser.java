@@ -79,8 +79,8 @@ public class JestReportParser {
 				private static final long serialVersionUID = 1L;
 
 				@Override
-				protected Component renderMessage(String componentId, Build build) {
-					return JestReportParser.renderMessage(componentId, build, getMessage());
+				protected Component renderMessage(String componentId, Build build, String message) {
+					return JestReportParser.renderMessage(componentId, build, message);
 				}
 				
 			};
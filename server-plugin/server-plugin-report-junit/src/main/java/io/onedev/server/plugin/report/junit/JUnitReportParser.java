@@ -1,10 +1,13 @@
 package io.onedev.server.plugin.report.junit;
 
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+
+import javax.xml.stream.XMLStreamException;
 
-import org.dom4j.Document;
 import org.dom4j.Element;
 
 import io.onedev.commons.utils.StringUtils;
@@ -14,82 +17,123 @@ import io.onedev.server.plugin.report.unittest.UnitTestReport.Status;
 import io.onedev.server.plugin.report.unittest.UnitTestReport.TestCase;
 import io.onedev.server.plugin.report.unittest.UnitTestReport.TestSuite;
 import io.onedev.server.search.code.CodeSearchManager;
+import io.onedev.server.util.StreamingXmlParser;
 
 public class JUnitReportParser {
 
-	public static List<TestCase> parse(Build build, Document doc) {
+	public static List<TestCase> parse(Build build, InputStream is) throws XMLStreamException {
+		return resolveBlobPaths(build, parse(is));
+	}
+	
+	/**
+	 * Parse test cases without resolving blob paths of test suites. This does not access 
+	 * build or other entities, and can be called in other threads. Call 
+	 * {@link #resolveBlobPaths(Build, List)} with the result in current thread afterwards
+	 */
+	public static List<TestCase> parse(InputStream is) throws XMLStreamException {
 		List<TestCase> testCases = new ArrayList<>();
-		Element rootElement = doc.getRootElement();
-
-		List<Element> rootElements = new ArrayList<>();
-		if (rootElement.getName().equals("testsuite")) {
-			// JUnit format
-			rootElements.add(rootElement);
-		} else if (rootElement.getName().equals("testsuites")) {
-			// JUnit report format
-			Iterator<Element> elements = rootElement.elementIterator("testsuite");
-			while(elements.hasNext()) {
-				rootElements.add(elements.next());
-			}
-		} else {
-			return testCases;
-		}
 		
-		for (Element testSuiteElement : rootElements) {
-			String name = testSuiteElement.attributeValue("name");
-			long duration = getDouble(testSuiteElement.attributeValue("time"));
-			int tests = getInt(testSuiteElement.attributeValue("tests"));
-			int failures =getInt(testSuiteElement.attributeValue("failures"));
-			int errors = getInt(testSuiteElement.attributeValue("errors"));
+		new StreamingXmlParser() {
 
-			int skipped = 0;
-			String skippedString = testSuiteElement.attributeValue("skipped");
-			if (StringUtils.isNotBlank(skippedString))
-				skipped = getInt(skippedString);
+			private TestSuite testSuite;
+			
+			private boolean isTestSuite(String path) {
+				// "testsuite" for JUnit format, and "testsuites/testsuite" for JUnit report format
+				return path.equals("testsuite") || path.equals("testsuites/testsuite");
+			}
+			
+			@Override
+			protected boolean isRecord(String path) {
+				return path.endsWith("/testcase") && isTestSuite(StringUtils.substringBeforeLast(path, "/"));
+			}
 
-			Status status;
-			if (failures != 0 || errors != 0)
-				status = Status.FAILED;
-			else if (skipped == tests)
-				status = Status.SKIPPED;
-			else
-				status = Status.PASSED;
+			@Override
+			protected void onStart(String path, Element element) {
+				if (isTestSuite(path))
+					testSuite = parseTestSuite(element);
+			}
 
-			String fileName;
-			if (name.contains("."))
-				fileName = StringUtils.substringAfterLast(name, ".") + ".java";
-			else
-				fileName = name + ".java";
+			@Override
+			protected void onEnd(String path) {
+				if (isTestSuite(path))
+					testSuite = null;
+			}
 
-			String partialBlobPath = name.replace('.', '/') + ".java";
+			@Override
+			protected void onRecord(String path, Element element) {
+				testCases.add(parseTestCase(testSuite, element));
+			}
+			
+		}.parse(is);
+		
+		return testCases;
+	}
+	
+	public static List<TestCase> resolveBlobPaths(Build build, List<TestCase> testCases) {
+		CodeSearchManager searchManager = OneDev.getInstance(CodeSearchManager.class);
+		Map<TestSuite, TestSuite> resolvedTestSuites = new IdentityHashMap<>();
+		List<TestCase> resolvedTestCases = new ArrayList<>();
+		for (TestCase testCase: testCases) {
+			TestSuite resolvedTestSuite = resolvedTestSuites.computeIfAbsent(testCase.getTestSuite(), it -> {
+				String name = it.getName();
+				String fileName;
+				if (name.contains("."))
+					fileName = StringUtils.substringAfterLast(name, ".") + ".java";
+				else
+					fileName = name + ".java";
+				String partialBlobPath = name.replace('.', '/') + ".java";
+				String blobPath = searchManager.findBlobPath(build.getProject(), build.getCommitId(), 
+						fileName, partialBlobPath);
+				return new TestSuite(name, it.getStatus(), it.getDuration(), it.getMessage(), blobPath);
+			});
+			resolvedTestCases.add(new TestCase(resolvedTestSuite, testCase.getName(), 
+					testCase.getStatus(), testCase.getDuration(), testCase.getMessage()));
+		}
+		return resolvedTestCases;
+	}
+	
+	private static TestSuite parseTestSuite(Element testSuiteElement) {
+		String name = testSuiteElement.attributeValue("name");
+		long duration = getDouble(testSuiteElement.attributeValue("time"));
+		int tests = getInt(testSuiteElement.attributeValue("tests"));
+		int failures =getInt(testSuiteElement.attributeValue("failures"));
+		int errors = getInt(testSuiteElement.attributeValue("errors"));
 
-			String blobPath = OneDev.getInstance(CodeSearchManager.class)
-					.findBlobPath(build.getProject(), build.getCommitId(), fileName, partialBlobPath);
+		int skipped = 0;
+		String skippedString = testSuiteElement.attributeValue("skipped");
+		if (StringUtils.isNotBlank(skippedString))
+			skipped = getInt(skippedString);
 
-			TestSuite testSuite = new TestSuite(name, status, duration, null, blobPath);
+		Status status;
+		if (failures != 0 || errors != 0)
+			status = Status.FAILED;
+		else if (skipped == tests)
+			status = Status.SKIPPED;
+		else
+			status = Status.PASSED;
 
-			for (Element testCaseElement: testSuiteElement.elements("testcase")) {
-				name = testCaseElement.attributeValue("name");
-				if (testCaseElement.element("skipped") != null) {
-					testCases.add(new TestCase(testSuite, name, Status.SKIPPED, 0, null));
-				} else {
-					duration = getDouble(testCaseElement.attributeValue("time"));
-					status = Status.PASSED;
-					String message = null;
-					Element failureElement = testCaseElement.element("failure");
-					Element errorElement = testCaseElement.element("error");
-					if (failureElement != null) {
-						status = Status.FAILED;
-						message = failureElement.getText();
-					} else if (errorElement != null) {
-						status = Status.FAILED;
-						message = errorElement.getText();
-					}
-					testCases.add(new TestCase(testSuite, name, status, duration, message));
-				}
+		return new TestSuite(name, status, duration, null, null);
+	}
+	
+	private static TestCase parseTestCase(TestSuite testSuite, Element testCaseElement) {
+		String name = testCaseElement.attributeValue("name");
+		if (testCaseElement.element("skipped") != null) {
+			return new TestCase(testSuite, name, Status.SKIPPED, 0, null);
+		} else {
+			long duration = getDouble(testCaseElement.attributeValue("time"));
+			Status status = Status.PASSED;
+			String message = null;
+			Element failureElement = testCaseElement.element("failure");
+			Element errorElement = testCaseElement.element("error");
+			if (failureElement != null) {
+				status = Status.FAILED;
+				message = failureElement.getText();
+			} else if (errorElement != null) {
+				status = Status.FAILED;
+				message = errorElement.getText();
 			}
+			return new TestCase(testSuite, name, status, duration, message);
 		}
-		return testCases;
 	}
 	
 	public static int getInt(String input) {
@@ -6,9 +6,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
 
+import javax.xml.stream.XMLStreamException;
+
 import org.apache.lucene.search.IndexSearcher;
-import org.dom4j.DocumentException;
-import org.dom4j.io.SAXReader;
 import org.eclipse.jgit.lib.ObjectId;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -61,15 +61,14 @@ public class JUnitReportParserTest extends AppLoaderMocker {
 			Build build = new Build();
 			build.setCommitHash(ObjectId.zeroId().name());
 
-			SAXReader reader = new SAXReader();
-			UnitTestReport report = new UnitTestReport(JUnitReportParser.parse(build, reader.read(is)), true);
+			UnitTestReport report = new UnitTestReport(JUnitReportParser.parse(build, is), true);
 			
 			assertEquals(1, report.getTestSuites().size());
 			assertEquals(1, report.getTestCases(null, null, Sets.newSet(Status.PASSED)).size());
 			assertEquals(2, report.getTestCases(null, null, Sets.newSet(Status.FAILED)).size());
 			assertEquals(1, report.getTestCases(null, null, Sets.newSet(Status.SKIPPED)).size());
 			
-		} catch (IOException|DocumentException e) {
+		} catch (IOException|XMLStreamException e) {
 			throw new RuntimeException(e);
 		}		
 	}
@@ -105,15 +104,14 @@ public class JUnitReportParserTest extends AppLoaderMocker {
 			Build build = new Build();
 			build.setCommitHash(ObjectId.zeroId().name());
 
-			SAXReader reader = new SAXReader();
-			UnitTestReport report = new UnitTestReport(JUnitReportParser.parse(build, reader.read(is)), true);
+			UnitTestReport report = new UnitTestReport(JUnitReportParser.parse(build, is), true);
 
 			assertEquals(2, report.getTestSuites().size());
 			assertEquals(2, report.getTestCases(null, null, Sets.newSet(Status.PASSED)).size());
 			assertEquals(4, report.getTestCases(null, null, Sets.newSet(Status.FAILED)).size());
 			assertEquals(2, report.getTestCases(null, null, Sets.newSet(Status.SKIPPED)).size());
 
-		} catch (IOException|DocumentException e) {
+		} catch (IOException|XMLStreamException e) {
 			throw new RuntimeException(e);
 		}
 	}
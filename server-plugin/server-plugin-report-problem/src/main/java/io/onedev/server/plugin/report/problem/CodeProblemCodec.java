@@ -0,0 +1,78 @@
+package io.onedev.server.plugin.report.problem;
+
+import static io.onedev.server.codequality.ReportFilePack.readSignedVarInt;
+import static io.onedev.server.codequality.ReportFilePack.readVarInt;
+import static io.onedev.server.codequality.ReportFilePack.writeSignedVarInt;
+import static io.onedev.server.codequality.ReportFilePack.writeVarInt;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.codequality.CodeProblem;
+import io.onedev.server.codequality.CodeProblem.Severity;
+import io.onedev.server.codequality.ReportFilePack;
+
+/**
+ * Encodes code problems of a file. Problem types and messages are interned into string 
+ * table of the report file pack, as they are often repeated across problems and files. 
+ * Type or message may be missing, for instance if corresponding attribute is absent in 
+ * the report being parsed
+ */
+public class CodeProblemCodec {
+
+	public static ByteArrayOutputStream encode(List<CodeProblem> problems, ReportFilePack.Writer writer) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		try {
+			writeVarInt(os, problems.size());
+			for (CodeProblem problem: problems) {
+				os.write(problem.getSeverity().ordinal());
+				writeString(os, problem.getType(), writer);
+				writeString(os, problem.getMessage(), writer);
+				PlanarRange range = problem.getRange();
+				writeSignedVarInt(os, range.getFromRow());
+				writeSignedVarInt(os, range.getFromColumn());
+				writeSignedVarInt(os, range.getToRow());
+				writeSignedVarInt(os, range.getToColumn());
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return os;
+	}
+	
+	public static List<CodeProblem> decode(String blobPath, ByteBuffer buffer, ReportFilePack pack) {
+		int count = readVarInt(buffer);
+		List<CodeProblem> problems = new ArrayList<>(count);
+		for (int i=0; i<count; i++) {
+			Severity severity = Severity.values()[buffer.get()];
+			String type = readString(buffer, pack);
+			String message = readString(buffer, pack);
+			PlanarRange range = new PlanarRange(readSignedVarInt(buffer), readSignedVarInt(buffer), 
+					readSignedVarInt(buffer), readSignedVarInt(buffer));
+			problems.add(new CodeProblem(severity, type, blobPath, range, message));
+		}
+		return problems;
+	}
+	
+	// Index is shifted by one so that 0 denotes null string 
+	private static void writeString(ByteArrayOutputStream os, @Nullable String string, 
+			ReportFilePack.Writer writer) throws IOException {
+		if (string != null)
+			writeVarInt(os, writer.intern(string) + 1);
+		else
+			writeVarInt(os, 0);
+	}
+	
+	@Nullable
+	private static String readString(ByteBuffer buffer, ReportFilePack pack) {
+		int index = readVarInt(buffer);
+		return index != 0? pack.getString(index - 1): null;
+	}
+	
+}
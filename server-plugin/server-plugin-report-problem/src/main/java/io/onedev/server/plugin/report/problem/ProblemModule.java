@@ -4,6 +4,7 @@ import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -25,6 +26,7 @@ import io.onedev.server.OneDev;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.codequality.CodeProblem;
 import io.onedev.server.codequality.CodeProblemContribution;
+import io.onedev.server.codequality.ReportFilePack;
 import io.onedev.server.entitymanager.BuildMetricManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.model.Build;
@@ -156,8 +158,15 @@ public class ProblemModule extends AbstractPluginModule {
 					if (categoryDir.exists()) {
 						for (File reportDir: categoryDir.listFiles()) {
 							if (reportName == null || reportName.equals(reportDir.getName())) { 
+								File packFile = new File(reportDir, ProblemReport.FILES_PACK);
 								File file = new File(reportDir, ProblemReport.FILES_DIR + "/" + blobPath);
-								if (file.exists()) {
+								if (packFile.exists()) {
+									ReportFilePack pack = ReportFilePack.open(packFile);
+									ByteBuffer buffer = pack.get(blobPath);
+									if (buffer != null)
+										problems.put(reportDir.getName(), CodeProblemCodec.decode(blobPath, buffer, pack));
+								} else if (file.exists()) {
+									// Reports published by previous versions
 									try (InputStream is = new BufferedInputStream(new FileInputStream(file))) {
 										problems.put(reportDir.getName(), (List<CodeProblem>) SerializationUtils.deserialize(is));
 									}
@@ -30,6 +30,8 @@ public class ProblemReport implements Serializable {
 
 	public static final String FILES_DIR = "files";
 	
+	public static final String FILES_PACK = "files.pack";
+	
 	private final List<CodeProblem> problems;
 	
 	private transient List<ProblemFile> problemFiles;
@@ -1,15 +1,10 @@
 package io.onedev.server.plugin.report.problem;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStream;
-import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
-
-import org.apache.commons.lang3.SerializationUtils;
+import java.util.concurrent.ConcurrentHashMap;
 
 import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
@@ -19,6 +14,7 @@ import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.step.PublishReportStep;
 import io.onedev.server.codequality.CodeProblem;
 import io.onedev.server.codequality.CodeProblem.Severity;
+import io.onedev.server.codequality.ReportFilePack;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.ProblemMetric;
 import io.onedev.server.persistence.dao.Dao;
@@ -29,6 +25,12 @@ public abstract class PublishProblemReportStep extends PublishReportStep {
 
 	private static final long serialVersionUID = 1L;
 	
+	/*
+	 * Pack writers of reports being created, keyed by report directory. Step instances may be 
+	 * shared by concurrent builds, so this is not kept as a field of the step
+	 */
+	private static final Map<String, ReportFilePack.Writer> packWriters = new ConcurrentHashMap<>();
+	
 	@Override
 	public Map<String, byte[]> run(Build build, File inputDir, TaskLogger logger) {
 		File reportDir = new File(build.getDir(), ProblemReport.CATEGORY + "/" + getReportName());
@@ -38,8 +40,17 @@ public abstract class PublishProblemReportStep extends PublishReportStep {
 			@Override
 			public ProblemReport call() throws Exception {
 				FileUtils.createDir(reportDir);
+				String packKey = reportDir.getAbsolutePath();
 				try {
-					ProblemReport report = createReport(build, inputDir, reportDir, logger);
+					ProblemReport report;
+					try (ReportFilePack.Writer packWriter = new ReportFilePack.Writer(new File(reportDir, ProblemReport.FILES_PACK))) {
+						packWriters.put(packKey, packWriter);
+						try {
+							report = createReport(build, inputDir, reportDir, logger);
+						} finally {
+							packWriters.remove(packKey);
+						}
+					}
 					if (report != null) {
 						report.writeTo(reportDir);
 						return report;
@@ -80,15 +91,12 @@ public abstract class PublishProblemReportStep extends PublishReportStep {
 	
 	protected void writeFileProblems(Build build, String blobPath, List<CodeProblem> problemsOfFile) {
 		File reportDir = new File(build.getDir(), ProblemReport.CATEGORY + "/" + getReportName());
-		File violationsFile = new File(reportDir, ProblemReport.FILES_DIR + "/" + blobPath);
-		FileUtils.createDir(violationsFile.getParentFile());
-		try (OutputStream os = new FileOutputStream(violationsFile)) {
-			SerializationUtils.serialize((Serializable) problemsOfFile, os);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+		ReportFilePack.Writer packWriter = packWriters.get(reportDir.getAbsolutePath());
+		if (packWriter == null)
+			throw new IllegalStateException("File problems can only be written while creating report");
+		packWriter.write(blobPath, CodeProblemCodec.encode(problemsOfFile, packWriter));
 	}
-
+	
 	protected abstract ProblemReport createReport(Build build, File inputDir, File reportDir, TaskLogger logger);
 	
 }
@@ -0,0 +1,79 @@
+package io.onedev.server.plugin.report.problem;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.codequality.CodeProblem;
+import io.onedev.server.codequality.CodeProblem.Severity;
+import io.onedev.server.codequality.ReportFilePack;
+
+public class CodeProblemCodecTest {
+
+	@Test
+	public void test() throws IOException {
+		List<CodeProblem> problemsOfA = new ArrayList<>();
+		problemsOfA.add(new CodeProblem(Severity.HIGH, "UnusedImport", "src/a.java", 
+				new PlanarRange(0, 0, 0, 10), "Unused import"));
+		problemsOfA.add(new CodeProblem(Severity.LOW, "UnusedImport", "src/a.java", 
+				new PlanarRange(1000, -1, 1200, -1), "Unused import"));
+		List<CodeProblem> problemsOfB = new ArrayList<>();
+		problemsOfB.add(new CodeProblem(Severity.MEDIUM, "MagicNumber", "src/b.java", 
+				new PlanarRange(5, 3, 5, 7), "Magic number: 42"));
+		problemsOfB.add(new CodeProblem(Severity.MEDIUM, null, "src/b.java", 
+				new PlanarRange(6, 0, 6, 1), null));
+		problemsOfB.add(new CodeProblem(Severity.LOW, "MagicNumber", "src/b.java", 
+				new PlanarRange(7, 0, 7, 1), null));
+		
+		File tempDir = FileUtils.createTempDir();
+		try {
+			File packFile = new File(tempDir, ProblemReport.FILES_PACK);
+			try (ReportFilePack.Writer writer = new ReportFilePack.Writer(packFile)) {
+				writer.write("src/a.java", CodeProblemCodec.encode(problemsOfA, writer));
+				writer.write("src/b.java", CodeProblemCodec.encode(problemsOfB, writer));
+				writer.write("src/c.java", CodeProblemCodec.encode(new ArrayList<>(), writer));
+			}
+			
+			ReportFilePack pack = ReportFilePack.open(packFile);
+			assertProblems(problemsOfA, decode("src/a.java", pack));
+			assertProblems(problemsOfB, decode("src/b.java", pack));
+			assertEquals(0, decode("src/c.java", pack).size());
+		} finally {
+			FileUtils.deleteDir(tempDir);
+		}
+	}
+	
+	private List<CodeProblem> decode(String blobPath, ReportFilePack pack) {
+		ByteBuffer buffer = pack.get(blobPath);
+		List<CodeProblem> problems = CodeProblemCodec.decode(blobPath, buffer, pack);
+		assertEquals(0, buffer.remaining());
+		return problems;
+	}
+	
+	private void assertProblems(List<CodeProblem> expected, List<CodeProblem> actual) {
+		assertEquals(expected.size(), actual.size());
+		for (int i=0; i<expected.size(); i++) {
+			CodeProblem expectedProblem = expected.get(i);
+			CodeProblem actualProblem = actual.get(i);
+			assertEquals(expectedProblem.getSeverity(), actualProblem.getSeverity());
+			assertEquals(expectedProblem.getType(), actualProblem.getType());
+			assertEquals(expectedProblem.getBlobPath(), actualProblem.getBlobPath());
+			assertEquals(expectedProblem.getMessage(), actualProblem.getMessage());
+			PlanarRange expectedRange = expectedProblem.getRange();
+			PlanarRange actualRange = actualProblem.getRange();
+			assertEquals(expectedRange.getFromRow(), actualRange.getFromRow());
+			assertEquals(expectedRange.getFromColumn(), actualRange.getFromColumn());
+			assertEquals(expectedRange.getToRow(), actualRange.getToRow());
+			assertEquals(expectedRange.getToColumn(), actualRange.getToColumn());
+		}
+	}
+	
+}
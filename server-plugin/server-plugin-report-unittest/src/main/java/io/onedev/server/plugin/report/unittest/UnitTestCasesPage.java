@@ -4,10 +4,10 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
@@ -80,6 +80,24 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 	
 	private WebMarkupContainer detail;
 	
+	private PageableListView<Integer> testCasesView;
+	
+	// Full data of test cases are only loaded for current page 
+	private final IModel<Map<Integer, TestCase>> currentTestCasesModel = new LoadableDetachableModel<>() {
+
+		@Override
+		protected Map<Integer, TestCase> load() {
+			List<Integer> testCaseIndexes = testCasesView.getModelObject();
+			int fromIndex = (int) (testCasesView.getCurrentPage() * testCasesView.getItemsPerPage());
+			int toIndex = (int) Math.min(fromIndex + testCasesView.getItemsPerPage(), testCaseIndexes.size());
+			if (fromIndex < toIndex)
+				return getTestCases(testCaseIndexes.subList(fromIndex, toIndex));
+			else
+				return new HashMap<>();
+		}
+		
+	};
+	
 	public UnitTestCasesPage(PageParameters params) {
 		super(params);
 		
@@ -147,7 +165,7 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 			@Override
 			protected List<InputSuggestion> suggest(String matchWith) {
 				return SuggestionUtils.suggest(
-						getReport().getTestSuites().stream().map(it->it.getName()).collect(Collectors.toList()), 
+						getIndex().getTestSuiteNames(), 
 						matchWith);
 			}
 			
@@ -224,7 +242,7 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 			@Override
 			protected List<InputSuggestion> suggest(String matchWith) {
 				return SuggestionUtils.suggest(
-						getReport().getTestCases(null, null, null).stream().map(it->it.getName()).distinct().collect(Collectors.toList()), 
+						getIndex().getTestCaseNames(), 
 						matchWith);
 			}
 			
@@ -287,8 +305,8 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 				if (testSuitePatterns != null && namePatterns != null) {
 					List<PieSlice> slices = new ArrayList<>();
 					for (Status status: Status.values()) {
-						int numOfTestCases = getReport().getTestCases(
-								testSuitePatterns.orNull(), namePatterns.orNull(), Sets.newHashSet(status)).size();
+						int numOfTestCases = getIndex().queryTestCases(testSuitePatterns.orNull(), 
+								namePatterns.orNull(), Sets.newHashSet(status), false).length;
 						slices.add(new PieSlice(status.name().toLowerCase(), numOfTestCases, 
 								status.getColor(), state.statuses.contains(status)));
 					}
@@ -340,7 +358,7 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 			@Override
 			protected void onConfigure() {
 				super.onConfigure();
-				setVisible(getReport().hasTestCaseDuration());
+				setVisible(getIndex().hasTestCaseDuration());
 			}
 			
 		});
@@ -349,48 +367,35 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 		detail.setOutputMarkupId(true);
 		add(detail);
 		
-		PageableListView<TestCase> testCasesView;
-		detail.add(testCasesView = new PageableListView<TestCase>("testCases", 
-				new LoadableDetachableModel<List<TestCase>>() {
+		detail.add(testCasesView = new PageableListView<Integer>("testCases", 
+				new LoadableDetachableModel<List<Integer>>() {
 
 			@Override
-			protected List<TestCase> load() {
-				List<TestCase> testCases;
-				if (testSuitePatterns != null && namePatterns != null)
-					testCases = getReport().getTestCases(testSuitePatterns.orNull(), namePatterns.orNull(), state.statuses);
-				else
-					testCases = new ArrayList<>();
-				if (state.longestDurationFirst) {
-					testCases.sort(new Comparator<TestCase>() {
-
-						@Override
-						public int compare(TestCase o1, TestCase o2) {
-							if (o1.getDuration() < o2.getDuration())
-								return 1;
-							else if (o1.getDuration() > o2.getDuration())
-								return -1;
-							else 
-								return 0;
-						}
-						
-					});
+			protected List<Integer> load() {
+				if (testSuitePatterns != null && namePatterns != null) {
+					return UnitTestIndex.toList(getIndex().queryTestCases(testSuitePatterns.orNull(), 
+							namePatterns.orNull(), state.statuses, state.longestDurationFirst));
+				} else {
+					return new ArrayList<>();
 				}
-				return testCases;
 			}
 			
 		}, WebConstants.PAGE_SIZE) {
 
 			@Override
-			protected void populateItem(ListItem<TestCase> item) {
-				TestCase testCase = item.getModelObject();
-				item.add(new TestStatusBadge("status", testCase.getStatus()));
-				item.add(new Label("name", testCase.getName() + " (" + testCase.getTestSuite().getName() + ")"));
-				if (getReport().hasTestCaseDuration())
-					item.add(new Label("duration", DurationFormatUtils.formatDuration(testCase.getDuration(), "s.SSS 's'")));
+			protected void populateItem(ListItem<Integer> item) {
+				UnitTestIndex index = getIndex();
+				int testCaseIndex = item.getModelObject();
+				item.add(new TestStatusBadge("status", index.getTestCaseStatus(testCaseIndex)));
+				String testSuiteName = index.getTestSuiteName(index.getTestCaseSuiteIndex(testCaseIndex));
+				item.add(new Label("name", index.getTestCaseName(testCaseIndex) + " (" + testSuiteName + ")"));
+				if (index.hasTestCaseDuration())
+					item.add(new Label("duration", DurationFormatUtils.formatDuration(index.getTestCaseDuration(testCaseIndex), "s.SSS 's'")));
 				else
 					item.add(new WebMarkupContainer("duration").setVisible(false));
 				
-				Component messageViewer = testCase.renderMessage("message", getBuild()); 
+				TestCase testCase = currentTestCasesModel.getObject().get(testCaseIndex);
+				Component messageViewer = testCase != null? testCase.renderMessage("message", getBuild()): null; 
 				if (messageViewer != null)
 					item.add(messageViewer);
 				else
@@ -403,6 +408,12 @@ public class UnitTestCasesPage extends UnitTestReportPage {
 		detail.add(new NoRecordsPlaceholder("noRecords", testCasesView));
 	}
 	
+	@Override
+	protected void onDetach() {
+		currentTestCasesModel.detach();
+		super.onDetach();
+	}
+	
 	private void parseTestSuitePatterns() {
 		if (state.testSuite != null) {
 			try {
@@ -0,0 +1,299 @@
+package io.onedev.server.plugin.report.unittest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.IntStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang.SerializationUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.server.plugin.report.unittest.UnitTestReport.Status;
+import io.onedev.server.plugin.report.unittest.UnitTestReport.TestCase;
+import io.onedev.server.plugin.report.unittest.UnitTestReport.TestSuite;
+import io.onedev.server.util.match.Matcher;
+import io.onedev.server.util.match.PathMatcher;
+import io.onedev.server.util.patternset.PatternSet;
+
+/**
+ * Columnar index of a unit test report. Name, status and duration of test suites and test
+ * cases are stored as arrays so that they can be filtered and sorted without loading
+ * messages of test suites and test cases, which are stored separately and loaded on demand.
+ * Summary statistics are calculated when index is built.
+ */
+public class UnitTestIndex implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String FILE_NAME = "index.ser";
+
+	private static final int MAX_CACHED_INDEXES = 16;
+
+	private static final Cache<String, UnitTestIndex> cache = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_INDEXES)
+			.build();
+
+	private final String[] testSuiteNames;
+
+	private final byte[] testSuiteStatuses;
+
+	private final long[] testSuiteDurations;
+
+	private final String[] testSuiteBlobPaths;
+
+	private final String[] testCaseNames;
+
+	private final int[] testCaseNameIndexes;
+
+	private final int[] testCaseSuiteIndexes;
+
+	private final byte[] testCaseStatuses;
+
+	private final long[] testCaseDurations;
+
+	private final boolean hasTestCaseDuration;
+
+	private final int testDuration;
+
+	private final int testSuiteSuccessRate;
+
+	private final int testCaseSuccessRate;
+
+	public UnitTestIndex(UnitTestReport report) {
+		List<TestSuite> testSuites = report.getTestSuites();
+		Map<TestSuite, Integer> testSuiteIndexes = new HashMap<>();
+		testSuiteNames = new String[testSuites.size()];
+		testSuiteStatuses = new byte[testSuites.size()];
+		testSuiteDurations = new long[testSuites.size()];
+		testSuiteBlobPaths = new String[testSuites.size()];
+		for (int i=0; i<testSuites.size(); i++) {
+			TestSuite testSuite = testSuites.get(i);
+			testSuiteIndexes.put(testSuite, i);
+			testSuiteNames[i] = testSuite.getName();
+			testSuiteStatuses[i] = (byte) testSuite.getStatus().ordinal();
+			testSuiteDurations[i] = testSuite.getDuration();
+			testSuiteBlobPaths[i] = testSuite.getBlobPath();
+		}
+
+		List<TestCase> testCases = report.getTestCases();
+		Map<String, Integer> nameIndexes = new HashMap<>();
+		testCaseNameIndexes = new int[testCases.size()];
+		testCaseSuiteIndexes = new int[testCases.size()];
+		testCaseStatuses = new byte[testCases.size()];
+		testCaseDurations = new long[testCases.size()];
+		for (int i=0; i<testCases.size(); i++) {
+			TestCase testCase = testCases.get(i);
+			Integer nameIndex = nameIndexes.get(testCase.getName());
+			if (nameIndex == null) {
+				nameIndex = nameIndexes.size();
+				nameIndexes.put(testCase.getName(), nameIndex);
+			}
+			testCaseNameIndexes[i] = nameIndex;
+			testCaseSuiteIndexes[i] = testSuiteIndexes.get(testCase.getTestSuite());
+			testCaseStatuses[i] = (byte) testCase.getStatus().ordinal();
+			testCaseDurations[i] = testCase.getDuration();
+		}
+		testCaseNames = new String[nameIndexes.size()];
+		for (Map.Entry<String, Integer> entry: nameIndexes.entrySet())
+			testCaseNames[entry.getValue()] = entry.getKey();
+
+		hasTestCaseDuration = report.hasTestCaseDuration();
+		testDuration = report.getTestDuration();
+		testSuiteSuccessRate = getSuccessRate(testSuiteStatuses);
+		testCaseSuccessRate = getSuccessRate(testCaseStatuses);
+	}
+	
+	private static int getSuccessRate(byte[] statuses) {
+		int numOfFailed = 0;
+		int numOfPassed = 0;
+		for (byte status: statuses) {
+			if (status == Status.FAILED.ordinal())
+				numOfFailed++;
+			else if (status == Status.PASSED.ordinal())
+				numOfPassed++;
+		}
+		if (numOfPassed + numOfFailed != 0)
+			return numOfPassed*100/(numOfPassed+numOfFailed);
+		else
+			return 0;
+	}
+
+	public int getTestSuiteCount() {
+		return testSuiteNames.length;
+	}
+
+	public String getTestSuiteName(int testSuiteIndex) {
+		return testSuiteNames[testSuiteIndex];
+	}
+
+	public Status getTestSuiteStatus(int testSuiteIndex) {
+		return Status.values()[testSuiteStatuses[testSuiteIndex]];
+	}
+
+	public long getTestSuiteDuration(int testSuiteIndex) {
+		return testSuiteDurations[testSuiteIndex];
+	}
+
+	@Nullable
+	public String getTestSuiteBlobPath(int testSuiteIndex) {
+		return testSuiteBlobPaths[testSuiteIndex];
+	}
+
+	public int getTestCaseCount() {
+		return testCaseStatuses.length;
+	}
+
+	public String getTestCaseName(int testCaseIndex) {
+		return testCaseNames[testCaseNameIndexes[testCaseIndex]];
+	}
+
+	public int getTestCaseSuiteIndex(int testCaseIndex) {
+		return testCaseSuiteIndexes[testCaseIndex];
+	}
+
+	public Status getTestCaseStatus(int testCaseIndex) {
+		return Status.values()[testCaseStatuses[testCaseIndex]];
+	}
+
+	public long getTestCaseDuration(int testCaseIndex) {
+		return testCaseDurations[testCaseIndex];
+	}
+
+	public List<String> getTestSuiteNames() {
+		return Arrays.asList(testSuiteNames);
+	}
+
+	public List<String> getTestCaseNames() {
+		return Arrays.asList(testCaseNames);
+	}
+
+	public boolean hasTestCaseDuration() {
+		return hasTestCaseDuration;
+	}
+
+	public int getTestDuration() {
+		return testDuration;
+	}
+
+	public int getTestSuiteSuccessRate() {
+		return testSuiteSuccessRate;
+	}
+
+	public int getTestCaseSuccessRate() {
+		return testCaseSuccessRate;
+	}
+
+	private boolean[] match(String[] names, @Nullable PatternSet patterns) {
+		boolean[] matches = new boolean[names.length];
+		Matcher matcher = new PathMatcher();
+		for (int i=0; i<names.length; i++)
+			matches[i] = patterns == null || patterns.matches(matcher, names[i]);
+		return matches;
+	}
+
+	private boolean[] match(@Nullable Collection<Status> statuses) {
+		boolean[] matches = new boolean[Status.values().length];
+		for (Status status: Status.values())
+			matches[status.ordinal()] = statuses == null || statuses.contains(status);
+		return matches;
+	}
+
+	/**
+	 * Query test suites matching specified criteria
+	 *
+	 * @return
+	 * 			indexes of matching test suites
+	 */
+	public int[] queryTestSuites(@Nullable PatternSet namePatterns, @Nullable Collection<Status> statuses,
+			boolean longestDurationFirst) {
+		boolean[] nameMatches = match(testSuiteNames, namePatterns);
+		boolean[] statusMatches = match(statuses);
+		IntStream stream = IntStream.range(0, testSuiteNames.length)
+				.filter(it -> nameMatches[it] && statusMatches[testSuiteStatuses[it]]);
+		if (longestDurationFirst)
+			return sortByDurationDesc(stream.toArray(), testSuiteDurations);
+		else
+			return stream.toArray();
+	}
+
+	/**
+	 * Query test cases matching specified criteria. Patterns are matched against distinct
+	 * test suite and test case names instead of every test case
+	 *
+	 * @return
+	 * 			indexes of matching test cases
+	 */
+	public int[] queryTestCases(@Nullable PatternSet testSuitePatterns, @Nullable PatternSet namePatterns,
+			@Nullable Collection<Status> statuses, boolean longestDurationFirst) {
+		boolean[] testSuiteMatches = match(testSuiteNames, testSuitePatterns);
+		boolean[] nameMatches = match(testCaseNames, namePatterns);
+		boolean[] statusMatches = match(statuses);
+		IntStream stream = IntStream.range(0, testCaseStatuses.length)
+				.filter(it -> statusMatches[testCaseStatuses[it]]
+						&& testSuiteMatches[testCaseSuiteIndexes[it]]
+						&& nameMatches[testCaseNameIndexes[it]]);
+		if (longestDurationFirst)
+			return sortByDurationDesc(stream.toArray(), testCaseDurations);
+		else
+			return stream.toArray();
+	}
+
+	private int[] sortByDurationDesc(int[] indexes, long[] durations) {
+		return IntStream.of(indexes).boxed()
+				.sorted((o1, o2) -> Long.compare(durations[o2], durations[o1]))
+				.mapToInt(Integer::intValue)
+				.toArray();
+	}
+
+	public void writeTo(File reportDir) {
+		File indexFile = new File(reportDir, FILE_NAME);
+		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(indexFile))) {
+			SerializationUtils.serialize(this, os);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Read index of specified report directory. Recently read indexes are cached
+	 */
+	public static UnitTestIndex readFrom(File reportDir) {
+		File indexFile = new File(reportDir, FILE_NAME);
+		String cacheKey = indexFile.getAbsolutePath() + ":" + indexFile.lastModified();
+		try {
+			return cache.get(cacheKey, () -> {
+				try (InputStream is = new BufferedInputStream(new FileInputStream(indexFile))) {
+					return (UnitTestIndex) SerializationUtils.deserialize(is);
+				}
+			});
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+	}
+
+	public static List<Integer> toList(int[] indexes) {
+		List<Integer> list = new ArrayList<>(indexes.length);
+		for (int index: indexes)
+			list.add(index);
+		return list;
+	}
+
+}
@@ -1,16 +1,24 @@
 package io.onedev.server.plugin.report.unittest;
 
+import static io.onedev.server.codequality.ReportFilePack.readVarInt;
+import static io.onedev.server.codequality.ReportFilePack.readVarLong;
+import static io.onedev.server.codequality.ReportFilePack.writeVarInt;
+import static io.onedev.server.codequality.ReportFilePack.writeVarLong;
+
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -19,6 +27,8 @@ import org.apache.commons.lang.SerializationUtils;
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.html.basic.Label;
 
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.codequality.ReportFilePack;
 import io.onedev.server.model.Build;
 import io.onedev.server.util.match.Matcher;
 import io.onedev.server.util.match.PathMatcher;
@@ -32,6 +42,12 @@ public class UnitTestReport implements Serializable {
 	
 	private static final String FILE_NAME = "report.ser";
 	
+	private static final String DETAILS_PACK = "details.pack";
+	
+	private static final String TEST_SUITE_PREFIX = "suite:";
+	
+	private static final String TEST_CASE_PREFIX = "case:";
+	
 	public static enum Status {
 		
 		PASSED("#1BC5BD"), FAILED("#F64E60"), SKIPPED("#8950FC"), TODO("#3699FF");
@@ -92,8 +108,11 @@ public class UnitTestReport implements Serializable {
 		return hasTestCaseDuration;
 	}
 
+	/**
+	 * Read report published by previous versions, which is serialized as a whole
+	 */
 	@Nullable
-	public static UnitTestReport readFrom(File reportDir) {
+	private static UnitTestReport readFrom(File reportDir) {
 		File reportFile = new File(reportDir, FILE_NAME);
 		try (InputStream is = new BufferedInputStream(new FileInputStream(reportFile))) {
 			return (UnitTestReport) SerializationUtils.deserialize(is);
@@ -102,13 +121,104 @@ public class UnitTestReport implements Serializable {
 		}
 	}
 	
+	/**
+	 * Write report into specified directory. Test suites and test cases are indexed with 
+	 * {@link UnitTestIndex}, and their full data (including messages) are packed separately 
+	 * to be loaded on demand. Test cases are packed as compact records referencing their 
+	 * test suites by index, and their names and messages are interned as they are often 
+	 * repeated
+	 */
 	public void writeTo(File reportDir) {
-		File reportFile = new File(reportDir, FILE_NAME);
-		try (OutputStream os = new BufferedOutputStream(new FileOutputStream(reportFile))) {
-			SerializationUtils.serialize(this, os);
+		try (ReportFilePack.Writer writer = new ReportFilePack.Writer(new File(reportDir, DETAILS_PACK))) {
+			List<TestSuite> testSuites = getTestSuites();
+			Map<TestSuite, Integer> testSuiteIndexes = new HashMap<>();
+			for (int i=0; i<testSuites.size(); i++) { 
+				testSuiteIndexes.put(testSuites.get(i), i);
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				SerializationUtils.serialize(testSuites.get(i), os);
+				writer.write(TEST_SUITE_PREFIX + i, os);
+			}
+			for (int i=0; i<testCases.size(); i++) { 
+				TestCase testCase = testCases.get(i);
+				ByteArrayOutputStream os = new ByteArrayOutputStream();
+				writeVarInt(os, testSuiteIndexes.get(testCase.getTestSuite()));
+				writeVarInt(os, writer.intern(testCase.getName()));
+				os.write(testCase.getStatus().ordinal());
+				writeVarLong(os, testCase.getDuration());
+				/*
+				 * Messages are often long stack traces and rarely repeated, so write them into the 
+				 * record instead of string table, which is loaded as a whole when pack is opened
+				 */
+				if (testCase.getMessage() != null) {
+					os.write(1);
+					os.write(testCase.getMessage().getBytes(StandardCharsets.UTF_8));
+				} else {
+					os.write(0);
+				}
+				writer.write(TEST_CASE_PREFIX + i, os);
+			}
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		new UnitTestIndex(this).writeTo(reportDir);
+	}
+	
+	/**
+	 * Convert report published by previous versions into indexed form. Should be called 
+	 * with report write lock held
+	 */
+	public static void migrate(File reportDir) {
+		if (new File(reportDir, FILE_NAME).exists() && !new File(reportDir, UnitTestIndex.FILE_NAME).exists()) {
+			readFrom(reportDir).writeTo(reportDir);
+			FileUtils.deleteFile(new File(reportDir, FILE_NAME));
+		}
+	}
+	
+	public static Map<Integer, TestSuite> readTestSuites(File reportDir, Collection<Integer> testSuiteIndexes) {
+		ReportFilePack pack = ReportFilePack.open(new File(reportDir, DETAILS_PACK));
+		Map<Integer, TestSuite> testSuites = new HashMap<>();
+		for (Integer index: testSuiteIndexes) {
+			ByteBuffer buffer = pack.get(TEST_SUITE_PREFIX + index);
+			if (buffer != null) {
+				byte[] bytes = new byte[buffer.remaining()];
+				buffer.get(bytes);
+				testSuites.put(index, (TestSuite) SerializationUtils.deserialize(bytes));
+			}
+		}
+		return testSuites;
+	}
+	
+	public static Map<Integer, TestCase> readTestCases(File reportDir, Collection<Integer> testCaseIndexes) {
+		ReportFilePack pack = ReportFilePack.open(new File(reportDir, DETAILS_PACK));
+		Map<Integer, ByteBuffer> buffers = new HashMap<>();
+		Map<Integer, Integer> testSuiteIndexes = new HashMap<>();
+		for (Integer index: testCaseIndexes) {
+			ByteBuffer buffer = pack.get(TEST_CASE_PREFIX + index);
+			if (buffer != null) {
+				testSuiteIndexes.put(index, readVarInt(buffer));
+				buffers.put(index, buffer);
+			}
+		}
+		
+		Map<Integer, TestSuite> testSuites = readTestSuites(reportDir, new HashSet<>(testSuiteIndexes.values()));
+		Map<Integer, TestCase> testCases = new HashMap<>();
+		for (Map.Entry<Integer, ByteBuffer> entry: buffers.entrySet()) {
+			ByteBuffer buffer = entry.getValue();
+			TestSuite testSuite = testSuites.get(testSuiteIndexes.get(entry.getKey()));
+			String name = pack.getString(readVarInt(buffer));
+			Status status = Status.values()[buffer.get()];
+			long duration = readVarLong(buffer);
+			String message;
+			if (buffer.get() != 0) {
+				byte[] messageBytes = new byte[buffer.remaining()];
+				buffer.get(messageBytes);
+				message = new String(messageBytes, StandardCharsets.UTF_8);
+			} else {
+				message = null;
+			}
+			testCases.put(entry.getKey(), new TestCase(testSuite, name, status, duration, message));
+		}
+		return testCases;
 	}
 	
 	public int getTestDuration() {
@@ -189,8 +299,16 @@ public class UnitTestReport implements Serializable {
 
 		@Nullable
 		protected Component renderMessage(String componentId, Build build) {
-			if (getMessage() != null) 
-				return new Label(componentId, getMessage());
+			return renderMessage(componentId, build, getMessage());
+		}
+		
+		/**
+		 * Render message of this test suite or its test cases
+		 */
+		@Nullable
+		protected Component renderMessage(String componentId, Build build, @Nullable String message) {
+			if (message != null) 
+				return new Label(componentId, message);
 			else 
 				return null;
 		}
@@ -242,10 +360,7 @@ public class UnitTestReport implements Serializable {
 		
 		@Nullable
 		protected Component renderMessage(String componentId, Build build) {
-			if (getMessage() != null) 
-				return new Label(componentId, getMessage());
-			else 
-				return null;
+			return testSuite.renderMessage(componentId, build, getMessage());
 		}
 		
 	}
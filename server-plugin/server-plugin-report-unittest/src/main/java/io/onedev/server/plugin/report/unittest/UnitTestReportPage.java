@@ -2,11 +2,11 @@ package io.onedev.server.plugin.report.unittest;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
-import javax.annotation.Nullable;
-
 import org.apache.wicket.Component;
 import org.apache.wicket.Page;
 import org.apache.wicket.markup.head.CssHeaderItem;
@@ -21,6 +21,8 @@ import io.onedev.server.OneDev;
 import io.onedev.server.cluster.ClusterTask;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.model.Build;
+import io.onedev.server.plugin.report.unittest.UnitTestReport.TestCase;
+import io.onedev.server.plugin.report.unittest.UnitTestReport.TestSuite;
 import io.onedev.server.web.component.link.ViewStateAwarePageLink;
 import io.onedev.server.web.component.tabbable.PageTabHead;
 import io.onedev.server.web.component.tabbable.Tab;
@@ -32,13 +34,13 @@ import io.onedev.server.web.page.project.builds.detail.report.BuildReportPage;
 @SuppressWarnings("serial")
 public abstract class UnitTestReportPage extends BuildReportPage {
 
-	private final IModel<UnitTestReport> reportModel = new LoadableDetachableModel<>() {
+	private final IModel<UnitTestIndex> indexModel = new LoadableDetachableModel<>() {
 
 		@Override
-		protected UnitTestReport load() {
+		protected UnitTestIndex load() {
 			Long projectId = getProject().getId();
 			Long buildNumber = getBuild().getNumber();
-			return OneDev.getInstance(ProjectManager.class).runOnProjectServer(projectId, new GetUnitTestReport(projectId, buildNumber, getReportName()));
+			return getProjectManager().runOnProjectServer(projectId, new GetUnitTestIndex(projectId, buildNumber, getReportName()));
 		}
 		
 	};
@@ -49,7 +51,7 @@ public abstract class UnitTestReportPage extends BuildReportPage {
 	
 	@Override
 	protected void onDetach() {
-		reportModel.detach();
+		indexModel.detach();
 		super.onDetach();
 	}
 
@@ -64,9 +66,30 @@ public abstract class UnitTestReportPage extends BuildReportPage {
 		add(new Tabbable("reportTabs", tabs));
 	}
 	
-	@Nullable
-	protected UnitTestReport getReport() {
-		return reportModel.getObject();
+	protected UnitTestIndex getIndex() {
+		return indexModel.getObject();
+	}
+	
+	protected Map<Integer, TestSuite> getTestSuites(Collection<Integer> testSuiteIndexes) {
+		Long projectId = getProject().getId();
+		Long buildNumber = getBuild().getNumber();
+		return getProjectManager().runOnProjectServer(projectId, 
+				new GetTestSuites(projectId, buildNumber, getReportName(), testSuiteIndexes));
+	}
+	
+	protected Map<Integer, TestCase> getTestCases(Collection<Integer> testCaseIndexes) {
+		Long projectId = getProject().getId();
+		Long buildNumber = getBuild().getNumber();
+		return getProjectManager().runOnProjectServer(projectId, 
+				new GetTestCases(projectId, buildNumber, getReportName(), testCaseIndexes));
+	}
+	
+	private ProjectManager getProjectManager() {
+		return OneDev.getInstance(ProjectManager.class);
+	}
+	
+	private static File getReportDir(Long projectId, Long buildNumber, String reportName) {
+		return new File(Build.getDir(projectId, buildNumber), UnitTestReport.CATEGORY + "/" + reportName);
 	}
 
 	@Override
@@ -108,7 +131,7 @@ public abstract class UnitTestReportPage extends BuildReportPage {
 		
 	}
 	
-	private static class GetUnitTestReport implements ClusterTask<UnitTestReport> {
+	private static class GetUnitTestIndex implements ClusterTask<UnitTestIndex> {
 
 		private final Long projectId;
 		
@@ -116,24 +139,101 @@ public abstract class UnitTestReportPage extends BuildReportPage {
 		
 		private final String reportName;
 		
-		private GetUnitTestReport(Long projectId, Long buildNumber, String reportName) {
+		private GetUnitTestIndex(Long projectId, Long buildNumber, String reportName) {
 			this.projectId = projectId;
 			this.buildNumber = buildNumber;
 			this.reportName = reportName;
 		}		
 		
 		@Override
-		public UnitTestReport call() throws Exception {
-			return LockUtils.read(UnitTestReport.getReportLockName(projectId, buildNumber), new Callable<UnitTestReport>() {
+		public UnitTestIndex call() throws Exception {
+			File reportDir = getReportDir(projectId, buildNumber, reportName);
+			String lockName = UnitTestReport.getReportLockName(projectId, buildNumber);
+			if (!new File(reportDir, UnitTestIndex.FILE_NAME).exists()) {
+				LockUtils.write(lockName, new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						UnitTestReport.migrate(reportDir);
+						return null;
+					}
+					
+				});
+			}
+			return LockUtils.read(lockName, new Callable<UnitTestIndex>() {
 
 				@Override
-				public UnitTestReport call() throws Exception {
-					File reportDir = new File(Build.getDir(projectId, buildNumber), UnitTestReport.CATEGORY + "/" + reportName);				
-					return UnitTestReport.readFrom(reportDir);
+				public UnitTestIndex call() throws Exception {
+					return UnitTestIndex.readFrom(reportDir);
 				}
 				
 			});
 		}
 		
 	}
+	
+	private static class GetTestSuites implements ClusterTask<Map<Integer, TestSuite>> {
+
+		private final Long projectId;
+		
+		private final Long buildNumber;
+		
+		private final String reportName;
+		
+		private final ArrayList<Integer> testSuiteIndexes;
+		
+		private GetTestSuites(Long projectId, Long buildNumber, String reportName, 
+				Collection<Integer> testSuiteIndexes) {
+			this.projectId = projectId;
+			this.buildNumber = buildNumber;
+			this.reportName = reportName;
+			this.testSuiteIndexes = new ArrayList<>(testSuiteIndexes);
+		}		
+		
+		@Override
+		public Map<Integer, TestSuite> call() throws Exception {
+			return LockUtils.read(UnitTestReport.getReportLockName(projectId, buildNumber), new Callable<Map<Integer, TestSuite>>() {
+
+				@Override
+				public Map<Integer, TestSuite> call() throws Exception {
+					return UnitTestReport.readTestSuites(getReportDir(projectId, buildNumber, reportName), testSuiteIndexes);
+				}
+				
+			});
+		}
+		
+	}
+	
+	private static class GetTestCases implements ClusterTask<Map<Integer, TestCase>> {
+
+		private final Long projectId;
+		
+		private final Long buildNumber;
+		
+		private final String reportName;
+		
+		private final ArrayList<Integer> testCaseIndexes;
+		
+		private GetTestCases(Long projectId, Long buildNumber, String reportName, 
+				Collection<Integer> testCaseIndexes) {
+			this.projectId = projectId;
+			this.buildNumber = buildNumber;
+			this.reportName = reportName;
+			this.testCaseIndexes = new ArrayList<>(testCaseIndexes);
+		}		
+		
+		@Override
+		public Map<Integer, TestCase> call() throws Exception {
+			return LockUtils.read(UnitTestReport.getReportLockName(projectId, buildNumber), new Callable<Map<Integer, TestCase>>() {
+
+				@Override
+				public Map<Integer, TestCase> call() throws Exception {
+					return UnitTestReport.readTestCases(getReportDir(projectId, buildNumber, reportName), testCaseIndexes);
+				}
+				
+			});
+		}
+		
+	}
+	
 }
@@ -3,10 +3,10 @@ package io.onedev.server.plugin.report.unittest;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import javax.annotation.Nullable;
 
@@ -77,6 +77,24 @@ public class UnitTestSuitesPage extends UnitTestReportPage {
 	
 	private WebMarkupContainer detail;
 	
+	private PageableListView<Integer> testSuitesView;
+	
+	// Full data of test suites are only loaded for current page 
+	private final IModel<Map<Integer, TestSuite>> currentTestSuitesModel = new LoadableDetachableModel<>() {
+
+		@Override
+		protected Map<Integer, TestSuite> load() {
+			List<Integer> testSuiteIndexes = testSuitesView.getModelObject();
+			int fromIndex = (int) (testSuitesView.getCurrentPage() * testSuitesView.getItemsPerPage());
+			int toIndex = (int) Math.min(fromIndex + testSuitesView.getItemsPerPage(), testSuiteIndexes.size());
+			if (fromIndex < toIndex)
+				return getTestSuites(testSuiteIndexes.subList(fromIndex, toIndex));
+			else
+				return new HashMap<>();
+		}
+		
+	};
+	
 	public UnitTestSuitesPage(PageParameters params) {
 		super(params);
 		
@@ -138,7 +156,7 @@ public class UnitTestSuitesPage extends UnitTestReportPage {
 			@Override
 			protected List<InputSuggestion> suggest(String matchWith) {
 				return SuggestionUtils.suggest(
-						getReport().getTestSuites().stream().map(it->it.getName()).collect(Collectors.toList()), 
+						getIndex().getTestSuiteNames(), 
 						matchWith);
 			}
 			
@@ -200,8 +218,8 @@ public class UnitTestSuitesPage extends UnitTestReportPage {
 				if (namePatterns != null) {
 					List<PieSlice> slices = new ArrayList<>();
 					for (Status status: Status.values()) {
-						int numOfTestSuites = getReport().getTestSuites(
-								namePatterns.orNull(), Sets.newHashSet(status)).size();
+						int numOfTestSuites = getIndex().queryTestSuites(
+								namePatterns.orNull(), Sets.newHashSet(status), false).length;
 						slices.add(new PieSlice(status.name().toLowerCase(), numOfTestSuites, 
 								status.getColor(), state.statuses.contains(status)));
 					}
@@ -256,30 +274,14 @@ public class UnitTestSuitesPage extends UnitTestReportPage {
 		detail.setOutputMarkupId(true);
 		add(detail);
 
-		PageableListView<TestSuite> testSuitesView;
-		detail.add(testSuitesView = new PageableListView<TestSuite>("testSuites", 
-				new LoadableDetachableModel<List<TestSuite>>() {
+		detail.add(testSuitesView = new PageableListView<Integer>("testSuites", 
+				new LoadableDetachableModel<List<Integer>>() {
 
 			@Override
-			protected List<TestSuite> load() {
+			protected List<Integer> load() {
 				if (namePatterns != null) {
-					List<TestSuite> testSuites = getReport().getTestSuites(namePatterns.orNull(), state.statuses);
-					if (state.longestDurationFirst) {
-						testSuites.sort(new Comparator<TestSuite>() {
-
-							@Override
-							public int compare(TestSuite o1, TestSuite o2) {
-								if (o1.getDuration() < o2.getDuration())
-									return 1;
-								else if (o1.getDuration() > o2.getDuration())
-									return -1;
-								else 
-									return 0;
-							}
-							
-						});
-					}
-					return testSuites;
+					return UnitTestIndex.toList(getIndex().queryTestSuites(
+							namePatterns.orNull(), state.statuses, state.longestDurationFirst));
 				} else {
 					return new ArrayList<>();
 				}
@@ -288,20 +290,23 @@ public class UnitTestSuitesPage extends UnitTestReportPage {
 		}, WebConstants.PAGE_SIZE) {
 
 			@Override
-			protected void populateItem(ListItem<TestSuite> item) {
-				TestSuite testSuite = item.getModelObject();
-				item.add(new TestStatusBadge("status", testSuite.getStatus()));
+			protected void populateItem(ListItem<Integer> item) {
+				UnitTestIndex index = getIndex();
+				int testSuiteIndex = item.getModelObject();
+				String testSuiteName = index.getTestSuiteName(testSuiteIndex);
+				item.add(new TestStatusBadge("status", index.getTestSuiteStatus(testSuiteIndex)));
 				
 				UnitTestCasesPage.State state = new UnitTestCasesPage.State();
-				state.testSuite = testSuite.getName();
+				state.testSuite = testSuiteName;
 				state.statuses = UnitTestSuitesPage.this.state.statuses;
 				PageParameters params = UnitTestCasesPage.paramsOf(getBuild(), getReportName(), state);
 				Link<Void> link = new ViewStateAwarePageLink<Void>("testCases", 
 						UnitTestCasesPage.class, params);
-				link.add(new Label("label", testSuite.getName()));
+				link.add(new Label("label", testSuiteName));
 				
-				if (testSuite.getBlobPath() != null) {
-					BlobIdent blobIdent = new BlobIdent(getBuild().getCommitHash(), testSuite.getBlobPath(), 
+				String blobPath = index.getTestSuiteBlobPath(testSuiteIndex);
+				if (blobPath != null) {
+					BlobIdent blobIdent = new BlobIdent(getBuild().getCommitHash(), blobPath, 
 							FileMode.REGULAR_FILE.getBits());
 					if (SecurityUtils.canReadCode(getProject()) && getProject().getBlob(blobIdent, false) != null) {
 						item.add(new ViewStateAwarePageLink<Void>("viewSource", ProjectBlobPage.class, 
@@ -313,10 +318,11 @@ public class UnitTestSuitesPage extends UnitTestReportPage {
 					item.add(new WebMarkupContainer("viewSource").setVisible(false));
 				}
 									
-				item.add(new Label("duration", DurationFormatUtils.formatDuration(testSuite.getDuration(), "s.SSS 's'")));
+				item.add(new Label("duration", DurationFormatUtils.formatDuration(index.getTestSuiteDuration(testSuiteIndex), "s.SSS 's'")));
 				item.add(link);
 
-				Component messageViewer = testSuite.renderMessage("message", getBuild());
+				TestSuite testSuite = currentTestSuitesModel.getObject().get(testSuiteIndex);
+				Component messageViewer = testSuite != null? testSuite.renderMessage("message", getBuild()): null;
 				if (messageViewer != null)
 					item.add(messageViewer);
 				else
@@ -329,6 +335,12 @@ public class UnitTestSuitesPage extends UnitTestReportPage {
 		detail.add(new NoRecordsPlaceholder("noRecords", testSuitesView));
 	}
 	
+	@Override
+	protected void onDetach() {
+		currentTestSuitesModel.detach();
+		super.onDetach();
+	}
+	
 	private void parseNamePatterns() {
 		if (state.name != null) {
 			try {